@@ -22,17 +22,28 @@ import de.fraunhofer.iosb.aas.lib.auth.impl.BasicAuth;
 import de.fraunhofer.iosb.aas.lib.auth.impl.BearerAuth;
 import de.fraunhofer.iosb.aas.lib.auth.impl.NoAuth;
 import org.eclipse.edc.spi.security.Vault;
+import org.jetbrains.annotations.Nullable;
 
 import java.net.http.HttpClient;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.AbstractMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 
 
 /**
  * Describes authentication methods for HTTP authentication, i.e. key-value pairs appended to the headers of an HTTP
  * request.
+ * <p>
+ * Resolved header values are cached, so secrets are not read from the vault (or tokens requested from an identity
+ * provider) for every request. A cached value is used until its lifetime ends, which is the credential TTL or, for
+ * credentials with an own expiry, that expiry. Shortly before a credential expires, one caller renews it while the
+ * others keep using the still valid value. After rotating a secret, call {@link #invalidateCredentials()}.
  */
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
 @JsonSubTypes({
@@ -43,6 +54,15 @@ import java.util.function.Function;
 })
 public abstract class AuthenticationMethod {
 
+    public static final Duration DEFAULT_CREDENTIAL_TTL = Duration.ofMinutes(5);
+    // Renew credentials with an own expiry this long before they expire
+    private static final Duration REFRESH_AHEAD = Duration.ofSeconds(30);
+
+    private final ReentrantLock resolveLock = new ReentrantLock();
+    private Duration credentialTtl = DEFAULT_CREDENTIAL_TTL;
+    private Clock clock = Clock.systemUTC();
+    private volatile CachedCredential cachedCredential;
+
     /**
      * Get the header value to add to the request headers to communicate with the service. Headers: [... , (getHeader().key,
      * getHeader().value), ...] The secrets needed to produce
@@ -65,12 +85,99 @@ public abstract class AuthenticationMethod {
 
 
     /**
-     * Get the value of the authorization header.
+     * Get the value of the authorization header. The value is served from the credential cache if possible.
      *
      * @param vault Vault to retrieve secrets from.
      * @return The value of the authorization header
      */
-    public abstract String getValue(Vault vault);
+    public @Nullable String getValue(Vault vault) {
+        var cached = cachedCredential;
+        var now = clock.instant();
+
+        if (cached != null && cached.vault() == vault && now.isBefore(cached.refreshAt())) {
+            return cached.value();
+        }
+
+        boolean stillValid = cached != null && cached.vault() == vault && now.isBefore(cached.expiresAt());
+        if (stillValid) {
+            // Someone else is already renewing the credential
+            if (!resolveLock.tryLock()) {
+                return cached.value();
+            }
+        }
+        else {
+            resolveLock.lock();
+        }
+
+        try {
+            cached = cachedCredential;
+            if (cached != null && cached.vault() == vault && clock.instant().isBefore(cached.refreshAt())) {
+                return cached.value();
+            }
+
+            Credential credential;
+            try {
+                credential = resolveCredential(vault);
+            }
+            catch (RuntimeException resolveException) {
+                if (stillValid) {
+                    // Proactive renewal failed, the current credential can still be used until it expires
+                    return cached.value();
+                }
+                throw resolveException;
+            }
+
+            cachedCredential = cache(credential, vault);
+            return credential.value();
+        }
+        finally {
+            resolveLock.unlock();
+        }
+    }
+
+
+    /**
+     * Drop the cached credential, e.g., after a secret was rotated or the remote service rejected the credential. The
+     * next request resolves the credential again.
+     */
+    public void invalidateCredentials() {
+        cachedCredential = null;
+    }
+
+
+    /**
+     * Set the time a credential without own expiry is cached. Zero disables caching.
+     *
+     * @param credentialTtl Time to live of cached credentials.
+     * @return This authentication method.
+     */
+    public AuthenticationMethod credentialTtl(Duration credentialTtl) {
+        this.credentialTtl = Objects.requireNonNull(credentialTtl);
+        invalidateCredentials();
+        return this;
+    }
+
+
+    /**
+     * Set the clock used to decide on credential expiry.
+     *
+     * @param clock The clock.
+     * @return This authentication method.
+     */
+    public AuthenticationMethod clock(Clock clock) {
+        this.clock = Objects.requireNonNull(clock);
+        invalidateCredentials();
+        return this;
+    }
+
+
+    /**
+     * Resolve the value of the authorization header, e.g., by reading secrets from the vault or requesting a token.
+     *
+     * @param vault Vault to retrieve secrets from.
+     * @return The value of the authorization header and its lifetime, if known.
+     */
+    protected abstract Credential resolveCredential(Vault vault);
 
 
     protected Function<Vault, String> getResolver(Vault vault, String secret) {
@@ -82,6 +189,24 @@ public abstract class AuthenticationMethod {
     }
 
 
+    private @Nullable CachedCredential cache(Credential credential, Vault vault) {
+        var lifetime = credential.lifetime();
+        if (lifetime == null) {
+            lifetime = credentialTtl;
+            if (lifetime.isZero() || lifetime.isNegative() || credential.value() == null) {
+                return null;
+            }
+            var expiresAt = clock.instant().plus(lifetime);
+            return new CachedCredential(credential.value(), vault, expiresAt, expiresAt);
+        }
+
+        var expiresAt = clock.instant().plus(lifetime);
+        // Renew ahead of expiry, at the latest after half of the lifetime for short-lived credentials
+        var refreshAhead = lifetime.dividedBy(2).compareTo(REFRESH_AHEAD) < 0 ? lifetime.dividedBy(2) : REFRESH_AHEAD;
+        return new CachedCredential(credential.value(), vault, expiresAt.minus(refreshAhead), expiresAt);
+    }
+
+
     private String store(Vault vault, String secret) {
         String alias = UUID.randomUUID().toString();
         var storeResult = vault.storeSecret(alias, secret);
@@ -91,4 +216,21 @@ public abstract class AuthenticationMethod {
         return alias;
     }
 
+
+    /**
+     * A resolved header value.
+     *
+     * @param value Value of the authorization header.
+     * @param lifetime Time the value is valid. If null, the value is cached for the configured credential TTL.
+     */
+    protected record Credential(@Nullable String value, @Nullable Duration lifetime) {
+
+        public static Credential of(@Nullable String value) {
+            return new Credential(value, null);
+        }
+    }
+
+
+    private record CachedCredential(String value, Vault vault, Instant refreshAt, Instant expiresAt) {
+    }
 }
@@ -59,8 +59,9 @@ public class ApiKey extends AuthenticationMethod {
     }
 
 
-    public String getValue(Vault vault) {
-        return keyValueAlias.apply(vault);
+    @Override
+    protected Credential resolveCredential(Vault vault) {
+        return Credential.of(keyValueAlias.apply(vault));
     }
 
 
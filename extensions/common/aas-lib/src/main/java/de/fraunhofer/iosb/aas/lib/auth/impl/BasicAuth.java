@@ -45,8 +45,8 @@ public class BasicAuth extends AuthenticationMethod {
 
 
     @Override
-    public String getValue(Vault vault) {
-        return "Basic %s".formatted(BASE64_ENCODER.encodeToString("%s:%s".formatted(username, password.apply(vault)).getBytes()));
+    protected Credential resolveCredential(Vault vault) {
+        return Credential.of("Basic %s".formatted(BASE64_ENCODER.encodeToString("%s:%s".formatted(username, password.apply(vault)).getBytes())));
     }
 
 
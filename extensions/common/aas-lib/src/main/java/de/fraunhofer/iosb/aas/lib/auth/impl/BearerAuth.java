@@ -23,6 +23,8 @@ import org.eclipse.edc.spi.security.Vault;
 
 import java.net.URI;
 import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Optional;
 import java.util.function.Function;
 import javax.naming.OperationNotSupportedException;
 
@@ -48,8 +50,15 @@ public class BearerAuth extends AuthenticationMethod {
     }
 
 
+    /**
+     * Request a token from the identity provider. The token is cached until shortly before it expires, tokens without
+     * expiry information are cached for the credential TTL.
+     *
+     * @param vault Vault to retrieve client credentials from.
+     * @return The authorization header value and the token lifetime.
+     */
     @Override
-    public String getValue(Vault vault) {
+    protected Credential resolveCredential(Vault vault) {
         Oauth2CredentialsRequest req = SharedSecretOauth2CredentialsRequest.Builder.newInstance()
                 .url(identityProvider.toString())
                 .grantType("client_credentials")
@@ -58,11 +67,14 @@ public class BearerAuth extends AuthenticationMethod {
                 .param("username", username.apply(vault))
                 .param("password", password.apply(vault))
                 .build();
-        String token = client.requestToken(req)
-                .orElseThrow((failure) -> new RuntimeException(failure.getFailureDetail()))
-                .getToken();
+        var token = client.requestToken(req)
+                .orElseThrow((failure) -> new RuntimeException(failure.getFailureDetail()));
 
-        return "Bearer ".concat(token);
+        var lifetime = Optional.ofNullable(token.getExpiresIn())
+                .map(Duration::ofSeconds)
+                .orElse(null);
+
+        return new Credential("Bearer ".concat(token.getToken()), lifetime);
     }
 
 
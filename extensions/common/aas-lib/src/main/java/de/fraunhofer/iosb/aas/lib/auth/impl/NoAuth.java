@@ -43,6 +43,12 @@ public class NoAuth extends AuthenticationMethod {
     }
 
 
+    @Override
+    protected Credential resolveCredential(Vault vault) {
+        return Credential.of(null);
+    }
+
+
     @Override
     public HttpClient.Builder httpClientBuilderFor(Vault vault) {
         return HttpClient.newBuilder();
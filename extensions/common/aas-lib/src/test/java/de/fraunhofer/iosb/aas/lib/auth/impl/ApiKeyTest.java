@@ -22,6 +22,7 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.util.Objects;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -53,4 +54,31 @@ class ApiKeyTest {
         assertEquals(keyName, Objects.requireNonNull(testSubject.getHeader(vault)).getKey());
         assertEquals(keyValue, testSubject.getHeader(vault).getValue());
     }
+
+
+    @Test
+    void getHeader_cachedUntilInvalidated() {
+        var alias = "rotated-key";
+        vault.storeSecret(alias, "old");
+        var apiKey = new ApiKey(keyName, alias);
+
+        assertEquals("old", apiKey.getValue(vault));
+        vault.storeSecret(alias, "new");
+        assertEquals("old", apiKey.getValue(vault));
+
+        apiKey.invalidateCredentials();
+        assertEquals("new", apiKey.getValue(vault));
+    }
+
+
+    @Test
+    void getHeader_zeroTtl_notCached() {
+        var alias = "rotated-key";
+        vault.storeSecret(alias, "old");
+        var apiKey = new ApiKey(keyName, alias).credentialTtl(Duration.ZERO);
+
+        assertEquals("old", apiKey.getValue(vault));
+        vault.storeSecret(alias, "new");
+        assertEquals("new", apiKey.getValue(vault));
+    }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.aas.lib.auth.impl;
+
+import de.fraunhofer.iosb.aas.test.defaults.DefaultVault;
+import org.eclipse.edc.iam.oauth2.spi.client.Oauth2Client;
+import org.eclipse.edc.spi.iam.TokenRepresentation;
+import org.eclipse.edc.spi.result.Result;
+import org.eclipse.edc.spi.security.Vault;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+class BearerAuthTest {
+
+    private final Vault vault = new DefaultVault();
+    private final Oauth2Client oauth2Client = mock(Oauth2Client.class);
+    private final MutableClock clock = new MutableClock();
+    private BearerAuth testSubject;
+
+
+    @BeforeEach
+    void setUp() {
+        testSubject = new BearerAuth("client-id", "client-secret", "user", "password", URI.create("http://localhost/token"), oauth2Client, vault);
+        testSubject.clock(clock);
+    }
+
+
+    @Test
+    void getValue_tokenCachedUntilShortlyBeforeExpiry() {
+        when(oauth2Client.requestToken(any())).thenReturn(token("first", 300L), token("second", 300L));
+
+        assertEquals("Bearer first", testSubject.getValue(vault));
+        clock.advance(Duration.ofSeconds(260));
+        assertEquals("Bearer first", testSubject.getValue(vault));
+        verify(oauth2Client, times(1)).requestToken(any());
+
+        // Within refresh-ahead window of 30 seconds
+        clock.advance(Duration.ofSeconds(20));
+        assertEquals("Bearer second", testSubject.getValue(vault));
+        verify(oauth2Client, times(2)).requestToken(any());
+    }
+
+
+    @Test
+    void getValue_refreshFailsBeforeExpiry_currentTokenUsed() {
+        when(oauth2Client.requestToken(any())).thenReturn(token("first", 300L), Result.failure("identity provider down"));
+
+        testSubject.getValue(vault);
+        clock.advance(Duration.ofSeconds(280));
+
+        assertEquals("Bearer first", testSubject.getValue(vault));
+    }
+
+
+    @Test
+    void getValue_expiredAndRefreshFails_throws() {
+        when(oauth2Client.requestToken(any())).thenReturn(token("first", 300L), Result.failure("identity provider down"));
+
+        testSubject.getValue(vault);
+        clock.advance(Duration.ofSeconds(301));
+
+        assertThrows(RuntimeException.class, () -> testSubject.getValue(vault));
+    }
+
+
+    @Test
+    void invalidateCredentials_newTokenRequested() {
+        when(oauth2Client.requestToken(any())).thenReturn(token("first", 300L), token("second", 300L));
+
+        testSubject.getValue(vault);
+        testSubject.invalidateCredentials();
+
+        assertEquals("Bearer second", testSubject.getHeader(vault).getValue());
+    }
+
+
+    private static Result<TokenRepresentation> token(String token, Long expiresIn) {
+        return Result.success(TokenRepresentation.Builder.newInstance()
+                .token(token)
+                .expiresIn(expiresIn)
+                .build());
+    }
+
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.now();
+
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
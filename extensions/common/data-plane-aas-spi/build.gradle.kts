@@ -5,6 +5,7 @@ plugins {
 dependencies {
     implementation(project(":extensions:common:constants"))
     implementation(libs.edc.data.plane.http.spi) // BASE_URL
+    api(libs.edc.http.spi) // OkHttp HttpUrl of request plans
 
     implementation(libs.aas4j.model) // Reference, KeyTypes
     implementation(libs.fa3st.model) // ReferenceHelper
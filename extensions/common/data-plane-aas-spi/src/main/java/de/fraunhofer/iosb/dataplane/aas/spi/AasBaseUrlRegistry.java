@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.dataplane.aas.spi;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Base URLs of the AAS services known to the control plane, e.g., registered repositories and registries. The data
+ * plane uses them to establish connections before the first transfer and to keep them alive while idle.
+ */
+public class AasBaseUrlRegistry {
+
+    private final Set<String> baseUrls = ConcurrentHashMap.newKeySet();
+
+
+    /**
+     * Register the base URL of an AAS service. Registering a base URL twice has no effect.
+     *
+     * @param baseUrl Base URL of the service, e.g., https://localhost:8443/api/v3.0
+     */
+    public void register(String baseUrl) {
+        baseUrls.add(normalize(Objects.requireNonNull(baseUrl, "baseUrl")));
+    }
+
+
+    /**
+     * Remove the base URL of an AAS service, e.g., once it is unregistered from the control plane.
+     *
+     * @param baseUrl Base URL the service was registered with.
+     */
+    public void unregister(String baseUrl) {
+        if (baseUrl != null) {
+            baseUrls.remove(normalize(baseUrl));
+        }
+    }
+
+
+    /**
+     * Currently registered base URLs.
+     *
+     * @return Snapshot of the base URLs without trailing slashes.
+     */
+    public Set<String> baseUrls() {
+        return Set.copyOf(baseUrls);
+    }
+
+
+    private static String normalize(String baseUrl) {
+        var normalized = baseUrl.trim();
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+}
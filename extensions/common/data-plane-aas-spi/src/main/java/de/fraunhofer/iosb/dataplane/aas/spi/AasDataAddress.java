@@ -18,6 +18,9 @@ package de.fraunhofer.iosb.dataplane.aas.spi;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonPOJOBuilder;
 import de.fraunhofer.iosb.ilt.faaast.service.util.ReferenceHelper;
@@ -30,9 +33,13 @@ import org.eclipse.edc.connector.dataplane.http.spi.HttpDataAddress;
 import org.eclipse.edc.spi.types.domain.DataAddress;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 
@@ -60,12 +67,46 @@ public class AasDataAddress extends DataAddress {
     public static final String PROXY_METHOD = AAS_V30_NAMESPACE + "proxyMethod";
     public static final String PROXY_PATH = AAS_V30_NAMESPACE + "proxyPath";
     public static final String PROXY_BODY = AAS_V30_NAMESPACE + "proxyBody";
+    public static final String PROXY_OPERATION_ASYNC = AAS_V30_NAMESPACE + "proxyOperationAsync";
     public static final String ADDITIONAL_HEADER = "aas:header:";
     public static final String METHOD = EDC_NAMESPACE + "method";
     public static final String REFERENCE = AAS_V30_NAMESPACE + "reference";
     public static final String PATH = EDC_NAMESPACE + "path";
+    public static final String REFERENCES = AAS_V30_NAMESPACE + "references";
+    public static final String PATHS = AAS_V30_NAMESPACE + "paths";
+    // Serialization modifiers of the AAS API, only applied to GET requests
+    public static final String CONTENT = AAS_V30_NAMESPACE + "content";
+    public static final String LEVEL = AAS_V30_NAMESPACE + "level";
+    public static final String EXTENT = AAS_V30_NAMESPACE + "extent";
+    public static final List<String> SERIALIZATION_MODIFIERS = List.of(CONTENT, LEVEL, EXTENT);
+    // Long-lived transfer pushing changed values of the addressed elements
+    public static final String CHANGE_STREAM = AAS_V30_NAMESPACE + "changeStream";
+    public static final String CHANGE_STREAM_INTERVAL = AAS_V30_NAMESPACE + "changeStreamInterval";
+    // Binary content of File and Blob elements and byte ranges of binary content
+    public static final String ATTACHMENT = AAS_V30_NAMESPACE + "attachment";
+    public static final String RANGE = AAS_V30_NAMESPACE + "range";
+    public static final String ATTACHMENT_PATH_SEGMENT = "attachment";
+    public static final String PACKAGES_PATH_SEGMENT = "packages";
+    // Content coding of request and response bodies: "gzip" or "none"
+    public static final String COMPRESSION = AAS_V30_NAMESPACE + "compression";
+    public static final String GZIP = "gzip";
+    public static final String NO_COMPRESSION = "none";
+    public static final String DELTA_PUSH = AAS_V30_NAMESPACE + "deltaPush";
+
+    public static final String AAS_IDS = AAS_V30_NAMESPACE + "aasIds";
+    public static final String SUBMODEL_IDS = AAS_V30_NAMESPACE + "submodelIds";
+    public static final String INCLUDE_CONCEPT_DESCRIPTIONS = AAS_V30_NAMESPACE + "includeConceptDescriptions";
+    public static final String SERIALIZATION_PATH_SEGMENT = "serialization";
 
     private static final List<KeyTypes> IDENTIFIABLE_KEY_TYPES = List.of(ASSET_ADMINISTRATION_SHELL, SUBMODEL, CONCEPT_DESCRIPTION);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final Map<String, String> CONTENT_PATH_SEGMENTS = Map.of("normal", "", "value", "$value", "metadata", "$metadata");
+    private static final List<String> LEVELS = List.of("deep", "core");
+    private static final List<String> EXTENTS = List.of("WithBlobValue", "WithoutBlobValue");
+    private static final List<String> COMPRESSIONS = List.of(GZIP, NO_COMPRESSION);
+
+    @JsonIgnore
+    private volatile AasRequestPlan requestPlan;
 
 
     private AasDataAddress() {
@@ -137,6 +178,89 @@ public class AasDataAddress extends DataAddress {
     }
 
 
+    /**
+     * Returns whether the operation of this address is invoked asynchronously (invoke-async). The result is fetched
+     * from the operation-results handle once the operation-status reports completion.
+     *
+     * @return True if this address invokes an operation asynchronously.
+     */
+    @JsonIgnore
+    public boolean isAsyncOperation() {
+        return hasProperty(PROXY_OPERATION) && Boolean.parseBoolean(getStringProperty(PROXY_OPERATION_ASYNC));
+    }
+
+
+    /**
+     * Returns whether this address requests a change stream: instead of transferring the addressed elements once, the
+     * transfer stays active and pushes the elements whenever their serialization changes.
+     *
+     * @return True if this address requests a change stream.
+     */
+    @JsonIgnore
+    public boolean isChangeStream() {
+        return !hasProperty(PROXY_OPERATION) && Boolean.parseBoolean(getStringProperty(CHANGE_STREAM));
+    }
+
+
+    /**
+     * Returns the interval in which a change stream polls AAS services without change events.
+     *
+     * @return The poll interval or empty if not set.
+     * @throws NumberFormatException If the interval is not a number of milliseconds.
+     */
+    @JsonIgnore
+    public Optional<Duration> getChangeStreamInterval() {
+        return Optional.ofNullable(getStringProperty(CHANGE_STREAM_INTERVAL)).map(Long::parseLong).map(Duration::ofMillis);
+    }
+
+
+    /**
+     * Returns whether this address points to the attachment of File or Blob elements instead of their serialization,
+     * i.e., "/attachment" is appended to every element path.
+     *
+     * @return True if this address transfers attachments.
+     */
+    @JsonIgnore
+    public boolean isAttachment() {
+        return Boolean.parseBoolean(getStringProperty(ATTACHMENT));
+    }
+
+
+    /**
+     * Returns the HTTP byte range requested from the AAS service, e.g., "bytes=1048576-" to resume a download.
+     *
+     * @return The value of the Range header or empty if the whole content is requested.
+     */
+    @JsonIgnore
+    public Optional<String> getRange() {
+        return Optional.ofNullable(getStringProperty(RANGE));
+    }
+
+
+    /**
+     * Returns whether an AAS data sink writes only the changes since its last write to this destination, as JSON merge
+     * patch or "$value" PATCH.
+     *
+     * @return True if writes to this address are delta pushes.
+     */
+    @JsonIgnore
+    public boolean isDeltaPush() {
+        return Boolean.parseBoolean(getStringProperty(DELTA_PUSH));
+    }
+
+
+    /**
+     * Returns the content coding of the bodies exchanged with the AAS service: "gzip" to compress request bodies and
+     * accept compressed responses, "none" to exchange uncompressed bodies only.
+     *
+     * @return The lower-case compression or empty if not set.
+     */
+    @JsonIgnore
+    public Optional<String> getCompression() {
+        return Optional.ofNullable(getStringProperty(COMPRESSION)).map(compression -> compression.toLowerCase(Locale.ROOT));
+    }
+
+
     /**
      * If an explicit path is available, return this path. Else, return the following:
      * <p>
@@ -153,8 +277,189 @@ public class AasDataAddress extends DataAddress {
             return explicitlyStoredPath;
         }
 
-        Reference reference = this.getReference();
+        if (hasProperty(AAS_IDS) || hasProperty(SUBMODEL_IDS)) {
+            return SERIALIZATION_PATH_SEGMENT;
+        }
+
+        return toPath(this.getReference());
+    }
+
+
+    /**
+     * Returns whether this address points to the /serialization endpoint of an AAS repository, which returns the
+     * shells and submodels with the given identifiers as one environment. See {@link #getAasIds()} and
+     * {@link #getSubmodelIds()}.
+     *
+     * @return True if this address retrieves an environment.
+     */
+    @JsonIgnore
+    public boolean isSerialization() {
+        var explicitlyStoredPath = getStringProperty(PATH);
+        if (explicitlyStoredPath == null) {
+            return hasProperty(AAS_IDS) || hasProperty(SUBMODEL_IDS);
+        }
+        return SERIALIZATION_PATH_SEGMENT.equals(explicitlyStoredPath.replaceFirst("^/", "").replaceFirst("/$", ""));
+    }
+
+
+    /**
+     * Returns the identifiers of the shells a /serialization request retrieves.
+     *
+     * @return The (not encoded) identifiers, empty if none are set.
+     */
+    @JsonIgnore
+    public List<String> getAasIds() {
+        return readList(AAS_IDS);
+    }
+
+
+    /**
+     * Returns the identifiers of the submodels a /serialization request retrieves.
+     *
+     * @return The (not encoded) identifiers, empty if none are set.
+     */
+    @JsonIgnore
+    public List<String> getSubmodelIds() {
+        return readList(SUBMODEL_IDS);
+    }
+
+
+    /**
+     * Returns whether this address points to multiple AAS elements, i.e., holds a list of paths or references.
+     *
+     * @return True if this address describes a fan-out transfer.
+     */
+    @JsonIgnore
+    public boolean isMultiElement() {
+        return getStringProperty(PATHS) != null || getStringProperty(REFERENCES) != null;
+    }
+
+
+    /**
+     * Returns the paths of all AAS elements this address points to. Explicit paths take precedence over references.
+     * If this address points to a single element, the result contains only {@link #getPath()}.
+     *
+     * @return Paths of the addressed AAS elements (no leading '/').
+     */
+    @JsonIgnore
+    public List<String> getPaths() {
+        var paths = readList(PATHS);
+        if (!paths.isEmpty()) {
+            return paths;
+        }
+
+        var references = readList(REFERENCES);
+        if (!references.isEmpty()) {
+            return references.stream()
+                    .map(reference -> ReferenceHelper.parseReference(reference, DefaultReference.class))
+                    .map(AasDataAddress::toPath)
+                    .toList();
+        }
+
+        return Collections.singletonList(getPath());
+    }
+
 
+    /**
+     * Returns the path segment selecting the requested content of the AAS element, e.g., "$value" for the value-only
+     * serialization. See
+     * <a href="https://faaast-service.readthedocs.io/en/latest/interfaces/endpoint.html">FA³ST HTTP endpoint</a>.
+     *
+     * @return The path segment or empty if the normal serialization is requested.
+     * @throws IllegalStateException If the content modifier is not supported.
+     */
+    @JsonIgnore
+    public Optional<String> getContentPathSegment() {
+        var content = getStringProperty(CONTENT);
+        if (content == null || isSerialization()) {
+            return Optional.empty();
+        }
+        var segment = CONTENT_PATH_SEGMENTS.get(content.toLowerCase(Locale.ROOT));
+        if (segment == null) {
+            throw new IllegalStateException("Unsupported content modifier in AasDataAddress: %s".formatted(content));
+        }
+        return segment.isEmpty() ? Optional.empty() : Optional.of(segment);
+    }
+
+
+    /**
+     * Returns the level and extent modifiers as query parameters, e.g., level=core. For /serialization requests, the
+     * Base64URL-encoded, comma-separated identifiers of the requested shells and submodels instead.
+     *
+     * @return Query parameters, empty if no modifier is set.
+     */
+    @JsonIgnore
+    public Map<String, String> getSerializationQueryParameters() {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        if (isSerialization()) {
+            var aasIds = getAasIds();
+            if (!aasIds.isEmpty()) {
+                parameters.put("aasIds", encodeIds(aasIds));
+            }
+            var submodelIds = getSubmodelIds();
+            if (!submodelIds.isEmpty()) {
+                parameters.put("submodelIds", encodeIds(submodelIds));
+            }
+            Optional.ofNullable(getStringProperty(INCLUDE_CONCEPT_DESCRIPTIONS))
+                    .ifPresent(include -> parameters.put("includeConceptDescriptions", include));
+            return parameters;
+        }
+        Optional.ofNullable(getStringProperty(LEVEL)).ifPresent(level -> parameters.put("level", level));
+        Optional.ofNullable(getStringProperty(EXTENT)).ifPresent(extent -> parameters.put("extent", extent));
+        return parameters;
+    }
+
+
+    /**
+     * Validate the serialization modifiers and the compression of this address.
+     *
+     * @return Problems found with the modifiers, empty if they are valid or not set.
+     */
+    public List<String> validateSerializationModifiers() {
+        List<String> problems = new ArrayList<>();
+        var content = getStringProperty(CONTENT);
+        if (content != null && !CONTENT_PATH_SEGMENTS.containsKey(content.toLowerCase(Locale.ROOT))) {
+            problems.add("content must be one of %s".formatted(CONTENT_PATH_SEGMENTS.keySet()));
+        }
+        var level = getStringProperty(LEVEL);
+        if (level != null && LEVELS.stream().noneMatch(level::equalsIgnoreCase)) {
+            problems.add("level must be one of %s".formatted(LEVELS));
+        }
+        var extent = getStringProperty(EXTENT);
+        if (extent != null && EXTENTS.stream().noneMatch(extent::equalsIgnoreCase)) {
+            problems.add("extent must be one of %s".formatted(EXTENTS));
+        }
+        var compression = getStringProperty(COMPRESSION);
+        if (compression != null && COMPRESSIONS.stream().noneMatch(compression::equalsIgnoreCase)) {
+            problems.add("compression must be one of %s".formatted(COMPRESSIONS));
+        }
+        if (isSerialization() && SERIALIZATION_MODIFIERS.stream().anyMatch(this::hasProperty)) {
+            problems.add("%s does not support serialization modifiers".formatted(SERIALIZATION_PATH_SEGMENT));
+        }
+        return problems;
+    }
+
+
+    /**
+     * Returns the request plan of this address. The plan is compiled on first use and kept by the address, so the
+     * address is only parsed and validated once. Addresses are not modified after they were built.
+     *
+     * @return The request plan.
+     * @throws IllegalStateException If the address contains a malformed reference or modifier.
+     */
+    @JsonIgnore
+    public AasRequestPlan getRequestPlan() {
+        var plan = requestPlan;
+        if (plan == null) {
+            // Concurrent first uses compile equal plans, any of them may be kept
+            plan = AasRequestPlan.compile(this);
+            requestPlan = plan;
+        }
+        return plan;
+    }
+
+
+    private static String toPath(Reference reference) {
         List<String> problems = validate(reference);
         if (!problems.isEmpty()) {
             throw new IllegalStateException(String.format("Malformed reference in AasDataAddress: %s \n problems:\n\t%s", reference,
@@ -181,6 +486,28 @@ public class AasDataAddress extends DataAddress {
     }
 
 
+    private static String encodeIds(List<String> ids) {
+        // Base64URL contains no commas
+        return String.join(",", ids.stream()
+                .map(id -> Base64.getUrlEncoder().encodeToString(id.getBytes(StandardCharsets.UTF_8)))
+                .toList());
+    }
+
+
+    private List<String> readList(String key) {
+        var value = getStringProperty(key);
+        if (value == null) {
+            return List.of();
+        }
+        try {
+            return OBJECT_MAPPER.readValue(value, new TypeReference<List<String>>() {});
+        }
+        catch (JsonProcessingException e) {
+            throw new IllegalStateException("Malformed list in AasDataAddress property %s: %s".formatted(key, value), e);
+        }
+    }
+
+
     public Reference getReference() {
         var referenceString = Optional.ofNullable(getStringProperty(REFERENCE));
         if (referenceString.isEmpty()) {
@@ -249,6 +576,72 @@ public class AasDataAddress extends DataAddress {
         }
 
 
+        public Builder proxyOperationAsync(String proxyOperationAsync) {
+            this.property(PROXY_OPERATION_ASYNC, proxyOperationAsync);
+            return this;
+        }
+
+
+        public Builder changeStream(String changeStream) {
+            this.property(CHANGE_STREAM, changeStream);
+            return this;
+        }
+
+
+        public Builder changeStreamInterval(String changeStreamIntervalMillis) {
+            this.property(CHANGE_STREAM_INTERVAL, changeStreamIntervalMillis);
+            return this;
+        }
+
+
+        /**
+         * Transfer the attachment of the addressed File or Blob elements instead of their serialization.
+         *
+         * @param attachment "true" to transfer attachments.
+         * @return the builder
+         */
+        public Builder attachment(String attachment) {
+            this.property(ATTACHMENT, attachment);
+            return this;
+        }
+
+
+        /**
+         * Request only a byte range of binary content, e.g., "bytes=0-1048575".
+         *
+         * @param range Value of the HTTP Range header.
+         * @return the builder
+         */
+        public Builder range(String range) {
+            this.property(RANGE, range);
+            return this;
+        }
+
+
+        /**
+         * Write only the changes since the last write to this destination.
+         *
+         * @param deltaPush "true" to send patches instead of full writes.
+         * @return the builder
+         */
+        public Builder deltaPush(String deltaPush) {
+            this.property(DELTA_PUSH, deltaPush);
+            return this;
+        }
+
+
+        /**
+         * Compress bodies exchanged with the AAS service ("gzip") or exchange uncompressed bodies only ("none").
+         *
+         * @param compression The content coding.
+         * @return the builder
+         */
+        public Builder compression(String compression) {
+            this.property(COMPRESSION, compression);
+            return this;
+        }
+
+
         public Builder proxyBody(String proxyBody) {
             this.property(PROXY_BODY, proxyBody);
             return this;
@@ -288,6 +681,114 @@ public class AasDataAddress extends DataAddress {
         }
 
 
+        /**
+         * Address multiple AAS elements at once. The source fetches all of them and returns one part per element.
+         *
+         * @param references References pointing to the AAS elements, see {@link #reference(Reference)}.
+         * @return the builder
+         */
+        public Builder references(List<Reference> references) {
+            List<String> serialized = new ArrayList<>();
+            for (var reference: references) {
+                List<String> problems = validate(reference);
+                if (!problems.isEmpty()) {
+                    throw new IllegalStateException(String.format("AasDataAddress.Builder received malformed reference: %s \n problems:\n\t%s", reference,
+                            String.join("\n\t", problems)));
+                }
+                serialized.add(ReferenceHelper.asString(reference));
+            }
+
+            this.property(REFERENCES, writeList(serialized));
+            return this;
+        }
+
+
+        /**
+         * Address multiple AAS elements at once by their explicit paths. Paths take precedence over references.
+         *
+         * @param paths Paths of the AAS elements relative to the base URL.
+         * @return the builder
+         */
+        public Builder paths(List<String> paths) {
+            this.property(PATHS, writeList(paths));
+            return this;
+        }
+
+
+        /**
+         * Retrieve the shells with the given identifiers in one environment via the /serialization endpoint of an AAS
+         * repository.
+         *
+         * @param aasIds Identifiers of the shells (not encoded).
+         * @return the builder
+         */
+        public Builder aasIds(List<String> aasIds) {
+            this.property(AAS_IDS, writeList(aasIds));
+            return this;
+        }
+
+
+        /**
+         * Retrieve the submodels with the given identifiers in one environment via the /serialization endpoint of an
+         * AAS repository.
+         *
+         * @param submodelIds Identifiers of the submodels (not encoded).
+         * @return the builder
+         */
+        public Builder submodelIds(List<String> submodelIds) {
+            this.property(SUBMODEL_IDS, writeList(submodelIds));
+            return this;
+        }
+
+
+        /**
+         * Include the concept descriptions in the environment retrieved via /serialization.
+         *
+         * @param includeConceptDescriptions "true" or "false".
+         * @return the builder
+         */
+        public Builder includeConceptDescriptions(String includeConceptDescriptions) {
+            this.property(INCLUDE_CONCEPT_DESCRIPTIONS, includeConceptDescriptions);
+            return this;
+        }
+
+
+        /**
+         * Request only part of the element's serialization: "normal", "value" or "metadata".
+         *
+         * @param content The content modifier.
+         * @return the builder
+         */
+        public Builder content(String content) {
+            this.property(CONTENT, content);
+            return this;
+        }
+
+
+        /**
+         * Request the element with ("deep") or without ("core") its children.
+         *
+         * @param level The level modifier.
+         * @return the builder
+         */
+        public Builder level(String level) {
+            this.property(LEVEL, level);
+            return this;
+        }
+
+
+        /**
+         * Request the element with ("WithBlobValue") or without ("WithoutBlobValue") the values of its blobs.
+         *
+         * @param extent The extent modifier.
+         * @return the builder
+         */
+        public Builder extent(String extent) {
+            this.property(EXTENT, extent);
+            return this;
+        }
+
+
         public Builder copyFrom(DataAddress other) {
             Optional.ofNullable(other)
                     .map(DataAddress::getProperties)
@@ -297,6 +798,16 @@ public class AasDataAddress extends DataAddress {
         }
 
 
+        private static String writeList(List<String> values) {
+            try {
+                return OBJECT_MAPPER.writeValueAsString(values);
+            }
+            catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Could not serialize list for AasDataAddress", e);
+            }
+        }
+
+
         @Override
         public AasDataAddress build() {
             this.type(AAS_DATA_TYPE);
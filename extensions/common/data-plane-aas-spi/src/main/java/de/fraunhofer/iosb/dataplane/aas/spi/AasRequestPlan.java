@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.dataplane.aas.spi;
+
+import okhttp3.HttpUrl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.ATTACHMENT_PATH_SEGMENT;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PACKAGES_PATH_SEGMENT;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PATH;
+
+
+/**
+ * Immutable request plan derived from an {@link AasDataAddress}: base URL, method, paths, headers and serialization
+ * modifiers. Deriving the paths validates and parses the references of the address, so each address compiles its plan
+ * once and keeps it, see {@link AasDataAddress#getRequestPlan()}.
+ *
+ * @param baseUrl Base URL of the AAS service, null if the address has none.
+ * @param method HTTP method.
+ * @param path Path of the request relative to the base URL, see {@link AasDataAddress#getPath()}. For multi-element
+ *         addresses without explicit path, the path of the first element.
+ * @param paths Paths of the addressed elements relative to the base URL, see {@link AasDataAddress#getPaths()}.
+ * @param additionalHeaders Additional headers, including authentication.
+ * @param contentPathSegment Path segment of the content modifier, e.g., "$value", or null.
+ * @param serializationQueryParameters Level and extent modifiers as query parameters.
+ * @param binary True if the paths address binary content (attachments or AASX packages), which has no serialization
+ *         modifiers.
+ * @param range HTTP byte range to request, or null.
+ * @param compression Content coding of the exchanged bodies ("gzip", "none"), or null for the client's default.
+ * @param url URL of base URL and path, null if the address has no base URL or it is not a valid HTTP(S) URL.
+ */
+public record AasRequestPlan(String baseUrl, String method, String path, List<String> paths, Map<String, String> additionalHeaders,
+                             String contentPathSegment, Map<String, String> serializationQueryParameters, boolean binary, String range,
+                             String compression, HttpUrl url) {
+
+    public AasRequestPlan {
+        paths = List.copyOf(paths);
+        additionalHeaders = Map.copyOf(additionalHeaders);
+        serializationQueryParameters = Map.copyOf(serializationQueryParameters);
+    }
+
+
+    /**
+     * Derive the request plan of the address.
+     *
+     * @param address The address.
+     * @return The request plan.
+     * @throws IllegalStateException If the address contains a malformed reference or modifier.
+     */
+    public static AasRequestPlan compile(AasDataAddress address) {
+        var paths = address.getPaths();
+        var path = address.hasProperty(PATH) || !address.isMultiElement() ? address.getPath() : paths.get(0);
+
+        if (address.isAttachment()) {
+            paths = paths.stream().map(AasRequestPlan::toAttachmentPath).toList();
+            path = toAttachmentPath(path);
+        }
+
+        var binary = address.isAttachment() || isPackagePath(path);
+        if (binary) {
+            // Attachments and packages are transferred as they are
+            return new AasRequestPlan(address.getBaseUrl(), address.getMethod(), path, paths, address.getAdditionalHeaders(), null, Map.of(), true,
+                    address.getRange().orElse(null), address.getCompression().orElse(null), toUrl(address.getBaseUrl(), path));
+        }
+
+        return new AasRequestPlan(address.getBaseUrl(), address.getMethod(), path, paths, address.getAdditionalHeaders(),
+                address.getContentPathSegment().orElse(null), address.getSerializationQueryParameters(), false, address.getRange().orElse(null),
+                address.getCompression().orElse(null), toUrl(address.getBaseUrl(), path));
+    }
+
+
+    public Optional<String> getContentPathSegment() {
+        return Optional.ofNullable(contentPathSegment);
+    }
+
+
+    public Optional<String> getRange() {
+        return Optional.ofNullable(range);
+    }
+
+
+    public Optional<String> getCompression() {
+        return Optional.ofNullable(compression);
+    }
+
+
+    private static HttpUrl toUrl(String baseUrl, String path) {
+        var parsedBaseUrl = baseUrl == null ? null : HttpUrl.parse(baseUrl);
+        if (parsedBaseUrl == null) {
+            return null;
+        }
+
+        var urlBuilder = parsedBaseUrl.newBuilder();
+        if (!path.isEmpty()) {
+            // Remove leading forward slash
+            urlBuilder.addPathSegments(path.startsWith("/") ? path.substring(1) : path);
+        }
+        return urlBuilder.build();
+    }
+
+
+    private static String toAttachmentPath(String path) {
+        var trimmed = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        return trimmed.endsWith("/" + ATTACHMENT_PATH_SEGMENT) ? trimmed : trimmed + "/" + ATTACHMENT_PATH_SEGMENT;
+    }
+
+
+    private static boolean isPackagePath(String path) {
+        // The package list (/packages) is JSON, a single package (/packages/{packageId}) is an AASX file
+        var trimmed = path.startsWith("/") ? path.substring(1) : path;
+        return trimmed.startsWith(PACKAGES_PATH_SEGMENT + "/") && trimmed.length() > PACKAGES_PATH_SEGMENT.length() + 1;
+    }
+}
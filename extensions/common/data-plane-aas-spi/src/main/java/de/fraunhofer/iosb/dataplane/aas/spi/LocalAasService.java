@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.dataplane.aas.spi;
+
+import java.io.InputStream;
+import java.util.Optional;
+
+
+/**
+ * AAS service running in the same JVM as the data plane, e.g., a FA³ST service started by the control plane. Reads
+ * are served directly from the service's model instead of sending an HTTP request to its endpoint.
+ */
+public interface LocalAasService {
+
+    /**
+     * Read the element the request plan points to.
+     *
+     * @param plan Request plan of an AAS data address with the base URL of this service.
+     * @return The serialized element, or empty if the request cannot be served in-process (e.g., it is not a GET
+     *         request or addresses a path the service does not know). The caller then falls back to HTTP.
+     */
+    Optional<Response> read(AasRequestPlan plan);
+
+
+    /**
+     * Get notified when the model of the service changes, e.g., to push updated values to a consumer. Listeners are
+     * not told which element changed, they re-read the elements they are interested in.
+     *
+     * @param listener Called after a change of the model.
+     * @return Handle cancelling the subscription, or empty if the service does not emit change events.
+     */
+    default Optional<AutoCloseable> subscribe(Runnable listener) {
+        return Optional.empty();
+    }
+
+
+    /**
+     * Response of an in-process read, using the status codes the HTTP endpoint of the service would return.
+     *
+     * @param code Status code, e.g., 200 or 404.
+     * @param body Serialized element or error message.
+     * @param mediaType Media type of the body.
+     * @param contentLength Length of the body in bytes, -1 if unknown.
+     */
+    record Response(int code, InputStream body, String mediaType, long contentLength) {
+
+        public boolean isSuccessful() {
+            return code >= 200 && code < 300;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.dataplane.aas.spi;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Registry of AAS services running in the same JVM as the data plane, by their base URL. The data plane reads from a
+ * registered service directly if the base URL of a data address matches, skipping the network stack.
+ */
+public class LocalAasServiceRegistry {
+
+    private final Map<String, LocalAasService> services = new ConcurrentHashMap<>();
+
+
+    /**
+     * Register a co-located service. A service registered earlier with the same base URL is replaced.
+     *
+     * @param baseUrl Base URL under which the service is reachable via HTTP, e.g., https://localhost:8443/api/v3.0
+     * @param service The service.
+     */
+    public void register(String baseUrl, LocalAasService service) {
+        services.put(normalize(Objects.requireNonNull(baseUrl, "baseUrl")), Objects.requireNonNull(service, "service"));
+    }
+
+
+    /**
+     * Remove a co-located service, e.g., once it is stopped.
+     *
+     * @param baseUrl Base URL the service was registered with.
+     */
+    public void unregister(String baseUrl) {
+        if (baseUrl != null) {
+            services.remove(normalize(baseUrl));
+        }
+    }
+
+
+    /**
+     * Find the co-located service of a base URL.
+     *
+     * @param baseUrl Base URL of a data address.
+     * @return The service or empty if the base URL does not belong to a co-located service.
+     */
+    public Optional<LocalAasService> resolve(String baseUrl) {
+        if (baseUrl == null || services.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(services.get(normalize(baseUrl)));
+    }
+
+
+    private static String normalize(String baseUrl) {
+        var normalized = baseUrl.trim();
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        return normalized;
+    }
+}
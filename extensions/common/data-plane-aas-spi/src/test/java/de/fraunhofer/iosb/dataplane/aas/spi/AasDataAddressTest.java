@@ -25,9 +25,14 @@ import org.junit.jupiter.api.Test;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 class AasDataAddressTest {
@@ -131,6 +136,123 @@ class AasDataAddressTest {
     }
 
 
+    @Test
+    void test_build_multipleReferencesAsPaths() {
+        var submodel = new DefaultReference.Builder()
+                .type(ReferenceTypes.MODEL_REFERENCE)
+                .keys(getKey(KeyTypes.SUBMODEL, "sm"))
+                .build();
+        var property = new DefaultReference.Builder()
+                .type(ReferenceTypes.MODEL_REFERENCE)
+                .keys(List.of(getKey(KeyTypes.SUBMODEL, "sm"), getKey(KeyTypes.PROPERTY, "prop")))
+                .build();
+
+        var address = AasDataAddress.Builder.newInstance()
+                .copyFrom(AasDataAddress.Builder.newInstance().references(List.of(submodel, property)).build())
+                .build();
+
+        assertTrue(address.isMultiElement());
+        assertEquals(List.of("submodels/%s".formatted(Encoder.encodeBase64("sm")),
+                "submodels/%s/submodel-elements/prop".formatted(Encoder.encodeBase64("sm"))), address.getPaths());
+    }
+
+
+    @Test
+    void test_build_explicitPathsTakePrecedence() {
+        var address = AasDataAddress.Builder.newInstance()
+                .references(List.of(new DefaultReference.Builder()
+                        .type(ReferenceTypes.MODEL_REFERENCE)
+                        .keys(getKey(KeyTypes.SUBMODEL, "sm"))
+                        .build()))
+                .paths(List.of("shells/a", "shells/b"))
+                .build();
+
+        assertEquals(List.of("shells/a", "shells/b"), address.getPaths());
+    }
+
+
+    @Test
+    void test_build_singleElementPaths() {
+        var address = AasDataAddress.Builder.newInstance().path("submodels/x").build();
+
+        assertFalse(address.isMultiElement());
+        assertEquals(List.of("submodels/x"), address.getPaths());
+    }
+
+
+    @Test
+    void test_build_serializationModifiers() {
+        var address = AasDataAddress.Builder.newInstance()
+                .path("submodels/x")
+                .content("Value")
+                .level("core")
+                .build();
+
+        assertEquals(Optional.of("$value"), address.getContentPathSegment());
+        assertEquals(Map.of("level", "core"), address.getSerializationQueryParameters());
+        assertTrue(address.validateSerializationModifiers().isEmpty());
+    }
+
+
+    @Test
+    void test_build_invalidSerializationModifiers() {
+        var address = AasDataAddress.Builder.newInstance()
+                .path("submodels/x")
+                .content("everything")
+                .extent("WithSomeBlobValue")
+                .build();
+
+        assertEquals(2, address.validateSerializationModifiers().size());
+    }
+
+
+    @Test
+    void test_build_compression() {
+        var address = AasDataAddress.Builder.newInstance()
+                .path("submodels/x")
+                .compression("GZIP")
+                .build();
+
+        assertEquals(Optional.of("gzip"), address.getCompression());
+        assertTrue(address.validateSerializationModifiers().isEmpty());
+
+        var invalid = AasDataAddress.Builder.newInstance()
+                .path("submodels/x")
+                .compression("br")
+                .build();
+
+        assertEquals(1, invalid.validateSerializationModifiers().size());
+    }
+
+
+    @Test
+    void test_build_serialization() {
+        var address = AasDataAddress.Builder.newInstance()
+                .aasIds(List.of("https://example.com/aas"))
+                .submodelIds(List.of("sm1", "sm2"))
+                .includeConceptDescriptions("true")
+                .build();
+
+        assertTrue(address.isSerialization());
+        assertEquals("serialization", address.getPath());
+        assertEquals(List.of("serialization"), address.getPaths());
+        assertEquals(Map.of(
+                        "aasIds", "aHR0cHM6Ly9leGFtcGxlLmNvbS9hYXM=",
+                        "submodelIds", "c20x,c20y",
+                        "includeConceptDescriptions", "true"),
+                address.getSerializationQueryParameters());
+        assertTrue(address.validateSerializationModifiers().isEmpty());
+
+        var withModifier = AasDataAddress.Builder.newInstance()
+                .submodelIds(List.of("sm1"))
+                .content("value")
+                .build();
+
+        assertEquals(Optional.empty(), withModifier.getContentPathSegment());
+        assertEquals(1, withModifier.validateSerializationModifiers().size());
+    }
+
+
     private Key getKey(KeyTypes keyType, String idShort) {
         return new DefaultKey.Builder()
                 .type(keyType)
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.dataplane.aas.spi;
+
+import org.eclipse.digitaltwin.aas4j.v3.model.KeyTypes;
+import org.eclipse.digitaltwin.aas4j.v3.model.ReferenceTypes;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultKey;
+import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultReference;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class AasRequestPlanTest {
+
+    @Test
+    void test_getRequestPlan_compiledOncePerAddress() {
+        var submodelId = UUID.randomUUID().toString();
+        var address = addressFor(submodelId);
+
+        var first = address.getRequestPlan();
+
+        assertSame(first, address.getRequestPlan());
+        assertEquals(address.getPath(), first.path());
+        assertEquals(Map.of("x-api-key", "secret"), first.additionalHeaders());
+        assertEquals("http://localhost:8080/" + address.getPath(), first.url().toString());
+    }
+
+
+    @Test
+    void test_getRequestPlan_copiedAddressCompiledSeparately() {
+        var address = addressFor(UUID.randomUUID().toString());
+        var copy = AasDataAddress.Builder.newInstance()
+                .copyFrom(address)
+                .additionalHeaders(Map.of("If-None-Match", "\"v1\""))
+                .build();
+
+        assertNotSame(address.getRequestPlan(), copy.getRequestPlan());
+        assertEquals("\"v1\"", copy.getRequestPlan().additionalHeaders().get("If-None-Match"));
+    }
+
+
+    @Test
+    void test_compile_invalidBaseUrlHasNoUrl() {
+        var address = AasDataAddress.Builder.newInstance()
+                .baseUrl("not a url")
+                .path("submodels/a")
+                .build();
+
+        assertNull(AasRequestPlan.compile(address).url());
+    }
+
+
+    @Test
+    void test_compile_explicitPathOfMultiElementAddress() {
+        var multiElement = AasDataAddress.Builder.newInstance()
+                .baseUrl("http://localhost:8080")
+                .paths(List.of("submodels/a", "submodels/b"))
+                .build();
+        var element = AasDataAddress.Builder.newInstance()
+                .copyFrom(multiElement)
+                .path("submodels/b")
+                .build();
+
+        assertEquals("submodels/a", AasRequestPlan.compile(multiElement).path());
+        assertEquals("submodels/b", AasRequestPlan.compile(element).path());
+    }
+
+
+    @Test
+    void test_compile_attachmentWithoutSerializationModifiers() {
+        var address = AasDataAddress.Builder.newInstance()
+                .baseUrl("http://localhost:8080")
+                .paths(List.of("submodels/a/submodel-elements/manual", "submodels/a/submodel-elements/image/attachment"))
+                .attachment("true")
+                .content("value")
+                .level("core")
+                .range("bytes=1024-")
+                .build();
+
+        var plan = AasRequestPlan.compile(address);
+
+        assertTrue(plan.binary());
+        assertEquals(List.of("submodels/a/submodel-elements/manual/attachment", "submodels/a/submodel-elements/image/attachment"), plan.paths());
+        assertTrue(plan.getContentPathSegment().isEmpty());
+        assertTrue(plan.serializationQueryParameters().isEmpty());
+        assertEquals("bytes=1024-", plan.range());
+    }
+
+
+    @Test
+    void test_compile_packageIsBinaryPackageListIsNot() {
+        var packageList = AasDataAddress.Builder.newInstance()
+                .baseUrl("http://localhost:8080")
+                .path("packages")
+                .build();
+        var aasxPackage = AasDataAddress.Builder.newInstance()
+                .copyFrom(packageList)
+                .path("/packages/cGFja2FnZQ")
+                .build();
+
+        assertFalse(AasRequestPlan.compile(packageList).binary());
+        assertTrue(AasRequestPlan.compile(aasxPackage).binary());
+    }
+
+
+    private static AasDataAddress addressFor(String submodelId) {
+        return AasDataAddress.Builder.newInstance()
+                .baseUrl("http://localhost:8080")
+                .additionalHeaders(Map.of("x-api-key", "secret"))
+                .reference(new DefaultReference.Builder()
+                        .type(ReferenceTypes.MODEL_REFERENCE)
+                        .keys(new DefaultKey.Builder()
+                                .type(KeyTypes.SUBMODEL)
+                                .value(submodelId)
+                                .build())
+                        .build())
+                .build();
+    }
+}
@@ -23,6 +23,7 @@ import org.eclipse.edc.validator.spi.Validator;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.List;
+import java.util.Objects;
 
 import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.AAS_DATA_TYPE;
 import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.METHOD;
@@ -60,7 +61,14 @@ public class AasDataDataAddressValidator implements Validator<DataAddress> {
         String path;
         if (dataAddress.getType().equalsIgnoreCase(AAS_DATA_TYPE)) {
             try {
-                path = AasDataAddress.Builder.newInstance().copyFrom(dataAddress).build().getPath();
+                var aasDataAddress = AasDataAddress.Builder.newInstance().copyFrom(dataAddress).build();
+                var problems = aasDataAddress.validateSerializationModifiers();
+                if (!problems.isEmpty()) {
+                    return ValidationResult.failure(violation(String.join(", ", problems), "serialization modifier", baseUrl));
+                }
+                var paths = aasDataAddress.getRequestPlan().paths();
+                // A fan-out address is only valid if every element has a path
+                path = paths.isEmpty() || paths.stream().anyMatch(Objects::isNull) ? null : paths.get(0);
             }
             catch (IllegalStateException illegalStateException) {
                 var violation = violation(illegalStateException.getMessage(), "path", baseUrl);
@@ -23,6 +23,7 @@ import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultReference;
 import org.eclipse.edc.spi.types.domain.DataAddress;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
 import java.util.UUID;
 
 import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.AAS_DATA_TYPE;
@@ -56,6 +57,19 @@ class AasDataDataAddressValidatorTest {
     }
 
 
+    @Test
+    void shouldPass_whenAasDataHasMultiplePaths() {
+        var dataAddress = AasDataAddress.Builder.newInstance()
+                .baseUrl("http://this.is/valid/url")
+                .paths(List.of("submodels/a", "submodels/b"))
+                .build();
+
+        var result = validator.validate(dataAddress);
+
+        assertTrue(result.succeeded());
+    }
+
+
     @Test
     void shouldFail_whenAasDataBaseUriNotValid() {
         var dataAddress = DataAddress.Builder.newInstance()
@@ -4,6 +4,7 @@ plugins {
 
 dependencies {
     implementation(project(":extensions:control-plane:public-api-management"))
+    implementation(project(":extensions:common:data-plane-aas-spi")) // Serialization modifiers
 
     implementation(libs.edc.connector.core) // PolicyService
     implementation(libs.edc.control.plane.contract) // Observe contract negotiations
@@ -13,6 +14,7 @@ dependencies {
     implementation(libs.edc.dsp.catalog.http.dispatcher) // DSP HTTP constant
     implementation(libs.edc.federated.catalog.core) // Transformers
     implementation(libs.edc.federated.catalog.core2025) // JsonObjectToCatalogTransformer
+    implementation(libs.edc.http.spi) // EdcHttpClient
     implementation(libs.edc.json.ld.lib) // JsonLD expansion
     implementation(libs.edc.dsp.spi2025) // DSP 2025 constants (protocol name)
 
@@ -29,6 +29,7 @@ import org.eclipse.edc.connector.controlplane.services.spi.catalog.CatalogServic
 import org.eclipse.edc.connector.controlplane.transfer.spi.observe.TransferProcessObservable;
 import org.eclipse.edc.connector.controlplane.transform.odrl.OdrlTransformersFactory;
 import org.eclipse.edc.connector.core.agent.NoOpParticipantIdMapper;
+import org.eclipse.edc.http.spi.EdcHttpClient;
 import org.eclipse.edc.participantcontext.single.spi.SingleParticipantContextSupplier;
 import org.eclipse.edc.runtime.metamodel.annotation.Inject;
 import org.eclipse.edc.spi.EdcException;
@@ -53,6 +54,8 @@ public class ClientExtension implements ServiceExtension {
     @Inject
     private ContractNegotiationStore contractNegotiationStore;
     @Inject
+    private EdcHttpClient httpClient;
+    @Inject
     private Hostname hostname;
     @Inject
     private CommandHandlerRegistry commandHandlerRegistry;
@@ -89,7 +92,8 @@ public class ClientExtension implements ServiceExtension {
                 commandHandlerRegistry,
                 participantContext,
                 transferProcessObservable,
-                hostname);
+                hostname,
+                httpClient);
 
         var policyController = new PolicyController(
                 monitor,
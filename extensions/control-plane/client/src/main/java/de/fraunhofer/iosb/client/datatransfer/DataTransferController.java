@@ -26,8 +26,12 @@ import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
 import org.eclipse.edc.connector.controlplane.transfer.spi.observe.TransferProcessObservable;
+import org.eclipse.edc.http.spi.EdcHttpClient;
 import org.eclipse.edc.participantcontext.spi.types.ParticipantContext;
 import org.eclipse.edc.spi.EdcException;
 import org.eclipse.edc.spi.command.CommandHandlerRegistry;
@@ -38,8 +42,15 @@ import org.eclipse.edc.spi.types.domain.DataAddress;
 import org.eclipse.edc.web.spi.WebService;
 import org.eclipse.edc.web.spi.exception.InvalidRequestException;
 
+import java.io.IOException;
 import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
@@ -47,6 +58,17 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import static de.fraunhofer.iosb.client.ClientEndpoint.MISSING_QUERY_PARAMETER_MESSAGE;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.AAS_IDS;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.ATTACHMENT;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.CONTENT;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.EXTENT;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.LEVEL;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.RANGE;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.SUBMODEL_IDS;
+import static java.net.HttpURLConnection.HTTP_FORBIDDEN;
+import static java.net.HttpURLConnection.HTTP_MULT_CHOICE;
+import static java.net.HttpURLConnection.HTTP_OK;
+import static java.net.HttpURLConnection.HTTP_UNAUTHORIZED;
 
 
 @Consumes({ MediaType.APPLICATION_JSON })
@@ -57,10 +79,16 @@ public class DataTransferController {
     static final String DATA_TRANSFER_API_KEY = "data-transfer-api-key";
     static final String TRANSFER_PATH = "transfer";
     private static final int WAIT_FOR_TRANSFER_TIMEOUT_DEFAULT = 20;
+    private static final String SPOOL_DIRECTORY = "spoolDirectory";
+    private static final String PULL = "pull";
+    private static final String EDR_CACHE_TTL = "edrCacheTtl";
     private final Config config;
 
     private final DataTransferObservable<JsonNode> dataTransferObservable;
+    private final DataTransferEndpoint dataTransferEndpoint;
+    private final EndpointDataReferenceCache endpointDataReferences;
     private final TransferInitiator transferInitiator;
+    private final EdcHttpClient httpClient;
     private final Monitor monitor;
 
     private final DataTransferEndpointManager dataTransferEndpointManager;
@@ -76,21 +104,28 @@ public class DataTransferController {
      * @param webService Register data transfer endpoint.
      * @param publicApiManagementService Creating and passing through custom api keys for each data transfer.
      * @param initiateTransferCommandHandler Initiating a transfer process as a consumer.
+     * @param httpClient The connector's HTTP client, reading pulled data from the provider's public endpoint.
      */
     public DataTransferController(Monitor monitor, Config config, WebService webService,
                                   PublicApiManagementService publicApiManagementService,
                                   CommandHandlerRegistry initiateTransferCommandHandler,
                                   ParticipantContext participantContext,
                                   TransferProcessObservable transferProcessObservable,
-                                  Hostname hostname) {
+                                  Hostname hostname,
+                                  EdcHttpClient httpClient) {
         this.config = config.getConfig("edc.client");
+        this.httpClient = httpClient;
 
         this.monitor = monitor.withPrefix("DataTransferController");
 
         transferInitiator = new TransferInitiator(monitor, config, hostname, initiateTransferCommandHandler, participantContext);
         dataTransferEndpointManager = new DataTransferEndpointManager(publicApiManagementService);
         dataTransferObservable = new DataTransferObservable<>(monitor);
-        var dataTransferEndpoint = new DataTransferEndpoint(monitor, dataTransferObservable);
+        dataTransferEndpoint = new DataTransferEndpoint(monitor, dataTransferObservable,
+                java.nio.file.Path.of(this.config.getString(SPOOL_DIRECTORY, System.getProperty("java.io.tmpdir"))));
+        endpointDataReferences = new EndpointDataReferenceCache(monitor,
+                Duration.ofSeconds(this.config.getLong(EDR_CACHE_TTL, EndpointDataReferenceCache.DEFAULT_TIME_TO_LIVE.toSeconds())), Clock.systemUTC(),
+                transferInitiator::terminateTransferProcess);
         nonNullNonEmptyObjectMapper = new ObjectMapper()
                 .setDefaultPropertyInclusion(
                         JsonInclude.Value.construct(
@@ -98,6 +133,7 @@ public class DataTransferController {
                                 JsonInclude.Include.NON_NULL));
 
         transferProcessObservable.registerListener(dataTransferObservable);
+        transferProcessObservable.registerListener(endpointDataReferences);
         webService.registerResource(dataTransferEndpoint);
     }
 
@@ -108,6 +144,16 @@ public class DataTransferController {
      *
      * @param providerUrl The data provider's url
      * @param agreementId The basis of the data transfer.
+     * @param content Optional AAS content modifier ("normal", "value", "metadata") for AAS data sources.
+     * @param level Optional AAS level modifier ("deep", "core") for AAS data sources.
+     * @param extent Optional AAS extent modifier ("WithBlobValue", "WithoutBlobValue") for AAS data sources.
+     * @param attachment Optional: transfer the attachment of a File or Blob element instead of its serialization.
+     * @param range Optional HTTP byte range of binary content, e.g., "bytes=1048576-" to resume a download.
+     * @param aasIds Optional: identifiers of the shells to retrieve from an asset offering an AAS environment
+     *            (/serialization). Only shells of the asset can be requested.
+     * @param submodelIds Optional: identifiers of the submodels to retrieve from an asset offering an AAS environment.
+     * @param pull Optional: read the data from the provider's public endpoint with a cached endpoint data reference
+     *            instead of having it pushed by a transfer per read. Defaults to the "pull" configuration value.
      * @param dataAddress URL of destination data sink.
      * @return On success, the data of the desired asset. Else, returns an error message.
      */
@@ -115,6 +161,14 @@ public class DataTransferController {
     @Path(TRANSFER_PATH)
     public JsonNode getData(@QueryParam("providerUrl") URI providerUrl,
                             @QueryParam("agreementId") String agreementId,
+                            @QueryParam("content") String content,
+                            @QueryParam("level") String level,
+                            @QueryParam("extent") String extent,
+                            @QueryParam("attachment") Boolean attachment,
+                            @QueryParam("range") String range,
+                            @QueryParam("aasId") List<String> aasIds,
+                            @QueryParam("submodelId") List<String> submodelIds,
+                            @QueryParam("pull") Boolean pull,
                             DataAddress dataAddress) {
         monitor.info("POST /%s".formatted(TRANSFER_PATH));
         if (providerUrl == null || agreementId == null) {
@@ -123,9 +177,44 @@ public class DataTransferController {
         monitor.debug("providerUrl: %s".formatted(providerUrl.toString()));
         monitor.debug("agreementId: %s".formatted(agreementId));
 
+        Map<String, String> destinationProperties = new HashMap<>();
+        Optional.ofNullable(content).ifPresent(value -> destinationProperties.put(CONTENT, value));
+        Optional.ofNullable(level).ifPresent(value -> destinationProperties.put(LEVEL, value));
+        Optional.ofNullable(extent).ifPresent(value -> destinationProperties.put(EXTENT, value));
+        Optional.ofNullable(attachment).ifPresent(value -> destinationProperties.put(ATTACHMENT, value.toString()));
+        Optional.ofNullable(range).ifPresent(value -> destinationProperties.put(RANGE, value));
+        try {
+            // The provider narrows the environment of the asset down to these shells and submodels
+            if (aasIds != null && !aasIds.isEmpty()) {
+                destinationProperties.put(AAS_IDS, nonNullNonEmptyObjectMapper.writeValueAsString(aasIds));
+            }
+            if (submodelIds != null && !submodelIds.isEmpty()) {
+                destinationProperties.put(SUBMODEL_IDS, nonNullNonEmptyObjectMapper.writeValueAsString(submodelIds));
+            }
+        }
+        catch (JsonProcessingException e) {
+            throw new InvalidRequestException(e.getMessage());
+        }
+
         try {
             if (dataAddress == null) {
-                return initiateTransferProcess(providerUrl, agreementId);
+                if (Boolean.TRUE.equals(pull) && !destinationProperties.isEmpty()) {
+                    // The provider reads modifiers from the data destination, PULL transfers have none
+                    throw new InvalidRequestException("Serialization modifiers, attachments and identifier selections require a PUSH transfer");
+                }
+                if (Objects.requireNonNullElseGet(pull, () -> config.getBoolean(PULL, false)) && destinationProperties.isEmpty()) {
+                    return pullData(providerUrl, agreementId);
+                }
+                return initiateTransferProcess(providerUrl, agreementId, destinationProperties);
+            }
+
+            if (!destinationProperties.isEmpty()) {
+                // The provider's AAS data source reads the modifiers from the data destination
+                dataAddress = DataAddress.Builder.newInstance()
+                        .type(dataAddress.getType())
+                        .properties(dataAddress.getProperties())
+                        .properties(new HashMap<>(destinationProperties))
+                        .build();
             }
 
             var op = dataAddress.getProperties().get("operation");
@@ -149,6 +238,19 @@ public class DataTransferController {
     }
 
 
+    /**
+     * Submits a data transfer request to the providerUrl without serialization modifiers.
+     *
+     * @param providerUrl The data provider's url
+     * @param agreementId The basis of the data transfer.
+     * @param dataAddress URL of destination data sink.
+     * @return On success, the data of the desired asset. Else, returns an error message.
+     */
+    public JsonNode getData(URI providerUrl, String agreementId, DataAddress dataAddress) {
+        return getData(providerUrl, agreementId, null, null, null, null, null, null, null, null, dataAddress);
+    }
+
+
     private DataAddress serializeOperation(DataAddress dataAddress) throws JsonProcessingException {
         String operation = nonNullNonEmptyObjectMapper
                 .writeValueAsString(dataAddress.getProperties().get(OPERATION_FIELD));
@@ -180,7 +282,7 @@ public class DataTransferController {
                                              DataAddress dataSinkAddress)
             throws InterruptedException, ExecutionException {
         if (dataSinkAddress == null) {
-            return initiateTransferProcess(providerUri, agreementId);
+            return initiateTransferProcess(providerUri, agreementId, Map.of());
         }
 
         transferInitiator.initiateTransferProcess(providerUri, agreementId, dataSinkAddress);
@@ -190,7 +292,7 @@ public class DataTransferController {
 
 
     /* Send result of transferProcess to extension endpoint */
-    private JsonNode initiateTransferProcess(URI providerUri, String agreementId)
+    private JsonNode initiateTransferProcess(URI providerUri, String agreementId, Map<String, String> destinationProperties)
             throws ExecutionException, InterruptedException {
         // Prepare for incoming data
         var providerDataFuture = dataTransferObservable.register(agreementId);
@@ -198,7 +300,7 @@ public class DataTransferController {
         var apiKey = UUID.randomUUID().toString();
         dataTransferEndpointManager.addTemporaryEndpoint(agreementId, DATA_TRANSFER_API_KEY, apiKey);
 
-        var initiateResult = transferInitiator.initiateTransferProcess(providerUri, agreementId, apiKey);
+        var initiateResult = transferInitiator.initiateTransferProcess(providerUri, agreementId, apiKey, destinationProperties);
 
         if (initiateResult.succeeded()) {
             return waitForProviderData(providerDataFuture, agreementId);
@@ -207,6 +309,55 @@ public class DataTransferController {
     }
 
 
+    /* Read the data from the provider's public endpoint, starting a PULL transfer only if no valid EDR is cached */
+    private JsonNode pullData(URI providerUri, String agreementId) throws InterruptedException, ExecutionException {
+        var response = readFromProvider(agreementId, waitForEndpointDataReference(providerUri, agreementId));
+        if (response.code() == HTTP_UNAUTHORIZED || response.code() == HTTP_FORBIDDEN) {
+            // The provider revoked the token before its expiry, e.g., after terminating the transfer
+            response.close();
+            endpointDataReferences.evict(agreementId);
+            response = readFromProvider(agreementId, waitForEndpointDataReference(providerUri, agreementId));
+        }
+
+        try (var body = response.body()) {
+            if (response.code() < HTTP_OK || response.code() >= HTTP_MULT_CHOICE) {
+                throw new EdcException("Provider responded to read of agreement %s with status %d".formatted(agreementId, response.code()));
+            }
+            return dataTransferEndpoint.read(agreementId, response.header(HttpHeaders.CONTENT_TYPE), body.byteStream());
+        }
+        catch (IOException readException) {
+            throw new EdcException("Could not read data of agreement %s: %s".formatted(agreementId, readException.getMessage()), readException);
+        }
+    }
+
+
+    private DataAddress waitForEndpointDataReference(URI providerUri, String agreementId) throws InterruptedException, ExecutionException {
+        var referenceFuture = endpointDataReferences.get(agreementId, id -> transferInitiator.initiatePullTransfer(providerUri, id));
+        try {
+            return referenceFuture.get(config.getInteger("waitForTransferTimeout", WAIT_FOR_TRANSFER_TIMEOUT_DEFAULT), TimeUnit.SECONDS);
+        }
+        catch (TimeoutException timeoutException) {
+            endpointDataReferences.cancel(agreementId);
+            throw new EdcException("No endpoint data reference received for agreement %s".formatted(agreementId));
+        }
+    }
+
+
+    private Response readFromProvider(String agreementId, DataAddress endpointDataReference) {
+        var request = new Request.Builder()
+                .url(endpointDataReference.getStringProperty(EndpointDataReferenceCache.ENDPOINT))
+                .header(HttpHeaders.AUTHORIZATION, endpointDataReference.getStringProperty(EndpointDataReferenceCache.AUTHORIZATION))
+                .get()
+                .build();
+        try {
+            return httpClient.execute(request);
+        }
+        catch (IOException readException) {
+            throw new EdcException("Could not read data of agreement %s: %s".formatted(agreementId, readException.getMessage()), readException);
+        }
+    }
+
+
     private JsonNode waitForProviderData(CompletableFuture<JsonNode> dataFuture, String agreementId)
             throws InterruptedException, ExecutionException {
         var waitForTransferTimeout = config.getInteger("waitForTransferTimeout",
@@ -16,23 +16,39 @@
 package de.fraunhofer.iosb.client.datatransfer;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import de.fraunhofer.iosb.client.ClientEndpoint;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import org.eclipse.edc.spi.EdcException;
 import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.web.spi.exception.InvalidRequestException;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
 import java.util.Objects;
+import java.util.Set;
 
 import static java.lang.String.format;
 
 
 /**
  * Endpoint for automated data transfer
+ * <p>
+ * JSON data is passed to the waiting transfer as it is. Binary data, e.g., attachments of File or Blob elements or AASX
+ * packages, is streamed to a file in the spool directory; the transfer receives a JSON object with the path, media type
+ * and size of the file instead of the data.
  */
 @Consumes({
         MediaType.APPLICATION_JSON,
@@ -46,14 +62,28 @@ public class DataTransferEndpoint {
      * Path for providers to send data to.
      */
     static final String RECEIVE_DATA_PATH = "receiveData";
+    static final String FILE_FIELD = "file";
+    static final String MEDIA_TYPE_FIELD = "mediaType";
+    static final String SIZE_FIELD = "size";
+
+    private static final int SNIFF_LIMIT = 64;
+    private static final Set<String> UNSPECIFIC_MEDIA_TYPES = Set.of("", MediaType.WILDCARD, MediaType.APPLICATION_OCTET_STREAM, MediaType.TEXT_PLAIN);
 
     private final Monitor monitor;
     private final DataTransferObservable<JsonNode> observable;
+    private final java.nio.file.Path spoolDirectory;
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
 
     DataTransferEndpoint(Monitor monitor, DataTransferObservable<JsonNode> dataTransferObservable) {
+        this(monitor, dataTransferObservable, java.nio.file.Path.of(System.getProperty("java.io.tmpdir")));
+    }
+
+
+    DataTransferEndpoint(Monitor monitor, DataTransferObservable<JsonNode> dataTransferObservable, java.nio.file.Path spoolDirectory) {
         this.monitor = monitor;
         this.observable = dataTransferObservable;
+        this.spoolDirectory = spoolDirectory;
     }
 
 
@@ -61,17 +91,96 @@ public class DataTransferEndpoint {
      * Receive data of an agreement.
      *
      * @param agreementId The agreement ID corresponding to the data in the request body.
+     * @param contentType Media type of the request body.
      * @param requestBody The asset data of a transfer request.
      * @return OK as response.
      */
     @POST
     @Path("receiveData/{agreement}")
-    public Response receiveData(@PathParam("agreement") String agreementId, JsonNode requestBody) {
+    public Response receiveData(@PathParam("agreement") String agreementId, @HeaderParam(HttpHeaders.CONTENT_TYPE) String contentType,
+                                InputStream requestBody) {
         monitor.info(format("Receiving data for agreement %s...", agreementId));
         Objects.requireNonNull(agreementId);
         Objects.requireNonNull(requestBody);
-        observable.update(agreementId, requestBody);
+
+        try {
+            observable.update(agreementId, read(agreementId, contentType, requestBody));
+        }
+        catch (IOException e) {
+            throw new EdcException("Could not receive data for agreement %s: %s".formatted(agreementId, e.getMessage()), e);
+        }
         return Response.ok().build();
     }
 
+
+    /**
+     * Read data of an agreement the same way as pushed data: JSON as it is, binary data spooled to a file.
+     *
+     * @param agreementId The agreement ID corresponding to the data.
+     * @param contentType Media type of the data.
+     * @param data The asset data.
+     * @return The JSON data or a JSON object describing the spooled file.
+     * @throws IOException If the data could not be read or spooled.
+     */
+    JsonNode read(String agreementId, String contentType, InputStream data) throws IOException {
+        var body = new BufferedInputStream(data);
+        return isJson(contentType, body) ? readJson(body) : spool(agreementId, contentType, body);
+    }
+
+
+    private JsonNode readJson(InputStream body) throws IOException {
+        var json = objectMapper.readTree(body);
+        if (json == null) {
+            throw new InvalidRequestException("Empty request body");
+        }
+        return json;
+    }
+
+
+    /* Write the body to a file without holding it in memory. */
+    private JsonNode spool(String agreementId, String contentType, InputStream body) throws IOException {
+        Files.createDirectories(spoolDirectory);
+        var file = Files.createTempFile(spoolDirectory, "transfer-", ".bin");
+        var size = Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+        monitor.info(format("Stored %d bytes of agreement %s in %s", size, agreementId, file));
+
+        return objectMapper.createObjectNode()
+                .put(FILE_FIELD, file.toAbsolutePath().toString())
+                .put(MEDIA_TYPE_FIELD, Objects.requireNonNullElse(contentType, MediaType.APPLICATION_OCTET_STREAM))
+                .put(SIZE_FIELD, size);
+    }
+
+
+    /*
+     * The EDC HTTP data sink does not always forward the media type of the provider's data, so bodies of unspecific
+     * type are treated as JSON if they start like a JSON document.
+     */
+    private static boolean isJson(String contentType, BufferedInputStream body) throws IOException {
+        if (contentType != null) {
+            var mediaType = contentType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+            if (mediaType.endsWith("/json") || mediaType.endsWith("+json")) {
+                return true;
+            }
+            if (!UNSPECIFIC_MEDIA_TYPES.contains(mediaType)) {
+                return false;
+            }
+        }
+
+        body.mark(SNIFF_LIMIT);
+        try {
+            for (int i = 0; i < SNIFF_LIMIT; i++) {
+                var next = body.read();
+                if (next < 0) {
+                    return false;
+                }
+                if (!Character.isWhitespace(next)) {
+                    return next == '{' || next == '[';
+                }
+            }
+            return false;
+        }
+        finally {
+            body.reset();
+        }
+    }
 }
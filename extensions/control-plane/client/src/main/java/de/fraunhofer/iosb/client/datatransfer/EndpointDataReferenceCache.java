@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.client.datatransfer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.edc.connector.controlplane.transfer.spi.observe.TransferProcessListener;
+import org.eclipse.edc.connector.controlplane.transfer.spi.observe.TransferProcessStartedData;
+import org.eclipse.edc.connector.controlplane.transfer.spi.types.TransferProcess;
+import org.eclipse.edc.spi.EdcException;
+import org.eclipse.edc.spi.command.CommandResult;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.types.domain.DataAddress;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import static java.lang.String.format;
+
+
+/**
+ * Caches the endpoint data references (EDR) of PULL transfers per agreement. The EDR is received when the provider
+ * starts a transfer and reused for every read of the agreement's asset until it expires or the transfer ends, so that
+ * repeated reads go directly to the provider's public endpoint.
+ * <p>
+ * The expiry is taken from the "exp" claim of the EDR's authorization token if it is a JWT, otherwise the EDR is kept
+ * for the configured time to live.
+ * <p>
+ * Transfers whose EDR is no longer used, because it expired, was rejected by the provider or was replaced by the EDR of
+ * a newer transfer, are terminated so that they do not stay open at the provider.
+ */
+class EndpointDataReferenceCache implements TransferProcessListener {
+
+    static final String ENDPOINT = "endpoint";
+    static final String AUTHORIZATION = "authorization";
+    static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(5);
+
+    // Tokens are not used shortly before their expiry, the provider might already reject them on arrival
+    private static final Duration EXPIRY_MARGIN = Duration.ofSeconds(10);
+    private static final String EXPIRATION_CLAIM = "exp";
+
+    private final Monitor monitor;
+    private final Duration timeToLive;
+    private final Clock clock;
+    private final BiFunction<String, String, CommandResult> terminateTransfer;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, Entry> references = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<DataAddress>> pending = new ConcurrentHashMap<>();
+    // Transfers terminated by this cache, their end must not fail the read waiting for the replacing transfer
+    private final Set<String> superseded = ConcurrentHashMap.newKeySet();
+
+
+    /**
+     * Class constructor
+     *
+     * @param monitor Logging.
+     * @param timeToLive Time an EDR without expiry claim is used.
+     * @param clock Clock the expiry is checked against.
+     * @param terminateTransfer Terminates the transfer process with the given id and reason once its EDR is no longer
+     *         used.
+     */
+    EndpointDataReferenceCache(Monitor monitor, Duration timeToLive, Clock clock, BiFunction<String, String, CommandResult> terminateTransfer) {
+        this.monitor = monitor;
+        this.timeToLive = timeToLive;
+        this.clock = clock;
+        this.terminateTransfer = terminateTransfer;
+    }
+
+
+    /**
+     * Get the EDR of an agreement. If none is cached or it expired, a PULL transfer is initiated, unless another read
+     * of the same agreement is already waiting for one. The transfer of an expired EDR is terminated.
+     *
+     * @param agreementId The agreement whose asset is to be read.
+     * @param initiateTransfer Initiates a PULL transfer for the agreement.
+     * @return Future completing with the EDR once the provider started the transfer.
+     */
+    CompletableFuture<DataAddress> get(String agreementId, Function<String, CommandResult> initiateTransfer) {
+        var cached = references.get(agreementId);
+        if (cached != null) {
+            if (clock.instant().isBefore(cached.expiresAt())) {
+                return CompletableFuture.completedFuture(cached.reference());
+            }
+            if (references.remove(agreementId, cached)) {
+                terminate(cached, "endpoint data reference expired");
+            }
+        }
+
+        var future = new CompletableFuture<DataAddress>();
+        var waiting = pending.putIfAbsent(agreementId, future);
+        if (waiting != null) {
+            return waiting;
+        }
+
+        var initiateResult = initiateTransfer.apply(agreementId);
+        if (initiateResult.failed()) {
+            pending.remove(agreementId, future);
+            future.completeExceptionally(new EdcException(initiateResult.getFailureDetail()));
+        }
+        return future;
+    }
+
+
+    /**
+     * Stop waiting for the EDR of an agreement, e.g., after a timeout.
+     *
+     * @param agreementId Agreement of the EDR.
+     */
+    void cancel(String agreementId) {
+        Optional.ofNullable(pending.remove(agreementId)).ifPresent(future -> future.cancel(false));
+    }
+
+
+    /**
+     * Drop the EDR of an agreement, e.g., after the provider rejected its token, and terminate its transfer. The next
+     * read initiates a new transfer.
+     *
+     * @param agreementId Agreement of the EDR.
+     */
+    void evict(String agreementId) {
+        Optional.ofNullable(references.remove(agreementId)).ifPresent(entry -> terminate(entry, "endpoint data reference rejected"));
+    }
+
+
+    @Override
+    public void started(TransferProcess process, TransferProcessStartedData additionalData) {
+        var reference = additionalData.getDataAddress();
+        if (process.getType() != TransferProcess.Type.CONSUMER || reference == null || reference.getStringProperty(ENDPOINT) == null) {
+            // PUSH transfers do not come with an EDR
+            return;
+        }
+
+        var agreementId = process.getContractId();
+        var previous = references.put(agreementId, new Entry(process.getId(), reference, expiresAt(reference)));
+        if (previous != null && !previous.transferProcessId().equals(process.getId())) {
+            terminate(previous, "endpoint data reference replaced by transfer %s".formatted(process.getId()));
+        }
+        monitor.debug(format("Received endpoint data reference for agreement %s", agreementId));
+        Optional.ofNullable(pending.remove(agreementId)).ifPresent(future -> future.complete(reference));
+    }
+
+
+    @Override
+    public void completed(TransferProcess process) {
+        ended(process, "completed");
+    }
+
+
+    @Override
+    public void terminated(TransferProcess process) {
+        ended(process, "terminated. Reason: %s".formatted(process.getErrorDetail()));
+    }
+
+
+    private void ended(TransferProcess process, String reason) {
+        if (superseded.remove(process.getId())) {
+            // Terminated by this cache, a read might be waiting for the replacing transfer
+            return;
+        }
+        var agreementId = process.getContractId();
+        // The token of an ended transfer is no longer accepted by the provider
+        references.computeIfPresent(agreementId, (id, entry) -> entry.transferProcessId().equals(process.getId()) ? null : entry);
+        Optional.ofNullable(pending.remove(agreementId))
+                .ifPresent(future -> future.completeExceptionally(new EdcException("Transfer process %s %s".formatted(process.getId(), reason))));
+    }
+
+
+    private void terminate(Entry entry, String reason) {
+        superseded.add(entry.transferProcessId());
+        var result = terminateTransfer.apply(entry.transferProcessId(), reason);
+        if (result.failed()) {
+            superseded.remove(entry.transferProcessId());
+            monitor.warning(format("Could not terminate transfer process %s: %s", entry.transferProcessId(), result.getFailureDetail()));
+            return;
+        }
+        monitor.debug(format("Terminated transfer process %s: %s", entry.transferProcessId(), reason));
+    }
+
+
+    private Instant expiresAt(DataAddress reference) {
+        var defaultExpiry = clock.instant().plus(timeToLive);
+        var authorization = reference.getStringProperty(AUTHORIZATION);
+        if (authorization == null) {
+            return defaultExpiry;
+        }
+
+        var tokenParts = authorization.split("\\.");
+        if (tokenParts.length != 3) {
+            return defaultExpiry;
+        }
+
+        try {
+            JsonNode claims = objectMapper.readTree(Base64.getUrlDecoder().decode(tokenParts[1]));
+            var expiration = claims.get(EXPIRATION_CLAIM);
+            if (expiration == null || !expiration.canConvertToLong()) {
+                return defaultExpiry;
+            }
+            return Instant.ofEpochSecond(expiration.asLong()).minus(EXPIRY_MARGIN);
+        }
+        catch (IOException | IllegalArgumentException notAJwt) {
+            return defaultExpiry;
+        }
+    }
+
+
+    private record Entry(String transferProcessId, DataAddress reference, Instant expiresAt) {
+    }
+}
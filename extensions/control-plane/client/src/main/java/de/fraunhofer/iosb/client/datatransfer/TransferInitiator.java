@@ -18,6 +18,7 @@ package de.fraunhofer.iosb.client.datatransfer;
 import de.fraunhofer.iosb.client.ClientEndpoint;
 import org.eclipse.edc.connector.controlplane.transfer.spi.types.TransferRequest;
 import org.eclipse.edc.connector.controlplane.transfer.spi.types.command.InitiateTransferCommand;
+import org.eclipse.edc.connector.controlplane.transfer.spi.types.command.TerminateTransferCommand;
 import org.eclipse.edc.connector.dataplane.http.spi.HttpDataAddress;
 import org.eclipse.edc.participantcontext.spi.types.ParticipantContext;
 import org.eclipse.edc.spi.EdcException;
@@ -30,16 +31,19 @@ import org.eclipse.edc.spi.types.domain.DataAddress;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Map;
 import java.util.Objects;
 
 import static de.fraunhofer.iosb.client.datatransfer.DataTransferController.DATA_TRANSFER_API_KEY;
 import static java.lang.String.join;
 import static org.eclipse.edc.protocol.dsp.spi.type.Dsp2025Constants.DATASPACE_PROTOCOL_HTTP_V_2025_1;
+import static org.eclipse.edc.spi.types.domain.transfer.FlowType.PULL;
 import static org.eclipse.edc.spi.types.domain.transfer.FlowType.PUSH;
 
 
 /**
- * Initiate transfer requests
+ * Initiate transfer requests, either PUSH transfers to a data destination or PULL transfers yielding an endpoint data
+ * reference
  */
 class TransferInitiator {
 
@@ -64,15 +68,30 @@ class TransferInitiator {
 
 
     CommandResult initiateTransferProcess(URI providerUri, String agreementId, String apiKey) {
+        return initiateTransferProcess(providerUri, agreementId, apiKey, Map.of());
+    }
+
+
+    /**
+     * Initiate a transfer to this connector's data transfer endpoint.
+     *
+     * @param providerUri The provider from whom the data is to be fetched.
+     * @param agreementId Non-null ContractAgreement of the negotiation process.
+     * @param apiKey Key the provider uses to authenticate at the data transfer endpoint.
+     * @param destinationProperties Additional properties of the data destination, e.g., AAS serialization modifiers.
+     * @return Result of the transfer initiation.
+     */
+    CommandResult initiateTransferProcess(URI providerUri, String agreementId, String apiKey, Map<String, String> destinationProperties) {
         if (Objects.isNull(ownUri)) {
             return CommandResult.notExecutable(COULD_NOT_BUILD_URI_MESSAGE);
         }
         monitor.debug("Starting transfer process for provider: " + providerUri.toString());
         monitor.debug("agreementId: " + agreementId);
-        var dataDestination = HttpDataAddress.Builder.newInstance()
+        var dataDestinationBuilder = HttpDataAddress.Builder.newInstance()
                 .baseUrl(String.join("/", ownUri.toString(), agreementId))
-                .addAdditionalHeader(DATA_TRANSFER_API_KEY, apiKey) // API key for validation on consumer side
-                .build();
+                .addAdditionalHeader(DATA_TRANSFER_API_KEY, apiKey); // API key for validation on consumer side
+        destinationProperties.forEach(dataDestinationBuilder::property);
+        var dataDestination = dataDestinationBuilder.build();
 
         return initiateTransferProcess(providerUri, agreementId, dataDestination);
     }
@@ -92,6 +111,40 @@ class TransferInitiator {
     }
 
 
+    /**
+     * Initiate a transfer in which the provider does not send data but an endpoint data reference (EDR), with which
+     * the consumer reads the data from the provider's public endpoint.
+     *
+     * @param providerUri The provider from whom the data is to be fetched.
+     * @param agreementId Non-null ContractAgreement of the negotiation process.
+     * @return Result of the transfer initiation.
+     */
+    CommandResult initiatePullTransfer(URI providerUri, String agreementId) {
+        monitor.debug("Starting pull transfer process for provider: " + providerUri.toString());
+        var transferRequest = TransferRequest.Builder.newInstance()
+                .protocol(DATASPACE_PROTOCOL_HTTP_V_2025_1)
+                .counterPartyAddress(providerUri.toString())
+                .contractId(agreementId)
+                .transferType(join("-", HttpDataAddress.HTTP_DATA, PULL.name()))
+                .build();
+
+        return commandHandlerRegistry.execute(new InitiateTransferCommand(participantContext, transferRequest));
+    }
+
+
+    /**
+     * Terminate a transfer process, e.g., a PULL transfer whose endpoint data reference is no longer used.
+     *
+     * @param transferProcessId Id of the transfer process.
+     * @param reason Reason sent to the provider.
+     * @return Result of the termination.
+     */
+    CommandResult terminateTransferProcess(String transferProcessId, String reason) {
+        monitor.debug("Terminating transfer process: " + transferProcessId);
+        return commandHandlerRegistry.execute(new TerminateTransferCommand(transferProcessId, reason));
+    }
+
+
     private URI createOwnUriFromConfigurationValues(Config config, Hostname hostname) {
         try {
             // HTTPS requires this value. With this configuration variable set, the connector will run with HTTPS
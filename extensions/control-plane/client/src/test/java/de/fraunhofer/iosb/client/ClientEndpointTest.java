@@ -16,6 +16,7 @@
 package de.fraunhofer.iosb.client;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fraunhofer.iosb.aas.test.defaults.DefaultEdcHttpClient;
 import de.fraunhofer.iosb.api.PublicApiManagementService;
 import de.fraunhofer.iosb.client.datatransfer.DataTransferController;
 import de.fraunhofer.iosb.client.negotiation.NegotiationController;
@@ -116,7 +117,8 @@ public class ClientEndpointTest {
                         mockFatalResultHandler(),
                         mock(ParticipantContext.class),
                         mock(TransferProcessObservable.class),
-                        () -> "localhost"))
+                        () -> "localhost",
+                        new DefaultEdcHttpClient()))
                 .build();
     }
 
@@ -18,16 +18,23 @@ package de.fraunhofer.iosb.client.datatransfer;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import de.fraunhofer.iosb.aas.test.defaults.DefaultEdcHttpClient;
 import de.fraunhofer.iosb.api.PublicApiManagementService;
 import org.eclipse.digitaltwin.aas4j.v3.model.Operation;
 import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultLangStringTextType;
 import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultOperation;
 import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultOperationVariable;
 import org.eclipse.digitaltwin.aas4j.v3.model.impl.DefaultProperty;
+import org.eclipse.edc.connector.controlplane.transfer.spi.observe.TransferProcessListener;
 import org.eclipse.edc.connector.controlplane.transfer.spi.observe.TransferProcessObservable;
+import org.eclipse.edc.connector.controlplane.transfer.spi.observe.TransferProcessStartedData;
+import org.eclipse.edc.connector.controlplane.transfer.spi.types.TransferProcess;
 import org.eclipse.edc.connector.controlplane.transfer.spi.types.command.InitiateTransferCommand;
+import org.eclipse.edc.connector.controlplane.transfer.spi.types.command.TerminateTransferCommand;
 import org.eclipse.edc.participantcontext.spi.types.ParticipantContext;
 import org.eclipse.edc.spi.command.CommandHandlerRegistry;
+import org.eclipse.edc.spi.command.CommandResult;
 import org.eclipse.edc.spi.monitor.ConsoleMonitor;
 import org.eclipse.edc.spi.system.configuration.Config;
 import org.eclipse.edc.spi.system.configuration.ConfigFactory;
@@ -35,21 +42,42 @@ import org.eclipse.edc.spi.types.domain.DataAddress;
 import org.eclipse.edc.web.spi.WebService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.mockito.ArgumentCaptor;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayDeque;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.unauthorized;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static de.fraunhofer.iosb.client.datatransfer.DataTransferController.OPERATION_FIELD;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.AAS_IDS;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.SUBMODEL_IDS;
 import static java.lang.String.format;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 
 class DataTransferControllerTest {
+    @RegisterExtension
+    static WireMockExtension wireMock = WireMockExtension.newInstance()
+            .options(wireMockConfig().dynamicPort())
+            .build();
+
     private static final String AGREEMENT_ID = UUID.randomUUID().toString();
     private static URI uri;
     private final CommandHandlerRegistry mockCommandHandlerRegistry = mock(CommandHandlerRegistry.class);
@@ -119,7 +147,8 @@ class DataTransferControllerTest {
                 mockCommandHandlerRegistry,
                 mock(ParticipantContext.class),
                 mock(TransferProcessObservable.class),
-                () -> "localhost");
+                () -> "localhost",
+                new DefaultEdcHttpClient());
     }
 
 
@@ -161,6 +190,104 @@ class DataTransferControllerTest {
     }
 
 
+    @Test
+    void test_getData_pullReusesEndpointDataReference() {
+        wireMock.stubFor(get("/public").withHeader("Authorization", equalTo("token"))
+                .willReturn(okJson("{\"idShort\":\"pulled\"}")));
+        var transferProcessObservable = mock(TransferProcessObservable.class);
+        var pullSubject = new DataTransferController(new ConsoleMonitor(), mockConfig(), mock(WebService.class), mock(PublicApiManagementService.class),
+                mockCommandHandlerRegistry, mock(ParticipantContext.class), transferProcessObservable, () -> "localhost", new DefaultEdcHttpClient());
+
+        var listeners = ArgumentCaptor.forClass(TransferProcessListener.class);
+        verify(transferProcessObservable, times(2)).registerListener(listeners.capture());
+        var process = mock(TransferProcess.class);
+        when(process.getId()).thenReturn(UUID.randomUUID().toString());
+        when(process.getContractId()).thenReturn(AGREEMENT_ID);
+        when(process.getType()).thenReturn(TransferProcess.Type.CONSUMER);
+        var startedData = TransferProcessStartedData.Builder.newInstance()
+                .dataAddress(DataAddress.Builder.newInstance()
+                        .type("https://w3id.org/idsa/v4.1/HTTP")
+                        .property(EndpointDataReferenceCache.ENDPOINT, wireMock.baseUrl() + "/public")
+                        .property(EndpointDataReferenceCache.AUTHORIZATION, "token")
+                        .build())
+                .build();
+        // The provider starts the transfer and sends the EDR
+        when(mockCommandHandlerRegistry.execute(any())).thenAnswer(invocation -> {
+            listeners.getAllValues().forEach(listener -> listener.started(process, startedData));
+            return CommandResult.success();
+        });
+
+        var first = pullSubject.getData(uri, AGREEMENT_ID, null, null, null, null, null, null, null, true, null);
+        var second = pullSubject.getData(uri, AGREEMENT_ID, null, null, null, null, null, null, null, true, null);
+
+        assertEquals("pulled", first.get("idShort").asText());
+        assertEquals(first, second);
+        // One transfer for both reads, without data destination
+        verify(mockCommandHandlerRegistry, times(1))
+                .execute(argThat(command -> ((InitiateTransferCommand) command).getRequest().getTransferType().equals("HttpData-PULL")));
+        wireMock.verify(2, getRequestedFor(urlEqualTo("/public")));
+    }
+
+
+    @Test
+    void test_getData_pullRejectedTokenTerminatesSupersededTransfer() {
+        wireMock.stubFor(get("/public").withHeader("Authorization", equalTo("revoked")).willReturn(unauthorized()));
+        wireMock.stubFor(get("/public").withHeader("Authorization", equalTo("token"))
+                .willReturn(okJson("{\"idShort\":\"pulled\"}")));
+        var transferProcessObservable = mock(TransferProcessObservable.class);
+        var pullSubject = new DataTransferController(new ConsoleMonitor(), mockConfig(), mock(WebService.class), mock(PublicApiManagementService.class),
+                mockCommandHandlerRegistry, mock(ParticipantContext.class), transferProcessObservable, () -> "localhost", new DefaultEdcHttpClient());
+
+        var listeners = ArgumentCaptor.forClass(TransferProcessListener.class);
+        verify(transferProcessObservable, times(2)).registerListener(listeners.capture());
+        var tokens = new ArrayDeque<>(List.of("revoked", "token"));
+        // Every initiated transfer is started by the provider with the next token
+        when(mockCommandHandlerRegistry.execute(any())).thenAnswer(invocation -> {
+            if (invocation.getArgument(0) instanceof InitiateTransferCommand) {
+                var token = tokens.poll();
+                var process = mock(TransferProcess.class);
+                when(process.getId()).thenReturn(token);
+                when(process.getContractId()).thenReturn(AGREEMENT_ID);
+                when(process.getType()).thenReturn(TransferProcess.Type.CONSUMER);
+                var startedData = TransferProcessStartedData.Builder.newInstance()
+                        .dataAddress(DataAddress.Builder.newInstance()
+                                .type("https://w3id.org/idsa/v4.1/HTTP")
+                                .property(EndpointDataReferenceCache.ENDPOINT, wireMock.baseUrl() + "/public")
+                                .property(EndpointDataReferenceCache.AUTHORIZATION, token)
+                                .build())
+                        .build();
+                listeners.getAllValues().forEach(listener -> listener.started(process, startedData));
+            }
+            return CommandResult.success();
+        });
+
+        var data = pullSubject.getData(uri, AGREEMENT_ID, null, null, null, null, null, null, null, true, null);
+
+        assertEquals("pulled", data.get("idShort").asText());
+        verify(mockCommandHandlerRegistry, times(2)).execute(any(InitiateTransferCommand.class));
+        // The transfer of the rejected token is not left open at the provider
+        verify(mockCommandHandlerRegistry).execute(argThat(command -> command instanceof TerminateTransferCommand terminate &&
+                "revoked".equals(terminate.getEntityId())));
+    }
+
+
+    @Test
+    void test_getData_forwardsSerializationIds() {
+        var dataSinkAddress = DataAddress.Builder.newInstance()
+                .type("HttpData")
+                .property("baseUrl", "https://example.com")
+                .build();
+
+        testSubject.getData(uri, AGREEMENT_ID, null, null, null, null, null, List.of("aas"), List.of("sm1", "sm2"), null, dataSinkAddress);
+
+        verify(mockCommandHandlerRegistry).execute(argThat(command -> {
+            var destination = ((InitiateTransferCommand) command).getRequest().getDataDestination();
+            return "[\"aas\"]".equals(destination.getStringProperty(AAS_IDS)) &&
+                    "[\"sm1\",\"sm2\"]".equals(destination.getStringProperty(SUBMODEL_IDS));
+        }));
+    }
+
+
     @Test
     void getDataTest() {
         var aasDataAddress = DataAddress.Builder.newInstance()
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.client.datatransfer;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static de.fraunhofer.iosb.client.datatransfer.DataTransferEndpoint.FILE_FIELD;
+import static de.fraunhofer.iosb.client.datatransfer.DataTransferEndpoint.MEDIA_TYPE_FIELD;
+import static de.fraunhofer.iosb.client.datatransfer.DataTransferEndpoint.SIZE_FIELD;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+
+class DataTransferEndpointTest {
+
+    @TempDir
+    Path spoolDirectory;
+
+    private final String agreementId = UUID.randomUUID().toString();
+    private DataTransferEndpoint testSubject;
+    private CompletableFuture<JsonNode> received;
+
+
+    @BeforeEach
+    void setUp() {
+        var observable = new DataTransferObservable<JsonNode>(mock(Monitor.class));
+        received = observable.register(agreementId);
+        testSubject = new DataTransferEndpoint(mock(Monitor.class), observable, spoolDirectory);
+    }
+
+
+    @Test
+    void test_receiveData_jsonOfUnspecificTypeIsPassedOn() {
+        var body = " {\"idShort\":\"manual\"}".getBytes(StandardCharsets.UTF_8);
+
+        testSubject.receiveData(agreementId, "application/octet-stream", new ByteArrayInputStream(body));
+
+        assertEquals("manual", received.join().get("idShort").asText());
+    }
+
+
+    @Test
+    void test_receiveData_binaryIsSpooledToFile() throws Exception {
+        var body = new byte[] { 'P', 'K', 3, 4, 0, 1, 2, 3 };
+
+        testSubject.receiveData(agreementId, "application/asset-administration-shell-package+xml", new ByteArrayInputStream(body));
+
+        var descriptor = received.join();
+        assertEquals("application/asset-administration-shell-package+xml", descriptor.get(MEDIA_TYPE_FIELD).asText());
+        assertEquals(body.length, descriptor.get(SIZE_FIELD).asLong());
+        var file = Path.of(descriptor.get(FILE_FIELD).asText());
+        assertEquals(spoolDirectory, file.getParent());
+        assertArrayEquals(body, Files.readAllBytes(file));
+    }
+}
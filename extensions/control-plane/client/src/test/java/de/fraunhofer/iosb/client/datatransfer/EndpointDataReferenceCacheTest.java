@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.client.datatransfer;
+
+import org.eclipse.edc.connector.controlplane.transfer.spi.observe.TransferProcessStartedData;
+import org.eclipse.edc.connector.controlplane.transfer.spi.types.TransferProcess;
+import org.eclipse.edc.spi.command.CommandResult;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.eclipse.edc.spi.types.domain.DataAddress;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+class EndpointDataReferenceCacheTest {
+
+    private static final String AGREEMENT_ID = "agreement";
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    private final AtomicInteger initiatedTransfers = new AtomicInteger();
+    private final Function<String, CommandResult> initiateTransfer = agreementId -> {
+        initiatedTransfers.incrementAndGet();
+        return CommandResult.success();
+    };
+    private final List<String> terminatedTransfers = new ArrayList<>();
+
+    private Clock clock;
+    private EndpointDataReferenceCache testSubject;
+
+
+    @BeforeEach
+    void setUp() {
+        clock = mock(Clock.class);
+        when(clock.instant()).thenReturn(NOW);
+        testSubject = new EndpointDataReferenceCache(new ConsoleMonitor(), Duration.ofMinutes(5), clock, (transferProcessId, reason) -> {
+            terminatedTransfers.add(transferProcessId);
+            return CommandResult.success();
+        });
+    }
+
+
+    @Test
+    void testReferenceIsReusedUntilExpiry() {
+        var first = testSubject.get(AGREEMENT_ID, initiateTransfer);
+        // A concurrent read waits for the same transfer
+        assertSame(first, testSubject.get(AGREEMENT_ID, initiateTransfer));
+        assertFalse(first.isDone());
+
+        var reference = endpointDataReference("token");
+        testSubject.started(consumerProcess("process"), TransferProcessStartedData.Builder.newInstance().dataAddress(reference).build());
+
+        assertSame(reference, first.join());
+        assertSame(reference, testSubject.get(AGREEMENT_ID, initiateTransfer).join());
+        assertEquals(1, initiatedTransfers.get());
+
+        when(clock.instant()).thenReturn(NOW.plus(Duration.ofMinutes(6)));
+        assertFalse(testSubject.get(AGREEMENT_ID, initiateTransfer).isDone());
+        assertEquals(2, initiatedTransfers.get());
+        assertEquals(List.of("process"), terminatedTransfers);
+    }
+
+
+    @Test
+    void testExpiryIsTakenFromJwt() {
+        var claims = "{\"exp\":%d}".formatted(NOW.plus(Duration.ofMinutes(1)).getEpochSecond());
+        var jwt = "e30.%s.signature".formatted(Base64.getUrlEncoder().withoutPadding().encodeToString(claims.getBytes(StandardCharsets.UTF_8)));
+
+        testSubject.get(AGREEMENT_ID, initiateTransfer);
+        testSubject.started(consumerProcess("process"), TransferProcessStartedData.Builder.newInstance().dataAddress(endpointDataReference(jwt)).build());
+        assertTrue(testSubject.get(AGREEMENT_ID, initiateTransfer).isDone());
+
+        // Tokens are not used within the last seconds before their expiry
+        when(clock.instant()).thenReturn(NOW.plus(Duration.ofSeconds(55)));
+        assertFalse(testSubject.get(AGREEMENT_ID, initiateTransfer).isDone());
+        assertEquals(2, initiatedTransfers.get());
+    }
+
+
+    @Test
+    void testEndedTransferEvictsReference() {
+        var process = consumerProcess("process");
+        testSubject.get(AGREEMENT_ID, initiateTransfer);
+        testSubject.started(process, TransferProcessStartedData.Builder.newInstance().dataAddress(endpointDataReference("token")).build());
+
+        testSubject.terminated(process);
+
+        assertFalse(testSubject.get(AGREEMENT_ID, initiateTransfer).isDone());
+        assertEquals(2, initiatedTransfers.get());
+    }
+
+
+    @Test
+    void testEvictedReferenceTerminatesTransfer() {
+        var process = consumerProcess("process");
+        testSubject.get(AGREEMENT_ID, initiateTransfer);
+        testSubject.started(process, TransferProcessStartedData.Builder.newInstance().dataAddress(endpointDataReference("token")).build());
+
+        testSubject.evict(AGREEMENT_ID);
+        var read = testSubject.get(AGREEMENT_ID, initiateTransfer);
+        assertEquals(List.of("process"), terminatedTransfers);
+
+        // The end of the terminated transfer does not fail the read waiting for its replacement
+        testSubject.terminated(process);
+        assertFalse(read.isDone());
+
+        var reference = endpointDataReference("new token");
+        testSubject.started(consumerProcess("new process"), TransferProcessStartedData.Builder.newInstance().dataAddress(reference).build());
+        assertSame(reference, read.join());
+    }
+
+
+    @Test
+    void testReplacedReferenceTerminatesTransfer() {
+        testSubject.started(consumerProcess("process"), TransferProcessStartedData.Builder.newInstance().dataAddress(endpointDataReference("token")).build());
+        testSubject.started(consumerProcess("new process"), TransferProcessStartedData.Builder.newInstance().dataAddress(endpointDataReference("new token")).build());
+
+        assertEquals(List.of("process"), terminatedTransfers);
+        assertEquals("new token", testSubject.get(AGREEMENT_ID, initiateTransfer).join().getStringProperty(EndpointDataReferenceCache.AUTHORIZATION));
+    }
+
+
+    @Test
+    void testFailedInitiationFailsRead() {
+        var read = testSubject.get(AGREEMENT_ID, agreementId -> CommandResult.notExecutable("not executable"));
+
+        assertTrue(read.isCompletedExceptionally());
+        // The failed read does not block the next one
+        testSubject.get(AGREEMENT_ID, initiateTransfer);
+        assertEquals(1, initiatedTransfers.get());
+    }
+
+
+    private static DataAddress endpointDataReference(String authorization) {
+        return DataAddress.Builder.newInstance()
+                .type("https://w3id.org/idsa/v4.1/HTTP")
+                .property(EndpointDataReferenceCache.ENDPOINT, "http://provider/public")
+                .property(EndpointDataReferenceCache.AUTHORIZATION, authorization)
+                .build();
+    }
+
+
+    private static TransferProcess consumerProcess(String id) {
+        var process = mock(TransferProcess.class);
+        when(process.getId()).thenReturn(id);
+        when(process.getContractId()).thenReturn(AGREEMENT_ID);
+        when(process.getType()).thenReturn(TransferProcess.Type.CONSUMER);
+        return process;
+    }
+}
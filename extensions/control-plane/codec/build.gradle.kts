@@ -1,5 +1,6 @@
 plugins {
     id("buildsrc.java-library")
+    alias(libs.plugins.jmh)
 }
 
 dependencies {
@@ -9,8 +10,21 @@ dependencies {
     implementation(libs.edc.query.lib) // CriterionOperatorRegistry
 
     testImplementation(testFixtures(project(":extensions:common:aas-lib")))
+
+    testImplementation(libs.edc.json.ld.lib) // TitaniumJsonLd as reference expansion
+
+    jmh(libs.edc.json.ld.lib) // TitaniumJsonLd
+    jmh(libs.edc.json.lib) // JacksonTypeManager
 }
 
 tasks.test {
     useJUnitPlatform()
 }
+
+jmh {
+    // Run with ./gradlew :extensions:control-plane:codec:jmh
+    jmhVersion = libs.versions.jmh.get()
+    warmupIterations = 2
+    iterations = 5
+    fork = 1
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.codec;
+
+import org.eclipse.edc.connector.controlplane.asset.spi.domain.Asset;
+import org.eclipse.edc.connector.controlplane.contract.spi.types.offer.ContractDefinition;
+import org.eclipse.edc.connector.controlplane.policy.spi.PolicyDefinition;
+import org.eclipse.edc.json.JacksonTypeManager;
+import org.eclipse.edc.jsonld.TitaniumJsonLd;
+import org.eclipse.edc.participant.spi.ParticipantIdMapper;
+import org.eclipse.edc.query.CriterionOperatorRegistryImpl;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.eclipse.edc.transform.TypeTransformerRegistryImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.eclipse.edc.spi.constants.CoreConstants.EDC_NAMESPACE;
+import static org.eclipse.edc.spi.constants.CoreConstants.EDC_PREFIX;
+
+
+/**
+ * Compares deserialization of management API responses using full JSON-LD expansion with the fast path for compacted
+ * entities. Run with {@code ./gradlew :extensions:control-plane:codec:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CodecBenchmark {
+
+    private static final String CONTEXT = """
+            "@context": {
+                "@vocab": "https://w3id.org/edc/v0.0.1/ns/",
+                "edc": "https://w3id.org/edc/v0.0.1/ns/",
+                "odrl": "http://www.w3.org/ns/odrl/2/"
+            }""";
+
+    private static final String ASSET = """
+            {
+                "@id": "asset-1",
+                "@type": "Asset",
+                "properties": {
+                    "id": "asset-1",
+                    "name": "Submodel Nameplate",
+                    "contenttype": "application/json",
+                    "https://admin-shell.io/aas/3/0/Referable/idShort": "Nameplate",
+                    "https://admin-shell.io/aas/3/0/HasSemantics/semanticId": {
+                        "https://admin-shell.io/aas/3/0/Reference/type": "ExternalReference",
+                        "https://admin-shell.io/aas/3/0/Reference/keys": [
+                            {
+                                "https://admin-shell.io/aas/3/0/Key/type": "GlobalReference",
+                                "https://admin-shell.io/aas/3/0/Key/value": "https://admin-shell.io/zvei/nameplate/2/0/Nameplate"
+                            }
+                        ]
+                    }
+                },
+                "privateProperties": {
+                    "creator": "EDC4AAS"
+                },
+                "dataAddress": {
+                    "@type": "DataAddress",
+                    "type": "AasData",
+                    "baseUrl": "https://localhost:8443/api/v3.0",
+                    "method": "GET",
+                    "https://admin-shell.io/aas/3/0/reference": "[ModelRef](Submodel)https://example.com/ids/sm/1"
+                },
+                %s
+            }""".formatted(CONTEXT);
+
+    private static final String POLICY_DEFINITION = """
+            {
+                "@id": "policy-1",
+                "@type": "PolicyDefinition",
+                "policy": {
+                    "@id": "policy-1-policy",
+                    "@type": "odrl:Set",
+                    "odrl:permission": [
+                        {
+                            "odrl:action": {
+                                "@id": "odrl:use"
+                            }
+                        }
+                    ],
+                    "odrl:prohibition": [],
+                    "odrl:obligation": []
+                },
+                %s
+            }""".formatted(CONTEXT);
+
+    private static final String CONTRACT_DEFINITION = """
+            {
+                "@id": "contract-definition-1",
+                "@type": "ContractDefinition",
+                "accessPolicyId": "policy-1",
+                "contractPolicyId": "policy-1",
+                "assetsSelector": [
+                    {
+                        "@type": "Criterion",
+                        "operandLeft": "https://w3id.org/edc/v0.0.1/ns/id",
+                        "operator": "=",
+                        "operandRight": "asset-1"
+                    }
+                ],
+                %s
+            }""".formatted(CONTEXT);
+
+    private static final String ASSET_LIST = "[%s]".formatted(String.join(",", Collections.nCopies(50, ASSET)));
+
+    private Codec titaniumCodec;
+    private Codec fastExpansionCodec;
+
+
+    @Setup
+    public void setUp() {
+        var registry = new TypeTransformerRegistryImpl();
+        CodecExtension.registerTransformers(registry, new IdentityParticipantIdMapper(), new JacksonTypeManager(),
+                new CriterionOperatorRegistryImpl());
+
+        var jsonLd = new TitaniumJsonLd(new ConsoleMonitor());
+        jsonLd.registerNamespace(EDC_PREFIX, EDC_NAMESPACE);
+        jsonLd.registerNamespace("odrl", "http://www.w3.org/ns/odrl/2/");
+
+        titaniumCodec = new Codec(registry, jsonLd, false);
+        fastExpansionCodec = new Codec(registry, jsonLd, true);
+    }
+
+
+    @Benchmark
+    public Asset deserializeAssetTitanium() {
+        return titaniumCodec.deserialize(ASSET, Asset.class).orElseThrow(failure -> new IllegalStateException(failure.getFailureDetail()));
+    }
+
+
+    @Benchmark
+    public Asset deserializeAssetFastExpansion() {
+        return fastExpansionCodec.deserialize(ASSET, Asset.class).orElseThrow(failure -> new IllegalStateException(failure.getFailureDetail()));
+    }
+
+
+    @Benchmark
+    public PolicyDefinition deserializePolicyDefinitionTitanium() {
+        return titaniumCodec.deserialize(POLICY_DEFINITION, PolicyDefinition.class).orElseThrow(failure -> new IllegalStateException(failure.getFailureDetail()));
+    }
+
+
+    @Benchmark
+    public PolicyDefinition deserializePolicyDefinitionFastExpansion() {
+        return fastExpansionCodec.deserialize(POLICY_DEFINITION, PolicyDefinition.class).orElseThrow(failure -> new IllegalStateException(failure.getFailureDetail()));
+    }
+
+
+    @Benchmark
+    public ContractDefinition deserializeContractDefinitionTitanium() {
+        return titaniumCodec.deserialize(CONTRACT_DEFINITION, ContractDefinition.class).orElseThrow(failure -> new IllegalStateException(failure.getFailureDetail()));
+    }
+
+
+    @Benchmark
+    public ContractDefinition deserializeContractDefinitionFastExpansion() {
+        return fastExpansionCodec.deserialize(CONTRACT_DEFINITION, ContractDefinition.class).orElseThrow(failure -> new IllegalStateException(failure.getFailureDetail()));
+    }
+
+
+    @Benchmark
+    public List<Asset> deserializeAssetListTitanium() {
+        return titaniumCodec.deserializeList(ASSET_LIST, Asset.class).orElseThrow(failure -> new IllegalStateException(failure.getFailureDetail()));
+    }
+
+
+    @Benchmark
+    public List<Asset> deserializeAssetListFastExpansion() {
+        return fastExpansionCodec.deserializeList(ASSET_LIST, Asset.class).orElseThrow(failure -> new IllegalStateException(failure.getFailureDetail()));
+    }
+
+
+    private static class IdentityParticipantIdMapper implements ParticipantIdMapper {
+
+        @Override
+        public String toIri(String participantId) {
+            return participantId;
+        }
+
+
+        @Override
+        public String fromIri(String iri) {
+            return iri;
+        }
+    }
+}
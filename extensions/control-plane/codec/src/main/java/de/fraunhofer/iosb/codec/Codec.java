@@ -17,6 +17,7 @@ package de.fraunhofer.iosb.codec;
 
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
+import jakarta.json.JsonReaderFactory;
 import org.eclipse.edc.jsonld.spi.JsonLd;
 import org.eclipse.edc.spi.EdcException;
 import org.eclipse.edc.spi.entity.Entity;
@@ -27,6 +28,10 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.StringReader;
 import java.util.List;
+import java.util.Map;
+
+import static org.eclipse.edc.spi.constants.CoreConstants.EDC_NAMESPACE;
+import static org.eclipse.edc.spi.constants.CoreConstants.EDC_PREFIX;
 
 
 public class Codec {
@@ -35,21 +40,53 @@ public class Codec {
     private static final String EXPANSION_ERROR = "Failed expanding json-ld %s: %s";
     private static final String SERIALIZATION_ERROR = "Failed serializing %s: %s";
 
+    private static final String ODRL_PREFIX = "odrl";
+    private static final String ODRL_NAMESPACE = "http://www.w3.org/ns/odrl/2/";
+    // Context of compacted entities returned by the management API
+    private static final JsonObject MANAGEMENT_API_CONTEXT = Json.createObjectBuilder()
+            .add("@vocab", EDC_NAMESPACE)
+            .add(EDC_PREFIX, EDC_NAMESPACE)
+            .add(ODRL_PREFIX, ODRL_NAMESPACE)
+            .build();
+    private static final JsonReaderFactory READER_FACTORY = Json.createReaderFactory(Map.of());
+
     private final TypeTransformerRegistry transformers;
     private final JsonLd jsonLd;
+    private final CompactedJsonLdExpander compactedExpander;
 
 
     public Codec(TypeTransformerRegistry transformers, JsonLd jsonLd) {
+        this(transformers, jsonLd, true);
+    }
+
+
+    /**
+     * Class constructor
+     *
+     * @param transformers Transformers from/to JsonObjects
+     * @param jsonLd JSON-LD compaction/expansion
+     * @param fastExpansion If true, compacted entities as returned by the management API are expanded without the full
+     *         JSON-LD expansion algorithm whenever their shape allows it.
+     */
+    public Codec(TypeTransformerRegistry transformers, JsonLd jsonLd, boolean fastExpansion) {
         this.transformers = transformers;
         this.jsonLd = jsonLd;
+
+        if (fastExpansion) {
+            this.compactedExpander = new CompactedJsonLdExpander();
+            this.compactedExpander.preload(MANAGEMENT_API_CONTEXT);
+        }
+        else {
+            this.compactedExpander = null;
+        }
     }
 
 
     public <T extends Entity> Result<List<T>> deserializeList(String entitiesJson, Class<T> type) {
-        var assetsJsonArray = Json.createReader(new StringReader(entitiesJson)).readArray();
+        var assetsJsonArray = READER_FACTORY.createReader(new StringReader(entitiesJson)).readArray();
 
         var deserializedAssets = assetsJsonArray.stream()
-                .map(asset -> deserialize(asset.toString(), type))
+                .map(asset -> deserialize(asset.asJsonObject(), type))
                 .toList();
 
         // If any of the deserializations failed, fail the whole operation
@@ -67,9 +104,12 @@ public class Codec {
 
 
     public <T> Result<T> deserialize(String entityJson, Class<T> type) {
-        var assetJsonObject = Json.createReader(new StringReader(entityJson)).readObject();
+        return deserialize(READER_FACTORY.createReader(new StringReader(entityJson)).readObject(), type);
+    }
+
 
-        var expandedResult = jsonLd.expand(assetJsonObject);
+    private <T> Result<T> deserialize(JsonObject entityJsonObject, Class<T> type) {
+        var expandedResult = expand(entityJsonObject);
 
         if (expandedResult.failed()) {
             Failure failure = expandedResult.getFailure();
@@ -81,6 +121,17 @@ public class Codec {
     }
 
 
+    private Result<JsonObject> expand(JsonObject compacted) {
+        if (compactedExpander != null) {
+            var expanded = compactedExpander.expand(compacted);
+            if (expanded.isPresent()) {
+                return Result.success(expanded.get());
+            }
+        }
+        return jsonLd.expand(compacted);
+    }
+
+
     /**
      * Try to serialize any POJO into jakarta JsonObjects using EDC JsonObjectFrom*Transformers.
      *
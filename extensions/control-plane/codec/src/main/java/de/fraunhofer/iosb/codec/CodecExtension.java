@@ -33,6 +33,7 @@ import org.eclipse.edc.runtime.metamodel.annotation.Extension;
 import org.eclipse.edc.runtime.metamodel.annotation.Inject;
 import org.eclipse.edc.runtime.metamodel.annotation.Provider;
 import org.eclipse.edc.runtime.metamodel.annotation.Provides;
+import org.eclipse.edc.runtime.metamodel.annotation.Setting;
 import org.eclipse.edc.spi.query.CriterionOperatorRegistry;
 import org.eclipse.edc.spi.system.ServiceExtension;
 import org.eclipse.edc.spi.system.ServiceExtensionContext;
@@ -61,6 +62,10 @@ public class CodecExtension implements ServiceExtension {
 
     public static final String NAME = "Codec Extension";
 
+    @Setting(description = "Expand compacted management API entities without full JSON-LD expansion if their shape allows it",
+            key = "edc.controlplane.codec.fastExpansion", defaultValue = "true")
+    private boolean fastExpansion;
+
     @Inject(required = false)
     private CriterionOperatorRegistry criterionOperatorRegistry;
     @Inject
@@ -75,17 +80,19 @@ public class CodecExtension implements ServiceExtension {
 
     @Override
     public void initialize(ServiceExtensionContext context) {
-        registerTransformers();
+        var operatorRegistry = Objects.requireNonNullElse(criterionOperatorRegistry, new CriterionOperatorRegistryImpl());
+        registerTransformers(typeTransformerRegistry, participantIdMapper, typeManager, operatorRegistry);
     }
 
 
     @Provider(isDefault = true)
     public Codec provideCodec() {
-        return new Codec(typeTransformerRegistry, jsonLd);
+        return new Codec(typeTransformerRegistry, jsonLd, fastExpansion);
     }
 
 
-    private void registerTransformers() {
+    static void registerTransformers(TypeTransformerRegistry typeTransformerRegistry, ParticipantIdMapper participantIdMapper,
+                                     TypeManager typeManager, CriterionOperatorRegistry operatorRegistry) {
         var jsonFactory = Json.createBuilderFactory(Map.of());
         // Register (de)serializers
         OdrlTransformersFactory.jsonObjectToOdrlTransformers(participantIdMapper)
@@ -98,7 +105,6 @@ public class CodecExtension implements ServiceExtension {
         typeTransformerRegistry.register(new JsonObjectFromAssetTransformer(jsonFactory, typeManager, JSON_LD));
         typeTransformerRegistry.register(new JsonObjectFromDataAddressTransformer(jsonFactory, typeManager, JSON_LD));
         typeTransformerRegistry.register(new JsonObjectToActionTransformer());
-        var operatorRegistry = Objects.requireNonNullElse(criterionOperatorRegistry, new CriterionOperatorRegistryImpl());
         typeTransformerRegistry.register(new JsonObjectToCriterionTransformer(operatorRegistry));
         typeTransformerRegistry.register(new JsonObjectToPolicyTransformer(participantIdMapper));
         typeTransformerRegistry.register(new JsonObjectToPolicyDefinitionTransformer());
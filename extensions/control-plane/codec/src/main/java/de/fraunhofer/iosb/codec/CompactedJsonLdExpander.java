@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.codec;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+
+/**
+ * Expands compacted JSON-LD documents as returned by the EDC management API (Asset, ContractDefinition,
+ * PolicyDefinition, ...) without running the full JSON-LD expansion algorithm.
+ * <p>
+ * Only documents whose top-level context consists of an explicit vocabulary mapping and prefix definitions are
+ * handled. Processed contexts are cached, so the context of a response is only parsed once. If a document uses any
+ * other JSON-LD feature (nested contexts, lists, graphs, JSON literals, ...), {@link #expand(JsonObject)} returns an
+ * empty optional and the caller has to fall back to the full expansion.
+ */
+class CompactedJsonLdExpander {
+
+    private static final String CONTEXT = "@context";
+    private static final String VOCAB = "@vocab";
+    private static final String ID = "@id";
+    private static final String TYPE = "@type";
+    private static final String VALUE = "@value";
+    private static final String LANGUAGE = "@language";
+    private static final String JSON = "@json";
+    private static final String BLANK_NODE_PREFIX = "_";
+
+    private static final Set<Character> GEN_DELIMS = Set.of(':', '/', '?', '#', '[', ']', '@');
+    private static final Pattern ABSOLUTE_IRI = Pattern.compile("^[A-Za-z][A-Za-z0-9+.-]*:[^\\s<>\"{}|\\\\^`]*$");
+    private static final int MAX_CACHED_CONTEXTS = 64;
+
+    private final Map<JsonValue, Optional<ExpansionContext>> contexts = new ConcurrentHashMap<>();
+
+
+    /**
+     * Parse a context ahead of time so that the first document using it is expanded without parsing the context.
+     *
+     * @param context The value of a compacted document's "@context" entry.
+     * @return True if the context can be handled by this expander.
+     */
+    boolean preload(JsonValue context) {
+        return contextFor(context).isPresent();
+    }
+
+
+    /**
+     * Expand a compacted document. The result equals the first element of the full JSON-LD expansion result.
+     *
+     * @param document Compacted JSON-LD document.
+     * @return The expanded document or empty if the document contains constructs not supported by this expander.
+     */
+    Optional<JsonObject> expand(JsonObject document) {
+        var context = document.get(CONTEXT);
+        if (context == null) {
+            return Optional.empty();
+        }
+
+        return contextFor(context).flatMap(expansionContext -> {
+            try {
+                var expanded = expandNode(document, expansionContext, true);
+                // Full expansion drops top-level nodes without content
+                if (expanded.isEmpty() || (expanded.size() == 1 && expanded.containsKey(ID))) {
+                    return Optional.empty();
+                }
+                return Optional.of(expanded);
+            }
+            catch (UnsupportedShapeException unsupportedShape) {
+                return Optional.empty();
+            }
+        });
+    }
+
+
+    private Optional<ExpansionContext> contextFor(JsonValue context) {
+        var cached = contexts.get(context);
+        if (cached != null) {
+            return cached;
+        }
+
+        var parsed = ExpansionContext.parse(context);
+        if (contexts.size() < MAX_CACHED_CONTEXTS) {
+            contexts.put(context, parsed);
+        }
+        return parsed;
+    }
+
+
+    private JsonObject expandNode(JsonObject node, ExpansionContext context, boolean topLevel) {
+        Map<String, List<JsonValue>> properties = new LinkedHashMap<>();
+        var builder = Json.createObjectBuilder();
+
+        for (var entry: node.entrySet()) {
+            var key = entry.getKey();
+            var value = entry.getValue();
+
+            if (key.startsWith("@")) {
+                switch (key) {
+                    case CONTEXT -> {
+                        if (!topLevel) {
+                            throw new UnsupportedShapeException();
+                        }
+                    }
+                    case ID -> builder.add(ID, context.expandIri(asString(value), false));
+                    case TYPE -> builder.add(TYPE, expandTypes(value, context));
+                    default -> throw new UnsupportedShapeException();
+                }
+                continue;
+            }
+
+            if (value.getValueType() == JsonValue.ValueType.NULL) {
+                continue;
+            }
+
+            var expandedKey = context.expandIri(key, true);
+            var expandedValues = properties.computeIfAbsent(expandedKey, k -> new ArrayList<>());
+
+            if (value instanceof JsonArray array) {
+                for (var item: array) {
+                    if (item instanceof JsonArray) {
+                        throw new UnsupportedShapeException();
+                    }
+                    if (item.getValueType() != JsonValue.ValueType.NULL) {
+                        expandedValues.add(expandValue(item, context));
+                    }
+                }
+            }
+            else {
+                expandedValues.add(expandValue(value, context));
+            }
+        }
+
+        properties.forEach((key, values) -> {
+            JsonArrayBuilder arrayBuilder = Json.createArrayBuilder();
+            values.forEach(arrayBuilder::add);
+            builder.add(key, arrayBuilder);
+        });
+
+        return builder.build();
+    }
+
+
+    private JsonValue expandValue(JsonValue value, ExpansionContext context) {
+        if (value instanceof JsonObject object) {
+            if (object.containsKey(VALUE)) {
+                return expandValueObject(object, context);
+            }
+            return expandNode(object, context, false);
+        }
+        return Json.createObjectBuilder().add(VALUE, value).build();
+    }
+
+
+    private JsonObject expandValueObject(JsonObject valueObject, ExpansionContext context) {
+        JsonObjectBuilder builder = Json.createObjectBuilder();
+        for (var entry: valueObject.entrySet()) {
+            switch (entry.getKey()) {
+                case VALUE -> {
+                    var valueType = entry.getValue().getValueType();
+                    if (valueType == JsonValue.ValueType.OBJECT || valueType == JsonValue.ValueType.ARRAY ||
+                            valueType == JsonValue.ValueType.NULL) {
+                        throw new UnsupportedShapeException();
+                    }
+                    builder.add(VALUE, entry.getValue());
+                }
+                case TYPE -> {
+                    var type = asString(entry.getValue());
+                    if (JSON.equals(type)) {
+                        throw new UnsupportedShapeException();
+                    }
+                    builder.add(TYPE, context.expandIri(type, true));
+                }
+                case LANGUAGE -> builder.add(LANGUAGE, asString(entry.getValue()));
+                default -> throw new UnsupportedShapeException();
+            }
+        }
+        return builder.build();
+    }
+
+
+    private JsonArray expandTypes(JsonValue types, ExpansionContext context) {
+        var arrayBuilder = Json.createArrayBuilder();
+        if (types instanceof JsonArray array) {
+            array.forEach(type -> arrayBuilder.add(context.expandIri(asString(type), true)));
+        }
+        else {
+            arrayBuilder.add(context.expandIri(asString(types), true));
+        }
+        return arrayBuilder.build();
+    }
+
+
+    private static String asString(JsonValue value) {
+        if (value instanceof JsonString string) {
+            return string.getString();
+        }
+        throw new UnsupportedShapeException();
+    }
+
+
+    /**
+     * Vocabulary mapping and prefix definitions of a simple JSON-LD context.
+     */
+    private record ExpansionContext(String vocab, Map<String, String> terms) {
+
+        static Optional<ExpansionContext> parse(JsonValue context) {
+            if (!(context instanceof JsonObject contextObject) || !(contextObject.get(VOCAB) instanceof JsonString vocab)) {
+                return Optional.empty();
+            }
+
+            Map<String, String> terms = new HashMap<>();
+            for (var entry: contextObject.entrySet()) {
+                if (VOCAB.equals(entry.getKey())) {
+                    continue;
+                }
+                if (entry.getKey().startsWith("@") || entry.getKey().contains(":") ||
+                        !(entry.getValue() instanceof JsonString iri) ||
+                        !ABSOLUTE_IRI.matcher(iri.getString()).matches() ||
+                        !GEN_DELIMS.contains(iri.getString().charAt(iri.getString().length() - 1))) {
+                    // Anything but simple prefix definitions needs the full context processing algorithm
+                    return Optional.empty();
+                }
+                terms.put(entry.getKey(), iri.getString());
+            }
+
+            if (!ABSOLUTE_IRI.matcher(vocab.getString()).matches()) {
+                return Optional.empty();
+            }
+
+            return Optional.of(new ExpansionContext(vocab.getString(), Map.copyOf(terms)));
+        }
+
+
+        String expandIri(String value, boolean vocabRelative) {
+            if (value.startsWith("@")) {
+                throw new UnsupportedShapeException();
+            }
+
+            if (vocabRelative && terms.containsKey(value)) {
+                return terms.get(value);
+            }
+
+            var colon = value.indexOf(':');
+            if (colon >= 0) {
+                var prefix = value.substring(0, colon);
+                var suffix = value.substring(colon + 1);
+                if (BLANK_NODE_PREFIX.equals(prefix) || suffix.startsWith("//")) {
+                    return value;
+                }
+                if (terms.containsKey(prefix)) {
+                    return terms.get(prefix).concat(suffix);
+                }
+                if (ABSOLUTE_IRI.matcher(value).matches()) {
+                    return value;
+                }
+                // Neither a compact IRI nor an IRI: behaviour of full expansion depends on IRI validation
+                throw new UnsupportedShapeException();
+            }
+
+            // Relative IRIs are kept as-is when expanding without base IRI
+            return vocabRelative ? vocab.concat(value) : value;
+        }
+    }
+
+
+    private static final class UnsupportedShapeException extends RuntimeException {
+
+        UnsupportedShapeException() {
+            super(null, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.codec;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import org.eclipse.edc.jsonld.TitaniumJsonLd;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class CompactedJsonLdExpanderTest {
+
+    private static final String CONTEXT = """
+            "@context": {
+                "@vocab": "https://w3id.org/edc/v0.0.1/ns/",
+                "edc": "https://w3id.org/edc/v0.0.1/ns/",
+                "odrl": "http://www.w3.org/ns/odrl/2/"
+            }""";
+
+    private CompactedJsonLdExpander testSubject;
+    private TitaniumJsonLd titaniumJsonLd;
+
+
+    @BeforeEach
+    void setUp() {
+        testSubject = new CompactedJsonLdExpander();
+        titaniumJsonLd = new TitaniumJsonLd(new ConsoleMonitor());
+    }
+
+
+    @Test
+    void expand_asset_sameAsFullExpansion() {
+        assertSameAsFullExpansion("""
+                {
+                    "@id": "asset-1",
+                    "@type": "Asset",
+                    "properties": {
+                        "id": "asset-1",
+                        "contenttype": "application/json",
+                        "https://admin-shell.io/aas/3/0/Referable/idShort": "Nameplate",
+                        "aas:Referable/displayName": ["a", "b", null],
+                        "count": 42,
+                        "active": true,
+                        "removed": null
+                    },
+                    "privateProperties": {},
+                    "dataAddress": {
+                        "@type": "DataAddress",
+                        "type": "AasData",
+                        "baseUrl": "https://localhost:8443/api/v3.0",
+                        "edc:method": "GET"
+                    },
+                    %s
+                }""".formatted(CONTEXT));
+    }
+
+
+    @Test
+    void expand_policyDefinition_sameAsFullExpansion() {
+        assertSameAsFullExpansion("""
+                {
+                    "@id": "policy-1",
+                    "@type": "PolicyDefinition",
+                    "policy": {
+                        "@id": "urn:uuid:2e5c8a4e",
+                        "@type": ["odrl:Set"],
+                        "odrl:permission": {
+                            "odrl:action": {
+                                "@id": "odrl:use"
+                            },
+                            "odrl:constraint": {
+                                "odrl:leftOperand": {
+                                    "@id": "edc:inForceDate"
+                                },
+                                "odrl:operator": {
+                                    "@id": "odrl:gteq"
+                                },
+                                "odrl:rightOperand": {
+                                    "@value": "2025-01-01T00:00:00Z",
+                                    "@type": "http://www.w3.org/2001/XMLSchema#dateTime"
+                                }
+                            }
+                        },
+                        "odrl:prohibition": [],
+                        "odrl:obligation": []
+                    },
+                    %s
+                }""".formatted(CONTEXT));
+    }
+
+
+    @Test
+    void expand_contractDefinition_sameAsFullExpansion() {
+        assertSameAsFullExpansion("""
+                {
+                    "@id": "contract-definition-1",
+                    "@type": "ContractDefinition",
+                    "accessPolicyId": "policy-1",
+                    "contractPolicyId": "policy-1",
+                    "assetsSelector": [
+                        {
+                            "@type": "Criterion",
+                            "operandLeft": "https://w3id.org/edc/v0.0.1/ns/id",
+                            "operator": "=",
+                            "operandRight": "asset-1"
+                        }
+                    ],
+                    %s
+                }""".formatted(CONTEXT));
+    }
+
+
+    @Test
+    void expand_nestedContext_fallsBack() {
+        var document = parse("""
+                {
+                    "@id": "asset-1",
+                    "@type": "Asset",
+                    "properties": {
+                        "@context": {
+                            "dct": "http://purl.org/dc/terms/"
+                        },
+                        "dct:title": "title"
+                    },
+                    %s
+                }""".formatted(CONTEXT));
+
+        assertTrue(testSubject.expand(document).isEmpty());
+    }
+
+
+    @Test
+    void expand_termDefinitionInContext_fallsBack() {
+        var document = parse("""
+                {
+                    "@id": "asset-1",
+                    "@type": "Asset",
+                    "@context": {
+                        "@vocab": "https://w3id.org/edc/v0.0.1/ns/",
+                        "properties": {
+                            "@id": "https://w3id.org/edc/v0.0.1/ns/properties",
+                            "@container": "@set"
+                        }
+                    }
+                }""");
+
+        assertTrue(testSubject.expand(document).isEmpty());
+    }
+
+
+    @Test
+    void expand_noVocabulary_fallsBack() {
+        var document = parse("""
+                {
+                    "@id": "asset-1",
+                    "@type": "Asset",
+                    "@context": {
+                        "edc": "https://w3id.org/edc/v0.0.1/ns/"
+                    }
+                }""");
+
+        assertTrue(testSubject.expand(document).isEmpty());
+    }
+
+
+    @Test
+    void expand_jsonLiteral_fallsBack() {
+        var document = parse("""
+                {
+                    "@id": "asset-1",
+                    "@type": "Asset",
+                    "properties": {
+                        "payload": {
+                            "@value": {
+                                "key": "value"
+                            },
+                            "@type": "@json"
+                        }
+                    },
+                    %s
+                }""".formatted(CONTEXT));
+
+        assertTrue(testSubject.expand(document).isEmpty());
+    }
+
+
+    private void assertSameAsFullExpansion(String compacted) {
+        var document = parse(compacted);
+
+        var expected = titaniumJsonLd.expand(document).getContent();
+        var actual = testSubject.expand(document);
+
+        assertTrue(actual.isPresent());
+        assertEquals(expected, actual.get());
+    }
+
+
+    private JsonObject parse(String json) {
+        return Json.createReader(new StringReader(json)).readObject();
+    }
+}
@@ -30,6 +30,8 @@ import de.fraunhofer.iosb.app.model.configuration.Configuration;
 import de.fraunhofer.iosb.app.stores.repository.AasServerStore;
 import de.fraunhofer.iosb.client.exception.UnauthorizedException;
 import de.fraunhofer.iosb.codec.Codec;
+import de.fraunhofer.iosb.dataplane.aas.spi.AasBaseUrlRegistry;
+import de.fraunhofer.iosb.dataplane.aas.spi.LocalAasServiceRegistry;
 import org.eclipse.edc.connector.controlplane.asset.spi.index.AssetIndex;
 import org.eclipse.edc.connector.controlplane.contract.spi.offer.store.ContractDefinitionStore;
 import org.eclipse.edc.connector.controlplane.policy.spi.store.PolicyDefinitionStore;
@@ -89,6 +91,10 @@ public class AasExtension implements ServiceExtension {
     private JsonLd jsonLd;
     @Inject(required = false)
     private Vault vault;
+    @Inject(required = false) // Provided by a data plane running in the same runtime
+    private LocalAasServiceRegistry localAasServiceRegistry;
+    @Inject(required = false) // Provided by a data plane running in the same runtime
+    private AasBaseUrlRegistry aasBaseUrlRegistry;
     private RepositoryController repositoryController;
     private RegistryController registryController;
     private Supplier<String> participantId;
@@ -102,13 +108,13 @@ public class AasExtension implements ServiceExtension {
         monitor = context.getMonitor().withPrefix(NAME);
         webService.registerResource(new ConfigurationController(context.getConfig(EDC_SETTINGS_PREFIX), monitor));
 
-        AasServerStore aasServerStore = new AasServerStore();
+        AasServerStore aasServerStore = new AasServerStore(aasBaseUrlRegistry);
 
         participantId = () -> singleParticipantContextSupplier.get()
                 .orElseThrow(msg -> new EdcException(msg.getFailureDetail())).getParticipantContextId();
 
         repositoryController = new RepositoryController(monitor, aasServerStore, hostname, new EdcStoreHandler(assetIndex, contractDefinitionStore, participantId), vault,
-                oauth2Client);
+                oauth2Client, localAasServiceRegistry);
         registryController = new RegistryController(monitor, aasServerStore, new EdcStoreHandler(assetIndex, contractDefinitionStore, participantId), vault,
                 oauth2Client);
 
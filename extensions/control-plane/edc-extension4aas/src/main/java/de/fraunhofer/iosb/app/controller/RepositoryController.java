@@ -27,6 +27,7 @@ import de.fraunhofer.iosb.app.handler.edc.EdcStoreHandler;
 import de.fraunhofer.iosb.app.stores.repository.AasServerStore;
 import de.fraunhofer.iosb.client.repository.local.impl.LocalFaaastRepositoryClient;
 import de.fraunhofer.iosb.client.repository.remote.impl.RemoteAasRepositoryClient;
+import de.fraunhofer.iosb.dataplane.aas.spi.LocalAasServiceRegistry;
 import de.fraunhofer.iosb.ilt.faaast.client.exception.ConnectivityException;
 import de.fraunhofer.iosb.ilt.faaast.client.exception.ForbiddenException;
 import de.fraunhofer.iosb.ilt.faaast.client.exception.StatusCodeException;
@@ -51,6 +52,7 @@ import org.eclipse.edc.spi.security.Vault;
 import org.eclipse.edc.spi.system.Hostname;
 import org.eclipse.edc.web.spi.exception.BadGatewayException;
 import org.eclipse.edc.web.spi.exception.NotAuthorizedException;
+import org.jetbrains.annotations.Nullable;
 
 import java.net.URI;
 import java.util.Optional;
@@ -76,9 +78,18 @@ public class RepositoryController extends AbstractAasServerController {
                                 Hostname hostname,
                                 EdcStoreHandler edcStoreHandler,
                                 Vault vault, Oauth2Client oauth2Client) {
+        this(monitor, aasServerStore, hostname, edcStoreHandler, vault, oauth2Client, null);
+    }
+
+
+    public RepositoryController(Monitor monitor, AasServerStore aasServerStore,
+                                Hostname hostname,
+                                EdcStoreHandler edcStoreHandler,
+                                Vault vault, Oauth2Client oauth2Client,
+                                @Nullable LocalAasServiceRegistry localServices) {
         super(monitor, aasServerStore, new VariableRateScheduler(1, monitor), edcStoreHandler, vault, oauth2Client);
-        // Use FA³ST to start repositories internally.
-        this.aasRepositoryManager = new FaaastRepositoryManager(monitor, hostname);
+        // Use FA³ST to start repositories internally. A co-located data plane reads from them in-process.
+        this.aasRepositoryManager = new FaaastRepositoryManager(monitor, hostname, localServices);
     }
 
 
@@ -16,6 +16,9 @@
 package de.fraunhofer.iosb.app.stores.repository;
 
 import de.fraunhofer.iosb.app.handler.aas.AasHandler;
+import de.fraunhofer.iosb.app.handler.aas.registry.RemoteAasRegistryHandler;
+import de.fraunhofer.iosb.dataplane.aas.spi.AasBaseUrlRegistry;
+import org.jetbrains.annotations.Nullable;
 
 import java.net.URI;
 import java.util.Set;
@@ -23,6 +26,45 @@ import java.util.Set;
 
 public class AasServerStore extends AasStore<AasHandler<?>> {
 
+    private final AasBaseUrlRegistry baseUrls;
+
+
+    public AasServerStore() {
+        this(null);
+    }
+
+
+    /**
+     * Class constructor
+     *
+     * @param baseUrls Receives the URLs of stored repositories, so that a data plane in the same runtime can keep
+     *         connections to them alive. Registries are not added, transfers never address them.
+     */
+    public AasServerStore(@Nullable AasBaseUrlRegistry baseUrls) {
+        this.baseUrls = baseUrls;
+    }
+
+
+    @Override
+    public boolean put(URI uri, AasHandler<?> handler) {
+        var added = super.put(uri, handler);
+        if (baseUrls != null && !(handler instanceof RemoteAasRegistryHandler)) {
+            baseUrls.register(uri.toString());
+        }
+        return added;
+    }
+
+
+    @Override
+    public AasHandler<?> remove(URI uri) {
+        var removed = super.remove(uri);
+        if (baseUrls != null && removed != null) {
+            baseUrls.unregister(uri.toString());
+        }
+        return removed;
+    }
+
+
     public boolean isStored(URI uri) {
         return store.containsKey(uri);
     }
@@ -7,6 +7,7 @@ dependencies {
 
     implementation(libs.edc.data.plane.spi)
     implementation(libs.edc.http.lib)
+    implementation(libs.edc.web.spi) // WebService, metrics endpoint
 
     testImplementation(testFixtures(project(":extensions:common:aas-lib")))
 
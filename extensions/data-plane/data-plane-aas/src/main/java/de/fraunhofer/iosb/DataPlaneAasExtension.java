@@ -15,23 +15,50 @@
  */
 package de.fraunhofer.iosb;
 
+import de.fraunhofer.iosb.aas.lib.AasConnectionPrewarming;
 import de.fraunhofer.iosb.aas.lib.AasDataProcessorFactory;
+import de.fraunhofer.iosb.aas.lib.http.AasHostBulkheads;
+import de.fraunhofer.iosb.aas.lib.http.AasRequestHedging;
+import de.fraunhofer.iosb.aas.lib.http.AasRequestPolicies;
+import de.fraunhofer.iosb.aas.lib.http.AasTransferMetrics;
 import de.fraunhofer.iosb.aas.lib.impl.AllAasDataProcessorFactory;
+import de.fraunhofer.iosb.dataplane.aas.api.AasMetricsController;
 import de.fraunhofer.iosb.dataplane.aas.pipeline.AasDataSinkFactory;
 import de.fraunhofer.iosb.dataplane.aas.pipeline.AasDataSourceFactory;
+import de.fraunhofer.iosb.dataplane.aas.pipeline.AasDeltaWrites;
+import de.fraunhofer.iosb.dataplane.aas.pipeline.AasOperationPolling;
+import de.fraunhofer.iosb.dataplane.aas.pipeline.AasResponseCache;
+import de.fraunhofer.iosb.dataplane.aas.spi.AasBaseUrlRegistry;
+import de.fraunhofer.iosb.dataplane.aas.spi.LocalAasServiceRegistry;
 import de.fraunhofer.iosb.ssl.SelfSignedCertificateRetriever;
 import de.fraunhofer.iosb.ssl.impl.DefaultSelfSignedCertificateRetriever;
 import de.fraunhofer.iosb.ssl.impl.NoOpSelfSignedCertificateRetriever;
+import de.fraunhofer.iosb.ssl.impl.PinnedCertificateRetriever;
 import dev.failsafe.RetryPolicy;
+import okhttp3.ConnectionPool;
 import okhttp3.OkHttpClient;
 import okhttp3.Response;
 import org.eclipse.edc.connector.dataplane.spi.pipeline.PipelineService;
 import org.eclipse.edc.runtime.metamodel.annotation.Extension;
 import org.eclipse.edc.runtime.metamodel.annotation.Inject;
 import org.eclipse.edc.runtime.metamodel.annotation.Provides;
+import org.eclipse.edc.spi.EdcException;
 import org.eclipse.edc.spi.monitor.Monitor;
 import org.eclipse.edc.spi.system.ServiceExtension;
 import org.eclipse.edc.spi.system.ServiceExtensionContext;
+import org.eclipse.edc.web.spi.WebService;
+import org.eclipse.edc.web.spi.configuration.ApiContext;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -48,7 +75,7 @@ import org.eclipse.edc.spi.system.ServiceExtensionContext;
  * </li>
  * </ul>
  */
-@Provides({ AasDataProcessorFactory.class })
+@Provides({ AasDataProcessorFactory.class, LocalAasServiceRegistry.class, AasBaseUrlRegistry.class, AasTransferMetrics.class })
 @Extension(value = DataPlaneAasExtension.NAME)
 public class DataPlaneAasExtension implements ServiceExtension {
 
@@ -56,6 +83,46 @@ public class DataPlaneAasExtension implements ServiceExtension {
 
     private static final String FOREIGN_SELF_SIGNED = "edc.dataplane.aas.acceptForeignSelfSignedCertificates";
     private static final String OWN_SELF_SIGNED = "edc.dataplane.aas.acceptOwnSelfSignedCertificates";
+    private static final String CERTIFICATE_REVALIDATION = "edc.dataplane.aas.certificateRevalidationInterval";
+    private static final String CERTIFICATE_PIN_STORE = "edc.dataplane.aas.certificatePinStore";
+    private static final String TRANSFER_THREADS = "edc.dataplane.aas.transferThreads";
+    private static final int DEFAULT_TRANSFER_THREADS = 8;
+    private static final String SINK_PARALLEL_PARTS = "edc.dataplane.aas.sink.maxParallelParts";
+    private static final int DEFAULT_SINK_PARALLEL_PARTS = 1;
+    private static final String SINK_DELTA_MAX_ENTRIES = "edc.dataplane.aas.sink.delta.maxEntries";
+    private static final String SINK_DELTA_MAX_ENTRY_SIZE = "edc.dataplane.aas.sink.delta.maxEntrySize";
+    private static final String SOURCE_PARALLEL_REQUESTS = "edc.dataplane.aas.source.maxParallelRequests";
+    private static final int DEFAULT_SOURCE_PARALLEL_REQUESTS = 1;
+    private static final String SOURCE_COALESCE_REQUESTS = "edc.dataplane.aas.source.coalesceRequests";
+    private static final String SOURCE_CACHE_TTL = "edc.dataplane.aas.source.cache.ttl";
+    private static final String SOURCE_CACHE_SIZE = "edc.dataplane.aas.source.cache.size";
+    private static final int DEFAULT_SOURCE_CACHE_SIZE = 256;
+    private static final String SOURCE_CACHE_MAX_ENTRY_SIZE = "edc.dataplane.aas.source.cache.maxEntrySize";
+    private static final String OPERATION_POLL_INTERVAL = "edc.dataplane.aas.operation.pollInterval";
+    private static final String OPERATION_TIMEOUT = "edc.dataplane.aas.operation.timeout";
+    private static final String SOURCE_IN_PROCESS = "edc.dataplane.aas.source.inProcess";
+    private static final String CHANGE_STREAM_INTERVAL = "edc.dataplane.aas.changeStream.interval";
+    private static final String CHANGE_STREAM_MAX_STREAMS = "edc.dataplane.aas.changeStream.maxStreams";
+    private static final int DEFAULT_CHANGE_STREAM_MAX_STREAMS = 16;
+    private static final String HEDGING_ENABLED = "edc.dataplane.aas.source.hedging.enabled";
+    private static final String HEDGING_PERCENTILE = "edc.dataplane.aas.source.hedging.percentile";
+    private static final String HEDGING_MIN_SAMPLES = "edc.dataplane.aas.source.hedging.minSamples";
+    private static final String HEDGING_TIMEOUT_MULTIPLIER = "edc.dataplane.aas.source.hedging.timeoutMultiplier";
+    private static final String HEDGING_MIN_TIMEOUT = "edc.dataplane.aas.source.hedging.minTimeout";
+    private static final String HEDGING_MAX_TIMEOUT = "edc.dataplane.aas.source.hedging.maxTimeout";
+    private static final String HOST_MAX_IN_FLIGHT = "edc.dataplane.aas.host.maxInFlight";
+    private static final String HOST_MAX_QUEUED = "edc.dataplane.aas.host.maxQueued";
+    private static final int DEFAULT_HOST_MAX_QUEUED = 64;
+    private static final String HOST_MAX_WAIT = "edc.dataplane.aas.host.maxWait";
+    private static final long DEFAULT_HOST_MAX_WAIT = 10_000L;
+    private static final String CONNECTIONS_PREWARM = "edc.dataplane.aas.connections.prewarm";
+    private static final String CONNECTIONS_KEEP_ALIVE = "edc.dataplane.aas.connections.keepAlive";
+    private static final long DEFAULT_CONNECTIONS_KEEP_ALIVE = 300L;
+    private static final String CONNECTIONS_MAX_IDLE = "edc.dataplane.aas.connections.maxIdle";
+    private static final int DEFAULT_CONNECTIONS_MAX_IDLE = 16;
+    private static final String METRICS_ENABLED = "edc.dataplane.aas.metrics.enabled";
+    private static final String METRICS_CONTEXT = "edc.dataplane.aas.metrics.context";
+    private static final String DEFAULT_WEB_CONTEXT = "default";
 
     @Inject
     private PipelineService pipelineService;
@@ -63,6 +130,15 @@ public class DataPlaneAasExtension implements ServiceExtension {
     private OkHttpClient okHttpClient;
     @Inject
     private RetryPolicy<Response> retryPolicy;
+    @Inject(required = false) // Only needed for the metrics endpoint
+    private WebService webService;
+
+    private Duration certificateRevalidationInterval;
+    private SelfSignedCertificateRetriever pinnedCertificates;
+    private ExecutorService transferExecutor;
+    private ExecutorService changeStreamExecutor;
+    private OkHttpClient aasHttpClient;
+    private AasConnectionPrewarming connectionPrewarming;
 
 
     public void initialize(ServiceExtensionContext context) {
@@ -70,38 +146,178 @@ public class DataPlaneAasExtension implements ServiceExtension {
 
         var allowForeignSelfSigned = context.getSetting(FOREIGN_SELF_SIGNED, false);
         var allowOwnSelfSigned = context.getSetting(OWN_SELF_SIGNED, false);
+        certificateRevalidationInterval = Duration.ofSeconds(context.getSetting(CERTIFICATE_REVALIDATION,
+                AasDataProcessorFactory.DEFAULT_CERTIFICATE_REVALIDATION_INTERVAL.toSeconds()));
+        if (allowOwnSelfSigned || allowForeignSelfSigned) {
+            // Sources and sinks share the pins, retrieved certificates are reused until they expire
+            var pinStore = context.getSetting(CERTIFICATE_PIN_STORE, null);
+            pinnedCertificates = new PinnedCertificateRetriever(new DefaultSelfSignedCertificateRetriever(),
+                    pinStore == null ? null : Path.of(pinStore), Clock.systemUTC(), monitor);
+        }
+
+        // Keep-alive policy of the connections to AAS services, idle connections are pruned after the keep-alive duration
+        var keepAlive = Duration.ofSeconds(context.getSetting(CONNECTIONS_KEEP_ALIVE, DEFAULT_CONNECTIONS_KEEP_ALIVE));
+        aasHttpClient = okHttpClient.newBuilder()
+                .connectionPool(new ConnectionPool(context.getSetting(CONNECTIONS_MAX_IDLE, DEFAULT_CONNECTIONS_MAX_IDLE), keepAlive.toSeconds(), TimeUnit.SECONDS))
+                .build();
+
+        var sourceParallelRequests = context.getSetting(SOURCE_PARALLEL_REQUESTS, DEFAULT_SOURCE_PARALLEL_REQUESTS);
+        var sinkParallelParts = context.getSetting(SINK_PARALLEL_PARTS, DEFAULT_SINK_PARALLEL_PARTS);
+        if (sourceParallelRequests > 1 || sinkParallelParts > 1) {
+            // Concurrency per transfer is bounded by the sources and sinks themselves, across transfers by the pool size
+            transferExecutor = newTransferExecutor(Math.max(context.getSetting(TRANSFER_THREADS, DEFAULT_TRANSFER_THREADS), 1));
+        }
+
+        AasResponseCache responseCache = null;
+        var cacheTtl = Duration.ofMillis(context.getSetting(SOURCE_CACHE_TTL, 0L));
+        if (context.getSetting(SOURCE_COALESCE_REQUESTS, true) || !cacheTtl.isZero()) {
+            responseCache = new AasResponseCache(cacheTtl, context.getSetting(SOURCE_CACHE_SIZE, DEFAULT_SOURCE_CACHE_SIZE),
+                    context.getSetting(SOURCE_CACHE_MAX_ENTRY_SIZE, AasResponseCache.DEFAULT_MAX_ENTRY_SIZE), Clock.systemUTC());
+        }
+
+        var operationPolling = new AasOperationPolling(
+                Duration.ofMillis(context.getSetting(OPERATION_POLL_INTERVAL, AasOperationPolling.DEFAULT.interval().toMillis())),
+                Duration.ofSeconds(context.getSetting(OPERATION_TIMEOUT, AasOperationPolling.DEFAULT.timeout().toSeconds())));
+
+        var requestHedging = getRequestHedging(context, monitor);
+        // Sources and sinks share the limits of a host
+        AasHostBulkheads hostBulkheads = null;
+        var hostMaxInFlight = context.getSetting(HOST_MAX_IN_FLIGHT, 0);
+        if (hostMaxInFlight > 0) {
+            hostBulkheads = new AasHostBulkheads(hostMaxInFlight, context.getSetting(HOST_MAX_QUEUED, DEFAULT_HOST_MAX_QUEUED),
+                    Duration.ofMillis(context.getSetting(HOST_MAX_WAIT, DEFAULT_HOST_MAX_WAIT)), monitor);
+        }
+
+        // Sources and sinks record to the same metrics, tagged by host and direction. Disabled metrics stay empty
+        var transferMetrics = new AasTransferMetrics(hostBulkheads);
+        context.registerService(AasTransferMetrics.class, transferMetrics);
+        AasTransferMetrics recordedMetrics = null;
+        if (context.getSetting(METRICS_ENABLED, false)) {
+            if (webService == null) {
+                throw new EdcException("%s is set but no WebService is available to serve the metrics".formatted(METRICS_ENABLED));
+            }
+            recordedMetrics = transferMetrics;
+            serveMetrics(context, transferMetrics, monitor);
+        }
+
+        // AAS services started by a control plane in this runtime register here
+        var localServices = new LocalAasServiceRegistry();
+        context.registerService(LocalAasServiceRegistry.class, localServices);
+
+        // Base URLs of AAS services registered at a control plane in this runtime
+        var baseUrls = new AasBaseUrlRegistry();
+        context.registerService(AasBaseUrlRegistry.class, baseUrls);
 
-        var aasDataSourceFactory = getAasDataSourceFactory(allowOwnSelfSigned, monitor);
+        var sourceProcessorFactory = getAasDataProcessorFactory(allowOwnSelfSigned, new AasRequestPolicies(requestHedging, hostBulkheads, recordedMetrics), monitor);
+        var aasDataSourceFactory = new AasDataSourceFactory(monitor, sourceProcessorFactory, transferExecutor, sourceParallelRequests, responseCache,
+                operationPolling, context.getSetting(SOURCE_IN_PROCESS, true) ? localServices : null,
+                Duration.ofMillis(context.getSetting(CHANGE_STREAM_INTERVAL, AasDataSourceFactory.DEFAULT_CHANGE_STREAM_INTERVAL.toMillis())));
         pipelineService.registerFactory(aasDataSourceFactory);
-        var aasDataSinkFactory = getAasDataSinkFactory(allowForeignSelfSigned, monitor);
+
+        var sinkProcessorFactory = getAasDataProcessorFactory(allowForeignSelfSigned, new AasRequestPolicies(null, hostBulkheads, recordedMetrics), monitor);
+        // Destinations with delta push receive the changes since the last write
+        var deltaWrites = new AasDeltaWrites(context.getSetting(SINK_DELTA_MAX_ENTRIES, AasDeltaWrites.DEFAULT_MAX_ENTRIES),
+                context.getSetting(SINK_DELTA_MAX_ENTRY_SIZE, AasDeltaWrites.DEFAULT_MAX_ENTRY_SIZE));
+        // Every running change stream holds one thread, further streams are rejected
+        changeStreamExecutor = newChangeStreamExecutor(Math.max(context.getSetting(CHANGE_STREAM_MAX_STREAMS, DEFAULT_CHANGE_STREAM_MAX_STREAMS), 1));
+        var aasDataSinkFactory = new AasDataSinkFactory(monitor, sinkProcessorFactory, transferExecutor, sinkParallelParts, deltaWrites, changeStreamExecutor);
         pipelineService.registerFactory(aasDataSinkFactory);
+
+        if (context.getSetting(CONNECTIONS_PREWARM, true)) {
+            // Registered services are sources of this data plane. Refresh connections well before the pool prunes them
+            var refreshInterval = Duration.ofSeconds(Math.max(keepAlive.toSeconds() / 2, 1));
+            connectionPrewarming = new AasConnectionPrewarming(sourceProcessorFactory, baseUrls, refreshInterval, Clock.systemUTC(), monitor);
+        }
     }
 
 
-    private AasDataSourceFactory getAasDataSourceFactory(boolean ownSelfSigned, Monitor monitor) {
-        SelfSignedCertificateRetriever certRetriever;
-        if (ownSelfSigned) {
-            certRetriever = new DefaultSelfSignedCertificateRetriever();
+    @Override
+    public void start() {
+        if (connectionPrewarming != null) {
+            connectionPrewarming.start();
         }
-        else {
-            certRetriever = new NoOpSelfSignedCertificateRetriever();
+    }
+
+
+    @Override
+    public void shutdown() {
+        if (connectionPrewarming != null) {
+            connectionPrewarming.stop();
+        }
+        if (transferExecutor != null) {
+            transferExecutor.shutdownNow();
+        }
+        if (changeStreamExecutor != null) {
+            // Interrupted change streams end
+            changeStreamExecutor.shutdownNow();
+        }
+    }
+
+
+    private static ExecutorService newTransferExecutor(int threads) {
+        var threadCount = new AtomicInteger();
+        var executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            var thread = new Thread(runnable, "aas-transfer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Idle threads are released again
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+
+    private static ExecutorService newChangeStreamExecutor(int maxStreams) {
+        var threadCount = new AtomicInteger();
+        var executor = new ThreadPoolExecutor(maxStreams, maxStreams, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+            var thread = new Thread(runnable, "aas-change-stream-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+
+    private void serveMetrics(ServiceExtensionContext context, AasTransferMetrics transferMetrics, Monitor monitor) {
+        // Per-host metrics are operational data, not served on the default context unless configured
+        var metricsContext = context.getSetting(METRICS_CONTEXT, ApiContext.MANAGEMENT);
+        // Resources of a web context without port and path fail the web server start. Standalone data planes often
+        // have no management context
+        if (!DEFAULT_WEB_CONTEXT.equals(metricsContext) && context.getConfig("web.http." + metricsContext).getEntries().isEmpty()) {
+            monitor.warning("Web context %s is not configured, AAS metrics are recorded but not served. Configure web.http.%s.port/path or set %s"
+                    .formatted(metricsContext, metricsContext, METRICS_CONTEXT));
+            return;
+        }
+        webService.registerResource(metricsContext, new AasMetricsController(transferMetrics));
+    }
+
+
+    private @Nullable AasRequestHedging getRequestHedging(ServiceExtensionContext context, Monitor monitor) {
+        if (!context.getSetting(HEDGING_ENABLED, false)) {
+            return null;
         }
 
-        var aasDataProcessorFactory = new AllAasDataProcessorFactory(certRetriever, okHttpClient, retryPolicy, monitor);
-        return new AasDataSourceFactory(monitor, aasDataProcessorFactory);
+        var defaults = AasRequestHedging.Policy.DEFAULT;
+        return new AasRequestHedging(new AasRequestHedging.Policy(
+                context.getSetting(HEDGING_PERCENTILE, (int) Math.round(defaults.hedgePercentile() * 100)) / 100.0,
+                context.getSetting(HEDGING_MIN_SAMPLES, defaults.minSamples()),
+                context.getSetting(HEDGING_TIMEOUT_MULTIPLIER, defaults.timeoutMultiplier()),
+                Duration.ofMillis(context.getSetting(HEDGING_MIN_TIMEOUT, defaults.minTimeout().toMillis())),
+                Duration.ofSeconds(context.getSetting(HEDGING_MAX_TIMEOUT, defaults.maxTimeout().toSeconds()))), monitor);
     }
 
 
-    private AasDataSinkFactory getAasDataSinkFactory(boolean foreignSelfSigned, Monitor monitor) {
+    private AasDataProcessorFactory getAasDataProcessorFactory(boolean acceptSelfSigned, AasRequestPolicies requestPolicies, Monitor monitor) {
         SelfSignedCertificateRetriever certRetriever;
-        if (foreignSelfSigned) {
-            certRetriever = new DefaultSelfSignedCertificateRetriever();
+        if (acceptSelfSigned) {
+            certRetriever = pinnedCertificates;
         }
         else {
             certRetriever = new NoOpSelfSignedCertificateRetriever();
         }
 
-        var aasDataProcessorFactory = new AllAasDataProcessorFactory(certRetriever, okHttpClient, retryPolicy, monitor);
-        return new AasDataSinkFactory(monitor, aasDataProcessorFactory);
+        return new AllAasDataProcessorFactory(certRetriever, aasHttpClient, retryPolicy, monitor, certificateRevalidationInterval, Clock.systemUTC(),
+                requestPolicies);
     }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.aas.lib;
+
+import de.fraunhofer.iosb.dataplane.aas.spi.AasBaseUrlRegistry;
+import org.eclipse.edc.spi.monitor.Monitor;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Establishes pooled connections to the registered AAS base URLs and keeps them alive. Newly registered base URLs are
+ * connected to within a second; afterwards, each connection is refreshed once per refresh interval, which has to be
+ * shorter than the keep-alive duration of the connection pool. Connections to base URLs that are no longer registered
+ * are not refreshed and are pruned by the pool once they were idle for its keep-alive duration.
+ */
+public class AasConnectionPrewarming {
+
+    private static final Duration CHECK_INTERVAL = Duration.ofSeconds(1);
+
+    private final AasDataProcessorFactory processorFactory;
+    private final AasBaseUrlRegistry baseUrls;
+    private final Duration refreshInterval;
+    private final Clock clock;
+    private final Monitor monitor;
+    private final Map<String, Instant> warmedAt = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService executor;
+
+
+    /**
+     * Class constructor
+     *
+     * @param processorFactory Provides the processors (and clients) the transfers to the base URLs use.
+     * @param baseUrls Base URLs to keep connections to.
+     * @param refreshInterval Interval after which a connection is used again to keep it alive.
+     * @param clock Clock of the refresh interval.
+     * @param monitor Logs failed connection attempts.
+     */
+    public AasConnectionPrewarming(AasDataProcessorFactory processorFactory, AasBaseUrlRegistry baseUrls, Duration refreshInterval,
+                                   Clock clock, Monitor monitor) {
+        this.processorFactory = processorFactory;
+        this.baseUrls = baseUrls;
+        this.refreshInterval = refreshInterval;
+        this.clock = clock;
+        this.monitor = monitor;
+    }
+
+
+    /**
+     * Start connecting to the registered base URLs in the background.
+     */
+    public synchronized void start() {
+        if (executor == null) {
+            // Must not keep the runtime from shutting down
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                var thread = new Thread(runnable, "aas-connection-prewarming");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(this::prewarm, 0, CHECK_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    /**
+     * Stop keeping connections alive. Established connections are pruned by the connection pool.
+     */
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+
+    /**
+     * Connect to each registered base URL not connected to within the refresh interval.
+     */
+    void prewarm() {
+        var registered = baseUrls.baseUrls();
+        warmedAt.keySet().retainAll(registered);
+
+        var now = clock.instant();
+        for (var baseUrl: registered) {
+            var lastWarmed = warmedAt.get(baseUrl);
+            if (lastWarmed != null && now.isBefore(lastWarmed.plus(refreshInterval))) {
+                continue;
+            }
+
+            // Failed attempts are repeated after the refresh interval as well
+            warmedAt.put(baseUrl, now);
+            try {
+                var result = processorFactory.prewarm(baseUrl);
+                if (result.failed()) {
+                    monitor.debug("Pre-warming connection to %s failed: %s".formatted(baseUrl, result.getFailureDetail()));
+                }
+            }
+            catch (RuntimeException prewarmException) {
+                // Never let an exception cancel the scheduled task
+                monitor.warning("Pre-warming connection to %s failed".formatted(baseUrl), prewarmException);
+            }
+        }
+    }
+}
@@ -15,20 +15,36 @@
  */
 package de.fraunhofer.iosb.aas.lib;
 
+import de.fraunhofer.iosb.aas.lib.http.AasContentCoding;
+import de.fraunhofer.iosb.aas.lib.http.AasHostBulkheads;
+import de.fraunhofer.iosb.aas.lib.http.AasRequestHedging;
+import de.fraunhofer.iosb.aas.lib.http.AasRequestPolicies;
+import de.fraunhofer.iosb.aas.lib.http.AasTransferMetrics;
+import de.fraunhofer.iosb.dataplane.aas.pipeline.AasStreamingRequestBody;
 import de.fraunhofer.iosb.dataplane.aas.pipeline.AasTransferRequestBody;
 import de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress;
+import de.fraunhofer.iosb.dataplane.aas.spi.AasRequestPlan;
 import okhttp3.Headers;
 import okhttp3.HttpUrl;
+import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
 import okhttp3.internal.http.HttpMethod;
 import org.eclipse.edc.connector.dataplane.spi.pipeline.DataSource.Part;
 import org.eclipse.edc.http.spi.EdcHttpClient;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 
+import static de.fraunhofer.iosb.aas.lib.http.AasContentCoding.ACCEPT_ENCODING;
+import static de.fraunhofer.iosb.aas.lib.http.AasContentCoding.CONTENT_ENCODING;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.ATTACHMENT_PATH_SEGMENT;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.GZIP;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.NO_COMPRESSION;
 import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_BODY;
 import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_METHOD;
 import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_OPERATION;
@@ -37,15 +53,50 @@ import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_PATH;
 
 /**
  * Communication to an AAS service via an OkHttpClient.
+ * <p>
+ * Given a {@link AasRequestHedging}, plain GET requests are hedged against slow responses and time out after an
+ * adaptive timeout. All other requests are sent via the EDC http client and its retry policy.
+ * <p>
+ * Given {@link AasHostBulkheads}, requests wait for a free slot of their host and are rejected with a
+ * {@link AasHostBulkheads.RejectedException} if the host is saturated. A hedged request is only sent if its host has
+ * a free slot.
+ * <p>
+ * Given {@link AasTransferMetrics}, time to first byte, stream time, body bytes and status of every request are
+ * recorded.
+ * <p>
+ * Request and response bodies are streamed. Parts sent to the attachment of a File or Blob element are uploaded as
+ * multipart form data.
+ * <p>
+ * The compression of an address controls the content coding: with "gzip", compressed responses are explicitly accepted
+ * and request bodies are sent compressed; with "none", responses are requested uncompressed. See
+ * {@link AasContentCoding}.
  */
 public class AasDataProcessor {
 
     private static final String APPLICATION_JSON = "application/json";
+    private static final String MERGE_PATCH_JSON = "application/merge-patch+json";
+    private static final String GET = "GET";
+    private static final String PATCH = "PATCH";
+    private static final String IF_MATCH = "If-Match";
+    private static final String RANGE = "Range";
     private final EdcHttpClient httpClient;
+    private final OkHttpClient okHttpClient;
+    private final AasRequestHedging requestHedging;
+    private final AasHostBulkheads bulkheads;
+    private final AasTransferMetrics metrics;
 
 
     AasDataProcessor(EdcHttpClient httpClient) {
+        this(httpClient, null, AasRequestPolicies.NONE);
+    }
+
+
+    AasDataProcessor(EdcHttpClient httpClient, @Nullable OkHttpClient okHttpClient, AasRequestPolicies policies) {
         this.httpClient = httpClient;
+        this.okHttpClient = okHttpClient;
+        this.requestHedging = policies.hedging();
+        this.bulkheads = policies.bulkheads();
+        this.metrics = policies.metrics();
     }
 
 
@@ -57,34 +108,27 @@ public class AasDataProcessor {
      * @throws IOException If communication with AAS service fails.
      */
     public Response getFromAas(AasDataAddress sourceDataAddress) throws IOException {
-        String accessUrl = sourceDataAddress.getBaseUrl();
+        var plan = sourceDataAddress.getRequestPlan();
 
-        if (accessUrl == null) {
+        if (plan.baseUrl() == null) {
             throw new IllegalArgumentException("No access uri found");
         }
 
-        var requestUrlBuilder = HttpUrl.get(accessUrl).newBuilder();
-
-        var requestPath = sourceDataAddress.getPath();
-
-        if (!requestPath.isEmpty()) {
-            // Remove leading forward slash
-            requestPath = requestPath.startsWith("/") ? requestPath.substring(1) : requestPath;
-            requestUrlBuilder.addPathSegments(requestPath);
-        }
+        var requestUrlBuilder = resolve(plan).newBuilder();
 
         var requestBuilder = new Request.Builder()
-                .headers(Headers.of(sourceDataAddress.getAdditionalHeaders()));
+                .headers(Headers.of(plan.additionalHeaders()));
 
         if (sourceDataAddress.hasProperty(PROXY_OPERATION)) {
             // https://faaast-service.readthedocs.io/en/latest/interfaces/endpoint.html#invoking-operations
-            requestUrlBuilder.addPathSegments("invoke/$value");
+            // Long-running operations are invoked asynchronously, the service responds with an operation-status handle
+            requestUrlBuilder.addPathSegments(sourceDataAddress.isAsyncOperation() ? "invoke-async/$value" : "invoke/$value");
             byte[] bytes = sourceDataAddress.getStringProperty(PROXY_OPERATION).getBytes(StandardCharsets.UTF_8);
             var requestBody = new AasTransferRequestBody(bytes, APPLICATION_JSON);
             requestBuilder.method("POST", requestBody);
         }
         else {
-            String method = sourceDataAddress.getStringProperty(PROXY_METHOD, sourceDataAddress.getMethod());
+            String method = sourceDataAddress.getStringProperty(PROXY_METHOD, plan.method());
 
             String body = sourceDataAddress.getStringProperty(PROXY_BODY);
             if (body != null) {
@@ -96,15 +140,58 @@ public class AasDataProcessor {
             }
 
             requestUrlBuilder.addPathSegments(sourceDataAddress.getStringProperty(PROXY_PATH, ""));
+
+            if (GET.equalsIgnoreCase(method)) {
+                // Serialization modifiers reduce the size of the response, e.g., $value or level=core
+                plan.getContentPathSegment().ifPresent(requestUrlBuilder::addPathSegment);
+                plan.serializationQueryParameters().forEach(requestUrlBuilder::addQueryParameter);
+                // Partial downloads, e.g., to resume the transfer of a large attachment
+                plan.getRange().ifPresent(range -> requestBuilder.header(RANGE, range));
+            }
         }
 
+        plan.getCompression().ifPresent(compression -> {
+            if (NO_COMPRESSION.equals(compression)) {
+                requestBuilder.header(ACCEPT_ENCODING, AasContentCoding.IDENTITY);
+            }
+            else if (GZIP.equals(compression) && plan.getRange().isEmpty()) {
+                // A range would address the compressed representation
+                requestBuilder.header(ACCEPT_ENCODING, AasContentCoding.GZIP);
+            }
+        });
+
         var request = requestBuilder
                 .url(requestUrlBuilder.build()) // .uri(HttpUrl) is marked as "internal"
                 // getAdditionalHeaders() includes authentication needed to access the service
 
                 .build();
 
-        return httpClient.execute(request);
+        if (requestHedging != null && okHttpClient != null && GET.equalsIgnoreCase(request.method()) && request.body() == null) {
+            // Idempotent, so a second request can be sent if the first one is slow
+            // Takes a slot of the host for each call it sends
+            return receive(request, () -> requestHedging.execute(okHttpClient, request, bulkheads));
+        }
+
+        return receive(request, () -> execute(request));
+    }
+
+
+    /**
+     * Get the operation-status or operation-results of an asynchronously invoked operation.
+     *
+     * @param sourceDataAddress The address of the operation, provides the additional headers.
+     * @param handleUrl The URL of the operation-status or operation-results handle.
+     * @return Response by the AAS service.
+     * @throws IOException If communication with AAS service fails.
+     */
+    public Response getOperationHandle(AasDataAddress sourceDataAddress, HttpUrl handleUrl) throws IOException {
+        var request = new Request.Builder()
+                .headers(Headers.of(sourceDataAddress.getRequestPlan().additionalHeaders()))
+                .url(handleUrl)
+                .get()
+                .build();
+
+        return receive(request, () -> execute(request));
     }
 
 
@@ -117,39 +204,179 @@ public class AasDataProcessor {
      * @throws IOException If communication with AAS service fails.
      */
     public Response send(@NotNull AasDataAddress destinationDataAddress, @NotNull Part part) throws IOException {
-        var bytes = part.openStream().readAllBytes();
         var mediaType = part.mediaType();
 
-        String accessUrl = destinationDataAddress.getBaseUrl();
+        var plan = destinationDataAddress.getRequestPlan();
 
-        if (accessUrl == null) {
+        if (plan.baseUrl() == null) {
             throw new IllegalArgumentException("No access uri found");
         }
 
-        if (!HttpMethod.permitsRequestBody(destinationDataAddress.getMethod())) {
+        if (!HttpMethod.permitsRequestBody(plan.method())) {
             throw new IllegalArgumentException(String.format("Destination address method does not allow request body: %s",
-                    destinationDataAddress.getMethod()));
+                    plan.method()));
+        }
+
+        // Stream the part without buffering it, chunked if its size is unknown
+        var content = counting(new AasStreamingRequestBody(part::openStream, mediaType, part.size()));
+        RequestBody body = content;
+        var attachment = plan.binary() && plan.path().endsWith("/" + ATTACHMENT_PATH_SEGMENT);
+        if (attachment) {
+            // https://faaast-service.readthedocs.io/en/latest/interfaces/endpoint.html: files are uploaded as form data
+            var fileName = fileNameOf(part);
+            body = new MultipartBody.Builder()
+                    .setType(MultipartBody.FORM)
+                    .addFormDataPart("fileName", fileName)
+                    .addFormDataPart("file", fileName, body)
+                    .build();
         }
 
-        var requestUrlBuilder = HttpUrl.get(accessUrl).newBuilder();
+        // Form data is sent uncompressed
+        return transmit(bodyRequest(plan, plan.method(), resolve(plan), body, !attachment).build(), content);
+    }
 
-        var requestPath = destinationDataAddress.getPath();
 
-        if (!requestPath.isEmpty()) {
-            // Remove leading forward slash
-            requestPath = requestPath.startsWith("/") ? requestPath.substring(1) : requestPath;
-            requestUrlBuilder.addPathSegments(requestPath);
+    /**
+     * Send a patch to an AAS service. Addresses with a content modifier, e.g., "$value", receive a value-only PATCH to
+     * that content, all others a JSON merge patch.
+     *
+     * @param destinationDataAddress The address of the AAS service.
+     * @param patch The patch to be sent.
+     * @param eTag ETag of the representation the patch is based on, sent as If-Match. Null to patch unconditionally.
+     * @return Response by the AAS service.
+     * @throws IOException If communication with AAS service fails.
+     */
+    public Response patch(@NotNull AasDataAddress destinationDataAddress, @NotNull Part patch, @Nullable String eTag) throws IOException {
+        var plan = destinationDataAddress.getRequestPlan();
+
+        if (plan.baseUrl() == null) {
+            throw new IllegalArgumentException("No access uri found");
         }
 
-        var request = new Request.Builder()
-                .method(
-                        destinationDataAddress.getMethod(),
-                        new AasTransferRequestBody(bytes, mediaType))
-                .url(requestUrlBuilder.build().url()) // .uri(HttpUrl) is marked as "internal"
+        var urlBuilder = resolve(plan).newBuilder();
+        plan.getContentPathSegment().ifPresent(urlBuilder::addPathSegment);
+        var contentType = plan.getContentPathSegment().isPresent() ? APPLICATION_JSON : MERGE_PATCH_JSON;
+
+        var content = counting(new AasStreamingRequestBody(patch::openStream, contentType, patch.size()));
+        var requestBuilder = bodyRequest(plan, PATCH, urlBuilder.build(), content, true);
+        if (eTag != null) {
+            // The destination rejects the patch if the resource changed since it was written
+            requestBuilder.header(IF_MATCH, eTag);
+        }
+
+        return transmit(requestBuilder.build(), content);
+    }
+
+
+    /**
+     * Open a connection to an AAS service by sending a HEAD request to the given URL. The connection is kept in the
+     * connection pool of the client; the status of the response is irrelevant.
+     *
+     * @param url URL of the AAS service.
+     * @throws IOException If no connection could be established.
+     */
+    public void prewarm(HttpUrl url) throws IOException {
+        var request = new Request.Builder().url(url).head().build();
+        // Without retries and bulkheads: a failed pre-warming is repeated later anyway
+        var response = okHttpClient != null ? okHttpClient.newCall(request).execute() : httpClient.execute(request);
+        // The connection is returned to the pool once the response is closed
+        response.close();
+    }
+
+
+    private Request.Builder bodyRequest(AasRequestPlan plan, String method, HttpUrl url, RequestBody body, boolean compressible) {
+        var compress = compressible && plan.getCompression().filter(GZIP::equals).isPresent();
+
+        var requestBuilder = new Request.Builder()
+                // The destination accepts gzip-encoded request bodies
+                .method(method, compress ? AasContentCoding.gzip(body) : body)
+                .url(url) // .uri(HttpUrl) is marked as "internal"
                 // getAdditionalHeaders() includes authentication needed to access the service
-                .headers(Headers.of(destinationDataAddress.getAdditionalHeaders()))
-                .build();
+                .headers(Headers.of(plan.additionalHeaders()));
+
+        if (compress) {
+            requestBuilder.header(CONTENT_ENCODING, AasContentCoding.GZIP);
+        }
+        return requestBuilder;
+    }
+
+
+    /* File name of an uploaded attachment: the last segment of the part name, parts are named after their path. */
+    private static String fileNameOf(Part part) {
+        var name = part.name() == null || part.name().isBlank() ? "attachment" : part.name();
+        if (name.endsWith("/" + ATTACHMENT_PATH_SEGMENT)) {
+            name = name.substring(0, name.length() - ATTACHMENT_PATH_SEGMENT.length() - 1);
+        }
+        var lastSegment = name.substring(name.lastIndexOf('/') + 1);
+        return lastSegment.isBlank() ? "attachment" : lastSegment;
+    }
+
+
+    /* Send a request reading from the AAS service. */
+    private Response receive(Request request, Exchange exchange) throws IOException {
+        var start = System.nanoTime();
+        try {
+            var response = AasContentCoding.decompress(exchange.execute());
+            // Counts the decompressed bytes the transfer receives
+            return metrics == null ? response : metrics.received(request, response, start);
+        }
+        catch (IOException e) {
+            if (metrics != null) {
+                metrics.failed(request.url(), AasTransferMetrics.Direction.SOURCE);
+            }
+            throw e;
+        }
+    }
+
 
-        return httpClient.execute(request);
+    /* Send a request writing the content to the AAS service. */
+    private Response transmit(Request request, RequestBody content) throws IOException {
+        var start = System.nanoTime();
+        try {
+            var response = execute(request);
+            if (metrics != null) {
+                var written = content instanceof AasTransferMetrics.CountingRequestBody countingBody ? countingBody.written() : 0;
+                metrics.sent(request, response, start, written);
+            }
+            return response;
+        }
+        catch (IOException e) {
+            if (metrics != null) {
+                metrics.failed(request.url(), AasTransferMetrics.Direction.SINK);
+            }
+            throw e;
+        }
+    }
+
+
+    private RequestBody counting(RequestBody body) {
+        return metrics == null ? body : metrics.counting(body);
+    }
+
+
+    private Response execute(Request request) throws IOException {
+        try (var ignored = acquire(request)) {
+            return httpClient.execute(request);
+        }
+    }
+
+
+    @FunctionalInterface
+    private interface Exchange {
+        Response execute() throws IOException;
+    }
+
+
+    private @Nullable AasHostBulkheads.Permit acquire(Request request) throws IOException {
+        return bulkheads == null ? null : bulkheads.acquire(request.url());
+    }
+
+
+    /* URL of the plan's base URL and path, parsed once per address. */
+    private HttpUrl resolve(AasRequestPlan plan) {
+        if (plan.url() == null) {
+            throw new IllegalArgumentException("Invalid access url: %s".formatted(plan.baseUrl()));
+        }
+        return plan.url();
     }
 }
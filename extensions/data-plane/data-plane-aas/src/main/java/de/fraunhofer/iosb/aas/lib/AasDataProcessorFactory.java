@@ -15,19 +15,46 @@
  */
 package de.fraunhofer.iosb.aas.lib;
 
+import de.fraunhofer.iosb.aas.lib.http.AasRequestPolicies;
+import de.fraunhofer.iosb.aas.lib.http.AasTransferMetrics;
 import de.fraunhofer.iosb.ssl.SelfSignedCertificateRetriever;
 import dev.failsafe.RetryPolicy;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
 import okhttp3.Response;
 import org.eclipse.edc.http.client.EdcHttpClientImpl;
 import org.eclipse.edc.spi.monitor.Monitor;
 import org.eclipse.edc.spi.result.Result;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.security.cert.Certificate;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static de.fraunhofer.iosb.aas.lib.http.HttpClientProvider.clientFor;
 
 
+/**
+ * Creates processors for AAS services. Processors for HTTPS services are cached per host and port, so that repeated
+ * transfers to the same service reuse the configured client and its warm keep-alive connections. The certificates of a
+ * cached service are retrieved again after the revalidation interval; the client is only rebuilt if they changed.
+ * <p>
+ * All processors share the {@link AasRequestPolicies}, which track latencies and concurrent requests per host. Given
+ * {@link AasTransferMetrics}, certificate retrieval and processor creation are timed per host.
+ */
 public abstract class AasDataProcessorFactory {
 
+    public static final Duration DEFAULT_CERTIFICATE_REVALIDATION_INTERVAL = Duration.ofMinutes(5);
+
     private static final String HTTPS = "HTTPS";
     protected final SelfSignedCertificateRetriever retriever;
     // EDC provided fields. Used for non-self-signed certificates
@@ -35,16 +62,48 @@ public abstract class AasDataProcessorFactory {
     private final RetryPolicy<Response> edcRetryPolicy;
     private final Monitor monitor;
 
+    private final Duration certificateRevalidationInterval;
+    private final Clock clock;
+    private final AasRequestPolicies requestPolicies;
+    private final AasDataProcessor defaultProcessor;
+    private final Map<String, HostProcessor> hostProcessors = new ConcurrentHashMap<>();
+
 
     public AasDataProcessorFactory(SelfSignedCertificateRetriever retriever,
                                    OkHttpClient edcOkHttpClient,
                                    RetryPolicy<Response> edcRetryPolicy,
                                    Monitor monitor) {
+        this(retriever, edcOkHttpClient, edcRetryPolicy, monitor, DEFAULT_CERTIFICATE_REVALIDATION_INTERVAL, Clock.systemUTC());
+    }
+
+
+    public AasDataProcessorFactory(SelfSignedCertificateRetriever retriever,
+                                   OkHttpClient edcOkHttpClient,
+                                   RetryPolicy<Response> edcRetryPolicy,
+                                   Monitor monitor,
+                                   Duration certificateRevalidationInterval,
+                                   Clock clock) {
+        this(retriever, edcOkHttpClient, edcRetryPolicy, monitor, certificateRevalidationInterval, clock, AasRequestPolicies.NONE);
+    }
+
+
+    public AasDataProcessorFactory(SelfSignedCertificateRetriever retriever,
+                                   OkHttpClient edcOkHttpClient,
+                                   RetryPolicy<Response> edcRetryPolicy,
+                                   Monitor monitor,
+                                   Duration certificateRevalidationInterval,
+                                   Clock clock,
+                                   AasRequestPolicies requestPolicies) {
         this.retriever = retriever;
 
         this.monitor = monitor;
         this.edcOkHttpClient = edcOkHttpClient;
         this.edcRetryPolicy = edcRetryPolicy;
+        this.certificateRevalidationInterval = certificateRevalidationInterval;
+        this.clock = clock;
+        this.requestPolicies = requestPolicies;
+        this.defaultProcessor = new AasDataProcessor(new EdcHttpClientImpl(edcOkHttpClient, edcRetryPolicy, monitor), edcOkHttpClient,
+                requestPolicies);
     }
 
 
@@ -58,33 +117,159 @@ public abstract class AasDataProcessorFactory {
      */
     public Result<AasDataProcessor> processorFor(String aasUrl) {
         if (!HTTPS.equalsIgnoreCase(aasUrl.substring(0, 5))) {
-            return Result.success(new AasDataProcessor(
-                    new EdcHttpClientImpl(edcOkHttpClient, edcRetryPolicy, monitor)));
+            return Result.success(defaultProcessor);
         }
 
-        var certResult = this.retriever.getSelfSignedCertificate(aasUrl);
-
-        var client = edcOkHttpClient;
+        return hostKey(aasUrl)
+                .map(hostKey -> hostProcessors.computeIfAbsent(hostKey, key -> new HostProcessor()).get(aasUrl))
+                .orElseGet(() -> Result.failure("Invalid AAS URL: %s".formatted(aasUrl)));
+    }
 
-        if (certResult.succeeded() && certResult.getContent() != null) {
-            var customClientResult = clientFor(certResult.getContent());
 
-            if (customClientResult.succeeded()) {
-                client = customClientResult.getContent();
+    /**
+     * Establish a pooled connection to the AAS service behind the given URL, including the retrieval of its
+     * certificates, so that the next transfer does not pay for DNS, TCP and TLS setup.
+     *
+     * @param aasUrl URL of the AAS service.
+     * @return Failure if no connection could be established.
+     */
+    public Result<Void> prewarm(String aasUrl) {
+        return processorFor(aasUrl).compose(processor -> {
+            try {
+                processor.prewarm(HttpUrl.get(aasUrl));
+                return Result.success();
             }
-            else {
-                return Result.failure(customClientResult.getFailureDetail());
+            catch (IOException | IllegalArgumentException prewarmException) {
+                return Result.failure("Could not connect to %s: %s".formatted(aasUrl, prewarmException.getMessage()));
             }
-        }
-        else if (certResult.succeeded() && certResult.getContent() == null) {
+        });
+    }
+
+
+    /**
+     * Drop the cached processor of the host behind the given URL, e.g., after a TLS failure. The next call to
+     * {@link #processorFor(String)} retrieves the host's certificates again, bypassing certificates pinned by the
+     * retriever.
+     *
+     * @param aasUrl URL of the AAS service.
+     */
+    public void invalidate(String aasUrl) {
+        hostKey(aasUrl).ifPresent(hostProcessors::remove);
+        retriever.invalidate(aasUrl);
+    }
+
+
+    private Result<AasDataProcessor> createProcessor(String aasUrl, Certificate[] certificates) {
+        if (certificates == null) {
             monitor.debug("%s is trusted".formatted(aasUrl));
+            return Result.success(defaultProcessor);
         }
-        else {
-            monitor.info("Did not retrieve certificates for %s: %s".formatted(aasUrl, certResult.getFailureDetail()));
-            return Result.failure(certResult.getFailureMessages());
+
+        var customClientResult = clientFor(edcOkHttpClient, certificates);
+
+        if (customClientResult.failed()) {
+            return Result.failure(customClientResult.getFailureDetail());
         }
 
-        return Result.success(new AasDataProcessor(new EdcHttpClientImpl(client, edcRetryPolicy, monitor)));
+        var customClient = customClientResult.getContent();
+        return Result.success(new AasDataProcessor(new EdcHttpClientImpl(customClient, edcRetryPolicy, monitor), customClient, requestPolicies));
     }
 
+
+    private void record(String aasUrl, long startNanos, boolean success, Recorder recorder) {
+        var metrics = requestPolicies.metrics();
+        if (metrics != null) {
+            var duration = Duration.ofNanos(System.nanoTime() - startNanos);
+            hostKey(aasUrl).ifPresent(host -> recorder.record(metrics, host, duration, success));
+        }
+    }
+
+
+    private static Optional<String> hostKey(String aasUrl) {
+        return Optional.ofNullable(HttpUrl.parse(aasUrl))
+                .map(url -> "%s://%s:%d".formatted(url.scheme(), url.host().toLowerCase(Locale.ROOT), url.port()));
+    }
+
+
+    @FunctionalInterface
+    private interface Recorder {
+        void record(AasTransferMetrics metrics, String host, Duration duration, boolean success);
+    }
+
+
+    /**
+     * Processor of one host and the certificates it was built for. Only one caller per host retrieves certificates at a
+     * time, without holding a lock: while a revalidation runs, other callers keep using the current processor; if
+     * there is none yet, they wait for the running retrieval.
+     */
+    private final class HostProcessor {
+
+        private final AtomicReference<CompletableFuture<Result<AasDataProcessor>>> retrieval = new AtomicReference<>();
+        private volatile @Nullable State state;
+
+
+        Result<AasDataProcessor> get(String aasUrl) {
+            var current = state;
+            if (current != null && clock.instant().isBefore(current.revalidateAt())) {
+                return Result.success(current.processor());
+            }
+
+            var ownRetrieval = new CompletableFuture<Result<AasDataProcessor>>();
+            var runningRetrieval = retrieval.compareAndExchange(null, ownRetrieval);
+            if (runningRetrieval != null) {
+                return current != null ? Result.success(current.processor()) : runningRetrieval.join();
+            }
+
+            try {
+                var result = retrieve(aasUrl);
+                ownRetrieval.complete(result);
+                return result;
+            }
+            catch (RuntimeException retrievalException) {
+                ownRetrieval.completeExceptionally(retrievalException);
+                throw retrievalException;
+            }
+            finally {
+                retrieval.set(null);
+            }
+        }
+
+
+        private Result<AasDataProcessor> retrieve(String aasUrl) {
+            // Another caller might have finished a retrieval in the meantime
+            var current = state;
+            if (current != null && clock.instant().isBefore(current.revalidateAt())) {
+                return Result.success(current.processor());
+            }
+
+            var retrievalStart = System.nanoTime();
+            var certResult = retriever.getSelfSignedCertificate(aasUrl);
+            record(aasUrl, retrievalStart, certResult.succeeded(), AasTransferMetrics::certificatesRetrieved);
+
+            if (certResult.failed()) {
+                monitor.info("Did not retrieve certificates for %s: %s".formatted(aasUrl, certResult.getFailureDetail()));
+                state = null;
+                return Result.failure(certResult.getFailureMessages());
+            }
+
+            var processor = current == null ? null : current.processor();
+            if (current == null || !Arrays.equals(current.certificates(), certResult.getContent())) {
+                var creationStart = System.nanoTime();
+                var processorResult = createProcessor(aasUrl, certResult.getContent());
+                record(aasUrl, creationStart, processorResult.succeeded(), AasTransferMetrics::processorCreated);
+                if (processorResult.failed()) {
+                    state = null;
+                    return processorResult;
+                }
+                processor = processorResult.getContent();
+            }
+
+            state = new State(processor, certResult.getContent(), clock.instant().plus(certificateRevalidationInterval));
+            return Result.success(processor);
+        }
+    }
+
+
+    private record State(AasDataProcessor processor, Certificate[] certificates, Instant revalidateAt) {
+    }
 }
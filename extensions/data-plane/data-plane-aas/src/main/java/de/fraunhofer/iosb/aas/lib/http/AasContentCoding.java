@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.aas.lib.http;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.GzipSource;
+import okio.Okio;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+
+/**
+ * Gzip content coding of the bodies exchanged with an AAS service. Bodies are compressed and decompressed while they
+ * are streamed, they are never held in memory as a whole.
+ * <p>
+ * OkHttp only decompresses responses transparently if it requested the compression itself, which it does not for
+ * requests with a Range header. Requests explicitly accepting gzip are therefore decompressed here.
+ */
+public class AasContentCoding {
+
+    public static final String ACCEPT_ENCODING = "Accept-Encoding";
+    public static final String CONTENT_ENCODING = "Content-Encoding";
+    public static final String GZIP = "gzip";
+    public static final String IDENTITY = "identity";
+
+    private static final String CONTENT_LENGTH = "Content-Length";
+
+
+    private AasContentCoding() {
+    }
+
+
+    /**
+     * Compress a request body with gzip while it is written. The compressed body has an unknown length and is sent
+     * with chunked transfer encoding. The Content-Encoding header must be added to the request.
+     *
+     * @param body The uncompressed body.
+     * @return The compressing body.
+     */
+    public static RequestBody gzip(RequestBody body) {
+        return new GzipRequestBody(body);
+    }
+
+
+    /**
+     * Decompress the body of a gzip-encoded response while it is read. Responses of requests not explicitly accepting
+     * gzip, or with another content coding, are returned as they are.
+     *
+     * @param response The response of the AAS service.
+     * @return The response with decompressed body.
+     */
+    public static Response decompress(Response response) {
+        var body = response.body();
+        if (body == null || !GZIP.equalsIgnoreCase(response.header(CONTENT_ENCODING)) ||
+                !GZIP.equalsIgnoreCase(response.request().header(ACCEPT_ENCODING))) {
+            return response;
+        }
+
+        var decompressed = ResponseBody.create(Okio.buffer(new GzipSource(body.source())), body.contentType(), -1);
+        return response.newBuilder()
+                .removeHeader(CONTENT_ENCODING)
+                .removeHeader(CONTENT_LENGTH)
+                .body(decompressed)
+                .build();
+    }
+
+
+    private static final class GzipRequestBody extends RequestBody {
+
+        private final RequestBody delegate;
+
+
+        private GzipRequestBody(RequestBody delegate) {
+            this.delegate = delegate;
+        }
+
+
+        @Override
+        public long contentLength() {
+            return -1;
+        }
+
+
+        @Override
+        public boolean isOneShot() {
+            return delegate.isOneShot();
+        }
+
+
+        @Override
+        public void writeTo(@NotNull BufferedSink sink) throws IOException {
+            // Closing the gzip sink writes the gzip trailer
+            try (var gzipSink = Okio.buffer(new GzipSink(sink))) {
+                delegate.writeTo(gzipSink);
+            }
+        }
+
+
+        @Nullable
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+    }
+}
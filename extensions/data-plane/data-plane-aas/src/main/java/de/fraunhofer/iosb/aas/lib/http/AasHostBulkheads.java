@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.aas.lib.http;
+
+import okhttp3.HttpUrl;
+import org.eclipse.edc.spi.monitor.Monitor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Limits the concurrent requests per AAS host. Requests exceeding the limit wait in a bounded queue for a free slot;
+ * if the queue is full or no slot becomes available within the maximum wait time, the request is rejected without
+ * being sent. A slot is occupied until the response headers arrived, reading the body does not count as in flight.
+ */
+public class AasHostBulkheads {
+
+    public static final String REJECTED_MESSAGE = "Too many concurrent requests to AAS service %s, request not sent. The transfer can be retried.";
+
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final Duration maxWait;
+    private final Monitor monitor;
+    private final Map<String, HostBulkhead> hosts = new ConcurrentHashMap<>();
+
+
+    /**
+     * Class constructor
+     *
+     * @param maxInFlight Maximum number of concurrent requests per host.
+     * @param maxQueued Maximum number of requests per host waiting for a slot.
+     * @param maxWait Time a request waits for a slot before it is rejected.
+     * @param monitor Logs rejected requests.
+     */
+    public AasHostBulkheads(int maxInFlight, int maxQueued, Duration maxWait, Monitor monitor) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        }
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = Math.max(maxQueued, 0);
+        this.maxWait = maxWait;
+        this.monitor = monitor;
+    }
+
+
+    /**
+     * Acquire a slot for a request to the host of the URL.
+     *
+     * @param url URL of the request.
+     * @return The slot, to be closed once the response headers arrived or the request failed.
+     * @throws RejectedException If the host is saturated.
+     * @throws InterruptedIOException If interrupted while waiting for a slot.
+     */
+    public Permit acquire(HttpUrl url) throws IOException {
+        var host = AasRequestHedging.hostKey(url);
+        var bulkhead = hosts.computeIfAbsent(host, key -> new HostBulkhead());
+
+        if (!bulkhead.slots.tryAcquire()) {
+            if (bulkhead.queued.incrementAndGet() > maxQueued) {
+                bulkhead.queued.decrementAndGet();
+                throw bulkhead.reject(host);
+            }
+            try {
+                if (!bulkhead.slots.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS)) {
+                    throw bulkhead.reject(host);
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a request slot of %s".formatted(host));
+            }
+            finally {
+                bulkhead.queued.decrementAndGet();
+            }
+        }
+
+        return bulkhead.permit();
+    }
+
+
+    /**
+     * Acquire a slot for a request to the host of the URL only if one is free right now. For optional requests like
+     * hedges: they neither wait in the queue nor count as rejected.
+     *
+     * @param url URL of the request.
+     * @return The slot, to be closed once the response headers arrived or the request failed. Empty if the host has
+     *         no free slot.
+     */
+    public Optional<Permit> tryAcquire(HttpUrl url) {
+        var bulkhead = hosts.computeIfAbsent(AasRequestHedging.hostKey(url), key -> new HostBulkhead());
+        return bulkhead.slots.tryAcquire() ? Optional.of(bulkhead.permit()) : Optional.empty();
+    }
+
+
+    /**
+     * Current state of the bulkhead of every host requests were sent to.
+     *
+     * @return Metrics per host, sorted by host.
+     */
+    public List<Metrics> metrics() {
+        return hosts.entrySet().stream()
+                .map(entry -> new Metrics(entry.getKey(), maxInFlight, maxInFlight - entry.getValue().slots.availablePermits(),
+                        entry.getValue().queued.get(), entry.getValue().rejected.get()))
+                .sorted(Comparator.comparing(Metrics::host))
+                .toList();
+    }
+
+
+    /**
+     * Slot of a request in the bulkhead of its host.
+     */
+    public interface Permit extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+
+    /**
+     * Snapshot of the bulkhead of one host.
+     *
+     * @param host Scheme, host and port.
+     * @param maxInFlight Maximum number of concurrent requests.
+     * @param inFlight Number of requests currently executing.
+     * @param queued Number of requests waiting for a slot.
+     * @param rejected Number of requests rejected because the host was saturated.
+     */
+    public record Metrics(String host, int maxInFlight, int inFlight, int queued, long rejected) {
+
+        public boolean saturated() {
+            return inFlight >= maxInFlight;
+        }
+    }
+
+
+    /**
+     * Thrown if a request is rejected because its host is saturated. Transfers failing with this exception can be
+     * retried later.
+     */
+    public static final class RejectedException extends IOException {
+
+        RejectedException(String message) {
+            super(message);
+        }
+    }
+
+
+    private final class HostBulkhead {
+
+        private final Semaphore slots = new Semaphore(maxInFlight, true);
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicLong rejected = new AtomicLong();
+
+
+        Permit permit() {
+            var released = new AtomicBoolean();
+            return () -> {
+                if (released.compareAndSet(false, true)) {
+                    slots.release();
+                }
+            };
+        }
+
+
+        RejectedException reject(String host) {
+            var count = rejected.incrementAndGet();
+            monitor.warning("AAS service %s saturated (%d in flight, %d queued), rejected request #%d".formatted(host, maxInFlight, queued.get(), count));
+            return new RejectedException(REJECTED_MESSAGE.formatted(host));
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.aas.lib.http;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Hedged execution of idempotent requests with adaptive timeouts. The time until the response headers arrive is
+ * tracked per host. Once enough samples are available, a second request is sent if the first did not respond within
+ * the configured latency percentile of its host. The first response is used, the other call is cancelled.
+ * <p>
+ * The timeout until the response headers arrive follows the observed latencies, too: a multiple of the host's p99,
+ * bounded by the configured minimum and maximum timeout. Reading the response body is not limited by this timeout,
+ * so large responses can still be streamed. Failed requests are not retried.
+ * <p>
+ * Calls are executed on a dedicated executor instead of the client's dispatcher, so the dispatcher's limit of
+ * concurrent requests per host neither delays a hedged request nor counts as latency of the host.
+ * <p>
+ * Given {@link AasHostBulkheads}, every call occupies a slot of its host until its response headers arrived. The
+ * hedge is only sent if a slot is free right away.
+ */
+public class AasRequestHedging {
+
+    private static final int WINDOW_SIZE = 256;
+    private static final double TIMEOUT_PERCENTILE = 0.99;
+
+    private final Policy policy;
+    private final Monitor monitor;
+    private final Executor callExecutor;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+
+
+    public AasRequestHedging(Policy policy, Monitor monitor) {
+        this(policy, monitor, newCallExecutor());
+    }
+
+
+    /**
+     * Class constructor
+     *
+     * @param policy Hedging configuration.
+     * @param monitor Monitor.
+     * @param callExecutor Executes the calls, every call blocks a thread until its response headers arrived.
+     */
+    public AasRequestHedging(Policy policy, Monitor monitor, Executor callExecutor) {
+        this.policy = policy;
+        this.monitor = monitor;
+        this.callExecutor = callExecutor;
+    }
+
+
+    /**
+     * Execute an idempotent request, hedging it if the host responds slower than usual.
+     *
+     * @param client Client executing the request, e.g., the client accepting the host's certificates.
+     * @param request The request. Must be safe to send twice.
+     * @return The first response. The caller has to close it.
+     * @throws IOException If the request failed or timed out.
+     */
+    public Response execute(OkHttpClient client, Request request) throws IOException {
+        return execute(client, request, null);
+    }
+
+
+    /**
+     * Execute an idempotent request, hedging it if the host responds slower than usual and has a free slot.
+     *
+     * @param client Client executing the request, e.g., the client accepting the host's certificates.
+     * @param request The request. Must be safe to send twice.
+     * @param bulkheads Per-host limits of concurrent requests, null for no limit.
+     * @return The first response. The caller has to close it.
+     * @throws AasHostBulkheads.RejectedException If the host is saturated.
+     * @throws IOException If the request failed or timed out.
+     */
+    public Response execute(OkHttpClient client, Request request, @Nullable AasHostBulkheads bulkheads) throws IOException {
+        var window = latencies.computeIfAbsent(hostKey(request.url()), key -> new LatencyWindow());
+        var hedgeDelay = window.percentile(policy.hedgePercentile(), policy.minSamples());
+        var timeout = window.percentile(TIMEOUT_PERCENTILE, policy.minSamples())
+                .map(p99 -> p99.multipliedBy(policy.timeoutMultiplier()))
+                .map(candidate -> candidate.compareTo(policy.minTimeout()) < 0 ? policy.minTimeout() : candidate)
+                .map(candidate -> candidate.compareTo(policy.maxTimeout()) > 0 ? policy.maxTimeout() : candidate)
+                .orElse(policy.maxTimeout());
+
+        var hedgedRequest = new HedgedRequest(client, request, window, callExecutor);
+        var deadline = System.nanoTime() + timeout.toNanos();
+        hedgedRequest.start(bulkheads == null ? null : bulkheads.acquire(request.url()));
+
+        try {
+            if (hedgeDelay.isPresent() && hedgeDelay.get().compareTo(timeout) < 0) {
+                try {
+                    return hedgedRequest.await(hedgeDelay.get().toNanos());
+                }
+                catch (TimeoutException slow) {
+                    Optional<AasHostBulkheads.Permit> hedgePermit = bulkheads == null ? Optional.empty() : bulkheads.tryAcquire(request.url());
+                    if (bulkheads == null || hedgePermit.isPresent()) {
+                        monitor.debug("No response from %s after %d ms, sending hedged request".formatted(request.url().host(), hedgeDelay.get().toMillis()));
+                        window.hedged.incrementAndGet();
+                        hedgedRequest.start(hedgePermit.orElse(null));
+                    }
+                    else {
+                        monitor.debug("No response from %s after %d ms, host saturated, not hedging".formatted(request.url().host(), hedgeDelay.get().toMillis()));
+                    }
+                }
+            }
+            return hedgedRequest.await(Math.max(0, deadline - System.nanoTime()));
+        }
+        catch (TimeoutException timedOut) {
+            hedgedRequest.cancel();
+            throw new InterruptedIOException("No response from %s within %d ms".formatted(request.url().host(), timeout.toMillis()));
+        }
+    }
+
+
+    /**
+     * Latency of the given host at the given percentile.
+     *
+     * @param url Any URL of the host.
+     * @param percentile Percentile between 0 and 1, e.g., 0.95.
+     * @return The latency or empty if not enough samples were collected.
+     */
+    public Optional<Duration> latency(HttpUrl url, double percentile) {
+        return Optional.ofNullable(latencies.get(hostKey(url))).flatMap(window -> window.percentile(percentile, policy.minSamples()));
+    }
+
+
+    /**
+     * Number of hedged requests sent to a host.
+     *
+     * @param url Any URL of the host.
+     * @return The number of requests sent because the first request was slow.
+     */
+    public long hedgedRequests(HttpUrl url) {
+        return Optional.ofNullable(latencies.get(hostKey(url))).map(window -> window.hedged.get()).orElse(0L);
+    }
+
+
+    private static Executor newCallExecutor() {
+        var threadCount = new AtomicInteger();
+        // Calls are bounded by their callers, which wait for the response
+        return Executors.newCachedThreadPool(runnable -> {
+            var thread = new Thread(runnable, "aas-hedged-call-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    static String hostKey(HttpUrl url) {
+        return "%s://%s:%d".formatted(url.scheme(), url.host().toLowerCase(Locale.ROOT), url.port());
+    }
+
+
+    /**
+     * Hedging configuration.
+     *
+     * @param hedgePercentile Latency percentile of a host after which a second request is sent, e.g., 0.95.
+     * @param minSamples Number of responses of a host needed before requests are hedged and timeouts adapted.
+     * @param timeoutMultiplier The timeout is this multiple of the host's p99 latency.
+     * @param minTimeout Lower bound of the adaptive timeout.
+     * @param maxTimeout Upper bound of the adaptive timeout, also used while not enough samples are available.
+     */
+    public record Policy(double hedgePercentile, int minSamples, int timeoutMultiplier, Duration minTimeout, Duration maxTimeout) {
+
+        public static final Policy DEFAULT = new Policy(0.95, 20, 4, Duration.ofSeconds(1), Duration.ofSeconds(30));
+    }
+
+
+    /*
+     * The latest response latencies of one host.
+     */
+    private static final class LatencyWindow {
+
+        private final long[] samples = new long[WINDOW_SIZE];
+        private final AtomicLong hedged = new AtomicLong();
+        private int next;
+        private int count;
+
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % WINDOW_SIZE;
+            count = Math.min(count + 1, WINDOW_SIZE);
+        }
+
+
+        Optional<Duration> percentile(double percentile, int minSamples) {
+            long[] sorted;
+            synchronized (this) {
+                if (count < Math.max(1, minSamples)) {
+                    return Optional.empty();
+                }
+                sorted = Arrays.copyOf(samples, count);
+            }
+            Arrays.sort(sorted);
+            var index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return Optional.of(Duration.ofNanos(sorted[Math.max(0, Math.min(index, sorted.length - 1))]));
+        }
+    }
+
+
+    /*
+     * Up to two calls of the same request, completed by the first response.
+     */
+    private static final class HedgedRequest {
+
+        private final OkHttpClient client;
+        private final Request request;
+        private final LatencyWindow window;
+        private final Executor executor;
+        private final CompletableFuture<Attempt> winner = new CompletableFuture<>();
+        private final List<Call> calls = new ArrayList<>();
+        private int failed;
+
+
+        HedgedRequest(OkHttpClient client, Request request, LatencyWindow window, Executor executor) {
+            this.client = client;
+            this.request = request;
+            this.window = window;
+            this.executor = executor;
+        }
+
+
+        synchronized void start(@Nullable AasHostBulkheads.Permit permit) {
+            var call = client.newCall(request);
+            calls.add(call);
+            try {
+                executor.execute(() -> execute(call, permit));
+            }
+            catch (RejectedExecutionException rejected) {
+                release(permit);
+                failed(new IOException("No thread available to send request to %s".formatted(request.url().host()), rejected));
+            }
+        }
+
+
+        private void execute(Call call, @Nullable AasHostBulkheads.Permit permit) {
+            // Measured from the start of the call, time waiting for a thread is not latency of the host
+            var startedAt = System.nanoTime();
+            Response response;
+            try {
+                response = call.execute();
+            }
+            catch (IOException e) {
+                failed(e);
+                return;
+            }
+            finally {
+                // The slot is occupied until the response headers arrived, also by a call that lost the race
+                release(permit);
+            }
+            window.record(System.nanoTime() - startedAt);
+            if (!winner.complete(new Attempt(call, response))) {
+                response.close();
+            }
+        }
+
+
+        Response await(long timeoutNanos) throws IOException, TimeoutException {
+            Attempt attempt;
+            try {
+                attempt = winner.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                throw new InterruptedIOException("Interrupted while waiting for %s".formatted(request.url().host()));
+            }
+            catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException ioException ? ioException : new IOException(e.getCause());
+            }
+
+            synchronized (this) {
+                // Cancelling the call which delivered the response would abort reading its body
+                calls.stream().filter(call -> call != attempt.call()).forEach(Call::cancel);
+            }
+            return attempt.response();
+        }
+
+
+        synchronized void cancel() {
+            calls.forEach(Call::cancel);
+        }
+
+
+        private static void release(@Nullable AasHostBulkheads.Permit permit) {
+            if (permit != null) {
+                permit.close();
+            }
+        }
+
+
+        private synchronized void failed(IOException e) {
+            // The request fails once every started call failed
+            if (++failed == calls.size()) {
+                winner.completeExceptionally(e);
+            }
+        }
+
+
+        private record Attempt(Call call, Response response) {}
+    }
+}
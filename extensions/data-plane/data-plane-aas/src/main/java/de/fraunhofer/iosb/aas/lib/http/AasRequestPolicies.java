@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.aas.lib.http;
+
+import org.jetbrains.annotations.Nullable;
+
+
+/**
+ * Policies applied to the requests of all processors of an {@link de.fraunhofer.iosb.aas.lib.AasDataProcessorFactory}.
+ *
+ * @param hedging Hedging of slow GET requests, null to send every request once.
+ * @param bulkheads Per-host limits of concurrent requests, null for no limit.
+ * @param metrics Timings and counters of the requests, null to record none.
+ */
+public record AasRequestPolicies(@Nullable AasRequestHedging hedging, @Nullable AasHostBulkheads bulkheads, @Nullable AasTransferMetrics metrics) {
+
+    public static final AasRequestPolicies NONE = new AasRequestPolicies(null, null, null);
+}
@@ -0,0 +1,456 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.aas.lib.http;
+
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.ForwardingSource;
+import okio.Okio;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+
+/**
+ * Timings and counters of the communication with AAS services, tagged by host (scheme, host and port) and transfer
+ * direction ("source" for reads, "sink" for writes):
+ * <ul>
+ * <li>aas_processor_creation_seconds: creation of processors with a custom client for a host's certificates</li>
+ * <li>aas_certificate_retrieval_seconds: retrieval of a host's self-signed certificates</li>
+ * <li>aas_time_to_first_byte_seconds: time from sending a request until its response headers arrived</li>
+ * <li>aas_stream_seconds: time from sending a request until the response body was read (sources) or the response to
+ * the written body arrived (sinks)</li>
+ * <li>aas_transferred_bytes_total: response body bytes read (sources) and request body bytes written (sinks)</li>
+ * <li>aas_responses_total: responses per status code, "error" if no response was received</li>
+ * </ul>
+ * Given {@link AasHostBulkheads}, their state per host is included. The metrics are available as snapshot
+ * ({@link #samples()}) and in the Prometheus text exposition format ({@link #scrape()}).
+ */
+public class AasTransferMetrics {
+
+    public static final String SCRAPE_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    static final String PROCESSOR_CREATION = "aas_processor_creation_seconds";
+    static final String CERTIFICATE_RETRIEVAL = "aas_certificate_retrieval_seconds";
+    static final String TIME_TO_FIRST_BYTE = "aas_time_to_first_byte_seconds";
+    static final String STREAM = "aas_stream_seconds";
+    static final String TRANSFERRED_BYTES = "aas_transferred_bytes_total";
+    static final String RESPONSES = "aas_responses_total";
+    static final String BULKHEAD_MAX_IN_FLIGHT = "aas_host_requests_max_in_flight";
+    static final String BULKHEAD_IN_FLIGHT = "aas_host_requests_in_flight";
+    static final String BULKHEAD_QUEUED = "aas_host_requests_queued";
+    static final String BULKHEAD_REJECTED = "aas_host_requests_rejected_total";
+
+    private static final String HOST = "host";
+    private static final String DIRECTION = "direction";
+    private static final String OUTCOME = "outcome";
+    private static final String STATUS = "status";
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private static final Map<String, String> HELP = Map.of(
+            PROCESSOR_CREATION, "Creation of processors for the certificates of an AAS host.",
+            CERTIFICATE_RETRIEVAL, "Retrieval of the self-signed certificates of an AAS host.",
+            TIME_TO_FIRST_BYTE, "Time from sending a request until its response headers arrived.",
+            STREAM, "Time from sending a request until its body was streamed completely.",
+            TRANSFERRED_BYTES, "Body bytes read from AAS sources and written to AAS sinks.",
+            RESPONSES, "Responses of AAS services per status code, error if no response was received.",
+            BULKHEAD_MAX_IN_FLIGHT, "Maximum number of concurrent requests per AAS host.",
+            BULKHEAD_IN_FLIGHT, "Requests currently sent to an AAS host.",
+            BULKHEAD_QUEUED, "Requests waiting for a slot of an AAS host.",
+            BULKHEAD_REJECTED, "Requests rejected because the AAS host was saturated.");
+
+    private final AasHostBulkheads bulkheads;
+    private final Map<Key, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<Key, LongAdder> counters = new ConcurrentHashMap<>();
+
+
+    /**
+     * Class constructor
+     *
+     * @param bulkheads Bulkheads whose state is included in the metrics, null if requests are not limited.
+     */
+    public AasTransferMetrics(@Nullable AasHostBulkheads bulkheads) {
+        this.bulkheads = bulkheads;
+    }
+
+
+    /**
+     * Direction of a transfer relative to the AAS service.
+     */
+    public enum Direction {
+        SOURCE, SINK;
+
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+
+    /**
+     * Record the creation of a processor for a host.
+     *
+     * @param host Scheme, host and port of the AAS service.
+     * @param duration Time it took.
+     * @param success Whether a processor was created.
+     */
+    public void processorCreated(String host, Duration duration, boolean success) {
+        timer(PROCESSOR_CREATION, tags(HOST, host, OUTCOME, outcome(success))).record(duration.toNanos());
+    }
+
+
+    /**
+     * Record the retrieval of the certificates of a host.
+     *
+     * @param host Scheme, host and port of the AAS service.
+     * @param duration Time it took.
+     * @param success Whether the certificates were retrieved.
+     */
+    public void certificatesRetrieved(String host, Duration duration, boolean success) {
+        timer(CERTIFICATE_RETRIEVAL, tags(HOST, host, OUTCOME, outcome(success))).record(duration.toNanos());
+    }
+
+
+    /**
+     * Wrap a request body so that the bytes written to the AAS service are counted. The body must not close the sink
+     * it writes to, so it is wrapped before compression or multipart encoding, and payload bytes are counted.
+     *
+     * @param body The request body.
+     * @return The counting body.
+     */
+    public CountingRequestBody counting(RequestBody body) {
+        return new CountingRequestBody(body);
+    }
+
+
+    /**
+     * Record the response of an AAS source. Time to first byte and status are recorded immediately, bytes and stream
+     * time once the returned response body was read completely or closed.
+     *
+     * @param request The sent request.
+     * @param response The response.
+     * @param startNanos {@link System#nanoTime()} when the request was sent.
+     * @return The response to pass on.
+     */
+    public Response received(Request request, Response response, long startNanos) {
+        var host = AasRequestHedging.hostKey(request.url());
+        var elapsed = System.nanoTime() - startNanos;
+        responded(host, Direction.SOURCE, response.code(), elapsed);
+
+        var body = response.body();
+        if (body == null) {
+            streamed(host, Direction.SOURCE, 0, elapsed);
+            return response;
+        }
+        return response.newBuilder()
+                .body(ResponseBody.create(Okio.buffer(new CountingSource(body, host, startNanos)), body.contentType(), body.contentLength()))
+                .build();
+    }
+
+
+    /**
+     * Record the response of an AAS sink to a written body.
+     *
+     * @param request The sent request.
+     * @param response The response.
+     * @param startNanos {@link System#nanoTime()} when the request was sent.
+     * @param written Number of body bytes written, see {@link #counting(RequestBody)}.
+     */
+    public void sent(Request request, Response response, long startNanos, long written) {
+        var host = AasRequestHedging.hostKey(request.url());
+        var elapsed = System.nanoTime() - startNanos;
+        // The response arrives after the body was written
+        responded(host, Direction.SINK, response.code(), elapsed);
+        streamed(host, Direction.SINK, written, elapsed);
+    }
+
+
+    /**
+     * Record a request that failed without response.
+     *
+     * @param url URL of the request.
+     * @param direction Direction of the transfer.
+     */
+    public void failed(HttpUrl url, Direction direction) {
+        counter(RESPONSES, tags(HOST, AasRequestHedging.hostKey(url), DIRECTION, direction.tag(), STATUS, "error")).increment();
+    }
+
+
+    /**
+     * Current value of all metrics, e.g., for benchmarks. Timers are represented by a "_count" and a "_sum" sample
+     * (seconds).
+     *
+     * @return The samples, sorted by name and tags.
+     */
+    public List<Sample> samples() {
+        var samples = new ArrayList<Sample>();
+        timers.forEach((key, timer) -> {
+            samples.add(new Sample(key.name() + "_count", key.tags(), timer.count.sum()));
+            samples.add(new Sample(key.name() + "_sum", key.tags(), timer.nanos.sum() / NANOS_PER_SECOND));
+        });
+        counters.forEach((key, counter) -> samples.add(new Sample(key.name(), key.tags(), counter.sum())));
+
+        if (bulkheads != null) {
+            for (var hostMetrics: bulkheads.metrics()) {
+                var tags = tags(HOST, hostMetrics.host());
+                samples.add(new Sample(BULKHEAD_MAX_IN_FLIGHT, tags, hostMetrics.maxInFlight()));
+                samples.add(new Sample(BULKHEAD_IN_FLIGHT, tags, hostMetrics.inFlight()));
+                samples.add(new Sample(BULKHEAD_QUEUED, tags, hostMetrics.queued()));
+                samples.add(new Sample(BULKHEAD_REJECTED, tags, hostMetrics.rejected()));
+            }
+        }
+
+        samples.sort(Comparator.comparing(Sample::name).thenComparing(sample -> sample.tags().toString()));
+        return samples;
+    }
+
+
+    /**
+     * All metrics in the Prometheus text exposition format (version 0.0.4).
+     *
+     * @return The exposition, to be served with {@link #SCRAPE_CONTENT_TYPE}.
+     */
+    public String scrape() {
+        Map<String, List<Sample>> families = new TreeMap<>();
+        for (var sample: samples()) {
+            families.computeIfAbsent(familyOf(sample.name()), family -> new ArrayList<>()).add(sample);
+        }
+
+        var exposition = new StringBuilder();
+        families.forEach((family, samples) -> {
+            exposition.append("# HELP ").append(family).append(' ').append(HELP.getOrDefault(family, family)).append('\n');
+            exposition.append("# TYPE ").append(family).append(' ').append(typeOf(family)).append('\n');
+            for (var sample: samples) {
+                exposition.append(sample.name()).append(formatTags(sample.tags())).append(' ').append(formatValue(sample.value())).append('\n');
+            }
+        });
+        return exposition.toString();
+    }
+
+
+    private void responded(String host, Direction direction, int status, long elapsedNanos) {
+        timer(TIME_TO_FIRST_BYTE, tags(HOST, host, DIRECTION, direction.tag())).record(elapsedNanos);
+        counter(RESPONSES, tags(HOST, host, DIRECTION, direction.tag(), STATUS, String.valueOf(status))).increment();
+    }
+
+
+    private void streamed(String host, Direction direction, long bytes, long elapsedNanos) {
+        timer(STREAM, tags(HOST, host, DIRECTION, direction.tag())).record(elapsedNanos);
+        counter(TRANSFERRED_BYTES, tags(HOST, host, DIRECTION, direction.tag())).add(bytes);
+    }
+
+
+    private Timer timer(String name, Map<String, String> tags) {
+        return timers.computeIfAbsent(new Key(name, tags), key -> new Timer());
+    }
+
+
+    private LongAdder counter(String name, Map<String, String> tags) {
+        return counters.computeIfAbsent(new Key(name, tags), key -> new LongAdder());
+    }
+
+
+    private static Map<String, String> tags(String... keysAndValues) {
+        var tags = new LinkedHashMap<String, String>();
+        for (int i = 0; i + 1 < keysAndValues.length; i += 2) {
+            tags.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return Collections.unmodifiableMap(tags);
+    }
+
+
+    private static String outcome(boolean success) {
+        return success ? "success" : "failure";
+    }
+
+
+    private static String familyOf(String sampleName) {
+        if (HELP.containsKey(sampleName)) {
+            return sampleName;
+        }
+        // Timers are exposed as summaries with _count and _sum samples
+        return sampleName.substring(0, sampleName.lastIndexOf('_'));
+    }
+
+
+    private static String typeOf(String family) {
+        if (family.endsWith("_seconds")) {
+            return "summary";
+        }
+        return family.endsWith("_total") ? "counter" : "gauge";
+    }
+
+
+    private static String formatTags(Map<String, String> tags) {
+        if (tags.isEmpty()) {
+            return "";
+        }
+        return tags.entrySet().stream()
+                .map(tag -> "%s=\"%s\"".formatted(tag.getKey(), tag.getValue().replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")))
+                .collect(Collectors.joining(",", "{", "}"));
+    }
+
+
+    private static String formatValue(double value) {
+        return value == Math.rint(value) && !Double.isInfinite(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+
+    /**
+     * Value of a metric.
+     *
+     * @param name Name of the sample, e.g., "aas_stream_seconds_sum".
+     * @param tags Tags like host and direction.
+     * @param value The value.
+     */
+    public record Sample(String name, Map<String, String> tags, double value) {
+    }
+
+
+    private record Key(String name, Map<String, String> tags) {
+    }
+
+
+    private static final class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+
+        void record(long elapsedNanos) {
+            count.increment();
+            nanos.add(elapsedNanos);
+        }
+    }
+
+
+    /**
+     * Request body counting the bytes written by its delegate.
+     */
+    public static final class CountingRequestBody extends RequestBody {
+
+        private final RequestBody delegate;
+        private final LongAdder written = new LongAdder();
+
+
+        private CountingRequestBody(RequestBody delegate) {
+            this.delegate = delegate;
+        }
+
+
+        public long written() {
+            return written.sum();
+        }
+
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+
+        @Override
+        public boolean isOneShot() {
+            return delegate.isOneShot();
+        }
+
+
+        @Override
+        public void writeTo(@NotNull BufferedSink sink) throws IOException {
+            var countingSink = Okio.buffer(new ForwardingSink(sink) {
+                @Override
+                public void write(@NotNull Buffer source, long byteCount) throws IOException {
+                    super.write(source, byteCount);
+                    written.add(byteCount);
+                }
+            });
+            delegate.writeTo(countingSink);
+            // Not closed, the caller closes the sink
+            countingSink.emit();
+        }
+
+
+        @Nullable
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+    }
+
+
+    /* Records bytes and stream time of a response body once it was read completely or closed. */
+    private final class CountingSource extends ForwardingSource {
+
+        private final String host;
+        private final long startNanos;
+        private final AtomicBoolean recorded = new AtomicBoolean();
+        private long read;
+
+
+        private CountingSource(ResponseBody body, String host, long startNanos) {
+            super(body.source());
+            this.host = host;
+            this.startNanos = startNanos;
+        }
+
+
+        @Override
+        public long read(@NotNull Buffer sink, long byteCount) throws IOException {
+            var count = super.read(sink, byteCount);
+            if (count < 0) {
+                record();
+            }
+            else {
+                read += count;
+            }
+            return count;
+        }
+
+
+        @Override
+        public void close() throws IOException {
+            record();
+            super.close();
+        }
+
+
+        private void record() {
+            if (recorded.compareAndSet(false, true)) {
+                streamed(host, Direction.SOURCE, read, System.nanoTime() - startNanos);
+            }
+        }
+    }
+}
@@ -48,6 +48,19 @@ public class HttpClientProvider {
      * @return Result containing either a new OkHttpClient instance or failure reason.
      */
     public static Result<OkHttpClient> clientFor(@NotNull Certificate[] certificateChain) {
+        return clientFor(new OkHttpClient(), certificateChain);
+    }
+
+
+    /**
+     * Creates a new OkHttpClient which allows communication with a server holding the given certificateChain. The
+     * client shares the connection pool and dispatcher of the base client.
+     *
+     * @param baseClient Client whose configuration is taken over.
+     * @param certificateChain A server certificate chain for TLS encrypted communication.
+     * @return Result containing either a new OkHttpClient instance or failure reason.
+     */
+    public static Result<OkHttpClient> clientFor(@NotNull OkHttpClient baseClient, @NotNull Certificate[] certificateChain) {
         TrustManager[] trustManagers;
         SSLContext sslContext;
         try {
@@ -75,7 +88,7 @@ public class HttpClientProvider {
                     .formatted(keyManagementException.getClass().getSimpleName(), keyManagementException.getMessage()));
         }
 
-        return Result.success(new OkHttpClient()
+        return Result.success(baseClient
                 .newBuilder()
                 .sslSocketFactory(sslContext.getSocketFactory(), (X509TrustManager) trustManagers[0])
                 .build());
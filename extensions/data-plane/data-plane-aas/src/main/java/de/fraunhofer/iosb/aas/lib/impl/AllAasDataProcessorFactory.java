@@ -16,12 +16,16 @@
 package de.fraunhofer.iosb.aas.lib.impl;
 
 import de.fraunhofer.iosb.aas.lib.AasDataProcessorFactory;
+import de.fraunhofer.iosb.aas.lib.http.AasRequestPolicies;
 import de.fraunhofer.iosb.ssl.SelfSignedCertificateRetriever;
 import dev.failsafe.RetryPolicy;
 import okhttp3.OkHttpClient;
 import okhttp3.Response;
 import org.eclipse.edc.spi.monitor.Monitor;
 
+import java.time.Clock;
+import java.time.Duration;
+
 
 public class AllAasDataProcessorFactory extends AasDataProcessorFactory {
 
@@ -29,4 +33,19 @@ public class AllAasDataProcessorFactory extends AasDataProcessorFactory {
                                       RetryPolicy<Response> edcRetryPolicy, Monitor monitor) {
         super(retriever, edcOkHttpClient, edcRetryPolicy, monitor);
     }
+
+
+    public AllAasDataProcessorFactory(SelfSignedCertificateRetriever retriever, OkHttpClient edcOkHttpClient,
+                                      RetryPolicy<Response> edcRetryPolicy, Monitor monitor,
+                                      Duration certificateRevalidationInterval, Clock clock) {
+        super(retriever, edcOkHttpClient, edcRetryPolicy, monitor, certificateRevalidationInterval, clock);
+    }
+
+
+    public AllAasDataProcessorFactory(SelfSignedCertificateRetriever retriever, OkHttpClient edcOkHttpClient,
+                                      RetryPolicy<Response> edcRetryPolicy, Monitor monitor,
+                                      Duration certificateRevalidationInterval, Clock clock,
+                                      AasRequestPolicies requestPolicies) {
+        super(retriever, edcOkHttpClient, edcRetryPolicy, monitor, certificateRevalidationInterval, clock, requestPolicies);
+    }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.dataplane.aas.api;
+
+import de.fraunhofer.iosb.aas.lib.http.AasTransferMetrics;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+
+import static de.fraunhofer.iosb.dataplane.aas.api.AasMetricsController.METRICS_PATH;
+
+
+/**
+ * Exposes the metrics of the communication with AAS services in the Prometheus text exposition format, to be scraped
+ * by the operator.
+ */
+@Path(METRICS_PATH)
+public class AasMetricsController {
+
+    public static final String METRICS_PATH = "aas/metrics";
+
+    private final AasTransferMetrics metrics;
+
+
+    public AasMetricsController(AasTransferMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+
+    /**
+     * Current metrics of the data plane's AAS sources and sinks.
+     *
+     * @return The metrics in the Prometheus text exposition format.
+     */
+    @GET
+    @Produces(AasTransferMetrics.SCRAPE_CONTENT_TYPE)
+    public String scrape() {
+        return metrics.scrape();
+    }
+}
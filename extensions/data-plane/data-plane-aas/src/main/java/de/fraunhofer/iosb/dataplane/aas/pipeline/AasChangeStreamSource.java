@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.dataplane.aas.pipeline;
+
+import de.fraunhofer.iosb.dataplane.aas.spi.LocalAasService;
+import org.eclipse.edc.connector.dataplane.spi.pipeline.DataSource;
+import org.eclipse.edc.connector.dataplane.spi.pipeline.StreamResult;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+
+/**
+ * Long-lived data source of a change stream: the addressed AAS elements are read once when the transfer starts and
+ * then again whenever they might have changed. Only elements whose serialization differs from the last pushed one
+ * are emitted as parts, for the lifetime of the transfer process.
+ * <p>
+ * AAS services running in the same JVM notify the source about changes via their message bus (see
+ * {@link LocalAasService#subscribe(Runnable)}). Other services are polled with a fixed interval. The part stream ends
+ * when the source is closed, i.e., when the transfer process is terminated or suspended.
+ */
+public class AasChangeStreamSource implements DataSource {
+
+    // Granularity in which a source waiting for change events notices that it was closed
+    private static final Duration CLOSE_CHECK_INTERVAL = Duration.ofSeconds(1);
+
+    private final Map<String, byte[]> lastDigests = new ConcurrentHashMap<>();
+    private final Semaphore changes = new Semaphore(0);
+    private Supplier<AasDataSource> reader;
+    private LocalAasService localService;
+    private Duration pollInterval;
+    private Monitor monitor;
+    private String requestId;
+    private volatile boolean closed;
+    private volatile AutoCloseable subscription;
+
+
+    private AasChangeStreamSource() {}
+
+
+    @Override
+    public StreamResult<Stream<Part>> openPartStream() {
+        if (localService != null) {
+            subscription = localService.subscribe(changes::release).orElse(null);
+        }
+        // The first read is not preceded by a change signal, all elements are pushed as initial state
+        changes.release();
+
+        return StreamResult.success(Stream.generate(this::nextChanges)
+                .takeWhile(Objects::nonNull)
+                .flatMap(List::stream));
+    }
+
+
+    @Override
+    public void close() {
+        closed = true;
+        changes.release();
+        var currentSubscription = subscription;
+        if (currentSubscription != null) {
+            try {
+                currentSubscription.close();
+            }
+            catch (Exception e) {
+                monitor.warning("Change stream %s: could not cancel change subscription".formatted(requestId), e);
+            }
+        }
+    }
+
+
+    /*
+     * Blocks until at least one element changed. Returns null once the source is closed, which ends the part stream.
+     */
+    private @Nullable List<Part> nextChanges() {
+        while (!closed) {
+            if (!awaitChange()) {
+                continue;
+            }
+            if (closed) {
+                return null;
+            }
+
+            var changed = readChanged();
+            if (!changed.isEmpty()) {
+                return changed;
+            }
+        }
+        return null;
+    }
+
+
+    private boolean awaitChange() {
+        try {
+            if (subscription != null) {
+                var signalled = changes.tryAcquire(CLOSE_CHECK_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+                // A burst of events results in one read
+                changes.drainPermits();
+                return signalled;
+            }
+            changes.tryAcquire(pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+            changes.drainPermits();
+            return true;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closed = true;
+            return false;
+        }
+    }
+
+
+    private List<Part> readChanged() {
+        List<Part> changed = new ArrayList<>();
+        try (var source = reader.get()) {
+            var partsResult = source.openPartStream();
+            if (partsResult.failed()) {
+                // The service might be temporarily unavailable, the stream continues with the next change or poll
+                monitor.warning("Change stream %s: reading source failed: %s".formatted(requestId, partsResult.getFailureDetail()));
+                return changed;
+            }
+
+            for (var part: partsResult.getContent().toList()) {
+                byte[] content;
+                try (var stream = part.openStream()) {
+                    content = stream.readAllBytes();
+                }
+                var digest = digest(content);
+                var previous = lastDigests.put(part.name(), digest);
+                if (previous == null || !Arrays.equals(previous, digest)) {
+                    changed.add(new AasPart(part.name(), new ByteArrayInputStream(content), part.mediaType(), content.length));
+                }
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            monitor.warning("Change stream %s: reading source failed: %s".formatted(requestId, e.getMessage()));
+        }
+        return changed;
+    }
+
+
+    private static byte[] digest(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        }
+        catch (NoSuchAlgorithmException e) {
+            // Every Java platform implements SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    public static class Builder {
+        private final AasChangeStreamSource source;
+
+
+        private Builder() {
+            source = new AasChangeStreamSource();
+        }
+
+
+        public static Builder newInstance() {
+            return new Builder();
+        }
+
+
+        /**
+         * Creates a single-shot data source reading the current state of the addressed elements.
+         *
+         * @param reader Supplier of a new data source per read.
+         * @return This builder.
+         */
+        public Builder reader(Supplier<AasDataSource> reader) {
+            source.reader = reader;
+            return this;
+        }
+
+
+        /**
+         * Co-located AAS service notifying about changes. Without a service, or if the service does not emit
+         * change events, the elements are polled.
+         *
+         * @param localService The service.
+         * @return This builder.
+         */
+        public Builder localService(LocalAasService localService) {
+            source.localService = localService;
+            return this;
+        }
+
+
+        public Builder pollInterval(Duration pollInterval) {
+            source.pollInterval = pollInterval;
+            return this;
+        }
+
+
+        public Builder monitor(Monitor monitor) {
+            source.monitor = monitor;
+            return this;
+        }
+
+
+        public Builder requestId(String requestId) {
+            source.requestId = requestId;
+            return this;
+        }
+
+
+        public AasChangeStreamSource build() {
+            Objects.requireNonNull(source.reader, "reader");
+            Objects.requireNonNull(source.pollInterval, "pollInterval");
+            Objects.requireNonNull(source.monitor, "monitor");
+            return source;
+        }
+    }
+}
@@ -15,32 +15,70 @@
  */
 package de.fraunhofer.iosb.dataplane.aas.pipeline;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fraunhofer.iosb.aas.lib.AasDataProcessor;
 import de.fraunhofer.iosb.aas.lib.AasDataProcessorFactory;
+import de.fraunhofer.iosb.aas.lib.http.AasHostBulkheads;
 import de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress;
+import okhttp3.Response;
 import org.eclipse.edc.connector.dataplane.spi.pipeline.DataSink;
 import org.eclipse.edc.connector.dataplane.spi.pipeline.DataSource;
 import org.eclipse.edc.connector.dataplane.spi.pipeline.StreamFailure;
 import org.eclipse.edc.connector.dataplane.spi.pipeline.StreamResult;
 import org.eclipse.edc.spi.monitor.Monitor;
-import org.eclipse.edc.spi.result.AbstractResult;
+import org.jetbrains.annotations.Nullable;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.util.List;
 import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import javax.net.ssl.SSLException;
 
 import static java.util.concurrent.CompletableFuture.completedFuture;
 import static org.eclipse.edc.connector.dataplane.spi.pipeline.StreamResult.failure;
 
 
 /**
- * Retrieves the parts from dataSource and send them given the aas data processor.
+ * Retrieves the parts from dataSource and send them given the aas data processor. The processor is resolved once per
+ * transfer. If an executor and a parallelism greater than one are configured, up to that many parts are sent
+ * concurrently. The result lists the failure of every part that was not transferred.
+ * <p>
+ * Given {@link AasDeltaWrites} and a destination with delta push, JSON parts are only written as a whole the first
+ * time. If the destination reported an ETag for that write, later writes of the same part send a JSON merge patch (or
+ * "$value" PATCH) of the changes conditioned on that ETag, or nothing if there are none. If the destination rejects
+ * the patch, or the changes cannot be patched without replacing arrays of elements, the part is written as a whole.
+ * <p>
+ * Change streams ({@link AasChangeStreamSource}) deliver parts until their transfer process is terminated. Given a
+ * change stream executor, they are transferred on a thread of that executor and the returned future completes when
+ * the stream ends, so that the thread starting the transfer is not held for the lifetime of the stream.
  */
 public class AasDataSink implements DataSink {
 
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String APPLICATION_JSON = "application/json";
+    private static final String ETAG = "ETag";
+
     private AasDataProcessorFactory aasDataProcessorFactory;
     private AasDataAddress aasDataAddress;
     private Monitor monitor;
+    private ExecutorService executorService;
+    private int maxParallelParts = 1;
+    private AasDeltaWrites deltaWrites;
+    private ExecutorService changeStreamExecutor;
 
 
     private AasDataSink() {}
@@ -48,47 +86,241 @@ public class AasDataSink implements DataSink {
 
     @Override
     public CompletableFuture<StreamResult<Object>> transfer(DataSource dataSource) {
-        var streamResult = dataSource.openPartStream();
-        if (streamResult.failed()) {
-            return completedFuture(failure(streamResult.getFailure()));
-        }
-
-        return streamResult.getContent()
-                .map(this::transferPart)
-                .allMatch(AbstractResult::succeeded) ? completedFuture(StreamResult.success()) : completedFuture(StreamResult.error("Some parts were not transferred correctly"));
-    }
-
-
-    private StreamResult<Object> transferPart(DataSource.Part part) {
         String accessUrl = aasDataAddress.getBaseUrl();
 
         if (accessUrl == null) {
-            return StreamResult.failure(
+            return completedFuture(StreamResult.failure(
                     new StreamFailure(
                             List.of("No base uri found"),
-                            StreamFailure.Reason.GENERAL_ERROR));
+                            StreamFailure.Reason.GENERAL_ERROR)));
+        }
+
+        if (dataSource instanceof AasChangeStreamSource && changeStreamExecutor != null) {
+            // The part stream is endless, the calling thread belongs to the data-plane's flow processing
+            try {
+                return CompletableFuture.supplyAsync(() -> transferParts(accessUrl, dataSource.openPartStream()).join(), changeStreamExecutor);
+            }
+            catch (RejectedExecutionException rejected) {
+                return completedFuture(StreamResult.failure(new StreamFailure(
+                        List.of("No thread available for change stream to %s".formatted(accessUrl)), StreamFailure.Reason.GENERAL_ERROR)));
+            }
+        }
+
+        // Asynchronously invoked operations are pushed once their result is available, without blocking this thread
+        var streamResultFuture = dataSource instanceof AasDataSource aasDataSource ?
+                aasDataSource.openPartStreamAsync() :
+                completedFuture(dataSource.openPartStream());
+
+        return streamResultFuture.thenCompose(streamResult -> transferParts(accessUrl, streamResult));
+    }
+
+
+    private CompletableFuture<StreamResult<Object>> transferParts(String accessUrl, StreamResult<Stream<DataSource.Part>> streamResult) {
+        if (streamResult.failed()) {
+            return completedFuture(failure(streamResult.getFailure()));
         }
 
         var aasDataProcessor = aasDataProcessorFactory.processorFor(accessUrl);
 
         if (aasDataProcessor.failed()) {
-            monitor.severe("Error writing HTTP data %s to endpoint %s:\n%s".formatted(part.name(),
-                    accessUrl,
-                    aasDataProcessor.getFailureMessages()));
+            monitor.severe("Error writing HTTP data to endpoint %s:\n%s".formatted(accessUrl, aasDataProcessor.getFailureMessages()));
+            return completedFuture(StreamResult.failure(new StreamFailure(aasDataProcessor.getFailureMessages(),
+                    StreamFailure.Reason.GENERAL_ERROR)));
+        }
+
+        var processor = aasDataProcessor.getContent();
 
-            return StreamResult.failure(new StreamFailure(aasDataProcessor.getFailureMessages(),
-                    StreamFailure.Reason.GENERAL_ERROR));
+        // Only failures are kept, change streams deliver parts for the whole lifetime of the transfer
+        var results = new PartResults();
+        var parts = streamResult.getContent();
+        if (executorService == null || maxParallelParts <= 1) {
+            parts.forEach(part -> results.record(transferPart(processor, accessUrl, part)));
+            return completedFuture(aggregate(results));
         }
 
-        try (var response = aasDataProcessor.getContent().send(aasDataAddress, part)) {
+        // Acquiring a permit before taking the next part bounds the number of parts in flight
+        var permits = new Semaphore(maxParallelParts);
+        Set<CompletableFuture<Void>> inFlight = ConcurrentHashMap.newKeySet();
+        parts.forEach(part -> {
+            permits.acquireUninterruptibly();
+            try {
+                var transfer = CompletableFuture
+                        .supplyAsync(() -> transferPart(processor, accessUrl, part), executorService)
+                        .exceptionally(throwable -> StreamResult.error("Part %s: %s".formatted(part.name(), throwable.getMessage())))
+                        .thenAccept(results::record);
+                inFlight.add(transfer);
+                transfer.whenComplete((ignored, throwable) -> {
+                    inFlight.remove(transfer);
+                    permits.release();
+                });
+            }
+            catch (RejectedExecutionException rejected) {
+                permits.release();
+                results.record(StreamResult.error("Part %s: not sent, executor rejected transfer".formatted(part.name())));
+            }
+        });
+
+        return CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> aggregate(results));
+    }
+
+
+    private StreamResult<Object> transferPart(AasDataProcessor processor, String accessUrl, DataSource.Part part) {
+        if (deltaWrites != null && aasDataAddress.isDeltaPush() && !aasDataAddress.getRequestPlan().binary()) {
+            return transferDelta(processor, accessUrl, part);
+        }
+        return write(accessUrl, part, () -> processor.send(aasDataAddress, part), null);
+    }
+
+
+    /* Send the changes since the last write of this part, or the whole part if they are unknown or rejected. */
+    private StreamResult<Object> transferDelta(AasDataProcessor processor, String accessUrl, DataSource.Part part) {
+        var key = AasDeltaWrites.keyOf(aasDataAddress, part.name());
+        var content = part.openStream();
+        byte[] bytes;
+        try {
+            bytes = content.readNBytes((int) Math.min(deltaWrites.maxEntrySize() + 1, Integer.MAX_VALUE));
+        }
+        catch (IOException e) {
+            closeQuietly(content);
+            return StreamResult.error("Part %s: could not be read: %s".formatted(part.name(), e.getMessage()));
+        }
+
+        if (bytes.length > deltaWrites.maxEntrySize()) {
+            // Too large to be kept, the part is streamed as a whole
+            deltaWrites.forget(key);
+            var whole = new AasPart(part.name(), new SequenceInputStream(new ByteArrayInputStream(bytes), content), part.mediaType(), part.size());
+            return write(accessUrl, whole, () -> processor.send(aasDataAddress, whole), null);
+        }
+        closeQuietly(content);
+
+        // Parts that are not JSON are written as a whole every time
+        var representation = parse(bytes);
+
+        // Content modifiers like $value can only be written via PATCH
+        var valueOnly = aasDataAddress.getRequestPlan().getContentPathSegment().isPresent();
+        var last = deltaWrites.last(key);
+        if (representation != null && last.isPresent()) {
+            var patch = JsonMergePatch.diff(last.get().representation(), representation, !valueOnly);
+            if (patch.isPresent() && patch.get().isEmpty()) {
+                return StreamResult.success("Part %s: destination is up to date".formatted(part.name()));
+            }
+
+            var patchBytes = patch.map(AasDataSink::toBytes).orElse(null);
+            if (patchBytes != null && patchBytes.length < bytes.length) {
+                var patchPart = new AasPart(part.name(), new ByteArrayInputStream(patchBytes), APPLICATION_JSON, patchBytes.length);
+                var result = write(accessUrl, patchPart, () -> processor.patch(aasDataAddress, patchPart, last.get().eTag()),
+                        response -> deltaWrites.remember(key, representation, response.header(ETAG)));
+                if (result.succeeded() || result.getFailure().getReason() == StreamFailure.Reason.NOT_AUTHORIZED) {
+                    return result;
+                }
+                // The destination changed since the last write or does not support the patch
+                monitor.debug("Part %s: patch not applied, writing the part as a whole: %s".formatted(part.name(), result.getFailureDetail()));
+            }
+        }
+
+        deltaWrites.forget(key);
+        var whole = new AasPart(part.name(), new ByteArrayInputStream(bytes), part.mediaType(), bytes.length);
+        return write(accessUrl, whole, () -> valueOnly ? processor.patch(aasDataAddress, whole, null) : processor.send(aasDataAddress, whole),
+                representation == null ? null : response -> deltaWrites.remember(key, representation, response.header(ETAG)));
+    }
+
+
+    private StreamResult<Object> write(String accessUrl, DataSource.Part part, Write write, @Nullable Consumer<Response> onSuccess) {
+        try (var response = write.send()) {
+            if (!response.isSuccessful()) {
+                var reason = switch (response.code()) {
+                    case 401, 403 -> StreamFailure.Reason.NOT_AUTHORIZED;
+                    case 404 -> StreamFailure.Reason.NOT_FOUND;
+                    default -> StreamFailure.Reason.GENERAL_ERROR;
+                };
+                return StreamResult.failure(new StreamFailure(List.of("Part %s: destination responded %d %s".formatted(part.name(), response.code(),
+                        response.message())), reason));
+            }
+            if (onSuccess != null) {
+                onSuccess.accept(response);
+            }
             return StreamResult.success("DataTransfer completed. Response from consumer: " + response.body());
         }
+        catch (AasHostBulkheads.RejectedException rejected) {
+            // The destination is saturated, the transfer can be retried later
+            return StreamResult.error("Part %s: %s".formatted(part.name(), rejected.getMessage()));
+        }
         catch (IOException e) {
-            var errorMessage = "IOException while data transferring to AAS: " + e.getMessage();
+            if (e instanceof SSLException) {
+                // Certificate of the service might have changed
+                aasDataProcessorFactory.invalidate(accessUrl);
+            }
+            var errorMessage = "Part %s: IOException while data transferring to AAS: %s".formatted(part.name(), e.getMessage());
             monitor.severe(() -> errorMessage, e);
             return StreamResult.error(errorMessage);
         }
+    }
+
+
+    private static @Nullable JsonNode parse(byte[] bytes) {
+        try {
+            return OBJECT_MAPPER.readTree(bytes);
+        }
+        catch (IOException notJson) {
+            return null;
+        }
+    }
+
+
+    private static byte[] toBytes(JsonNode json) {
+        try {
+            return OBJECT_MAPPER.writeValueAsBytes(json);
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        }
+        catch (IOException ignored) {
+            // Nothing left to read
+        }
+    }
+
+
+    private StreamResult<Object> aggregate(PartResults partResults) {
+        var failures = List.copyOf(partResults.failures);
+
+        if (failures.isEmpty()) {
+            return StreamResult.success();
+        }
+
+        var reasons = failures.stream().map(StreamFailure::getReason).distinct().toList();
+        var messages = failures.stream().flatMap(streamFailure -> streamFailure.getMessages().stream()).toList();
 
+        monitor.severe("%d of %d parts were not transferred to %s".formatted(failures.size(), partResults.count.get(), aasDataAddress.getBaseUrl()));
+
+        return StreamResult.failure(new StreamFailure(messages, reasons.size() == 1 ? reasons.get(0) : StreamFailure.Reason.GENERAL_ERROR));
+    }
+
+
+    @FunctionalInterface
+    private interface Write {
+        Response send() throws IOException;
+    }
+
+
+    private static final class PartResults {
+        private final AtomicInteger count = new AtomicInteger();
+        private final Queue<StreamFailure> failures = new ConcurrentLinkedQueue<>();
+
+
+        void record(StreamResult<Object> result) {
+            count.incrementAndGet();
+            if (result.failed()) {
+                failures.add(result.getFailure());
+            }
+        }
     }
 
 
@@ -124,6 +356,55 @@ public class AasDataSink implements DataSink {
         }
 
 
+        /**
+         * Executor sending parts concurrently. Without executor, parts are sent one after another.
+         *
+         * @param executorService The executor.
+         * @return This builder.
+         */
+        public Builder executorService(ExecutorService executorService) {
+            dataSink.executorService = executorService;
+            return this;
+        }
+
+
+        /**
+         * Maximum number of parts sent concurrently. Default: 1 (sequential).
+         *
+         * @param maxParallelParts Maximum number of parts in flight.
+         * @return This builder.
+         */
+        public Builder maxParallelParts(int maxParallelParts) {
+            dataSink.maxParallelParts = maxParallelParts;
+            return this;
+        }
+
+
+        /**
+         * Last written representations for destinations with delta push. Without, all parts are written as a whole.
+         *
+         * @param deltaWrites The representations, shared between sinks.
+         * @return This builder.
+         */
+        public Builder deltaWrites(AasDeltaWrites deltaWrites) {
+            dataSink.deltaWrites = deltaWrites;
+            return this;
+        }
+
+
+        /**
+         * Executor running the transfers of change streams, which block a thread until the transfer is terminated.
+         * Without, change streams are transferred on the thread calling {@link AasDataSink#transfer(DataSource)}.
+         *
+         * @param changeStreamExecutor The executor, one thread per running change stream.
+         * @return This builder.
+         */
+        public Builder changeStreamExecutor(ExecutorService changeStreamExecutor) {
+            dataSink.changeStreamExecutor = changeStreamExecutor;
+            return this;
+        }
+
+
         public AasDataSink build() {
             Objects.requireNonNull(dataSink.aasDataProcessorFactory, "aasManipulator");
             Objects.requireNonNull(dataSink.aasDataAddress, "aasDataAddress");
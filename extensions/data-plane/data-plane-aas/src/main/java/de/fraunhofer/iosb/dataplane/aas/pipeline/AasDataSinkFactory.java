@@ -23,6 +23,9 @@ import org.eclipse.edc.spi.monitor.Monitor;
 import org.eclipse.edc.spi.result.Result;
 import org.eclipse.edc.spi.types.domain.transfer.DataFlowStartMessage;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ExecutorService;
 
 import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.AAS_DATA_TYPE;
 
@@ -34,11 +37,66 @@ public class AasDataSinkFactory implements DataSinkFactory {
 
     private final Monitor monitor;
     private final AasDataProcessorFactory aasDataProcessorFactory;
+    private final ExecutorService executorService;
+    private final int maxParallelParts;
+    private final AasDeltaWrites deltaWrites;
+    private final ExecutorService changeStreamExecutor;
 
 
     public AasDataSinkFactory(Monitor monitor, AasDataProcessorFactory aasDataProcessorFactory) {
+        this(monitor, aasDataProcessorFactory, null, 1);
+    }
+
+
+    /**
+     * Class constructor
+     *
+     * @param monitor Monitor.
+     * @param aasDataProcessorFactory Creates processors for the destination services.
+     * @param executorService Executor sending parts concurrently, null for sequential transfers.
+     * @param maxParallelParts Maximum number of parts of one transfer sent concurrently.
+     */
+    public AasDataSinkFactory(Monitor monitor, AasDataProcessorFactory aasDataProcessorFactory, @Nullable ExecutorService executorService, int maxParallelParts) {
+        this(monitor, aasDataProcessorFactory, executorService, maxParallelParts, null);
+    }
+
+
+    /**
+     * Class constructor
+     *
+     * @param monitor Monitor.
+     * @param aasDataProcessorFactory Creates processors for the destination services.
+     * @param executorService Executor sending parts concurrently, null for sequential transfers.
+     * @param maxParallelParts Maximum number of parts of one transfer sent concurrently.
+     * @param deltaWrites Last written representations for destinations with delta push, null to always write parts
+     *         as a whole.
+     */
+    public AasDataSinkFactory(Monitor monitor, AasDataProcessorFactory aasDataProcessorFactory, @Nullable ExecutorService executorService, int maxParallelParts,
+                              @Nullable AasDeltaWrites deltaWrites) {
+        this(monitor, aasDataProcessorFactory, executorService, maxParallelParts, deltaWrites, null);
+    }
+
+
+    /**
+     * Class constructor
+     *
+     * @param monitor Monitor.
+     * @param aasDataProcessorFactory Creates processors for the destination services.
+     * @param executorService Executor sending parts concurrently, null for sequential transfers.
+     * @param maxParallelParts Maximum number of parts of one transfer sent concurrently.
+     * @param deltaWrites Last written representations for destinations with delta push, null to always write parts
+     *         as a whole.
+     * @param changeStreamExecutor Executor running the transfers of change streams, one thread per stream. Null to
+     *         run them on the thread starting the transfer.
+     */
+    public AasDataSinkFactory(Monitor monitor, AasDataProcessorFactory aasDataProcessorFactory, @Nullable ExecutorService executorService, int maxParallelParts,
+                              @Nullable AasDeltaWrites deltaWrites, @Nullable ExecutorService changeStreamExecutor) {
         this.monitor = monitor;
         this.aasDataProcessorFactory = aasDataProcessorFactory;
+        this.executorService = executorService;
+        this.maxParallelParts = maxParallelParts;
+        this.deltaWrites = deltaWrites;
+        this.changeStreamExecutor = changeStreamExecutor;
     }
 
 
@@ -57,6 +115,10 @@ public class AasDataSinkFactory implements DataSinkFactory {
                 .aasManipulator(aasDataProcessorFactory)
                 .monitor(monitor)
                 .aasDataAddress(dataAddress)
+                .executorService(executorService)
+                .maxParallelParts(maxParallelParts)
+                .deltaWrites(deltaWrites)
+                .changeStreamExecutor(changeStreamExecutor)
                 .build();
     }
 
@@ -15,9 +15,14 @@
  */
 package de.fraunhofer.iosb.dataplane.aas.pipeline;
 
+import de.fraunhofer.iosb.aas.lib.AasDataProcessor;
 import de.fraunhofer.iosb.aas.lib.AasDataProcessorFactory;
+import de.fraunhofer.iosb.aas.lib.http.AasHostBulkheads;
 import de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress;
+import de.fraunhofer.iosb.dataplane.aas.spi.LocalAasService;
+import de.fraunhofer.iosb.dataplane.aas.spi.LocalAasServiceRegistry;
 import okhttp3.MediaType;
+import okhttp3.Response;
 import okhttp3.ResponseBody;
 import org.eclipse.edc.connector.dataplane.spi.pipeline.DataSource;
 import org.eclipse.edc.connector.dataplane.spi.pipeline.StreamFailure;
@@ -27,17 +32,43 @@ import org.eclipse.edc.spi.monitor.Monitor;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Stream;
+import javax.net.ssl.SSLException;
 
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_BODY;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_OPERATION;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_PATH;
 import static java.lang.String.format;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 
 
 /**
  * Data source for new FA³ST with possibly self-signed certificate. Inspired by HttpDataAddress
+ * <p>
+ * If the data address points to multiple AAS elements, every element is fetched and returned as its own part, named
+ * after its path. Given an executor and a parallelism greater than one, the elements are fetched concurrently.
+ * <p>
+ * Given a {@link AasResponseCache}, identical GET requests of concurrent transfers are only sent once.
+ * <p>
+ * Operations flagged as asynchronous are invoked with invoke-async, see {@link #openPartStreamAsync()}.
+ * <p>
+ * If the base URL belongs to an AAS service running in the same JVM (see {@link LocalAasServiceRegistry}), elements
+ * are read from the service directly, without HTTP request, TLS handshake or certificate retrieval.
+ * <p>
+ * Attachments of File and Blob elements and AASX packages are streamed with the media type reported by the service,
+ * bypassing the response cache. A byte range of the address is sent as Range header, so downloads can be resumed.
  */
 public class AasDataSource implements DataSource {
 
@@ -45,11 +76,19 @@ public class AasDataSource implements DataSource {
     private static final int NOT_AUTHORIZED = 403;
     private static final int NOT_FOUND = 404;
     private static final String APPLICATION_JSON = "application/json";
-    private final AtomicReference<ResponseBodyStream> responseBodyStream = new AtomicReference<>();
+    private static final String APPLICATION_OCTET_STREAM = "application/octet-stream";
+    private final List<ResponseBodyStream> responseBodyStreams = new CopyOnWriteArrayList<>();
     private String requestId;
     private Monitor monitor;
     private AasDataProcessorFactory aasDataProcessorFactory;
     private AasDataAddress aasDataAddress;
+    private ExecutorService executorService;
+    private int maxParallelRequests = 1;
+    private AasResponseCache responseCache;
+    private AasOperationPolling operationPolling = AasOperationPolling.DEFAULT;
+    private Clock clock = Clock.systemUTC();
+    private LocalAasServiceRegistry localServices;
+    private volatile AasOperationPoller operationPoller;
 
 
     private AasDataSource() {}
@@ -57,6 +96,225 @@ public class AasDataSource implements DataSource {
 
     @Override
     public StreamResult<Stream<Part>> openPartStream() {
+        if (aasDataAddress.isAsyncOperation()) {
+            // Waits for the operation in the calling thread, AAS data sinks use openPartStreamAsync instead
+            return openPartStreamAsync().join();
+        }
+
+        var localResult = openLocalPartStream();
+        if (localResult.isPresent()) {
+            return localResult.get();
+        }
+
+        var aasDataProcessorResult = resolveProcessor();
+        if (aasDataProcessorResult.failed()) {
+            return StreamResult.failure(aasDataProcessorResult.getFailure());
+        }
+
+        var processor = aasDataProcessorResult.getContent();
+        var baseUrlString = aasDataAddress.getBaseUrl();
+
+        if (aasDataAddress.isMultiElement()) {
+            return openPartStreams(processor, baseUrlString);
+        }
+
+        try {
+            var partResult = fetch(processor, aasDataAddress, "AAS Part");
+            if (partResult.failed()) {
+                return StreamResult.failure(partResult.getFailure());
+            }
+            return StreamResult.success(Stream.of(partResult.getContent()));
+        }
+        catch (AasHostBulkheads.RejectedException rejected) {
+            // The source is saturated, the transfer can be retried later
+            return StreamResult.error(rejected.getMessage());
+        }
+        catch (IOException e) {
+            if (e instanceof SSLException) {
+                // Certificate of the service might have changed
+                aasDataProcessorFactory.invalidate(baseUrlString);
+            }
+            throw new EdcException(e);
+        }
+    }
+
+
+    /**
+     * Open the part stream without waiting in the calling thread for asynchronously invoked operations. The operation
+     * status is polled with the configured interval and the future completes once the operation result is available.
+     * Other addresses are handled like {@link #openPartStream()}.
+     *
+     * @return Future completing with the part stream.
+     */
+    public CompletableFuture<StreamResult<Stream<Part>>> openPartStreamAsync() {
+        if (!aasDataAddress.isAsyncOperation()) {
+            return completedFuture(openPartStream());
+        }
+
+        var aasDataProcessorResult = resolveProcessor();
+        if (aasDataProcessorResult.failed()) {
+            return completedFuture(StreamResult.failure(aasDataProcessorResult.getFailure()));
+        }
+
+        // Closing the source stops polling
+        operationPoller = new AasOperationPoller(aasDataProcessorResult.getContent(), aasDataAddress, operationPolling, executorService, clock,
+                monitor);
+
+        return operationPoller.invoke().thenApply(responseResult -> {
+            if (responseResult.failed()) {
+                monitor.severe("Failed to get operation result from source: %s".formatted(responseResult.getFailureDetail()));
+                return StreamResult.failure(responseResult.getFailure());
+            }
+            try {
+                var partResult = toPart(responseResult.getContent(), "AAS Part", false);
+                return partResult.failed() ? StreamResult.failure(partResult.getFailure()) : StreamResult.success(Stream.of(partResult.getContent()));
+            }
+            catch (IOException e) {
+                return StreamResult.error("Reading AAS operation result failed: %s".formatted(e.getMessage()));
+            }
+        });
+    }
+
+
+    @Override
+    public void close() {
+        var poller = operationPoller;
+        if (poller != null) {
+            poller.cancel();
+        }
+        for (var bodyStream: responseBodyStreams) {
+            bodyStream.responseBody().close();
+            try {
+                bodyStream.stream().close();
+            }
+            catch (IOException e) {
+                // do nothing --> closing the response body should close the inputStream as well...
+            }
+        }
+    }
+
+
+    /*
+     * Read all elements from a co-located AAS service. Empty if the base URL does not belong to one or the service
+     * cannot serve one of the elements in-process, the transfer then uses HTTP.
+     */
+    private Optional<StreamResult<Stream<Part>>> openLocalPartStream() {
+        if (localServices == null || aasDataAddress.hasProperty(PROXY_PATH) || aasDataAddress.hasProperty(PROXY_OPERATION) ||
+                aasDataAddress.hasProperty(PROXY_BODY)) {
+            return Optional.empty();
+        }
+
+        var localService = localServices.resolve(aasDataAddress.getBaseUrl());
+        if (localService.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<String> paths;
+        try {
+            paths = aasDataAddress.getRequestPlan().paths();
+        }
+        catch (IllegalStateException | IllegalArgumentException e) {
+            monitor.severe("Failed to open part stream: %s".formatted(e.getMessage()));
+            return Optional.of(StreamResult.error(e.getMessage()));
+        }
+
+        List<Part> parts = new ArrayList<>();
+        for (var path: paths) {
+            var elementAddress = aasDataAddress.isMultiElement() ?
+                    AasDataAddress.Builder.newInstance().copyFrom(aasDataAddress).path(path).build() :
+                    aasDataAddress;
+
+            var response = localService.get().read(elementAddress.getRequestPlan());
+            if (response.isEmpty()) {
+                monitor.debug("Request %s: %s not served in-process, falling back to HTTP".formatted(requestId, path));
+                return Optional.empty();
+            }
+
+            var partResult = toPart(response.get(), aasDataAddress.isMultiElement() ? path : "AAS Part");
+            if (partResult.failed()) {
+                return Optional.of(StreamResult.failure(partResult.getFailure()));
+            }
+            parts.add(partResult.getContent());
+        }
+        return Optional.of(StreamResult.success(parts.stream()));
+    }
+
+
+    /*
+     * Fetch every element of a multi-element address, up to maxParallelRequests at once. All elements must be
+     * retrieved, else the transfer fails and the bodies that were already opened are closed.
+     */
+    private StreamResult<Stream<Part>> openPartStreams(AasDataProcessor processor, String baseUrlString) {
+        List<String> paths;
+        try {
+            paths = aasDataAddress.getRequestPlan().paths();
+        }
+        catch (IllegalStateException | IllegalArgumentException e) {
+            monitor.severe("Failed to open part stream: %s".formatted(e.getMessage()));
+            return StreamResult.error(e.getMessage());
+        }
+
+        var permits = new Semaphore(Math.max(1, maxParallelRequests));
+        List<CompletableFuture<StreamResult<Part>>> fetches = new ArrayList<>();
+        for (var path: paths) {
+            var elementAddress = AasDataAddress.Builder.newInstance()
+                    .copyFrom(aasDataAddress)
+                    .path(path)
+                    .build();
+
+            if (executorService == null || maxParallelRequests <= 1) {
+                fetches.add(completedFuture(fetchElement(processor, baseUrlString, elementAddress, path)));
+                continue;
+            }
+
+            // Acquiring a permit before submitting the next request bounds the number of requests in flight
+            permits.acquireUninterruptibly();
+            try {
+                fetches.add(CompletableFuture
+                        .supplyAsync(() -> fetchElement(processor, baseUrlString, elementAddress, path), executorService)
+                        .exceptionally(throwable -> StreamResult.error("Part %s: %s".formatted(path, throwable.getMessage())))
+                        .whenComplete((result, throwable) -> permits.release()));
+            }
+            catch (RejectedExecutionException rejected) {
+                permits.release();
+                fetches.add(completedFuture(StreamResult.error("Part %s: not fetched, executor rejected request".formatted(path))));
+            }
+        }
+
+        var results = fetches.stream().map(CompletableFuture::join).toList();
+        var failures = results.stream().filter(StreamResult::failed).map(StreamResult::getFailure).toList();
+
+        if (failures.isEmpty()) {
+            return StreamResult.success(results.stream().map(StreamResult::getContent));
+        }
+
+        close();
+        monitor.severe("%d of %d parts could not be fetched from %s".formatted(failures.size(), results.size(), baseUrlString));
+
+        var reasons = failures.stream().map(StreamFailure::getReason).distinct().toList();
+        var messages = failures.stream().flatMap(streamFailure -> streamFailure.getMessages().stream()).toList();
+        return StreamResult.failure(new StreamFailure(messages, reasons.size() == 1 ? reasons.get(0) : StreamFailure.Reason.GENERAL_ERROR));
+    }
+
+
+    private StreamResult<Part> fetchElement(AasDataProcessor processor, String baseUrlString, AasDataAddress elementAddress, String path) {
+        try {
+            return fetch(processor, elementAddress, path);
+        }
+        catch (AasHostBulkheads.RejectedException rejected) {
+            return StreamResult.error("Part %s: %s".formatted(path, rejected.getMessage()));
+        }
+        catch (IOException e) {
+            if (e instanceof SSLException) {
+                // Certificate of the service might have changed
+                aasDataProcessorFactory.invalidate(baseUrlString);
+            }
+            return StreamResult.error("Part %s: IOException while fetching AAS data: %s".formatted(path, e.getMessage()));
+        }
+    }
+
+
+    private StreamResult<AasDataProcessor> resolveProcessor() {
         String baseUrlString = aasDataAddress.getBaseUrl();
 
         if (baseUrlString == null) {
@@ -75,65 +333,79 @@ public class AasDataSource implements DataSource {
                     StreamFailure.Reason.GENERAL_ERROR));
         }
 
-        try {
-            // NB: Do not close the response as the body input stream needs to be read after this method returns. The
-            // response closes the body stream.
-            var response = aasDataProcessorResult.getContent().getFromAas(aasDataAddress);
-
-            if (response.isSuccessful()) {
-                var body = response.body();
-                if (body == null) {
-                    throw new EdcException(format("Received empty response body transferring AAS data for request %s:" +
-                            " %s", requestId, response.code()));
-                }
-                var bodyStream = body.byteStream();
-                responseBodyStream.set(new ResponseBodyStream(body, bodyStream));
-                var mediaType = Optional.ofNullable(body.contentType()).map(MediaType::toString).orElse(APPLICATION_JSON);
-                return StreamResult.success(Stream.of(new AasPart("AAS Part", bodyStream, mediaType)));
+        return StreamResult.success(aasDataProcessorResult.getContent());
+    }
+
+
+    private StreamResult<Part> fetch(AasDataProcessor processor, AasDataAddress address, String partName) throws IOException {
+        // NB: Do not close the response as the body input stream needs to be read after this method returns. The
+        // response closes the body stream.
+        var plan = address.getRequestPlan();
+        // Binary content and byte ranges are streamed, never buffered for other transfers
+        var response = responseCache == null || plan.binary() || plan.getRange().isPresent() ?
+                processor.getFromAas(address) :
+                responseCache.execute(address, processor::getFromAas);
+        return toPart(response, partName, plan.binary());
+    }
+
 
+    private StreamResult<Part> toPart(LocalAasService.Response response, String partName) {
+        if (response.isSuccessful()) {
+            return StreamResult.success(new AasPart(partName, response.body(), response.mediaType(), response.contentLength()));
+        }
+
+        try (var body = response.body()) {
+            if (NOT_AUTHORIZED == response.code() || FORBIDDEN == response.code()) {
+                monitor.severe("Failed to get data from co-located source: %s".formatted(response.code()));
+                return StreamResult.notAuthorized();
             }
-            else {
-                try {
-                    if (NOT_AUTHORIZED == response.code() || FORBIDDEN == response.code()) {
-                        monitor.severe("Failed to get data from source: %s".formatted(response.code()));
-                        return StreamResult.notAuthorized();
-                    }
-                    else if (NOT_FOUND == response.code()) {
-                        monitor.severe("Failed to get data from source: %s".formatted(response.code()));
-                        return StreamResult.notFound();
-                    }
-                    else {
-                        return StreamResult.error(format("Received code transferring AAS data: %s - %s. More Information: %s",
-                                response.code(), response.message(), response.body().string()));
-                    }
-                }
-                finally {
-                    try {
-                        response.close();
-                    }
-                    catch (Exception e) {
-                        monitor.severe("Error closing failed response", e);
-                    }
-                }
+            else if (NOT_FOUND == response.code()) {
+                monitor.severe("Failed to get data from co-located source: %s".formatted(response.code()));
+                return StreamResult.notFound();
             }
-
+            return StreamResult.error(format("Received code transferring AAS data: %s. More Information: %s",
+                    response.code(), new String(body.readAllBytes(), StandardCharsets.UTF_8)));
         }
         catch (IOException e) {
-            throw new EdcException(e);
+            return StreamResult.error(format("Received code transferring AAS data: %s", response.code()));
         }
     }
 
 
-    @Override
-    public void close() {
-        var bodyStream = responseBodyStream.get();
-        if (bodyStream != null) {
-            bodyStream.responseBody().close();
+    private StreamResult<Part> toPart(Response response, String partName, boolean binary) throws IOException {
+        if (response.isSuccessful()) {
+            var body = response.body();
+            if (body == null) {
+                throw new EdcException(format("Received empty response body transferring AAS data for request %s:" +
+                        " %s", requestId, response.code()));
+            }
+            var bodyStream = body.byteStream();
+            responseBodyStreams.add(new ResponseBodyStream(body, bodyStream));
+            // Attachments keep the media type of their File or Blob element, e.g., application/pdf
+            var mediaType = Optional.ofNullable(body.contentType()).map(MediaType::toString).orElse(binary ? APPLICATION_OCTET_STREAM : APPLICATION_JSON);
+            return StreamResult.success(new AasPart(partName, bodyStream, mediaType, body.contentLength()));
+        }
+
+        try {
+            if (NOT_AUTHORIZED == response.code() || FORBIDDEN == response.code()) {
+                monitor.severe("Failed to get data from source: %s".formatted(response.code()));
+                return StreamResult.notAuthorized();
+            }
+            else if (NOT_FOUND == response.code()) {
+                monitor.severe("Failed to get data from source: %s".formatted(response.code()));
+                return StreamResult.notFound();
+            }
+            else {
+                return StreamResult.error(format("Received code transferring AAS data: %s - %s. More Information: %s",
+                        response.code(), response.message(), response.body().string()));
+            }
+        }
+        finally {
             try {
-                bodyStream.stream().close();
+                response.close();
             }
-            catch (IOException e) {
-                // do nothing --> closing the response body should close the inputStream as well...
+            catch (Exception e) {
+                monitor.severe("Error closing failed response", e);
             }
         }
     }
@@ -180,6 +452,76 @@ public class AasDataSource implements DataSource {
         }
 
 
+        /**
+         * Executor fetching the elements of a multi-element address concurrently and polling asynchronously invoked
+         * operations. Without executor, elements are fetched one after another and operations are polled on a shared
+         * pool of daemon threads.
+         *
+         * @param executorService The executor.
+         * @return This builder.
+         */
+        public Builder executorService(ExecutorService executorService) {
+            dataSource.executorService = executorService;
+            return this;
+        }
+
+
+        /**
+         * Maximum number of elements fetched concurrently. Default: 1 (sequential).
+         *
+         * @param maxParallelRequests Maximum number of requests in flight.
+         * @return This builder.
+         */
+        public Builder maxParallelRequests(int maxParallelRequests) {
+            dataSource.maxParallelRequests = maxParallelRequests;
+            return this;
+        }
+
+
+        /**
+         * Coalesces identical concurrent GET requests and caches their responses. Without cache, every transfer
+         * sends its own requests.
+         *
+         * @param responseCache The cache, shared between data sources.
+         * @return This builder.
+         */
+        public Builder responseCache(AasResponseCache responseCache) {
+            dataSource.responseCache = responseCache;
+            return this;
+        }
+
+
+        /**
+         * Polling of asynchronously invoked operations. Default: {@link AasOperationPolling#DEFAULT}.
+         *
+         * @param operationPolling Poll interval and timeout.
+         * @return This builder.
+         */
+        public Builder operationPolling(AasOperationPolling operationPolling) {
+            dataSource.operationPolling = operationPolling;
+            return this;
+        }
+
+
+        public Builder clock(Clock clock) {
+            dataSource.clock = clock;
+            return this;
+        }
+
+
+        /**
+         * AAS services running in this JVM. Data addresses with the base URL of such a service are read from it
+         * directly. Without registry, every element is fetched via HTTP.
+         *
+         * @param localServices The registry of co-located services.
+         * @return This builder.
+         */
+        public Builder localServices(LocalAasServiceRegistry localServices) {
+            dataSource.localServices = localServices;
+            return this;
+        }
+
+
         public AasDataSource build() {
             Objects.requireNonNull(dataSource.requestId, "requestId");
             Objects.requireNonNull(dataSource.aasDataProcessorFactory, "httpClient");
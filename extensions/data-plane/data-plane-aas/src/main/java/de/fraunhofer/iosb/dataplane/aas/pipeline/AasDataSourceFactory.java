@@ -17,32 +17,91 @@ package de.fraunhofer.iosb.dataplane.aas.pipeline;
 
 import de.fraunhofer.iosb.aas.lib.AasDataProcessorFactory;
 import de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress;
+import de.fraunhofer.iosb.dataplane.aas.spi.LocalAasServiceRegistry;
 import org.eclipse.edc.connector.dataplane.spi.pipeline.DataSource;
 import org.eclipse.edc.connector.dataplane.spi.pipeline.DataSourceFactory;
 import org.eclipse.edc.spi.monitor.Monitor;
 import org.eclipse.edc.spi.result.Result;
 import org.eclipse.edc.spi.types.domain.transfer.DataFlowStartMessage;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
 
 import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.AAS_DATA_TYPE;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.AAS_IDS;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.ATTACHMENT;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.CHANGE_STREAM;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.CHANGE_STREAM_INTERVAL;
 import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_BODY;
 import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_METHOD;
 import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_OPERATION;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_OPERATION_ASYNC;
 import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_PATH;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.RANGE;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.SERIALIZATION_MODIFIERS;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.SUBMODEL_IDS;
 
 
 /**
  * Inspired by org.eclipse.edc.connector.dataplane.http.pipeline.HttpDataSourceFactory
+ * <p>
+ * If the data destination requests a change stream, an {@link AasChangeStreamSource} is created which pushes the
+ * addressed elements whenever they change, until the transfer process ends.
  */
 public class AasDataSourceFactory implements DataSourceFactory {
 
+    public static final Duration DEFAULT_CHANGE_STREAM_INTERVAL = Duration.ofSeconds(1);
+
     private final Monitor monitor;
     private final AasDataProcessorFactory aasDataProcessorFactory;
+    private final ExecutorService executorService;
+    private final int maxParallelRequests;
+    private final AasResponseCache responseCache;
+    private final AasOperationPolling operationPolling;
+    private final LocalAasServiceRegistry localServices;
+    private final Duration changeStreamInterval;
 
 
     public AasDataSourceFactory(Monitor monitor, AasDataProcessorFactory aasDataProcessorFactory) {
+        this(monitor, aasDataProcessorFactory, null, 1, null, AasOperationPolling.DEFAULT, null, DEFAULT_CHANGE_STREAM_INTERVAL);
+    }
+
+
+    public AasDataSourceFactory(Monitor monitor, AasDataProcessorFactory aasDataProcessorFactory, @Nullable ExecutorService executorService,
+                                int maxParallelRequests, @Nullable AasResponseCache responseCache, AasOperationPolling operationPolling) {
+        this(monitor, aasDataProcessorFactory, executorService, maxParallelRequests, responseCache, operationPolling, null,
+                DEFAULT_CHANGE_STREAM_INTERVAL);
+    }
+
+
+    /**
+     * Class constructor
+     *
+     * @param monitor Monitor.
+     * @param aasDataProcessorFactory Creates processors for the source services.
+     * @param executorService Executor fetching the elements of multi-element addresses concurrently, null for
+     *         sequential requests.
+     * @param maxParallelRequests Maximum number of elements of one transfer fetched concurrently.
+     * @param responseCache Coalesces and caches GET requests of all sources, null to send every request.
+     * @param operationPolling Poll interval and timeout of asynchronously invoked operations.
+     * @param localServices AAS services running in this JVM which are read from directly, null to always use HTTP.
+     * @param changeStreamInterval Default poll interval of change streams from services without change events.
+     */
+    public AasDataSourceFactory(Monitor monitor, AasDataProcessorFactory aasDataProcessorFactory, @Nullable ExecutorService executorService,
+                                int maxParallelRequests, @Nullable AasResponseCache responseCache, AasOperationPolling operationPolling,
+                                @Nullable LocalAasServiceRegistry localServices, Duration changeStreamInterval) {
         this.monitor = monitor;
         this.aasDataProcessorFactory = aasDataProcessorFactory;
+        this.executorService = executorService;
+        this.maxParallelRequests = maxParallelRequests;
+        this.responseCache = responseCache;
+        this.operationPolling = operationPolling;
+        this.localServices = localServices;
+        this.changeStreamInterval = changeStreamInterval;
     }
 
 
@@ -54,34 +113,108 @@ public class AasDataSourceFactory implements DataSourceFactory {
 
     @Override
     public DataSource createSource(DataFlowStartMessage request) {
-        var dataSource = AasDataSource.Builder.newInstance()
+        var dataAddress = sourceAddress(request);
+
+        if (dataAddress.isChangeStream()) {
+            var pollInterval = dataAddress.getChangeStreamInterval().orElse(changeStreamInterval);
+            var localService = localServices == null || dataAddress.hasProperty(PROXY_PATH) ?
+                    null :
+                    localServices.resolve(dataAddress.getBaseUrl()).orElse(null);
+
+            return AasChangeStreamSource.Builder.newInstance()
+                    .reader(() -> dataSource(request.getId(), dataAddress))
+                    .localService(localService)
+                    .pollInterval(pollInterval)
+                    .monitor(monitor)
+                    .requestId(request.getId())
+                    .build();
+        }
+
+        return dataSource(request.getId(), dataAddress);
+    }
+
+
+    @Override
+    public @NotNull Result<Void> validateRequest(DataFlowStartMessage request) {
+        try (var ignored = createSource(request)) {
+            return Result.success();
+        }
+        catch (Exception e) {
+            return Result.failure("Failed to validate AAS data source: " + e.getMessage());
+        }
+    }
+
+
+    private AasDataSource dataSource(String requestId, AasDataAddress dataAddress) {
+        return AasDataSource.Builder.newInstance()
                 .aasDataProcessorFactory(aasDataProcessorFactory)
                 .monitor(monitor)
-                .requestId(request.getId());
+                .executorService(executorService)
+                .maxParallelRequests(maxParallelRequests)
+                .responseCache(responseCache)
+                .operationPolling(operationPolling)
+                .localServices(localServices)
+                .requestId(requestId)
+                .aasDataAddress(dataAddress)
+                .build();
+    }
+
 
+    private AasDataAddress sourceAddress(DataFlowStartMessage request) {
         var destination = request.getDestinationDataAddress();
 
         // https://faaast-service.readthedocs.io/en/latest/interfaces/endpoint.html#http
         var dataAddress = AasDataAddress.Builder.newInstance()
                 .copyFrom(request.getSourceDataAddress())
                 .proxyOperation(destination.getStringProperty(PROXY_OPERATION))
+                .proxyOperationAsync(destination.getStringProperty(PROXY_OPERATION_ASYNC))
                 .proxyMethod(destination.getStringProperty(PROXY_METHOD))
                 .proxyBody(destination.getStringProperty(PROXY_BODY))
                 .proxyPath(destination.getStringProperty(PROXY_PATH));
 
-        return dataSource
-                .aasDataAddress(dataAddress.build())
-                .build();
+        // Consumers can request a smaller serialization of the element, e.g., only its value
+        SERIALIZATION_MODIFIERS.stream()
+                .filter(destination::hasProperty)
+                .forEach(modifier -> dataAddress.property(modifier, destination.getStringProperty(modifier)));
+
+        // Consumers can ask for the attachment of a File or Blob element instead of its serialization, or resume a download
+        Stream.of(ATTACHMENT, RANGE)
+                .filter(destination::hasProperty)
+                .forEach(property -> dataAddress.property(property, destination.getStringProperty(property)));
+
+        // Consumers can ask for a long-lived transfer pushing changed values instead of a single transfer
+        if (destination.hasProperty(CHANGE_STREAM)) {
+            dataAddress.changeStream(destination.getStringProperty(CHANGE_STREAM))
+                    .changeStreamInterval(destination.getStringProperty(CHANGE_STREAM_INTERVAL));
+        }
+
+        var sourceAddress = dataAddress.build();
+        // Consumers can narrow an environment down to the shells and submodels they need, but not widen it
+        if (sourceAddress.isSerialization() && (destination.hasProperty(AAS_IDS) || destination.hasProperty(SUBMODEL_IDS))) {
+            return narrowSerialization(sourceAddress, AasDataAddress.Builder.newInstance().copyFrom(destination).build());
+        }
+        return sourceAddress;
     }
 
 
-    @Override
-    public @NotNull Result<Void> validateRequest(DataFlowStartMessage request) {
-        try (var ignored = createSource(request)) {
-            return Result.success();
+    private static AasDataAddress narrowSerialization(AasDataAddress sourceAddress, AasDataAddress requested) {
+        // A /serialization address without identifiers offers the whole environment of the repository
+        var wholeEnvironment = sourceAddress.getAasIds().isEmpty() && sourceAddress.getSubmodelIds().isEmpty();
+        var narrowed = AasDataAddress.Builder.newInstance().copyFrom(sourceAddress);
+        if (requested.hasProperty(AAS_IDS)) {
+            narrowed.aasIds(subset("shells", sourceAddress.getAasIds(), requested.getAasIds(), wholeEnvironment));
         }
-        catch (Exception e) {
-            return Result.failure("Failed to validate AAS data source: " + e.getMessage());
+        if (requested.hasProperty(SUBMODEL_IDS)) {
+            narrowed.submodelIds(subset("submodels", sourceAddress.getSubmodelIds(), requested.getSubmodelIds(), wholeEnvironment));
+        }
+        return narrowed.build();
+    }
+
+
+    private static List<String> subset(String kind, List<String> offered, List<String> requested, boolean offersAll) {
+        if (requested.isEmpty() || !offersAll && !offered.containsAll(requested)) {
+            throw new IllegalArgumentException("Requested %s must be a non-empty subset of the asset's %s".formatted(kind, kind));
         }
+        return requested;
     }
 }
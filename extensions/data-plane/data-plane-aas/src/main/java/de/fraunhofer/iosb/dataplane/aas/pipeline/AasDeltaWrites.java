@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.dataplane.aas.pipeline;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+
+/**
+ * Last representations written by AAS data sinks with delta push, per destination and part. Subsequent writes of the
+ * same part only send the changes to this representation.
+ * <p>
+ * Only representations the destination reported an ETag for are kept: without it, a patch could be applied to a
+ * resource changed by someone else in the meantime. Representations larger than the configured size are not kept,
+ * the least recently written representations are evicted first.
+ */
+public class AasDeltaWrites {
+
+    public static final int DEFAULT_MAX_ENTRIES = 256;
+    public static final long DEFAULT_MAX_ENTRY_SIZE = 4 * 1024 * 1024;
+
+    private final long maxEntrySize;
+    private final Map<String, Written> entries;
+
+
+    /**
+     * Class constructor
+     *
+     * @param maxEntries Maximum number of kept representations.
+     * @param maxEntrySize Maximum size of a kept representation in bytes.
+     */
+    public AasDeltaWrites(int maxEntries, long maxEntrySize) {
+        var boundedMaxEntries = Math.max(0, maxEntries);
+        this.maxEntrySize = Math.max(0, maxEntrySize);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Written> eldest) {
+                return size() > boundedMaxEntries;
+            }
+        };
+    }
+
+
+    /**
+     * Key of the representation of a part written to a destination.
+     *
+     * @param destination The destination address.
+     * @param partName The name of the written part.
+     * @return The key.
+     */
+    public static String keyOf(AasDataAddress destination, String partName) {
+        var plan = destination.getRequestPlan();
+        return String.join("\n", plan.baseUrl(), plan.path(), plan.getContentPathSegment().orElse(""), String.valueOf(partName));
+    }
+
+
+    public long maxEntrySize() {
+        return maxEntrySize;
+    }
+
+
+    /**
+     * Get the representation last written with this key.
+     *
+     * @param key The key.
+     * @return The representation, empty if none is known.
+     */
+    public Optional<Written> last(String key) {
+        synchronized (entries) {
+            return Optional.ofNullable(entries.get(key));
+        }
+    }
+
+
+    /**
+     * Keep a successfully written representation.
+     *
+     * @param key The key.
+     * @param representation The representation as it was written.
+     * @param eTag ETag of the written resource reported by the destination. If null, the representation is
+     *         forgotten and the next write is a full write.
+     */
+    public void remember(String key, JsonNode representation, @Nullable String eTag) {
+        synchronized (entries) {
+            if (eTag == null) {
+                entries.remove(key);
+            }
+            else {
+                entries.put(key, new Written(representation, eTag));
+            }
+        }
+    }
+
+
+    /**
+     * Forget the representation, the next write is a full write.
+     *
+     * @param key The key.
+     */
+    public void forget(String key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+
+    /**
+     * A written representation.
+     *
+     * @param representation The written JSON.
+     * @param eTag ETag reported by the destination, sent as If-Match with the next patch.
+     */
+    public record Written(JsonNode representation, String eTag) {
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.dataplane.aas.pipeline;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fraunhofer.iosb.aas.lib.AasDataProcessor;
+import de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress;
+import okhttp3.HttpUrl;
+import okhttp3.Response;
+import org.eclipse.edc.connector.dataplane.spi.pipeline.StreamResult;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+
+/**
+ * Invokes an AAS operation asynchronously and polls its operation-status handle until the operation has completed.
+ * Polls are scheduled with a delay instead of waiting in a thread, so no thread is blocked while the operation runs.
+ * A poller is used for one invocation only and stops polling once {@link #cancel()} is called.
+ * <p>
+ * See <a href="https://faaast-service.readthedocs.io/en/latest/interfaces/endpoint.html#invoking-operations">FA³ST
+ * HTTP endpoint</a>.
+ */
+class AasOperationPoller {
+
+    private static final int ACCEPTED = 202;
+    private static final String LOCATION = "Location";
+    private static final String EXECUTION_STATE = "executionState";
+    private static final String OPERATION_STATUS = "operation-status";
+    private static final String OPERATION_RESULTS = "operation-results";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final AtomicInteger POLL_THREAD_COUNT = new AtomicInteger();
+    // Runs the polls of sources without executor. Every poll blocks its thread for one request
+    private static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        var thread = new Thread(runnable, "aas-operation-poll-" + POLL_THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AasDataProcessor processor;
+    private final AasDataAddress address;
+    private final AasOperationPolling polling;
+    private final Executor executor;
+    private final Clock clock;
+    private final Monitor monitor;
+    private final CompletableFuture<StreamResult<Response>> result = new CompletableFuture<>();
+    private volatile CompletableFuture<Void> pendingPoll;
+
+
+    /**
+     * Class constructor
+     *
+     * @param processor Sends the requests to the AAS service.
+     * @param address Address of the operation.
+     * @param polling Poll interval and timeout.
+     * @param executor Executor running the polls, null for a shared pool of this class.
+     * @param clock Clock of the timeout.
+     * @param monitor Monitor.
+     */
+    AasOperationPoller(AasDataProcessor processor, AasDataAddress address, AasOperationPolling polling, @Nullable Executor executor, Clock clock,
+                       Monitor monitor) {
+        this.processor = processor;
+        this.address = address;
+        this.polling = polling;
+        this.executor = executor == null ? DEFAULT_EXECUTOR : executor;
+        this.clock = clock;
+        this.monitor = monitor;
+    }
+
+
+    /**
+     * Invoke the operation.
+     *
+     * @return Completes with the response of the operation-results handle, or the response to the invocation if the
+     *         service did not accept the asynchronous invocation. The caller has to close the response.
+     *         Completes with a failure if the poller is cancelled before.
+     */
+    CompletableFuture<StreamResult<Response>> invoke() {
+        Response response;
+        try {
+            response = processor.getFromAas(address);
+        }
+        catch (IOException e) {
+            return completedFuture(StreamResult.error("Invoking AAS operation failed: %s".formatted(e.getMessage())));
+        }
+
+        if (response.code() != ACCEPTED) {
+            // Either the service rejected the invocation or answered synchronously; both are handled like a GET
+            return completedFuture(StreamResult.success(response));
+        }
+
+        var location = response.header(LOCATION);
+        var statusUrl = location == null ? null : response.request().url().resolve(location);
+        response.close();
+        if (statusUrl == null) {
+            return completedFuture(StreamResult.error("AAS service accepted the operation but returned no operation-status handle"));
+        }
+
+        schedulePoll(statusUrl, clock.instant().plus(polling.timeout()));
+        return result;
+    }
+
+
+    /**
+     * Stop polling. A pending invocation completes with a failure, a result fetched afterwards is closed.
+     */
+    void cancel() {
+        result.complete(StreamResult.error("Polling AAS operation cancelled"));
+        var poll = pendingPoll;
+        if (poll != null) {
+            // A cancelled poll which has not started yet is not run anymore
+            poll.cancel(false);
+        }
+    }
+
+
+    private void schedulePoll(HttpUrl statusUrl, Instant deadline) {
+        if (result.isDone()) {
+            return;
+        }
+        // The delayed executor hands the poll to the executor only after the delay, so a rejection is not thrown here
+        Executor submitter = task -> {
+            try {
+                executor.execute(task);
+            }
+            catch (RejectedExecutionException rejected) {
+                result.complete(StreamResult.error("Polling AAS operation %s rejected by executor".formatted(statusUrl)));
+            }
+        };
+        var poll = CompletableFuture.runAsync(() -> poll(statusUrl, deadline),
+                CompletableFuture.delayedExecutor(polling.interval().toMillis(), TimeUnit.MILLISECONDS, submitter));
+        pendingPoll = poll;
+        poll.exceptionally(failure -> {
+            result.complete(StreamResult.error("Polling AAS operation %s failed: %s".formatted(statusUrl, failure.getMessage())));
+            return null;
+        });
+    }
+
+
+    private void poll(HttpUrl statusUrl, Instant deadline) {
+        if (result.isDone()) {
+            return;
+        }
+        if (clock.instant().isAfter(deadline)) {
+            result.complete(StreamResult.error("AAS operation %s did not complete within %s".formatted(statusUrl, polling.timeout())));
+            return;
+        }
+
+        String executionState;
+        try (var response = processor.getOperationHandle(address, statusUrl)) {
+            if (!response.isSuccessful() || response.body() == null) {
+                result.complete(StreamResult.error("Polling AAS operation %s failed: %d %s".formatted(statusUrl, response.code(), response.message())));
+                return;
+            }
+            // A completed operation may redirect to its result, which has an execution state as well
+            var state = OBJECT_MAPPER.readTree(response.body().byteStream()).path(EXECUTION_STATE);
+            executionState = state.isMissingNode() ? "Completed" : state.asText();
+        }
+        catch (IOException | RuntimeException e) {
+            result.complete(StreamResult.error("Polling AAS operation %s failed: %s".formatted(statusUrl, e.getMessage())));
+            return;
+        }
+
+        switch (executionState) {
+            case "Initiated", "Running" -> schedulePoll(statusUrl, deadline);
+            case "Completed" -> {
+                try {
+                    var response = processor.getOperationHandle(address, resultsUrl(statusUrl));
+                    if (!result.complete(StreamResult.success(response))) {
+                        // Cancelled while the result was fetched
+                        response.close();
+                    }
+                }
+                catch (IOException e) {
+                    result.complete(StreamResult.error("Fetching result of AAS operation %s failed: %s".formatted(statusUrl, e.getMessage())));
+                }
+            }
+            default -> {
+                monitor.warning("AAS operation %s ended with state %s".formatted(statusUrl, executionState));
+                result.complete(StreamResult.error("AAS operation %s ended with state %s".formatted(statusUrl, executionState)));
+            }
+        }
+    }
+
+
+    private static HttpUrl resultsUrl(HttpUrl statusUrl) {
+        var builder = statusUrl.newBuilder();
+        var statusSegment = statusUrl.pathSegments().lastIndexOf(OPERATION_STATUS);
+        if (statusSegment >= 0) {
+            builder.setPathSegment(statusSegment, OPERATION_RESULTS);
+        }
+        return builder.addPathSegment("$value").build();
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.dataplane.aas.pipeline;
+
+import java.time.Duration;
+
+
+/**
+ * Polling configuration for asynchronously invoked AAS operations.
+ *
+ * @param interval Delay between two polls of the operation-status.
+ * @param timeout Time after which the transfer fails if the operation has not completed.
+ */
+public record AasOperationPolling(Duration interval, Duration timeout) {
+
+    public static final AasOperationPolling DEFAULT = new AasOperationPolling(Duration.ofSeconds(1), Duration.ofHours(1));
+}
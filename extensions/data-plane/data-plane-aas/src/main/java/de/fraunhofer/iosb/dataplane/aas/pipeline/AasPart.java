@@ -22,8 +22,18 @@ import java.io.InputStream;
 
 /**
  * Inspired by: HttpPart
+ *
+ * @param size Length of the content in bytes, -1 if unknown.
  */
-public record AasPart(String name, InputStream content, String mediaType) implements DataSource.Part {
+public record AasPart(String name, InputStream content, String mediaType, long size) implements DataSource.Part {
+
+    private static final long SIZE_UNKNOWN = -1;
+
+
+    public AasPart(String name, InputStream content, String mediaType) {
+        this(name, content, mediaType, SIZE_UNKNOWN);
+    }
+
 
     @Override
     public InputStream openStream() {
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.dataplane.aas.pipeline;
+
+import de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_BODY;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_METHOD;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_OPERATION;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_PATH;
+
+
+/**
+ * Coalesces identical concurrent GET requests to AAS services and optionally caches their responses for a short time.
+ * <p>
+ * Requests are identical if base URL, path, serialization modifiers and additional headers match. Only the first of several identical concurrent
+ * requests is sent, the others wait for its response. Responses can only be shared if they are successful and not
+ * larger than the configured entry size; bigger responses are streamed to the first caller only and the others send
+ * their own request. Shared responses are kept for the configured time-to-live. After that, entries with an ETag are
+ * revalidated with If-None-Match instead of being fetched again. Any answer but 304 Not Modified replaces or removes
+ * the cached response.
+ * <p>
+ * Operation invocations and requests with a method other than GET are never coalesced or cached.
+ */
+public class AasResponseCache {
+
+    public static final long DEFAULT_MAX_ENTRY_SIZE = 1024 * 1024;
+
+    private static final String GET = "GET";
+    private static final String ETAG = "ETag";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final int OK = 200;
+    private static final int NOT_MODIFIED = 304;
+
+    private final Duration ttl;
+    private final int maxEntries;
+    private final long maxEntrySize;
+    private final Clock clock;
+    private final Map<String, CompletableFuture<Optional<CachedResponse>>> inFlight = new ConcurrentHashMap<>();
+    private final Map<String, CachedResponse> entries;
+
+
+    /**
+     * Class constructor
+     *
+     * @param ttl Time a response is served from the cache. If zero, requests are only coalesced.
+     * @param maxEntries Maximum number of cached responses, least recently used responses are evicted first.
+     * @param maxEntrySize Maximum size of a shared response body in bytes.
+     * @param clock Clock to determine entry expiry.
+     */
+    public AasResponseCache(Duration ttl, int maxEntries, long maxEntrySize, Clock clock) {
+        this.ttl = Objects.requireNonNull(ttl);
+        this.maxEntries = Math.max(0, maxEntries);
+        this.maxEntrySize = maxEntrySize;
+        this.clock = Objects.requireNonNull(clock);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > AasResponseCache.this.maxEntries;
+            }
+        };
+    }
+
+
+    /**
+     * Returns whether requests for this address may be coalesced and cached.
+     *
+     * @param address The source address.
+     * @return True if the address describes a plain GET request.
+     */
+    public static boolean isCacheable(AasDataAddress address) {
+        return !address.hasProperty(PROXY_OPERATION) && !address.hasProperty(PROXY_BODY) &&
+                GET.equalsIgnoreCase(address.getStringProperty(PROXY_METHOD, address.getMethod()));
+    }
+
+
+    /**
+     * Execute the request for this address, or return the response of an identical request that is in flight or
+     * cached. Addresses that are not cacheable are passed to the executor directly.
+     *
+     * @param address The source address.
+     * @param executor Sends the request to the AAS service.
+     * @return The response. The caller has to close it.
+     * @throws IOException If communication with the AAS service fails.
+     */
+    public Response execute(AasDataAddress address, RequestExecutor executor) throws IOException {
+        if (!isCacheable(address)) {
+            return executor.execute(address);
+        }
+
+        var key = keyOf(address);
+        var cached = lookup(key);
+        if (cached != null && cached.isFresh(clock.instant(), ttl)) {
+            return cached.toResponse();
+        }
+
+        var request = new CompletableFuture<Optional<CachedResponse>>();
+        var leader = inFlight.putIfAbsent(key, request);
+        if (leader != null) {
+            // An identical request is in flight, use its response if it can be shared
+            Optional<CachedResponse> shared;
+            try {
+                shared = leader.join();
+            }
+            catch (CompletionException e) {
+                shared = Optional.empty();
+            }
+            return shared.isPresent() ? shared.get().toResponse() : executor.execute(address);
+        }
+
+        Optional<CachedResponse> shared = Optional.empty();
+        try {
+            var revalidate = cached != null && cached.etag() != null;
+            var response = executor.execute(revalidate ?
+                    AasDataAddress.Builder.newInstance().copyFrom(address).additionalHeaders(Map.of(IF_NONE_MATCH, cached.etag())).build() :
+                    address);
+
+            if (revalidate && response.code() == NOT_MODIFIED) {
+                response.close();
+                shared = Optional.of(cached.renewed(clock.instant()));
+            }
+            else {
+                shared = toShareable(response);
+                if (shared.isEmpty()) {
+                    // The cached body is outdated or unavailable, it must not be revalidated again
+                    if (cached != null) {
+                        remove(key, cached);
+                    }
+                    return response;
+                }
+            }
+
+            store(key, shared.get());
+            return shared.get().toResponse();
+        }
+        finally {
+            inFlight.remove(key, request);
+            request.complete(shared);
+        }
+    }
+
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+
+    private Optional<CachedResponse> toShareable(Response response) throws IOException {
+        var body = response.body();
+        if (response.code() != OK || body == null || body.contentLength() > maxEntrySize) {
+            return Optional.empty();
+        }
+
+        // Buffers at most maxEntrySize + 1 bytes; if the body is larger, the buffered bytes remain readable by the caller
+        if (body.contentLength() < 0 && body.source().request(maxEntrySize + 1)) {
+            return Optional.empty();
+        }
+
+        try (response) {
+            return Optional.of(new CachedResponse(body.bytes(), body.contentType(), response.header(ETAG), response.request(),
+                    clock.instant()));
+        }
+    }
+
+
+    private synchronized @Nullable CachedResponse lookup(String key) {
+        var entry = entries.get(key);
+        if (entry != null && entry.etag() == null && !entry.isFresh(clock.instant(), ttl)) {
+            // Expired entries can only be revalidated if they have an ETag
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+
+    private synchronized void store(String key, CachedResponse response) {
+        if (maxEntries > 0 && !ttl.isZero() && !ttl.isNegative()) {
+            entries.put(key, response);
+        }
+    }
+
+
+    private synchronized void remove(String key, CachedResponse response) {
+        entries.remove(key, response);
+    }
+
+
+    private static String keyOf(AasDataAddress address) {
+        var plan = address.getRequestPlan();
+        return String.join("|", plan.baseUrl(), plan.path(), address.getStringProperty(PROXY_PATH, ""),
+                plan.getContentPathSegment().orElse(""), new TreeMap<>(plan.serializationQueryParameters()).toString(),
+                new TreeMap<>(plan.additionalHeaders()).toString());
+    }
+
+
+    /**
+     * Sends a request for an address to an AAS service.
+     */
+    @FunctionalInterface
+    public interface RequestExecutor {
+        Response execute(AasDataAddress address) throws IOException;
+    }
+
+
+    private record CachedResponse(byte[] body, @Nullable MediaType mediaType, @Nullable String etag, Request request, Instant storedAt) {
+
+        boolean isFresh(Instant now, Duration ttl) {
+            return storedAt.plus(ttl).isAfter(now);
+        }
+
+
+        CachedResponse renewed(Instant now) {
+            return new CachedResponse(body, mediaType, etag, request, now);
+        }
+
+
+        Response toResponse() {
+            var builder = new Response.Builder()
+                    .request(request)
+                    .protocol(Protocol.HTTP_1_1)
+                    .code(OK)
+                    .message("OK")
+                    .body(ResponseBody.create(body, mediaType));
+            if (etag != null) {
+                builder.header(ETAG, etag);
+            }
+            return builder.build();
+        }
+    }
+}
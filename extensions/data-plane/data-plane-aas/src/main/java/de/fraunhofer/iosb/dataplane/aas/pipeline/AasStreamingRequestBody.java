@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.dataplane.aas.pipeline;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+
+/**
+ * Request body writing the content of a stream directly to the request without buffering it. If the length of the
+ * content is unknown, the body is sent with chunked transfer encoding. The stream is opened when the body is written
+ * and closed afterward, so the body can only be written once. Inspired by EDCs ChunkedTransferRequestBody.
+ */
+public class AasStreamingRequestBody extends RequestBody {
+
+    public static final long UNKNOWN_LENGTH = -1;
+
+    private final Supplier<InputStream> content;
+    private final String contentType;
+    private final long contentLength;
+    private final AtomicBoolean consumed = new AtomicBoolean();
+
+
+    /**
+     * Class constructor
+     *
+     * @param content Opens the stream to send.
+     * @param contentType Media type of the content.
+     * @param contentLength Length of the content in bytes or {@link #UNKNOWN_LENGTH}.
+     */
+    public AasStreamingRequestBody(Supplier<InputStream> content, String contentType, long contentLength) {
+        this.content = content;
+        this.contentType = contentType;
+        this.contentLength = contentLength < 0 ? UNKNOWN_LENGTH : contentLength;
+    }
+
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+
+    @Override
+    public boolean isOneShot() {
+        return true;
+    }
+
+
+    @Override
+    public void writeTo(@NotNull BufferedSink sink) throws IOException {
+        if (consumed.getAndSet(true)) {
+            // A retry would otherwise send an empty or truncated body
+            throw new IOException("Streamed request body was already sent and cannot be sent again");
+        }
+
+        try (var source = Okio.source(content.get())) {
+            sink.writeAll(source);
+        }
+    }
+
+
+    @Nullable
+    @Override
+    public MediaType contentType() {
+        return contentType == null ? null : MediaType.parse(contentType);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.dataplane.aas.pipeline;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Optional;
+
+
+/**
+ * Computes JSON merge patches (RFC 7396) turning one JSON document into another.
+ * <p>
+ * Merge patches replace arrays as a whole and cannot set a member to null, as null removes it. Differences that
+ * cannot be expressed, like a new null member or non-object documents, yield no patch. Changed arrays yield no patch
+ * either: in the normal AAS serialization, elements are arrays (e.g., submodelElements) and a patch would carry all of
+ * them. Value-only serializations ("$value") are objects keyed by idShort and are patched per element path.
+ */
+final class JsonMergePatch {
+
+    private JsonMergePatch() {
+    }
+
+
+    /**
+     * Compute the patch turning the previous into the current document.
+     *
+     * @param previous The document as it was written before.
+     * @param current The document to write now.
+     * @param allowRemovals Whether the patch may remove members. Value-only PATCH requests of the AAS API cannot.
+     * @return The patch, an empty object if the documents are equal, or empty if the difference cannot be expressed
+     *         or changes an array.
+     */
+    static Optional<ObjectNode> diff(JsonNode previous, JsonNode current, boolean allowRemovals) {
+        if (!previous.isObject() || !current.isObject()) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(diffObjects((ObjectNode) previous, (ObjectNode) current, allowRemovals));
+    }
+
+
+    private static @Nullable ObjectNode diffObjects(ObjectNode previous, ObjectNode current, boolean allowRemovals) {
+        var patch = JsonNodeFactory.instance.objectNode();
+
+        var previousNames = previous.fieldNames();
+        while (previousNames.hasNext()) {
+            var name = previousNames.next();
+            if (!current.has(name)) {
+                if (!allowRemovals) {
+                    return null;
+                }
+                patch.putNull(name);
+            }
+        }
+
+        var fields = current.fields();
+        while (fields.hasNext()) {
+            var field = fields.next();
+            var previousValue = previous.get(field.getKey());
+            var currentValue = field.getValue();
+
+            if (currentValue.equals(previousValue)) {
+                continue;
+            }
+
+            if (previousValue instanceof ObjectNode previousObject && currentValue instanceof ObjectNode currentObject) {
+                var nested = diffObjects(previousObject, currentObject, allowRemovals);
+                if (nested == null) {
+                    return null;
+                }
+                patch.set(field.getKey(), nested);
+            }
+            else if (containsNullMember(currentValue)) {
+                // Would be removed instead of set to null
+                return null;
+            }
+            else if (previousValue != null && (previousValue.isArray() || currentValue.isArray())) {
+                // Would replace all elements of the array
+                return null;
+            }
+            else {
+                patch.set(field.getKey(), currentValue);
+            }
+        }
+
+        return patch;
+    }
+
+
+    /* Null members of objects are interpreted as removals, elements of arrays are replaced verbatim. */
+    private static boolean containsNullMember(JsonNode value) {
+        if (value.isNull()) {
+            return true;
+        }
+        if (!value.isObject()) {
+            return false;
+        }
+
+        var elements = value.elements();
+        while (elements.hasNext()) {
+            if (containsNullMember(elements.next())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -23,4 +23,14 @@ import java.security.cert.Certificate;
 public interface SelfSignedCertificateRetriever {
 
     Result<Certificate[]> getSelfSignedCertificate(String urlString);
+
+
+    /**
+     * Forget what is known about the certificates of the service behind the given URL, e.g., after a TLS failure. The
+     * next retrieval for that service contacts it again.
+     *
+     * @param urlString URL of the service.
+     */
+    default void invalidate(String urlString) {
+    }
 }
@@ -41,6 +41,8 @@ import javax.net.ssl.X509TrustManager;
  * Retrieve certificates of an online service by its URL. This should only be used for explicitly known services and
  * URLs! (Example: Create a FA³ST service which uses TLS with a
  * self-signed certificate if no other is provided. -> Need its cert to communicate with it)
+ * <p>
+ * Each retrieval opens its own connection with its own socket factory, the JVM-wide TLS configuration is not modified.
  */
 public class DefaultSelfSignedCertificateRetriever implements SelfSignedCertificateRetriever {
 
@@ -60,7 +62,6 @@ public class DefaultSelfSignedCertificateRetriever implements SelfSignedCertific
 
 
     public static boolean isTrusted(String uriString) {
-        HttpsURLConnection.setDefaultSSLSocketFactory((SSLSocketFactory) SSLSocketFactory.getDefault());
         URI uri;
         try {
             uri = new URI(uriString);
@@ -70,6 +71,8 @@ public class DefaultSelfSignedCertificateRetriever implements SelfSignedCertific
         }
         try {
             var conn = (HttpsURLConnection) uri.toURL().openConnection();
+            // The system's trust store, independent of what other code set as JVM-wide default
+            conn.setSSLSocketFactory((SSLSocketFactory) SSLSocketFactory.getDefault());
             conn.connect();
             // Connection with standard java library succeeded
             // -> according to this system, the server has a trusted certificate
@@ -99,11 +102,12 @@ public class DefaultSelfSignedCertificateRetriever implements SelfSignedCertific
             return Result.failure(List.of(generalSecurityException.getMessage()));
         }
 
-        HttpsURLConnection.setDefaultSSLSocketFactory(sslContext.getSocketFactory());
         HttpsURLConnection conn;
 
         try {
             conn = (HttpsURLConnection) uri.toURL().openConnection();
+            // Trust-all only for this connection, the JVM-wide default socket factory is left untouched
+            conn.setSSLSocketFactory(sslContext.getSocketFactory());
             conn.setHostnameVerifier((hostname, session) -> true);
             conn.connect();
         }
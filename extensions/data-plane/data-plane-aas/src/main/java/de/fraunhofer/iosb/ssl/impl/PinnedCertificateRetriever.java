@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ssl.impl;
+
+import de.fraunhofer.iosb.ssl.SelfSignedCertificateRetriever;
+import okhttp3.HttpUrl;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.result.Result;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Pins the certificates of AAS services per host and port. Certificates are retrieved from a service once and reused
+ * until one of them expires or the pin is invalidated, so that revalidating the client of a service does not cost a TLS
+ * handshake.
+ * <p>
+ * Given a store file, the pins are saved to it whenever they change and loaded from it on creation, so they survive
+ * restarts. The file holds the Base64-encoded DER certificate chain of each pinned host.
+ */
+public class PinnedCertificateRetriever implements SelfSignedCertificateRetriever {
+
+    private static final String X509 = "X.509";
+    private static final String CHAIN_SEPARATOR = ",";
+
+    private final SelfSignedCertificateRetriever retriever;
+    private final @Nullable Path storeFile;
+    private final Clock clock;
+    private final Monitor monitor;
+    private final Map<String, Certificate[]> pins = new ConcurrentHashMap<>();
+
+
+    /**
+     * Create a pin store.
+     *
+     * @param retriever Retrieves the certificates of services which are not pinned yet or whose pin expired.
+     * @param storeFile File the pins are saved to, pins are kept in memory only if null.
+     * @param clock Clock to check the validity of pinned certificates against.
+     * @param monitor Monitor for load and save failures.
+     */
+    public PinnedCertificateRetriever(SelfSignedCertificateRetriever retriever, @Nullable Path storeFile, Clock clock, Monitor monitor) {
+        this.retriever = retriever;
+        this.storeFile = storeFile;
+        this.clock = clock;
+        this.monitor = monitor;
+        load();
+    }
+
+
+    @Override
+    public Result<Certificate[]> getSelfSignedCertificate(String urlString) {
+        var hostKey = hostKey(urlString);
+        if (hostKey.isEmpty()) {
+            return retriever.getSelfSignedCertificate(urlString);
+        }
+
+        var pinned = pins.get(hostKey.get());
+        if (pinned != null && isValid(pinned)) {
+            return Result.success(pinned);
+        }
+
+        var certResult = retriever.getSelfSignedCertificate(urlString);
+        if (certResult.succeeded() && certResult.getContent() != null) {
+            pins.put(hostKey.get(), certResult.getContent());
+            save();
+        }
+        else if (pinned != null) {
+            pins.remove(hostKey.get());
+            save();
+        }
+        return certResult;
+    }
+
+
+    @Override
+    public void invalidate(String urlString) {
+        hostKey(urlString).ifPresent(hostKey -> {
+            if (pins.remove(hostKey) != null) {
+                save();
+            }
+        });
+        retriever.invalidate(urlString);
+    }
+
+
+    private boolean isValid(Certificate[] chain) {
+        var now = Date.from(clock.instant());
+        for (var certificate: chain) {
+            if (!(certificate instanceof X509Certificate x509) || now.before(x509.getNotBefore()) || now.after(x509.getNotAfter())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private void load() {
+        if (storeFile == null || !Files.exists(storeFile)) {
+            return;
+        }
+
+        var properties = new Properties();
+        try (var reader = Files.newBufferedReader(storeFile)) {
+            properties.load(reader);
+            var certificateFactory = CertificateFactory.getInstance(X509);
+            for (var hostKey: properties.stringPropertyNames()) {
+                List<Certificate> chain = new ArrayList<>();
+                for (var encoded: properties.getProperty(hostKey).split(CHAIN_SEPARATOR)) {
+                    chain.add(certificateFactory.generateCertificate(new ByteArrayInputStream(Base64.getDecoder().decode(encoded))));
+                }
+                pins.put(hostKey, chain.toArray(Certificate[]::new));
+            }
+        }
+        catch (IOException | CertificateException | IllegalArgumentException loadException) {
+            monitor.warning("Could not load pinned certificates from %s, certificates are retrieved again: %s"
+                    .formatted(storeFile, loadException.getMessage()));
+            pins.clear();
+        }
+    }
+
+
+    private synchronized void save() {
+        if (storeFile == null) {
+            return;
+        }
+
+        var properties = new Properties();
+        try {
+            for (var pin: pins.entrySet()) {
+                List<String> chain = new ArrayList<>();
+                for (var certificate: pin.getValue()) {
+                    chain.add(Base64.getEncoder().encodeToString(certificate.getEncoded()));
+                }
+                properties.setProperty(pin.getKey(), String.join(CHAIN_SEPARATOR, chain));
+            }
+
+            // Replace the store at once so that a crash does not leave a truncated file behind
+            var directory = storeFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            var tempFile = Files.createTempFile(directory, storeFile.getFileName().toString(), ".tmp");
+            try (var writer = Files.newBufferedWriter(tempFile)) {
+                properties.store(writer, "Pinned certificates of AAS services");
+            }
+            Files.move(tempFile, storeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException | CertificateEncodingException saveException) {
+            monitor.warning("Could not save pinned certificates to %s: %s".formatted(storeFile, saveException.getMessage()));
+        }
+    }
+
+
+    private static Optional<String> hostKey(String urlString) {
+        return Optional.ofNullable(HttpUrl.parse(urlString))
+                .map(url -> "%s://%s:%d".formatted(url.scheme(), url.host().toLowerCase(Locale.ROOT), url.port()));
+    }
+}
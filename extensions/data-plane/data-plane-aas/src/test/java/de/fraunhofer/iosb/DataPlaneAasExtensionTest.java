@@ -15,30 +15,45 @@
  */
 package de.fraunhofer.iosb;
 
+import de.fraunhofer.iosb.aas.lib.http.AasTransferMetrics;
+import de.fraunhofer.iosb.dataplane.aas.api.AasMetricsController;
 import dev.failsafe.RetryPolicy;
 import okhttp3.OkHttpClient;
 import org.eclipse.edc.boot.system.injection.ObjectFactory;
 import org.eclipse.edc.connector.dataplane.spi.pipeline.PipelineService;
 import org.eclipse.edc.junit.extensions.DependencyInjectionExtension;
 import org.eclipse.edc.spi.system.ServiceExtensionContext;
+import org.eclipse.edc.spi.system.configuration.ConfigFactory;
+import org.eclipse.edc.web.spi.WebService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 
 @ExtendWith(DependencyInjectionExtension.class)
 class DataPlaneAasExtensionTest {
 
+    private final WebService webService = mock(WebService.class);
     private DataPlaneAasExtension extension;
 
 
     @BeforeEach
     void setUp(ServiceExtensionContext context, ObjectFactory factory) {
         context.registerService(PipelineService.class, mock(PipelineService.class));
-        context.registerService(OkHttpClient.class, mock(OkHttpClient.class));
+        // The extension derives a client with its own connection pool
+        context.registerService(OkHttpClient.class, new OkHttpClient());
         context.registerService(RetryPolicy.class, RetryPolicy.ofDefaults());
+        context.registerService(WebService.class, webService);
 
         extension = factory.constructInstance(DataPlaneAasExtension.class);
     }
@@ -47,5 +62,32 @@ class DataPlaneAasExtensionTest {
     @Test
     void testInitialize(ServiceExtensionContext context) {
         extension.initialize(context);
+
+        // Provided even if metrics are disabled
+        assertNotNull(context.getService(AasTransferMetrics.class));
+        verify(webService, never()).registerResource(any(), any());
+    }
+
+
+    @Test
+    void testInitialize_metricsServedOnConfiguredContext(ServiceExtensionContext context) {
+        when(context.getSetting("edc.dataplane.aas.metrics.enabled", false)).thenReturn(true);
+        when(context.getConfig("web.http.management")).thenReturn(ConfigFactory.fromMap(Map.of("port", "8182", "path", "/management")));
+
+        extension.initialize(context);
+
+        verify(webService).registerResource(eq("management"), any(AasMetricsController.class));
+    }
+
+
+    @Test
+    void testInitialize_metricsNotServedWithoutContext(ServiceExtensionContext context) {
+        when(context.getSetting("edc.dataplane.aas.metrics.enabled", false)).thenReturn(true);
+
+        extension.initialize(context);
+
+        // Standalone data planes without management context still start
+        assertNotNull(context.getService(AasTransferMetrics.class));
+        verify(webService, never()).registerResource(any(), any());
     }
 }
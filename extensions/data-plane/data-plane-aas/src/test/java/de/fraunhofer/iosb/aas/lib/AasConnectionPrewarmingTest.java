@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.aas.lib;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import de.fraunhofer.iosb.aas.lib.impl.AllAasDataProcessorFactory;
+import de.fraunhofer.iosb.dataplane.aas.spi.AasBaseUrlRegistry;
+import de.fraunhofer.iosb.ssl.impl.NoOpSelfSignedCertificateRetriever;
+import dev.failsafe.RetryPolicy;
+import okhttp3.OkHttpClient;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.exactly;
+import static com.github.tomakehurst.wiremock.client.WireMock.head;
+import static com.github.tomakehurst.wiremock.client.WireMock.headRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.eclipse.edc.util.io.Ports.getFreePort;
+
+
+class AasConnectionPrewarmingTest {
+
+    private static final int PORT = getFreePort();
+    private static final String BASE_URL = "http://localhost:%d/api/v3.0".formatted(PORT);
+
+    @RegisterExtension
+    static WireMockExtension server = WireMockExtension.extensionOptions()
+            .options(wireMockConfig().port(PORT))
+            .build();
+
+    private final MutableClock clock = new MutableClock();
+    private final AasBaseUrlRegistry baseUrls = new AasBaseUrlRegistry();
+    private AasConnectionPrewarming testSubject;
+
+
+    @BeforeEach
+    void setUp() {
+        var monitor = new ConsoleMonitor().withPrefix(getClass().getSimpleName());
+        var processorFactory = new AllAasDataProcessorFactory(new NoOpSelfSignedCertificateRetriever(), new OkHttpClient(),
+                RetryPolicy.ofDefaults(), monitor);
+        testSubject = new AasConnectionPrewarming(processorFactory, baseUrls, Duration.ofMinutes(1), clock, monitor);
+        // Any status code means the connection is established
+        server.stubFor(head(urlPathEqualTo("/api/v3.0")).willReturn(aResponse().withStatus(404)));
+    }
+
+
+    @Test
+    void test_prewarm_registeredBaseUrlIsConnectedOncePerRefreshInterval() {
+        baseUrls.register(BASE_URL + "/");
+
+        testSubject.prewarm();
+        testSubject.prewarm();
+        server.verify(exactly(1), headRequestedFor(urlPathEqualTo("/api/v3.0")));
+
+        clock.advance(Duration.ofMinutes(1));
+        testSubject.prewarm();
+        server.verify(exactly(2), headRequestedFor(urlPathEqualTo("/api/v3.0")));
+    }
+
+
+    @Test
+    void test_prewarm_unregisteredBaseUrlIsNotKeptAlive() {
+        baseUrls.register(BASE_URL);
+        testSubject.prewarm();
+
+        baseUrls.unregister(BASE_URL);
+        clock.advance(Duration.ofMinutes(1));
+        testSubject.prewarm();
+
+        server.verify(exactly(1), headRequestedFor(urlPathEqualTo("/api/v3.0")));
+    }
+
+
+    @Test
+    void test_prewarm_unreachableBaseUrlDoesNotFail() {
+        baseUrls.register("http://localhost:%d/api/v3.0".formatted(getFreePort()));
+
+        testSubject.prewarm();
+    }
+
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.now();
+
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
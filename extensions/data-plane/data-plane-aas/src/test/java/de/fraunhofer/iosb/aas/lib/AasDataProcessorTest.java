@@ -17,7 +17,9 @@ package de.fraunhofer.iosb.aas.lib;
 
 import com.github.tomakehurst.wiremock.client.WireMock;
 import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.github.tomakehurst.wiremock.matching.MultipartValuePatternBuilder;
 import de.fraunhofer.iosb.aas.lib.impl.AllAasDataProcessorFactory;
+import de.fraunhofer.iosb.dataplane.aas.pipeline.AasPart;
 import de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress;
 import de.fraunhofer.iosb.ssl.impl.DefaultSelfSignedCertificateRetriever;
 import dev.failsafe.RetryPolicy;
@@ -32,16 +34,24 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.RegisterExtension;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.putRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 
 class AasDataProcessorTest {
@@ -82,10 +92,217 @@ class AasDataProcessorTest {
     }
 
 
+    @Test
+    void testGetFromAasWithSerializationModifiers() throws IOException {
+        AasDataAddress address = AasDataAddress.Builder.newInstance()
+                .copyFrom(getAddress())
+                .content("value")
+                .level("core")
+                .extent("WithoutBlobValue")
+                .build();
+
+        String expectedRequestPath = aasUri.getPath() + "/" + address.getPath() + "/$value";
+        server.stubFor(WireMock.get(urlPathEqualTo(expectedRequestPath))
+                .withQueryParam("level", equalTo("core"))
+                .withQueryParam("extent", equalTo("WithoutBlobValue"))
+                .willReturn(aResponse()
+                        .withStatus(200)));
+
+        try (var response = testSubject.getFromAas(address)) {
+            assertEquals(200, response.code());
+        }
+    }
+
+
+    @Test
+    void testGetFromAasAttachmentRange() throws IOException {
+        AasDataAddress address = AasDataAddress.Builder.newInstance()
+                .copyFrom(getAddress())
+                .attachment("true")
+                .content("value")
+                .range("bytes=4-")
+                .build();
+
+        String expectedRequestPath = aasUri.getPath() + "/" + address.getPath() + "/attachment";
+        server.stubFor(WireMock.get(urlPathEqualTo(expectedRequestPath))
+                .withHeader("Range", equalTo("bytes=4-"))
+                .willReturn(aResponse()
+                        .withStatus(206)
+                        .withHeader("Content-Type", "application/pdf")
+                        .withBody("rest")));
+
+        try (var response = testSubject.getFromAas(address)) {
+            assertEquals(206, response.code());
+            assertEquals("application/pdf", String.valueOf(response.body().contentType()));
+        }
+    }
+
+
+    @Test
+    void testSendAttachmentAsFormData() throws IOException {
+        AasDataAddress address = AasDataAddress.Builder.newInstance()
+                .copyFrom(getAddress(HttpMethod.PUT))
+                .attachment("true")
+                .build();
+
+        String expectedRequestPath = aasUri.getPath() + "/" + address.getPath() + "/attachment";
+        server.stubFor(WireMock.put(urlPathEqualTo(expectedRequestPath))
+                .willReturn(aResponse()
+                        .withStatus(204)));
+
+        var part = new AasPart("manual.pdf", new ByteArrayInputStream("%PDF-1.7".getBytes(StandardCharsets.UTF_8)), "application/pdf");
+
+        try (var response = testSubject.send(address, part)) {
+            assertEquals(204, response.code());
+        }
+
+        server.verify(putRequestedFor(urlPathEqualTo(expectedRequestPath))
+                .withHeader("Content-Type", WireMock.containing("multipart/form-data"))
+                .withRequestBodyPart(new MultipartValuePatternBuilder()
+                        .withName("file")
+                        .withHeader("Content-Type", equalTo("application/pdf"))
+                        .withBody(equalTo("%PDF-1.7"))
+                        .build()));
+    }
+
+
+    @Test
+    void testSendStreamsPartOfUnknownSize() throws IOException {
+        AasDataAddress address = getAddress(HttpMethod.PUT);
+        var payload = "{\"value\":\"%s\"}".formatted("x".repeat(100_000));
+
+        String expectedRequestPath = aasUri.getPath() + "/" + address.getPath();
+        server.stubFor(WireMock.put(urlPathEqualTo(expectedRequestPath))
+                .willReturn(aResponse()
+                        .withStatus(204)));
+
+        var part = new AasPart("test", new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)), "application/json");
+
+        try (var response = testSubject.send(address, part)) {
+            assertEquals(204, response.code());
+        }
+
+        server.verify(putRequestedFor(urlPathEqualTo(expectedRequestPath))
+                .withoutHeader("Content-Length")
+                .withRequestBody(equalTo(payload)));
+    }
+
+
+    @Test
+    void testSendStreamsPartOfKnownSize() throws IOException {
+        AasDataAddress address = getAddress(HttpMethod.PUT);
+        var payload = "{\"value\":\"known\"}".getBytes(StandardCharsets.UTF_8);
+
+        String expectedRequestPath = aasUri.getPath() + "/" + address.getPath();
+        server.stubFor(WireMock.put(urlPathEqualTo(expectedRequestPath))
+                .willReturn(aResponse()
+                        .withStatus(204)));
+
+        var part = new AasPart("test", new ByteArrayInputStream(payload), "application/json", payload.length);
+
+        try (var response = testSubject.send(address, part)) {
+            assertEquals(204, response.code());
+        }
+
+        server.verify(putRequestedFor(urlPathEqualTo(expectedRequestPath))
+                .withHeader("Content-Length", equalTo(String.valueOf(payload.length))));
+    }
+
+
+    @Test
+    void testGetFromAasDecompressesGzip() throws IOException {
+        AasDataAddress address = AasDataAddress.Builder.newInstance()
+                .copyFrom(getAddress())
+                .compression(AasDataAddress.GZIP)
+                .build();
+        var payload = "{\"value\":\"%s\"}".formatted("x".repeat(10_000));
+
+        String expectedRequestPath = aasUri.getPath() + "/" + address.getPath() + "/";
+        server.stubFor(WireMock.get(urlPathEqualTo(expectedRequestPath))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader("Content-Encoding", "gzip")
+                        .withBody(gzip(payload))));
+
+        try (var response = testSubject.getFromAas(address)) {
+            assertEquals(200, response.code());
+            assertNull(response.header("Content-Encoding"));
+            assertEquals(payload, response.body().string());
+        }
+
+        server.verify(getRequestedFor(urlPathEqualTo(expectedRequestPath))
+                .withHeader("Accept-Encoding", equalTo("gzip")));
+    }
+
+
+    @Test
+    void testGetFromAasWithoutCompression() throws IOException {
+        AasDataAddress address = AasDataAddress.Builder.newInstance()
+                .copyFrom(getAddress())
+                .compression(AasDataAddress.NO_COMPRESSION)
+                .build();
+
+        String expectedRequestPath = aasUri.getPath() + "/" + address.getPath() + "/";
+        server.stubFor(WireMock.get(urlPathEqualTo(expectedRequestPath))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBody("{}")));
+
+        try (var response = testSubject.getFromAas(address)) {
+            assertEquals(200, response.code());
+        }
+
+        server.verify(getRequestedFor(urlPathEqualTo(expectedRequestPath))
+                .withHeader("Accept-Encoding", equalTo("identity")));
+    }
+
+
+    @Test
+    void testSendCompressesBody() throws IOException {
+        AasDataAddress address = AasDataAddress.Builder.newInstance()
+                .copyFrom(getAddress(HttpMethod.PUT))
+                .compression(AasDataAddress.GZIP)
+                .build();
+        var payload = "{\"value\":\"%s\"}".formatted("x".repeat(100_000));
+
+        String expectedRequestPath = aasUri.getPath() + "/" + address.getPath();
+        server.stubFor(WireMock.put(urlPathEqualTo(expectedRequestPath))
+                .willReturn(aResponse()
+                        .withStatus(204)));
+
+        var part = new AasPart("test", new ByteArrayInputStream(payload.getBytes(StandardCharsets.UTF_8)), "application/json", payload.length());
+
+        try (var response = testSubject.send(address, part)) {
+            assertEquals(204, response.code());
+        }
+
+        // WireMock decompresses gzip-encoded request bodies before matching
+        server.verify(putRequestedFor(urlPathEqualTo(expectedRequestPath))
+                .withHeader("Content-Encoding", equalTo("gzip"))
+                .withoutHeader("Content-Length")
+                .withRequestBody(equalTo(payload)));
+    }
+
+
+    private static byte[] gzip(String content) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(content.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+
     private AasDataAddress getAddress() {
+        return getAddress(HttpMethod.GET);
+    }
+
+
+    private AasDataAddress getAddress(String method) {
         return AasDataAddress.Builder.newInstance()
                 .baseUrl(aasUri.toString())
-                .method(HttpMethod.GET)
+                .method(method)
                 .reference(new DefaultReference.Builder()
                         .type(ReferenceTypes.MODEL_REFERENCE)
                         .keys(List.of(new DefaultKey.Builder().type(KeyTypes.ASSET_ADMINISTRATION_SHELL)
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.aas.lib.http;
+
+import okhttp3.HttpUrl;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class AasHostBulkheadsTest {
+
+    private static final HttpUrl WEAK_HOST = HttpUrl.get("http://weak-host:8080/api/v3.0/submodels");
+    private static final HttpUrl HEALTHY_HOST = HttpUrl.get("http://healthy-host:8080/api/v3.0/submodels");
+
+    private final AasHostBulkheads testSubject = new AasHostBulkheads(1, 1, Duration.ofSeconds(5),
+            new ConsoleMonitor().withPrefix(getClass().getSimpleName()));
+
+
+    @Test
+    void test_acquire_saturatedHostQueuesThenRejects() throws Exception {
+        var first = testSubject.acquire(WEAK_HOST);
+
+        var queued = CompletableFuture.supplyAsync(() -> {
+            try {
+                return testSubject.acquire(WEAK_HOST);
+            }
+            catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        waitForQueued();
+
+        assertThrows(AasHostBulkheads.RejectedException.class, () -> testSubject.acquire(WEAK_HOST));
+        // Other hosts are not affected
+        testSubject.acquire(HEALTHY_HOST).close();
+
+        var weakHostMetrics = testSubject.metrics().stream().filter(metrics -> metrics.host().contains("weak-host")).findFirst().orElseThrow();
+        assertTrue(weakHostMetrics.saturated());
+        assertEquals(1, weakHostMetrics.queued());
+        assertEquals(1, weakHostMetrics.rejected());
+
+        first.close();
+        queued.get(5, TimeUnit.SECONDS).close();
+        assertFalse(testSubject.metrics().stream().anyMatch(AasHostBulkheads.Metrics::saturated));
+    }
+
+
+    @Test
+    void test_acquire_noSlotWithinMaxWaitRejects() throws Exception {
+        var bulkheads = new AasHostBulkheads(1, 10, Duration.ofMillis(50), new ConsoleMonitor());
+        try (var ignored = bulkheads.acquire(WEAK_HOST)) {
+            assertThrows(AasHostBulkheads.RejectedException.class, () -> bulkheads.acquire(WEAK_HOST));
+        }
+        bulkheads.acquire(WEAK_HOST).close();
+    }
+
+
+    @Test
+    void test_tryAcquire_onlyFreeSlotNeitherQueuedNorRejected() throws Exception {
+        var first = testSubject.tryAcquire(WEAK_HOST).orElseThrow();
+        assertTrue(testSubject.tryAcquire(WEAK_HOST).isEmpty());
+
+        var weakHostMetrics = testSubject.metrics().get(0);
+        assertEquals(1, weakHostMetrics.inFlight());
+        assertEquals(0, weakHostMetrics.queued());
+        assertEquals(0, weakHostMetrics.rejected());
+
+        first.close();
+        assertTrue(testSubject.tryAcquire(WEAK_HOST).isPresent());
+    }
+
+
+    private void waitForQueued() throws InterruptedException {
+        for (int i = 0; i < 500 && testSubject.metrics().stream().noneMatch(metrics -> metrics.queued() > 0); i++) {
+            Thread.sleep(10);
+        }
+    }
+}
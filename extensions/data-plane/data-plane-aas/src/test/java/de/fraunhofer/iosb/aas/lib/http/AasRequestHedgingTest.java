@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.aas.lib.http;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.eclipse.edc.util.io.Ports.getFreePort;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class AasRequestHedgingTest {
+
+    private static final int PORT = getFreePort();
+    private static final String BASE_URL = "http://localhost:%d".formatted(PORT);
+
+    @RegisterExtension
+    static WireMockExtension server = WireMockExtension.extensionOptions()
+            .options(wireMockConfig().port(PORT))
+            .build();
+
+    private final OkHttpClient client = new OkHttpClient();
+    private final AasRequestHedging testSubject = new AasRequestHedging(
+            new AasRequestHedging.Policy(0.95, 5, 4, Duration.ofMillis(500), Duration.ofSeconds(5)),
+            new ConsoleMonitor().withPrefix(getClass().getSimpleName()));
+
+
+    @Test
+    void test_execute_slowFirstResponseIsHedged() throws IOException {
+        server.stubFor(get(urlPathEqualTo("/fast")).willReturn(aResponse().withStatus(200).withBody("fast")));
+        warmUp();
+
+        server.stubFor(get(urlPathEqualTo("/slow")).inScenario("hedge")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willSetStateTo("second")
+                .willReturn(aResponse().withStatus(200).withBody("first").withFixedDelay(3000)));
+        server.stubFor(get(urlPathEqualTo("/slow")).inScenario("hedge")
+                .whenScenarioStateIs("second")
+                .willReturn(aResponse().withStatus(200).withBody("second")));
+
+        var url = request("/slow").url();
+        try (var response = testSubject.execute(client, request("/slow"))) {
+            assertEquals("second", response.body().string());
+        }
+        assertEquals(1, testSubject.hedgedRequests(url));
+    }
+
+
+    @Test
+    void test_execute_hedgeNotQueuedByDispatcher() throws IOException {
+        server.stubFor(get(urlPathEqualTo("/fast")).willReturn(aResponse().withStatus(200).withBody("fast")));
+        warmUp();
+
+        server.stubFor(get(urlPathEqualTo("/slow")).inScenario("dispatcher")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willSetStateTo("second")
+                .willReturn(aResponse().withStatus(200).withBody("first").withFixedDelay(3000)));
+        server.stubFor(get(urlPathEqualTo("/slow")).inScenario("dispatcher")
+                .whenScenarioStateIs("second")
+                .willReturn(aResponse().withStatus(200).withBody("second")));
+
+        // An enqueued hedge would wait for the first call to complete
+        var dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(1);
+        var limitedClient = client.newBuilder().dispatcher(dispatcher).build();
+        try (var response = testSubject.execute(limitedClient, request("/slow"))) {
+            assertEquals("second", response.body().string());
+        }
+    }
+
+
+    @Test
+    void test_execute_saturatedHostIsNotHedged() throws IOException {
+        server.stubFor(get(urlPathEqualTo("/fast")).willReturn(aResponse().withStatus(200).withBody("fast")));
+        warmUp();
+        server.stubFor(get(urlPathEqualTo("/busy")).willReturn(aResponse().withStatus(200).withBody("busy").withFixedDelay(300)));
+
+        // The first call occupies the only slot of the host
+        var bulkheads = new AasHostBulkheads(1, 0, Duration.ZERO, new ConsoleMonitor());
+        var url = request("/busy").url();
+        try (var response = testSubject.execute(client, request("/busy"), bulkheads)) {
+            assertEquals("busy", response.body().string());
+        }
+        assertEquals(0, testSubject.hedgedRequests(url));
+        assertEquals(0, bulkheads.metrics().get(0).inFlight());
+    }
+
+
+    @Test
+    void test_execute_adaptiveTimeoutFollowsLatencies() throws IOException {
+        server.stubFor(get(urlPathEqualTo("/fast")).willReturn(aResponse().withStatus(200).withBody("fast")));
+        warmUp();
+        server.stubFor(get(urlPathEqualTo("/hanging")).willReturn(aResponse().withStatus(200).withFixedDelay(3000)));
+
+        var start = System.nanoTime();
+        assertThrows(InterruptedIOException.class, () -> testSubject.execute(client, request("/hanging")));
+        // The minimum timeout applies as the observed latencies are far below it
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(2)) < 0);
+    }
+
+
+    private void warmUp() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            try (var response = testSubject.execute(client, request("/fast"))) {
+                assertEquals("fast", response.body().string());
+            }
+        }
+    }
+
+
+    private static Request request(String path) {
+        return new Request.Builder().url(BASE_URL + path).get().build();
+    }
+}
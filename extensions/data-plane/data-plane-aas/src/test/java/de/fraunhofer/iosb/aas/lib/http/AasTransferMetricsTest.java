@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.aas.lib.http;
+
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class AasTransferMetricsTest {
+
+    private static final String HOST = "http://aas-service:8080";
+    private static final String BODY = "{\"idShort\":\"c20\"}";
+
+
+    @Test
+    void test_received_recordsStatusAndBytesOnceBodyIsRead() throws IOException {
+        var testSubject = new AasTransferMetrics(null);
+        var request = new Request.Builder().url(HOST + "/api/v3.0/submodels").get().build();
+
+        try (var response = testSubject.received(request, response(request, 200), System.nanoTime())) {
+            assertEquals(BODY, response.body().string());
+        }
+
+        var samples = testSubject.samples();
+        var source = Map.of("host", HOST, "direction", "source");
+        assertEquals(1, value(testSubject, AasTransferMetrics.TIME_TO_FIRST_BYTE + "_count", source));
+        assertEquals(1, value(testSubject, AasTransferMetrics.STREAM + "_count", source));
+        assertEquals(BODY.length(), value(testSubject, AasTransferMetrics.TRANSFERRED_BYTES, source));
+        assertEquals(1, value(testSubject, AasTransferMetrics.RESPONSES, Map.of("host", HOST, "direction", "source", "status", "200")));
+        assertTrue(samples.stream().noneMatch(sample -> "sink".equals(sample.tags().get("direction"))));
+    }
+
+
+    @Test
+    void test_scrape_exposesSinkMetricsAndBulkheads() throws IOException {
+        var bulkheads = new AasHostBulkheads(2, 0, Duration.ZERO, new ConsoleMonitor().withPrefix(getClass().getSimpleName()));
+        var testSubject = new AasTransferMetrics(bulkheads);
+
+        var content = testSubject.counting(RequestBody.create(BODY, MediaType.get("application/json")));
+        content.writeTo(new Buffer());
+        var request = new Request.Builder().url(HOST + "/api/v3.0/submodels/c20").put(content).build();
+        bulkheads.acquire(request.url()).close();
+
+        testSubject.sent(request, response(request, 204), System.nanoTime(), content.written());
+        testSubject.failed(request.url(), AasTransferMetrics.Direction.SINK);
+        testSubject.certificatesRetrieved(HOST, Duration.ofMillis(250), true);
+
+        var exposition = testSubject.scrape();
+
+        assertTrue(exposition.contains("# TYPE aas_responses_total counter\n"));
+        assertTrue(exposition.contains("aas_responses_total{host=\"%s\",direction=\"sink\",status=\"204\"} 1\n".formatted(HOST)));
+        assertTrue(exposition.contains("aas_responses_total{host=\"%s\",direction=\"sink\",status=\"error\"} 1\n".formatted(HOST)));
+        assertTrue(exposition.contains("aas_transferred_bytes_total{host=\"%s\",direction=\"sink\"} %d\n".formatted(HOST, BODY.length())));
+        assertTrue(exposition.contains("# TYPE aas_certificate_retrieval_seconds summary\n"));
+        assertTrue(exposition.contains("aas_certificate_retrieval_seconds_sum{host=\"%s\",outcome=\"success\"} 0.25\n".formatted(HOST)));
+        assertTrue(exposition.contains("aas_host_requests_max_in_flight{host=\"%s\"} 2\n".formatted(HOST)));
+        assertTrue(exposition.contains("aas_host_requests_in_flight{host=\"%s\"} 0\n".formatted(HOST)));
+    }
+
+
+    private static double value(AasTransferMetrics metrics, String name, Map<String, String> tags) {
+        return metrics.samples().stream()
+                .filter(sample -> sample.name().equals(name) && sample.tags().equals(tags))
+                .findFirst()
+                .orElseThrow()
+                .value();
+    }
+
+
+    private static Response response(Request request, int code) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("")
+                .body(ResponseBody.create(code == 204 ? "" : BODY, MediaType.get("application/json")))
+                .build();
+    }
+}
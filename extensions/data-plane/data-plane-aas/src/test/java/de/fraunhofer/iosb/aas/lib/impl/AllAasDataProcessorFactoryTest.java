@@ -31,13 +31,29 @@ import org.junit.jupiter.api.extension.RegisterExtension;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static jakarta.ws.rs.core.Response.Status.NOT_FOUND;
 import static org.eclipse.edc.util.io.Ports.getFreePort;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 
 class AllAasDataProcessorFactoryTest {
@@ -71,6 +87,62 @@ class AllAasDataProcessorFactoryTest {
     }
 
 
+    @Test
+    void testProcessorForCachedPerHost() {
+        var retriever = spy(new DefaultSelfSignedCertificateRetriever());
+        var clock = new MutableClock();
+        var testSubject = new AllAasDataProcessorFactory(retriever, mock(OkHttpClient.class), RetryPolicy.ofDefaults(), new ConsoleMonitor(),
+                Duration.ofMinutes(5), clock);
+
+        var baseUrl = String.format("https://localhost:%d", httpsPort);
+
+        var first = testSubject.processorFor(baseUrl).getContent();
+        var second = testSubject.processorFor(baseUrl + "/api/v3.0").getContent();
+
+        assertSame(first, second);
+        verify(retriever, times(1)).getSelfSignedCertificate(any());
+
+        // Revalidation retrieves the certificates again but keeps the client as they did not change
+        clock.advance(Duration.ofMinutes(6));
+        assertSame(first, testSubject.processorFor(baseUrl).getContent());
+        verify(retriever, times(2)).getSelfSignedCertificate(any());
+
+        testSubject.invalidate(baseUrl);
+        assertNotSame(first, testSubject.processorFor(baseUrl).getContent());
+    }
+
+
+    @Test
+    void testProcessorForRevalidationDoesNotBlockOtherCallers() throws Exception {
+        var retriever = spy(new DefaultSelfSignedCertificateRetriever());
+        var clock = new MutableClock();
+        var testSubject = new AllAasDataProcessorFactory(retriever, mock(OkHttpClient.class), RetryPolicy.ofDefaults(), new ConsoleMonitor(),
+                Duration.ofMinutes(5), clock);
+
+        var baseUrl = String.format("https://localhost:%d", httpsPort);
+        var first = testSubject.processorFor(baseUrl).getContent();
+
+        var revalidationStarted = new CountDownLatch(1);
+        var releaseRevalidation = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            revalidationStarted.countDown();
+            releaseRevalidation.await();
+            return invocation.callRealMethod();
+        }).when(retriever).getSelfSignedCertificate(any());
+
+        clock.advance(Duration.ofMinutes(6));
+        var revalidation = CompletableFuture.supplyAsync(() -> testSubject.processorFor(baseUrl));
+        assertTrue(revalidationStarted.await(5, TimeUnit.SECONDS));
+
+        // Served by the current processor while its certificates are retrieved again
+        assertSame(first, testSubject.processorFor(baseUrl).getContent());
+
+        releaseRevalidation.countDown();
+        assertSame(first, revalidation.get(5, TimeUnit.SECONDS).getContent());
+        verify(retriever, times(2)).getSelfSignedCertificate(any());
+    }
+
+
     private AasDataAddress getDataAddress(URI baseUri) {
         return AasDataAddress.Builder.newInstance()
                 .baseUrl(baseUri.toString())
@@ -84,4 +156,33 @@ class AllAasDataProcessorFactoryTest {
                         .build())
                 .build();
     }
+
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.now();
+
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.dataplane.aas.pipeline;
+
+import de.fraunhofer.iosb.dataplane.aas.spi.LocalAasService;
+import org.eclipse.edc.connector.dataplane.spi.pipeline.DataSource;
+import org.eclipse.edc.connector.dataplane.spi.pipeline.StreamResult;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+class AasChangeStreamSourceTest {
+
+    private final AtomicReference<String> value = new AtomicReference<>("1");
+
+
+    @Test
+    void test_openPartStream_pollingOnlyEmitsChangedValues() throws Exception {
+        var source = AasChangeStreamSource.Builder.newInstance()
+                .reader(this::reader)
+                .pollInterval(Duration.ofMillis(10))
+                .monitor(new ConsoleMonitor().withPrefix(getClass().getSimpleName()))
+                .requestId("test")
+                .build();
+
+        var parts = source.openPartStream().getContent().iterator();
+        assertEquals("1", next(parts));
+
+        value.set("2");
+        assertEquals("2", next(parts));
+
+        source.close();
+        assertFalse(parts.hasNext());
+    }
+
+
+    @Test
+    void test_openPartStream_localServiceChangeEventTriggersRead() throws Exception {
+        var listener = new AtomicReference<Runnable>();
+        var localService = mock(LocalAasService.class);
+        when(localService.subscribe(any())).thenAnswer(invocation -> {
+            listener.set(invocation.getArgument(0));
+            return Optional.of((AutoCloseable) () -> listener.set(null));
+        });
+
+        var source = AasChangeStreamSource.Builder.newInstance()
+                .reader(this::reader)
+                .localService(localService)
+                // Without the change event, the test times out
+                .pollInterval(Duration.ofHours(1))
+                .monitor(new ConsoleMonitor().withPrefix(getClass().getSimpleName()))
+                .requestId("test")
+                .build();
+
+        var parts = source.openPartStream().getContent().iterator();
+        assertEquals("1", next(parts));
+
+        value.set("2");
+        listener.get().run();
+        assertEquals("2", next(parts));
+
+        source.close();
+        assertNull(listener.get());
+    }
+
+
+    private AasDataSource reader() {
+        var dataSource = mock(AasDataSource.class);
+        var content = value.get().getBytes(StandardCharsets.UTF_8);
+        when(dataSource.openPartStream()).thenReturn(StreamResult.success(Stream.of(
+                new AasPart("AAS Part", new ByteArrayInputStream(content), "application/json", content.length))));
+        return dataSource;
+    }
+
+
+    private static String next(Iterator<DataSource.Part> parts) throws Exception {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return new String(parts.next().openStream().readAllBytes(), StandardCharsets.UTF_8);
+            }
+            catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }).get(5, TimeUnit.SECONDS);
+    }
+}
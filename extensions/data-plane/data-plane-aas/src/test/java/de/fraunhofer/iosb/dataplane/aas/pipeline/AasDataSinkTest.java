@@ -21,6 +21,7 @@ import de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress;
 import okhttp3.MediaType;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import org.eclipse.edc.connector.dataplane.spi.pipeline.DataSource;
 import org.eclipse.edc.connector.dataplane.spi.pipeline.StreamResult;
 import org.eclipse.edc.spi.monitor.ConsoleMonitor;
 import org.eclipse.edc.spi.result.Result;
@@ -32,13 +33,27 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static org.eclipse.edc.util.io.Ports.getFreePort;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -93,4 +108,203 @@ class AasDataSinkTest {
 
         verify(mockAasDataProcessor, atLeastOnce()).send(any(), eq(mockAasPart));
     }
+
+
+    @Test
+    void test_transfer_parallel_aggregatesPartFailures() throws IOException {
+        AasDataSource mockDataSource = mock(AasDataSource.class);
+        var parts = IntStream.range(0, 6)
+                .mapToObj(i -> new AasPart("part-" + i, new ByteArrayInputStream(new byte[0]), "application/json"))
+                .toList();
+        when(mockDataSource.openPartStream()).thenReturn(StreamResult.success(parts.stream().map(DataSource.Part.class::cast)));
+        when(mockAasDataAddress.getBaseUrl()).thenReturn(destinationUri.toString());
+
+        var successfulResponse = mock(Response.class);
+        when(successfulResponse.isSuccessful()).thenReturn(true);
+
+        AasDataProcessor mockAasDataProcessor = mock(AasDataProcessor.class);
+        when(mockAasDataprocessorFactory.processorFor(any())).thenReturn(Result.success(mockAasDataProcessor));
+        when(mockAasDataProcessor.send(any(), any())).thenAnswer(invocation -> {
+            var part = invocation.getArgument(1, DataSource.Part.class);
+            if (part.name().equals("part-3")) {
+                throw new IOException("connection reset");
+            }
+            return successfulResponse;
+        });
+
+        var executor = Executors.newFixedThreadPool(3);
+        try {
+            var parallelSink = AasDataSink.Builder.newInstance()
+                    .aasManipulator(mockAasDataprocessorFactory)
+                    .aasDataAddress(mockAasDataAddress)
+                    .monitor(new ConsoleMonitor().withPrefix(this.getClass().getSimpleName()))
+                    .executorService(executor)
+                    .maxParallelParts(3)
+                    .build();
+
+            var result = parallelSink.transfer(mockDataSource).join();
+
+            assertTrue(result.failed());
+            assertEquals(1, result.getFailure().getMessages().size());
+            assertTrue(result.getFailure().getMessages().get(0).startsWith("Part part-3"));
+            verify(mockAasDataprocessorFactory, times(1)).processorFor(any());
+            verify(mockAasDataProcessor, times(6)).send(any(), any());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    void test_transfer_changeStream_returnsWhileStreamIsOpen() throws Exception {
+        var streamClosed = new CountDownLatch(1);
+        var firstPart = new AtomicBoolean(true);
+        AasChangeStreamSource changeStream = mock(AasChangeStreamSource.class);
+        // One change, then the stream blocks until it is closed
+        when(changeStream.openPartStream()).thenReturn(StreamResult.success(Stream.<DataSource.Part>generate(() -> {
+            if (firstPart.getAndSet(false)) {
+                return new AasPart("c20", new ByteArrayInputStream("{}".getBytes(StandardCharsets.UTF_8)), "application/json");
+            }
+            try {
+                streamClosed.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        }).takeWhile(Objects::nonNull)));
+        when(mockAasDataAddress.getBaseUrl()).thenReturn(destinationUri.toString());
+
+        var successfulResponse = mock(Response.class);
+        when(successfulResponse.isSuccessful()).thenReturn(true);
+        AasDataProcessor mockAasDataProcessor = mock(AasDataProcessor.class);
+        when(mockAasDataprocessorFactory.processorFor(any())).thenReturn(Result.success(mockAasDataProcessor));
+        when(mockAasDataProcessor.send(any(), any())).thenReturn(successfulResponse);
+
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            var changeStreamSink = AasDataSink.Builder.newInstance()
+                    .aasManipulator(mockAasDataprocessorFactory)
+                    .aasDataAddress(mockAasDataAddress)
+                    .monitor(new ConsoleMonitor().withPrefix(this.getClass().getSimpleName()))
+                    .changeStreamExecutor(executor)
+                    .build();
+
+            var result = changeStreamSink.transfer(changeStream);
+
+            // The calling thread is released while the stream is open and parts are still pushed
+            assertFalse(result.isDone());
+            verify(mockAasDataProcessor, timeout(5000)).send(any(), any());
+
+            streamClosed.countDown();
+            assertTrue(result.get(5, TimeUnit.SECONDS).succeeded());
+        }
+        finally {
+            streamClosed.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+
+    @Test
+    void test_transfer_deltaPush_sendsMergePatchOfChanges() throws IOException {
+        var successfulResponse = mock(Response.class);
+        when(successfulResponse.isSuccessful()).thenReturn(true);
+        when(successfulResponse.header("ETag")).thenReturn("\"1\"");
+        var preconditionFailed = mock(Response.class);
+        when(preconditionFailed.code()).thenReturn(412);
+
+        var patches = new ArrayList<String>();
+        AasDataProcessor mockAasDataProcessor = mock(AasDataProcessor.class);
+        when(mockAasDataprocessorFactory.processorFor(any())).thenReturn(Result.success(mockAasDataProcessor));
+        when(mockAasDataProcessor.send(any(), any())).thenReturn(successfulResponse);
+        when(mockAasDataProcessor.patch(any(), any(), any())).thenAnswer(invocation -> {
+            patches.add(new String(invocation.getArgument(1, DataSource.Part.class).openStream().readAllBytes(), StandardCharsets.UTF_8));
+            return patches.size() == 1 ? successfulResponse : preconditionFailed;
+        });
+
+        var deltaSink = deltaSink();
+
+        var staticValue = "x".repeat(1000);
+        // First write, second write with one changed value, third write unchanged, fourth write with rejected patch
+        assertTrue(deltaSink.transfer(sourceOf("{\"static\":\"%s\",\"value\":1}".formatted(staticValue))).join().succeeded());
+        assertTrue(deltaSink.transfer(sourceOf("{\"static\":\"%s\",\"value\":2}".formatted(staticValue))).join().succeeded());
+        assertTrue(deltaSink.transfer(sourceOf("{\"static\":\"%s\",\"value\":2}".formatted(staticValue))).join().succeeded());
+        assertTrue(deltaSink.transfer(sourceOf("{\"static\":\"%s\",\"value\":3}".formatted(staticValue))).join().succeeded());
+
+        assertEquals(List.of("{\"value\":2}", "{\"value\":3}"), patches);
+        verify(mockAasDataProcessor, times(2)).send(any(), any());
+        verify(mockAasDataProcessor, times(2)).patch(any(), any(), any());
+    }
+
+
+    @Test
+    void test_transfer_deltaPushWithoutETag_writesWholePart() throws IOException {
+        var successfulResponse = mock(Response.class);
+        when(successfulResponse.isSuccessful()).thenReturn(true);
+
+        AasDataProcessor mockAasDataProcessor = mock(AasDataProcessor.class);
+        when(mockAasDataprocessorFactory.processorFor(any())).thenReturn(Result.success(mockAasDataProcessor));
+        when(mockAasDataProcessor.send(any(), any())).thenReturn(successfulResponse);
+
+        var deltaSink = deltaSink();
+
+        assertTrue(deltaSink.transfer(sourceOf("{\"value\":1}")).join().succeeded());
+        assertTrue(deltaSink.transfer(sourceOf("{\"value\":1}")).join().succeeded());
+        assertTrue(deltaSink.transfer(sourceOf("{\"value\":2}")).join().succeeded());
+
+        verify(mockAasDataProcessor, times(3)).send(any(), any());
+        verify(mockAasDataProcessor, never()).patch(any(), any(), any());
+    }
+
+
+    @Test
+    void test_transfer_deltaPushChangedArray_writesWholePart() throws IOException {
+        var successfulResponse = mock(Response.class);
+        when(successfulResponse.isSuccessful()).thenReturn(true);
+        when(successfulResponse.header("ETag")).thenReturn("\"1\"");
+
+        AasDataProcessor mockAasDataProcessor = mock(AasDataProcessor.class);
+        when(mockAasDataprocessorFactory.processorFor(any())).thenReturn(Result.success(mockAasDataProcessor));
+        when(mockAasDataProcessor.send(any(), any())).thenReturn(successfulResponse);
+
+        var deltaSink = deltaSink();
+
+        var element = "{\"idShort\":\"%s\",\"modelType\":\"Property\",\"value\":\"%s\"}";
+        var submodel = "{\"id\":\"c20\",\"submodelElements\":[%s,%s]}";
+        var first = submodel.formatted(element.formatted("a", "x".repeat(1000)), element.formatted("b", "1"));
+        var second = submodel.formatted(element.formatted("a", "x".repeat(1000)), element.formatted("b", "2"));
+
+        assertTrue(deltaSink.transfer(sourceOf(first)).join().succeeded());
+        assertTrue(deltaSink.transfer(sourceOf(second)).join().succeeded());
+
+        verify(mockAasDataProcessor, times(2)).send(any(), any());
+        verify(mockAasDataProcessor, never()).patch(any(), any(), any());
+    }
+
+
+    private AasDataSink deltaSink() {
+        var destination = AasDataAddress.Builder.newInstance()
+                .baseUrl(destinationUri.toString())
+                .method("PUT")
+                .path("submodels/c20")
+                .deltaPush("true")
+                .build();
+
+        return AasDataSink.Builder.newInstance()
+                .aasManipulator(mockAasDataprocessorFactory)
+                .aasDataAddress(destination)
+                .monitor(new ConsoleMonitor().withPrefix(this.getClass().getSimpleName()))
+                .deltaWrites(new AasDeltaWrites(AasDeltaWrites.DEFAULT_MAX_ENTRIES, AasDeltaWrites.DEFAULT_MAX_ENTRY_SIZE))
+                .build();
+    }
+
+
+    private static DataSource sourceOf(String json) {
+        DataSource dataSource = mock(DataSource.class);
+        var part = new AasPart("c20", new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), "application/json");
+        when(dataSource.openPartStream()).thenReturn(StreamResult.success(Stream.of(part)));
+        return dataSource;
+    }
 }
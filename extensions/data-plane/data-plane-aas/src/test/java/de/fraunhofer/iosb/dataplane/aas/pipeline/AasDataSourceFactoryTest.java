@@ -35,8 +35,11 @@ import org.junit.jupiter.api.Test;
 
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_OPERATION;
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.SUBMODEL_IDS;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.mock;
@@ -58,6 +61,54 @@ class AasDataSourceFactoryTest {
     }
 
 
+    @Test
+    void test_createSource_serializationNarrowedByDestination() throws Exception {
+        var accessUri = new URI("https://localhost:1234");
+        var mockedProcessor = mock(AasDataProcessor.class);
+        when(mockedProcessor.getFromAas(any()))
+                .thenReturn(new Response.Builder()
+                        .code(200)
+                        .request(new Request.Builder()
+                                .url(accessUri.toURL())
+                                .build())
+                        .protocol(Protocol.HTTP_1_1)
+                        .message("")
+                        .body(ResponseBody.create("{\"submodels\": []}".getBytes(StandardCharsets.UTF_8), okhttp3.MediaType.get("application/json")))
+                        .build());
+        when(mockedDataProcessorFactory.processorFor(accessUri.toString())).thenReturn(Result.success(mockedProcessor));
+
+        var mockedDataFlowStartMessage = mock(DataFlowStartMessage.class);
+        when(mockedDataFlowStartMessage.getId()).thenReturn("testId");
+        when(mockedDataFlowStartMessage.getSourceDataAddress())
+                .thenReturn(AasDataAddress.Builder.newInstance()
+                        .baseUrl(accessUri.toString())
+                        .aasIds(List.of("aas"))
+                        .submodelIds(List.of("sm1", "sm2"))
+                        .build());
+        when(mockedDataFlowStartMessage.getDestinationDataAddress())
+                .thenReturn(DataAddress.Builder.newInstance()
+                        .type("HttpData")
+                        .property(SUBMODEL_IDS, "[\"sm2\"]")
+                        .build());
+
+        try (var source = testSubject.createSource(mockedDataFlowStartMessage)) {
+            source.openPartStream();
+        }
+
+        // Only the requested submodel, the shells of the asset are kept
+        verify(mockedProcessor).getFromAas(argThat(address -> address.isSerialization() &&
+                List.of("aas").equals(address.getAasIds()) && List.of("sm2").equals(address.getSubmodelIds())));
+
+        // Identifiers outside of the asset are rejected
+        when(mockedDataFlowStartMessage.getDestinationDataAddress())
+                .thenReturn(DataAddress.Builder.newInstance()
+                        .type("HttpData")
+                        .property(SUBMODEL_IDS, "[\"sm3\"]")
+                        .build());
+        assertTrue(testSubject.validateRequest(mockedDataFlowStartMessage).failed());
+    }
+
+
     @Disabled("Changed functionality")
     @Test
     void test_createSource_differentTargetDataAddressType() throws Exception {
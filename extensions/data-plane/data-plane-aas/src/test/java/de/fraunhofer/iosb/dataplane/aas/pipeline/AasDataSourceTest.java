@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.dataplane.aas.pipeline;
+
+import de.fraunhofer.iosb.aas.lib.AasDataProcessor;
+import de.fraunhofer.iosb.aas.lib.AasDataProcessorFactory;
+import de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress;
+import de.fraunhofer.iosb.dataplane.aas.spi.LocalAasService;
+import de.fraunhofer.iosb.dataplane.aas.spi.LocalAasServiceRegistry;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.eclipse.edc.connector.dataplane.spi.pipeline.DataSource;
+import org.eclipse.edc.connector.dataplane.spi.pipeline.StreamFailure;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.eclipse.edc.spi.result.Result;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockingDetails;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+class AasDataSourceTest {
+
+    private static final String BASE_URL = "http://localhost:8080";
+
+    private final AasDataProcessorFactory processorFactory = mock(AasDataProcessorFactory.class);
+    private final AasDataProcessor processor = mock(AasDataProcessor.class);
+    private ExecutorService executorService;
+
+
+    @BeforeEach
+    void setUp() {
+        executorService = Executors.newFixedThreadPool(4);
+        when(processorFactory.processorFor(BASE_URL)).thenReturn(Result.success(processor));
+    }
+
+
+    @AfterEach
+    void tearDown() {
+        executorService.shutdownNow();
+    }
+
+
+    @Test
+    void test_openPartStream_multipleElementsReturnPartPerElement() throws IOException {
+        when(processor.getFromAas(any())).thenAnswer(invocation -> response(invocation.getArgument(0, AasDataAddress.class).getPath(), 200));
+
+        try (var source = sourceFor(List.of("submodels/a", "submodels/b", "submodels/c"))) {
+            var result = source.openPartStream();
+
+            assertTrue(result.succeeded());
+            var parts = result.getContent().toList();
+            assertEquals(List.of("submodels/a", "submodels/b", "submodels/c"), parts.stream().map(DataSource.Part::name).toList());
+            for (var part: parts) {
+                assertEquals(part.name(), new String(part.openStream().readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+
+    @Test
+    void test_openPartStream_failedElementFailsTransfer() throws IOException {
+        when(processor.getFromAas(any())).thenAnswer(invocation -> {
+            var path = invocation.getArgument(0, AasDataAddress.class).getPath();
+            return response(path, path.endsWith("b") ? 404 : 200);
+        });
+
+        try (var source = sourceFor(List.of("submodels/a", "submodels/b"))) {
+            var result = source.openPartStream();
+
+            assertTrue(result.failed());
+            assertEquals(StreamFailure.Reason.NOT_FOUND, result.getFailure().getReason());
+        }
+    }
+
+
+    @Test
+    void test_openPartStreamAsync_pollsOperationStatusUntilCompleted() throws Exception {
+        var statusPath = "/submodels/sm/submodel-elements/op/operation-status/handle";
+        var invocation = new Response.Builder()
+                .code(202)
+                .request(new Request.Builder().url(BASE_URL + "/submodels/sm/submodel-elements/op/invoke-async/$value").build())
+                .protocol(Protocol.HTTP_1_1)
+                .message("")
+                .header("Location", statusPath)
+                .body(ResponseBody.create(new byte[0], null))
+                .build();
+        when(processor.getFromAas(any())).thenReturn(invocation);
+        when(processor.getOperationHandle(any(), argThat(url -> url != null && url.encodedPath().equals(statusPath))))
+                .thenAnswer(ignored -> response("{\"executionState\":\"Running\"}", 200))
+                .thenAnswer(ignored -> response("{\"executionState\":\"Completed\"}", 200));
+        when(processor.getOperationHandle(any(), argThat(url -> url != null && url.encodedPath().endsWith("operation-results/handle/$value"))))
+                .thenAnswer(ignored -> response("{\"result\":42}", 200));
+
+        try (var source = AasDataSource.Builder.newInstance()
+                .requestId("test")
+                .monitor(new ConsoleMonitor().withPrefix(getClass().getSimpleName()))
+                .aasDataProcessorFactory(processorFactory)
+                .aasDataAddress(AasDataAddress.Builder.newInstance()
+                        .baseUrl(BASE_URL)
+                        .path("submodels/sm/submodel-elements/op")
+                        .proxyOperation("{}")
+                        .proxyOperationAsync("true")
+                        .build())
+                .executorService(executorService)
+                .operationPolling(new AasOperationPolling(Duration.ofMillis(10), Duration.ofSeconds(5)))
+                .build()) {
+            var result = source.openPartStreamAsync().get(5, TimeUnit.SECONDS);
+
+            assertTrue(result.succeeded());
+            var part = result.getContent().findFirst().orElseThrow();
+            assertEquals("{\"result\":42}", new String(part.openStream().readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+
+    @Test
+    void test_openPartStreamAsync_closeStopsPolling() throws Exception {
+        var statusPath = "/submodels/sm/submodel-elements/op/operation-status/handle";
+        when(processor.getFromAas(any())).thenReturn(accepted(statusPath));
+        when(processor.getOperationHandle(any(), any())).thenAnswer(ignored -> response("{\"executionState\":\"Running\"}", 200));
+
+        var source = asyncOperationSource(executorService);
+        var result = source.openPartStreamAsync();
+        verify(processor, timeout(5000)).getOperationHandle(any(), any());
+        source.close();
+
+        assertTrue(result.get(5, TimeUnit.SECONDS).failed());
+        // A poll already running when the source was closed may still finish
+        Thread.sleep(100);
+        var polls = mockingDetails(processor).getInvocations().stream().filter(call -> call.getMethod().getName().equals("getOperationHandle")).count();
+        Thread.sleep(100);
+        verify(processor, times((int) polls)).getOperationHandle(any(), any());
+    }
+
+
+    @Test
+    void test_openPartStreamAsync_rejectedPollFailsTransfer() throws Exception {
+        var statusPath = "/submodels/sm/submodel-elements/op/operation-status/handle";
+        when(processor.getFromAas(any())).thenReturn(accepted(statusPath));
+        var stoppedExecutor = Executors.newSingleThreadExecutor();
+        stoppedExecutor.shutdown();
+
+        try (var source = asyncOperationSource(stoppedExecutor)) {
+            var result = source.openPartStreamAsync().get(5, TimeUnit.SECONDS);
+
+            assertTrue(result.failed());
+        }
+        verify(processor, never()).getOperationHandle(any(), any());
+    }
+
+
+    @Test
+    void test_openPartStream_coLocatedServiceIsReadInProcess() throws IOException {
+        var localServices = new LocalAasServiceRegistry();
+        localServices.register(BASE_URL + "/", plan -> {
+            var body = plan.path().getBytes(StandardCharsets.UTF_8);
+            return Optional.of(new LocalAasService.Response(200, new ByteArrayInputStream(body), "application/json", body.length));
+        });
+
+        try (var source = AasDataSource.Builder.newInstance()
+                .requestId("test")
+                .monitor(new ConsoleMonitor().withPrefix(getClass().getSimpleName()))
+                .aasDataProcessorFactory(processorFactory)
+                .aasDataAddress(AasDataAddress.Builder.newInstance()
+                        .baseUrl(BASE_URL)
+                        .paths(List.of("submodels/a", "submodels/b"))
+                        .build())
+                .localServices(localServices)
+                .build()) {
+            var result = source.openPartStream();
+
+            assertTrue(result.succeeded());
+            for (var part: result.getContent().toList()) {
+                assertEquals(part.name(), new String(part.openStream().readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        verify(processorFactory, never()).processorFor(any());
+    }
+
+
+    @Test
+    void test_openPartStream_unsupportedInProcessFallsBackToHttp() throws IOException {
+        var localServices = new LocalAasServiceRegistry();
+        localServices.register(BASE_URL, plan -> Optional.empty());
+        when(processor.getFromAas(any())).thenAnswer(invocation -> response("http", 200));
+
+        try (var source = AasDataSource.Builder.newInstance()
+                .requestId("test")
+                .monitor(new ConsoleMonitor().withPrefix(getClass().getSimpleName()))
+                .aasDataProcessorFactory(processorFactory)
+                .aasDataAddress(AasDataAddress.Builder.newInstance()
+                        .baseUrl(BASE_URL)
+                        .path("submodels/a")
+                        .build())
+                .localServices(localServices)
+                .build()) {
+            var result = source.openPartStream();
+
+            assertTrue(result.succeeded());
+            var part = result.getContent().findFirst().orElseThrow();
+            assertEquals("http", new String(part.openStream().readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+
+    private AasDataSource asyncOperationSource(ExecutorService executor) {
+        return AasDataSource.Builder.newInstance()
+                .requestId("test")
+                .monitor(new ConsoleMonitor().withPrefix(getClass().getSimpleName()))
+                .aasDataProcessorFactory(processorFactory)
+                .aasDataAddress(AasDataAddress.Builder.newInstance()
+                        .baseUrl(BASE_URL)
+                        .path("submodels/sm/submodel-elements/op")
+                        .proxyOperation("{}")
+                        .proxyOperationAsync("true")
+                        .build())
+                .executorService(executor)
+                .operationPolling(new AasOperationPolling(Duration.ofMillis(10), Duration.ofSeconds(5)))
+                .build();
+    }
+
+
+    private static Response accepted(String statusPath) {
+        return new Response.Builder()
+                .code(202)
+                .request(new Request.Builder().url(BASE_URL + "/submodels/sm/submodel-elements/op/invoke-async/$value").build())
+                .protocol(Protocol.HTTP_1_1)
+                .message("")
+                .header("Location", statusPath)
+                .body(ResponseBody.create(new byte[0], null))
+                .build();
+    }
+
+
+    private AasDataSource sourceFor(List<String> paths) {
+        return AasDataSource.Builder.newInstance()
+                .requestId("test")
+                .monitor(new ConsoleMonitor().withPrefix(getClass().getSimpleName()))
+                .aasDataProcessorFactory(processorFactory)
+                .aasDataAddress(AasDataAddress.Builder.newInstance()
+                        .baseUrl(BASE_URL)
+                        .paths(paths)
+                        .build())
+                .executorService(executorService)
+                .maxParallelRequests(2)
+                .build();
+    }
+
+
+    private static Response response(String body, int code) {
+        return new Response.Builder()
+                .code(code)
+                .request(new Request.Builder().url(BASE_URL).build())
+                .protocol(Protocol.HTTP_1_1)
+                .message("")
+                .body(ResponseBody.create(body.getBytes(StandardCharsets.UTF_8), okhttp3.MediaType.get("application/json")))
+                .build();
+    }
+}
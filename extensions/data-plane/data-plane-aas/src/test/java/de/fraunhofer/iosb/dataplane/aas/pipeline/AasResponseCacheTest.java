@@ -0,0 +1,258 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.dataplane.aas.pipeline;
+
+import de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static de.fraunhofer.iosb.dataplane.aas.spi.AasDataAddress.PROXY_OPERATION;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class AasResponseCacheTest {
+
+    private static final String BASE_URL = "http://localhost:8080";
+
+    private final MutableClock clock = new MutableClock();
+    private final AtomicInteger requests = new AtomicInteger();
+
+
+    @Test
+    void test_execute_identicalConcurrentRequestsCoalesced() throws Exception {
+        var testSubject = new AasResponseCache(Duration.ZERO, 16, AasResponseCache.DEFAULT_MAX_ENTRY_SIZE, clock);
+        var leaderSent = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        var leader = CompletableFuture.supplyAsync(() -> body(execute(testSubject, address(), ignored -> {
+            leaderSent.countDown();
+            await(release);
+            return response(200, "shared", null);
+        })));
+        assertTrue(leaderSent.await(5, TimeUnit.SECONDS));
+
+        var follower = CompletableFuture.supplyAsync(() -> body(execute(testSubject, address(), ignored -> response(200, "own", null))));
+        // Give the follower time to join the in-flight request
+        Thread.sleep(100);
+        release.countDown();
+
+        assertEquals("shared", leader.get(5, TimeUnit.SECONDS));
+        assertEquals("shared", follower.get(5, TimeUnit.SECONDS));
+        assertEquals(1, requests.get());
+        // Nothing is cached without TTL
+        assertEquals(0, testSubject.size());
+    }
+
+
+    @Test
+    void test_execute_cachedUntilTtlExpires() throws IOException {
+        var testSubject = new AasResponseCache(Duration.ofSeconds(10), 16, AasResponseCache.DEFAULT_MAX_ENTRY_SIZE, clock);
+
+        assertEquals("first", body(testSubject.execute(address(), this::first)));
+        assertEquals("first", body(testSubject.execute(address(), this::second)));
+        assertEquals(1, requests.get());
+
+        clock.advance(Duration.ofSeconds(11));
+
+        assertEquals("second", body(testSubject.execute(address(), this::second)));
+        assertEquals(2, requests.get());
+    }
+
+
+    @Test
+    void test_execute_revalidatedWithETag() throws IOException {
+        var testSubject = new AasResponseCache(Duration.ofSeconds(10), 16, AasResponseCache.DEFAULT_MAX_ENTRY_SIZE, clock);
+
+        testSubject.execute(address(), ignored -> {
+            requests.incrementAndGet();
+            return response(200, "tagged", "\"v1\"");
+        });
+        clock.advance(Duration.ofSeconds(11));
+
+        var response = testSubject.execute(address(), address -> {
+            requests.incrementAndGet();
+            assertEquals("\"v1\"", address.getAdditionalHeaders().get("If-None-Match"));
+            return response(304, "", "\"v1\"");
+        });
+
+        assertEquals(200, response.code());
+        assertEquals("tagged", body(response));
+        assertEquals(2, requests.get());
+    }
+
+
+    @Test
+    void test_execute_revalidationFailed_entryRemoved() throws IOException {
+        var testSubject = new AasResponseCache(Duration.ofSeconds(10), 16, AasResponseCache.DEFAULT_MAX_ENTRY_SIZE, clock);
+
+        testSubject.execute(address(), ignored -> response(200, "tagged", "\"v1\""));
+        clock.advance(Duration.ofSeconds(11));
+
+        var failed = testSubject.execute(address(), ignored -> response(500, "error", null));
+        assertEquals(500, failed.code());
+        failed.close();
+        assertEquals(0, testSubject.size());
+
+        // The outdated ETag is not sent again
+        var response = testSubject.execute(address(), address -> {
+            assertNull(address.getAdditionalHeaders().get("If-None-Match"));
+            return response(200, "current", "\"v2\"");
+        });
+        assertEquals("current", body(response));
+    }
+
+
+    @Test
+    void test_execute_operationsAndNonGetNeverCached() throws IOException {
+        var testSubject = new AasResponseCache(Duration.ofSeconds(10), 16, AasResponseCache.DEFAULT_MAX_ENTRY_SIZE, clock);
+
+        var operation = AasDataAddress.Builder.newInstance().copyFrom(address()).property(PROXY_OPERATION, "{}").build();
+        testSubject.execute(operation, this::first);
+        testSubject.execute(operation, this::first);
+
+        var put = AasDataAddress.Builder.newInstance().copyFrom(address()).method("PUT").build();
+        testSubject.execute(put, this::first);
+        testSubject.execute(put, this::first);
+
+        assertEquals(4, requests.get());
+        assertEquals(0, testSubject.size());
+    }
+
+
+    @Test
+    void test_execute_largeResponsesNotShared() throws IOException {
+        var testSubject = new AasResponseCache(Duration.ofSeconds(10), 16, 4, clock);
+
+        var response = testSubject.execute(address(), this::first);
+
+        assertEquals("first", body(response));
+        assertNull(response.header("ETag"));
+        assertEquals(0, testSubject.size());
+    }
+
+
+    private Response first(AasDataAddress address) {
+        requests.incrementAndGet();
+        return response(200, "first", null);
+    }
+
+
+    private Response second(AasDataAddress address) {
+        requests.incrementAndGet();
+        return response(200, "second", null);
+    }
+
+
+    private Response execute(AasResponseCache testSubject, AasDataAddress address, AasResponseCache.RequestExecutor executor) {
+        try {
+            return testSubject.execute(address, toExecute -> {
+                requests.incrementAndGet();
+                return executor.execute(toExecute);
+            });
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    private static AasDataAddress address() {
+        return AasDataAddress.Builder.newInstance()
+                .baseUrl(BASE_URL)
+                .path("submodels/xyz")
+                .build();
+    }
+
+
+    private static Response response(int code, String body, String etag) {
+        var builder = new Response.Builder()
+                .code(code)
+                .request(new Request.Builder().url(BASE_URL).build())
+                .protocol(Protocol.HTTP_1_1)
+                .message("")
+                .body(ResponseBody.create(body.getBytes(StandardCharsets.UTF_8), okhttp3.MediaType.get("application/json")));
+        if (etag != null) {
+            builder.header("ETag", etag);
+        }
+        return builder.build();
+    }
+
+
+    private static String body(Response response) {
+        try (response) {
+            return response.body().string();
+        }
+        catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.now();
+
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -22,11 +22,13 @@ import org.junit.jupiter.api.extension.RegisterExtension;
 
 import java.security.cert.Certificate;
 import java.util.List;
+import javax.net.ssl.HttpsURLConnection;
 
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static org.eclipse.edc.util.io.Ports.getFreePort;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
@@ -50,10 +52,14 @@ class DefaultSelfSignedCertificateRetrieverTest {
     @Test
     void getSelfSignedCertificate() {
 
+        var defaultSocketFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+
         Result<Certificate[]> certResult = new DefaultSelfSignedCertificateRetriever().getSelfSignedCertificate(LOCALHOST_URL);
 
         assertTrue(certResult.succeeded());
         assertNotNull(certResult.getContent());
+        // Trust-all must not leak into other connections of this JVM
+        assertSame(defaultSocketFactory, HttpsURLConnection.getDefaultSSLSocketFactory());
     }
 
 
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.ssl.impl;
+
+import de.fraunhofer.iosb.ssl.SelfSignedCertificateRetriever;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.eclipse.edc.spi.result.Result;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+class PinnedCertificateRetrieverTest {
+
+    private static final String URL = "https://localhost:8443/api/v3.0";
+
+    @TempDir
+    Path tempDir;
+
+    private X509Certificate certificate;
+    private SelfSignedCertificateRetriever retriever;
+
+
+    @BeforeEach
+    void setUp() throws IOException, CertificateException {
+        try (InputStream pem = Files.newInputStream(Path.of("src/test/resources/cert.pem"))) {
+            certificate = (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(pem);
+        }
+        retriever = mock(SelfSignedCertificateRetriever.class);
+        when(retriever.getSelfSignedCertificate(any())).thenReturn(Result.success(new Certificate[] { certificate }));
+    }
+
+
+    @Test
+    void testPinnedCertificatesAreReusedAcrossRestarts() {
+        var storeFile = tempDir.resolve("pins.properties");
+        var clock = Clock.fixed(certificate.getNotBefore().toInstant().plusSeconds(60), ZoneOffset.UTC);
+
+        var testSubject = new PinnedCertificateRetriever(retriever, storeFile, clock, new ConsoleMonitor());
+        testSubject.getSelfSignedCertificate(URL);
+        var pinned = testSubject.getSelfSignedCertificate("https://LOCALHOST:8443/submodels");
+
+        verify(retriever, times(1)).getSelfSignedCertificate(any());
+        assertArrayEquals(new Certificate[] { certificate }, pinned.getContent());
+        assertTrue(Files.exists(storeFile));
+
+        var restartedRetriever = mock(SelfSignedCertificateRetriever.class);
+        var restarted = new PinnedCertificateRetriever(restartedRetriever, storeFile, clock, new ConsoleMonitor());
+
+        assertArrayEquals(new Certificate[] { certificate }, restarted.getSelfSignedCertificate(URL).getContent());
+        verify(restartedRetriever, never()).getSelfSignedCertificate(any());
+    }
+
+
+    @Test
+    void testExpiredPinIsRetrievedAgain() {
+        var beforeExpiry = new PinnedCertificateRetriever(retriever, null, Clock.fixed(certificate.getNotBefore().toInstant(), ZoneOffset.UTC),
+                new ConsoleMonitor());
+        beforeExpiry.getSelfSignedCertificate(URL);
+        beforeExpiry.getSelfSignedCertificate(URL);
+        verify(retriever, times(1)).getSelfSignedCertificate(any());
+
+        var afterExpiry = new PinnedCertificateRetriever(retriever, null, Clock.fixed(certificate.getNotAfter().toInstant().plusSeconds(1), ZoneOffset.UTC),
+                new ConsoleMonitor());
+        afterExpiry.getSelfSignedCertificate(URL);
+        afterExpiry.getSelfSignedCertificate(URL);
+        verify(retriever, times(3)).getSelfSignedCertificate(any());
+    }
+
+
+    @Test
+    void testInvalidateDropsPin() {
+        var storeFile = tempDir.resolve("pins.properties");
+        var clock = Clock.fixed(certificate.getNotBefore().toInstant().plusSeconds(60), ZoneOffset.UTC);
+        var testSubject = new PinnedCertificateRetriever(retriever, storeFile, clock, new ConsoleMonitor());
+
+        testSubject.getSelfSignedCertificate(URL);
+        testSubject.invalidate(URL);
+        testSubject.getSelfSignedCertificate(URL);
+
+        verify(retriever, times(2)).getSelfSignedCertificate(any());
+        verify(retriever).invalidate(URL);
+    }
+}
@@ -10,6 +10,9 @@ dependencies {
     implementation(libs.edc.contract.spi)
     implementation(libs.edc.runtime.core)
     implementation(libs.edc.connector.core)
+    implementation(libs.edc.http.lib) // failsafe
+    implementation(libs.edc.query.lib) // CriterionOperatorRegistryImpl
+    implementation(libs.edc.store.lib) // ReflectionBasedQueryResolver
 
     testImplementation(testFixtures(project(":extensions:common:aas-lib")))
 
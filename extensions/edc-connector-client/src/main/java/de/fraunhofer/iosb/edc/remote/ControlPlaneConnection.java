@@ -26,6 +26,7 @@ import org.eclipse.edc.spi.security.Vault;
 import java.net.URI;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.function.UnaryOperator;
 
 
@@ -40,13 +41,26 @@ public class ControlPlaneConnection {
     private final String resourceName;
 
     private final UnaryOperator<Request.Builder> authSupplier;
+    private final AuthenticationMethod authenticationMethod;
 
 
     public ControlPlaneConnection(URI connectionUri, String resourceName, Vault vault, AuthenticationMethod authenticationMethod) {
         this.connectionUri = Objects.requireNonNull(HttpUrl.parse(connectionUri.toString()));
         this.resourceName = resourceName;
 
-        this.authSupplier = request -> request.headers(Headers.of(Map.ofEntries(authenticationMethod.getHeader(vault))));
+        this.authenticationMethod = authenticationMethod;
+        // The header value is cached by the authentication method, so the vault is not queried for every request
+        this.authSupplier = request -> Optional.ofNullable(authenticationMethod.getHeader(vault))
+                .map(header -> request.headers(Headers.of(Map.ofEntries(header))))
+                .orElse(request);
+    }
+
+
+    /**
+     * Drop cached credentials, e.g., after the control-plane rejected them. The next request resolves them again.
+     */
+    public void invalidateCredentials() {
+        authenticationMethod.invalidateCredentials();
     }
 
 
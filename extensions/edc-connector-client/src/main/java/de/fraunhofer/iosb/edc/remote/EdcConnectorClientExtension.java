@@ -22,20 +22,26 @@ import de.fraunhofer.iosb.codec.Codec;
 import de.fraunhofer.iosb.edc.remote.stores.asset.RemoteAssetIndex;
 import de.fraunhofer.iosb.edc.remote.stores.contract.RemoteContractDefinitionStore;
 import de.fraunhofer.iosb.edc.remote.stores.policy.RemotePolicyDefinitionStore;
+import de.fraunhofer.iosb.edc.remote.stores.resilience.ControlPlaneCircuitBreaker;
 import org.eclipse.edc.connector.controlplane.asset.spi.index.AssetIndex;
 import org.eclipse.edc.connector.controlplane.contract.spi.offer.store.ContractDefinitionStore;
 import org.eclipse.edc.connector.controlplane.policy.spi.store.PolicyDefinitionStore;
 import org.eclipse.edc.http.spi.EdcHttpClient;
+import org.eclipse.edc.query.CriterionOperatorRegistryImpl;
 import org.eclipse.edc.runtime.metamodel.annotation.Extension;
 import org.eclipse.edc.runtime.metamodel.annotation.Inject;
 import org.eclipse.edc.runtime.metamodel.annotation.Provider;
 import org.eclipse.edc.runtime.metamodel.annotation.Provides;
 import org.eclipse.edc.runtime.metamodel.annotation.Setting;
+import org.eclipse.edc.spi.query.CriterionOperatorRegistry;
 import org.eclipse.edc.spi.security.Vault;
 import org.eclipse.edc.spi.system.ServiceExtension;
 import org.eclipse.edc.spi.system.ServiceExtensionContext;
 
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 
 @Provides({
@@ -59,14 +65,52 @@ public class EdcConnectorClientExtension implements ServiceExtension {
     @Setting(description = "Remote control-plane vault secret alias for authentication. Takes precedence over raw key", key = CONTROL_PLANE + "auth.key.alias", required = false)
     private String apiKeyAlias;
 
+    @Setting(description = "Seconds an asset retrieved by ID is served from the local cache. 0 disables caching", key = CONTROL_PLANE + "cache.assets.ttl",
+            defaultValue = "30")
+    private long assetCacheTtlSeconds;
+
+    @Setting(description = "Maximum number of assets held in the local cache", key = CONTROL_PLANE + "cache.assets.size", defaultValue = "1000")
+    private int assetCacheSize;
+
+    @Setting(description = "Seconds after which the local views of policy and contract definitions are reloaded from the remote control-plane. " +
+            "0 disables the local views", key = CONTROL_PLANE + "cache.definitions.refresh", defaultValue = "60")
+    private long definitionsRefreshSeconds;
+
+    @Setting(description = "Failure rate in percent of requests to the remote control-plane above which the circuit breaker opens. 0 disables the circuit breaker",
+            key = CONTROL_PLANE + "breaker.failureRate", defaultValue = "50")
+    private int breakerFailureRate;
+
+    @Setting(description = "Minimum number of requests within the breaker period before the failure rate is evaluated", key = CONTROL_PLANE + "breaker.minimumRequests",
+            defaultValue = "10")
+    private int breakerMinimumRequests;
+
+    @Setting(description = "Seconds over which the failure rate of the circuit breaker is computed", key = CONTROL_PLANE + "breaker.period", defaultValue = "60")
+    private long breakerPeriodSeconds;
+
+    @Setting(description = "Seconds the circuit breaker stays open before probing the remote control-plane", key = CONTROL_PLANE + "breaker.openDuration",
+            defaultValue = "30")
+    private long breakerOpenSeconds;
+
+    @Setting(description = "Maximum number of concurrent requests per remote store. 0 disables the limit", key = CONTROL_PLANE + "bulkhead.maxConcurrentRequests",
+            defaultValue = "16")
+    private int bulkheadMaxConcurrentRequests;
+
+    @Setting(description = "Milliseconds a request waits for a free slot of its store's bulkhead before being rejected", key = CONTROL_PLANE + "bulkhead.maxWait",
+            defaultValue = "1000")
+    private long bulkheadMaxWaitMillis;
+
     @Inject
     private Codec codec;
     @Inject
     private EdcHttpClient edcHttpClient;
     @Inject
     private Vault vault;
+    @Inject(required = false)
+    private CriterionOperatorRegistry criterionOperatorRegistry;
 
     private AuthenticationMethod authenticationMethod;
+    private ControlPlaneCircuitBreaker circuitBreaker;
+    private ExecutorService replicationExecutor;
 
 
     @Override
@@ -76,6 +120,30 @@ public class EdcConnectorClientExtension implements ServiceExtension {
                 .or(() -> Optional.ofNullable(apiKey)
                         .map(k -> (AuthenticationMethod) new ApiKey("x-api-key", k, vault)))
                 .orElseGet(NoAuth::new);
+
+        if (breakerFailureRate > 0) {
+            circuitBreaker = new ControlPlaneCircuitBreaker(breakerFailureRate, breakerMinimumRequests, Duration.ofSeconds(breakerPeriodSeconds),
+                    Duration.ofSeconds(breakerOpenSeconds), context.getMonitor());
+        }
+
+        if (criterionOperatorRegistry == null) {
+            criterionOperatorRegistry = CriterionOperatorRegistryImpl.ofDefaults();
+        }
+
+        // Local views of definitions are reloaded in the background, one reload at a time
+        replicationExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            var thread = new Thread(runnable, "edc-controlplane-replication");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+
+    @Override
+    public void shutdown() {
+        if (replicationExecutor != null) {
+            replicationExecutor.shutdownNow();
+        }
     }
 
 
@@ -88,6 +156,10 @@ public class EdcConnectorClientExtension implements ServiceExtension {
                 .authenticationMethod(authenticationMethod)
                 .codec(codec)
                 .vault(vault)
+                .circuitBreaker(circuitBreaker)
+                .bulkhead(bulkheadMaxConcurrentRequests, Duration.ofMillis(bulkheadMaxWaitMillis))
+                .cacheSize(assetCacheSize)
+                .cacheTtl(Duration.ofSeconds(assetCacheTtlSeconds))
                 .build();
     }
 
@@ -101,6 +173,11 @@ public class EdcConnectorClientExtension implements ServiceExtension {
                 .authenticationMethod(authenticationMethod)
                 .codec(codec)
                 .vault(vault)
+                .circuitBreaker(circuitBreaker)
+                .bulkhead(bulkheadMaxConcurrentRequests, Duration.ofMillis(bulkheadMaxWaitMillis))
+                .criterionOperatorRegistry(criterionOperatorRegistry)
+                .replicationInterval(Duration.ofSeconds(definitionsRefreshSeconds))
+                .executor(replicationExecutor)
                 .build();
     }
 
@@ -114,6 +191,11 @@ public class EdcConnectorClientExtension implements ServiceExtension {
                 .authenticationMethod(authenticationMethod)
                 .codec(codec)
                 .vault(vault)
+                .circuitBreaker(circuitBreaker)
+                .bulkhead(bulkheadMaxConcurrentRequests, Duration.ofMillis(bulkheadMaxWaitMillis))
+                .criterionOperatorRegistry(criterionOperatorRegistry)
+                .replicationInterval(Duration.ofSeconds(definitionsRefreshSeconds))
+                .executor(replicationExecutor)
                 .build();
     }
 }
@@ -19,6 +19,10 @@ import de.fraunhofer.iosb.aas.lib.auth.AuthenticationMethod;
 import de.fraunhofer.iosb.codec.Codec;
 import de.fraunhofer.iosb.edc.remote.ControlPlaneConnection;
 import de.fraunhofer.iosb.edc.remote.HttpMethod;
+import de.fraunhofer.iosb.edc.remote.stores.resilience.BulkheadMetrics;
+import de.fraunhofer.iosb.edc.remote.stores.resilience.CircuitBreakerMetrics;
+import de.fraunhofer.iosb.edc.remote.stores.resilience.ControlPlaneCircuitBreaker;
+import de.fraunhofer.iosb.edc.remote.stores.resilience.RequestGuard;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
@@ -31,9 +35,11 @@ import org.eclipse.edc.spi.result.ServiceFailure;
 import org.eclipse.edc.spi.result.ServiceResult;
 import org.eclipse.edc.spi.result.StoreResult;
 import org.eclipse.edc.spi.security.Vault;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.net.URI;
+import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Stream;
@@ -52,12 +58,21 @@ public abstract class ControlPlaneConnectionHandler<T extends AbstractParticipan
     protected final Monitor monitor;
     protected final Codec codec;
 
+    private final RequestGuard requestGuard;
+
 
     public ControlPlaneConnectionHandler(Monitor monitor, EdcHttpClient httpClient, Codec codec, ControlPlaneConnection connection) {
+        this(monitor, httpClient, codec, connection, null);
+    }
+
+
+    protected ControlPlaneConnectionHandler(Monitor monitor, EdcHttpClient httpClient, Codec codec, ControlPlaneConnection connection,
+                                            @Nullable RequestGuard requestGuard) {
         this.monitor = monitor;
         this.httpClient = httpClient;
         this.codec = codec;
         this.controlPlane = connection;
+        this.requestGuard = requestGuard != null ? requestGuard : RequestGuard.unguarded(getClass().getSimpleName(), monitor);
     }
 
 
@@ -86,6 +101,30 @@ public abstract class ControlPlaneConnectionHandler<T extends AbstractParticipan
     }
 
 
+    /**
+     * Retrieve all entities of this type from the control-plane. Unlike {@link #queryEntities(QuerySpec, Class)},
+     * failures are not swallowed, so callers can distinguish an empty store from an unreachable control-plane.
+     *
+     * @param clazz Entity type.
+     * @return All entities or the failure reason.
+     */
+    protected Result<List<T>> queryAllEntities(Class<T> clazz) {
+        var request = controlPlane.prepareRequest(HttpMethod.POST, "request", codec.serialize(QuerySpec.max()));
+
+        var response = executeRequest(request);
+        if (response.failed()) {
+            return Result.failure(String.format("%s: %s", response.reason(), response.getFailureDetail()));
+        }
+
+        var responseJsonString = response.getContent();
+        if (responseJsonString == null || responseJsonString.isBlank()) {
+            return Result.success(List.of());
+        }
+
+        return codec.deserializeList(responseJsonString, clazz);
+    }
+
+
     protected T findById(String entityId, Class<T> clazz) {
         var request = controlPlane.prepareRequest(HttpMethod.GET, entityId, null);
 
@@ -185,7 +224,39 @@ public abstract class ControlPlaneConnectionHandler<T extends AbstractParticipan
     protected abstract String getNotFoundTemplate();
 
 
+    /**
+     * Send a request to the control-plane through this store's request guard (circuit breaker and bulkhead).
+     *
+     * @param request The request.
+     * @return The response body or the failure reason, if the request was rejected by the guard, the reason is
+     *         UNEXPECTED and the message says so.
+     */
     protected ServiceResult<String> executeRequest(Request request) {
+        return requestGuard.execute(() -> sendRequest(request));
+    }
+
+
+    /**
+     * Get the state of the circuit breaker guarding the remote control-plane.
+     *
+     * @return Circuit breaker metrics or null if no circuit breaker is configured.
+     */
+    public @Nullable CircuitBreakerMetrics getCircuitBreakerMetrics() {
+        return requestGuard.circuitBreakerMetrics();
+    }
+
+
+    /**
+     * Get the usage of this store's bulkhead.
+     *
+     * @return Bulkhead metrics.
+     */
+    public BulkheadMetrics getBulkheadMetrics() {
+        return requestGuard.bulkheadMetrics();
+    }
+
+
+    private ServiceResult<String> sendRequest(Request request) {
         try (Response response = this.httpClient.execute(request)) {
 
             ResponseBody body = response.body();
@@ -199,6 +270,10 @@ public abstract class ControlPlaneConnectionHandler<T extends AbstractParticipan
                 }
 
                 int responseCode = response.code();
+                if (responseCode == 401) {
+                    // Secret might have been rotated
+                    controlPlane.invalidateCredentials();
+                }
                 return switch (responseCode) {
                     case 400 -> ServiceResult.badRequest(responseMessage);
                     case 401, 403, 407 -> ServiceResult.unauthorized(String.format(MESSAGE_CODE_TEMPLATE, responseMessage, responseCode));
@@ -229,12 +304,15 @@ public abstract class ControlPlaneConnectionHandler<T extends AbstractParticipan
         private AuthenticationMethod authenticationMethod;
         private Codec codec;
         private Vault vault;
+        private ControlPlaneCircuitBreaker circuitBreaker;
+        private int maxConcurrentRequests = 0;
+        private Duration maxWait = Duration.ZERO;
 
 
         protected abstract B self();
 
 
-        protected abstract T create(Monitor monitor, EdcHttpClient httpClient, Codec codec, ControlPlaneConnection connection);
+        protected abstract T create(Monitor monitor, EdcHttpClient httpClient, Codec codec, ControlPlaneConnection connection, RequestGuard requestGuard);
 
 
         public B monitor(Monitor v) {
@@ -273,6 +351,34 @@ public abstract class ControlPlaneConnectionHandler<T extends AbstractParticipan
         }
 
 
+        /**
+         * Circuit breaker for requests to the control-plane. Should be shared by all stores of the same control-plane.
+         * Default: none.
+         *
+         * @param circuitBreaker The circuit breaker.
+         * @return This builder.
+         */
+        public B circuitBreaker(ControlPlaneCircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return self();
+        }
+
+
+        /**
+         * Limit the number of concurrent requests of this store. Requests not getting a slot within maxWait are
+         * rejected. Default: 0 (unbounded).
+         *
+         * @param maxConcurrentRequests Maximum number of concurrent requests.
+         * @param maxWait Maximum time to wait for a free slot.
+         * @return This builder.
+         */
+        public B bulkhead(int maxConcurrentRequests, Duration maxWait) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+            this.maxWait = Objects.requireNonNull(maxWait);
+            return self();
+        }
+
+
         public T build() {
             Objects.requireNonNull(httpClient);
             Objects.requireNonNull(monitor);
@@ -282,7 +388,8 @@ public abstract class ControlPlaneConnectionHandler<T extends AbstractParticipan
 
             ControlPlaneConnection connection = new ControlPlaneConnection(URI.create(managementUri), resourceName, vault, authenticationMethod);
 
-            return create(monitor, httpClient, codec, connection);
+            var requestGuard = new RequestGuard(resourceName, circuitBreaker, maxConcurrentRequests, maxWait, monitor);
+            return create(monitor, httpClient, codec, connection, requestGuard);
         }
 
     }
@@ -18,6 +18,9 @@ package de.fraunhofer.iosb.edc.remote.stores.asset;
 import de.fraunhofer.iosb.codec.Codec;
 import de.fraunhofer.iosb.edc.remote.ControlPlaneConnection;
 import de.fraunhofer.iosb.edc.remote.stores.ControlPlaneConnectionHandler;
+import de.fraunhofer.iosb.edc.remote.stores.cache.CacheStatistics;
+import de.fraunhofer.iosb.edc.remote.stores.cache.ReadThroughCache;
+import de.fraunhofer.iosb.edc.remote.stores.resilience.RequestGuard;
 import org.eclipse.edc.connector.controlplane.asset.spi.domain.Asset;
 import org.eclipse.edc.connector.controlplane.asset.spi.index.AssetIndex;
 import org.eclipse.edc.http.spi.EdcHttpClient;
@@ -27,21 +30,28 @@ import org.eclipse.edc.spi.query.QuerySpec;
 import org.eclipse.edc.spi.result.StoreResult;
 import org.eclipse.edc.spi.types.domain.DataAddress;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
 
 
 /**
- * AssetIndex implementation where the control plane is reached via http
+ * AssetIndex implementation where the control plane is reached via http. Assets retrieved by ID are cached for a
+ * configurable time, changes made through this index invalidate the respective cache entries.
  */
 public class RemoteAssetIndex extends ControlPlaneConnectionHandler<Asset> implements AssetIndex {
 
     private static final String MGMT_API_RESOURCE_ACCESSOR = "assets";
 
+    private final ReadThroughCache<String, Asset> assetCache;
 
-    private RemoteAssetIndex(Monitor monitor, EdcHttpClient httpClient, Codec codec, ControlPlaneConnection connection) {
-        super(monitor, httpClient, codec, connection);
+
+    private RemoteAssetIndex(Monitor monitor, EdcHttpClient httpClient, Codec codec, ControlPlaneConnection connection, RequestGuard requestGuard,
+                             ReadThroughCache<String, Asset> assetCache) {
+        super(monitor, httpClient, codec, connection, requestGuard);
+        this.assetCache = assetCache;
     }
 
 
@@ -53,7 +63,7 @@ public class RemoteAssetIndex extends ControlPlaneConnectionHandler<Asset> imple
 
     @Override
     public Asset findById(String assetId) {
-        return findById(assetId, Asset.class);
+        return assetCache.get(assetId, id -> findById(id, Asset.class));
     }
 
 
@@ -65,13 +75,23 @@ public class RemoteAssetIndex extends ControlPlaneConnectionHandler<Asset> imple
      */
     @Override
     public StoreResult<Void> create(Asset asset) {
-        return createEntity(asset);
+        try {
+            return createEntity(asset);
+        }
+        finally {
+            assetCache.invalidate(asset.getId());
+        }
     }
 
 
     @Override
     public StoreResult<Asset> deleteById(String assetId) {
-        return deleteById(assetId, Asset.class);
+        try {
+            return deleteById(assetId, Asset.class);
+        }
+        finally {
+            assetCache.invalidate(assetId);
+        }
     }
 
 
@@ -87,7 +107,12 @@ public class RemoteAssetIndex extends ControlPlaneConnectionHandler<Asset> imple
 
     @Override
     public StoreResult<Asset> updateAsset(Asset asset) {
-        return updateEntity(asset, Asset.class);
+        try {
+            return updateEntity(asset, Asset.class);
+        }
+        finally {
+            assetCache.invalidate(asset.getId());
+        }
     }
 
 
@@ -100,6 +125,16 @@ public class RemoteAssetIndex extends ControlPlaneConnectionHandler<Asset> imple
     }
 
 
+    /**
+     * Get hit/miss counters of the asset cache used by findById and resolveForAsset.
+     *
+     * @return Current cache statistics.
+     */
+    public CacheStatistics getCacheStatistics() {
+        return assetCache.statistics();
+    }
+
+
     @Override
     protected String getExistsTemplate() {
         return ASSET_EXISTS_TEMPLATE;
@@ -114,12 +149,48 @@ public class RemoteAssetIndex extends ControlPlaneConnectionHandler<Asset> imple
 
     public static class Builder extends ControlPlaneConnectionHandler.Builder<RemoteAssetIndex, Builder> {
 
+        private int cacheSize = 0;
+        private Duration cacheTtl = Duration.ZERO;
+        private Clock clock = Clock.systemUTC();
+
+
         @Override
         protected Builder self() {
             return this;
         }
 
 
+        /**
+         * Maximum number of assets kept in the cache. Default: 0 (no caching).
+         *
+         * @param cacheSize Maximum number of cached assets.
+         * @return This builder.
+         */
+        public Builder cacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+            return self();
+        }
+
+
+        /**
+         * Time an asset is served from the cache after retrieving it from the control-plane. Default: zero (no
+         * caching).
+         *
+         * @param cacheTtl Time to live of cache entries.
+         * @return This builder.
+         */
+        public Builder cacheTtl(Duration cacheTtl) {
+            this.cacheTtl = cacheTtl;
+            return self();
+        }
+
+
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return self();
+        }
+
+
         public RemoteAssetIndex build() {
             this.resourceName = MGMT_API_RESOURCE_ACCESSOR;
             return super.build();
@@ -127,8 +198,9 @@ public class RemoteAssetIndex extends ControlPlaneConnectionHandler<Asset> imple
 
 
         @Override
-        protected RemoteAssetIndex create(Monitor monitor, EdcHttpClient httpClient, Codec codec, ControlPlaneConnection connection) {
-            return new RemoteAssetIndex(monitor, httpClient, codec, connection);
+        protected RemoteAssetIndex create(Monitor monitor, EdcHttpClient httpClient, Codec codec, ControlPlaneConnection connection, RequestGuard requestGuard) {
+            var assetCache = new ReadThroughCache<String, Asset>("Remote asset index", cacheSize, cacheTtl, clock, monitor);
+            return new RemoteAssetIndex(monitor, httpClient, codec, connection, requestGuard, assetCache);
         }
     }
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.edc.remote.stores.cache;
+
+/**
+ * Snapshot of the counters of a {@link ReadThroughCache}.
+ *
+ * @param hits Lookups answered from the cache.
+ * @param misses Lookups that had to be forwarded to the control-plane.
+ * @param evictions Entries removed because they expired or the cache was full.
+ * @param size Current number of entries.
+ */
+public record CacheStatistics(long hits, long misses, long evictions, int size) {
+
+    /**
+     * Ratio of lookups answered from the cache.
+     *
+     * @return Hit rate between 0 and 1, 0 if there were no lookups yet.
+     */
+    public double hitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.edc.remote.stores.cache;
+
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+
+/**
+ * Bounded read-through cache with least-recently-used eviction and a time-to-live per entry. Null values returned by
+ * the loader are not cached.
+ * <p>
+ * Invalidations win against concurrent loads: a value loaded while an invalidation happened is returned to its caller,
+ * but not stored.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class ReadThroughCache<K, V> {
+
+    private static final int REPORT_INTERVAL = 1000;
+
+    private final String name;
+    private final int maxSize;
+    private final Duration ttl;
+    private final Clock clock;
+    private final Monitor monitor;
+    private final Map<K, CacheEntry<V>> entries;
+
+    // Guarded by this
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+
+    /**
+     * Class constructor
+     *
+     * @param name Name of the cache used in statistics reports.
+     * @param maxSize Maximum number of entries. If 0, nothing is cached.
+     * @param ttl Time an entry stays valid after loading it. If zero, nothing is cached.
+     * @param clock Clock to determine entry expiry.
+     * @param monitor Statistics are reported periodically on debug level.
+     */
+    public ReadThroughCache(String name, int maxSize, Duration ttl, Clock clock, Monitor monitor) {
+        this.name = Objects.requireNonNull(name);
+        this.maxSize = Math.max(0, maxSize);
+        this.ttl = Objects.requireNonNull(ttl);
+        this.clock = Objects.requireNonNull(clock);
+        this.monitor = Objects.requireNonNull(monitor);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                if (size() > ReadThroughCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+
+    /**
+     * Get the cached value for the key or load it if it is missing or expired.
+     *
+     * @param key The key.
+     * @param loader Loads the value on a cache miss. Must not throw.
+     * @return The cached or loaded value, null if the loader returned null.
+     */
+    public @Nullable V get(K key, Function<K, V> loader) {
+        long generationAtLoad;
+        synchronized (this) {
+            var entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt().isAfter(clock.instant())) {
+                    hits++;
+                    report();
+                    return entry.value();
+                }
+                entries.remove(key);
+                evictions++;
+            }
+            misses++;
+            report();
+            generationAtLoad = generation;
+        }
+
+        // Do not hold the lock while waiting for the control-plane
+        var value = loader.apply(key);
+
+        if (value != null && isEnabled()) {
+            synchronized (this) {
+                if (generationAtLoad == generation) {
+                    entries.put(key, new CacheEntry<>(value, clock.instant().plus(ttl)));
+                }
+            }
+        }
+        return value;
+    }
+
+
+    /**
+     * Remove the entry for the key. Loads running concurrently will not store their result.
+     *
+     * @param key The key.
+     */
+    public synchronized void invalidate(K key) {
+        generation++;
+        entries.remove(key);
+    }
+
+
+    /**
+     * Remove all entries. Loads running concurrently will not store their result.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+
+    public synchronized CacheStatistics statistics() {
+        return new CacheStatistics(hits, misses, evictions, entries.size());
+    }
+
+
+    private boolean isEnabled() {
+        return maxSize > 0 && !ttl.isZero() && !ttl.isNegative();
+    }
+
+
+    private void report() {
+        if ((hits + misses) % REPORT_INTERVAL == 0) {
+            var statistics = statistics();
+            monitor.debug(() -> "%s cache: hit rate %.2f (%d hits, %d misses, %d evictions, %d entries)".formatted(
+                    name, statistics.hitRate(), statistics.hits(), statistics.misses(), statistics.evictions(), statistics.size()));
+        }
+    }
+
+
+    private record CacheEntry<V>(V value, Instant expiresAt) {}
+}
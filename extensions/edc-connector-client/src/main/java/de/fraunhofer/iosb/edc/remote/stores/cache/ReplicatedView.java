@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.edc.remote.stores.cache;
+
+import org.eclipse.edc.participantcontext.spi.types.AbstractParticipantResource;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.query.QueryResolver;
+import org.eclipse.edc.spi.query.QuerySpec;
+import org.eclipse.edc.spi.result.Result;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+
+/**
+ * Local replica of all entities of a remote control-plane store. The replica is loaded completely on first access and
+ * reloaded once the refresh interval has passed. Loads run on the executor passed to the constructor. Writes made by
+ * this connector are applied to the replica immediately.
+ * <p>
+ * Reads never wait for a reload: while the replica has not been loaded, or if a query cannot be evaluated locally,
+ * the methods return an empty optional and the caller has to ask the control-plane. While a reload is running, reads
+ * are answered from the previous replica.
+ *
+ * @param <T> Entity type
+ */
+public class ReplicatedView<T extends AbstractParticipantResource> {
+
+    private final String name;
+    private final Supplier<Result<List<T>>> loader;
+    private final QueryResolver<T> queryResolver;
+    private final Duration refreshInterval;
+    private final Clock clock;
+    private final Executor executor;
+    private final Monitor monitor;
+    private final AtomicBoolean reloading = new AtomicBoolean();
+
+    private volatile Map<String, T> entities;
+    private volatile Instant nextRefresh = Instant.MIN;
+    // Guarded by this
+    private long generation;
+
+
+    /**
+     * Class constructor
+     *
+     * @param name Name of the replicated store used in log messages.
+     * @param loader Loads all entities from the control-plane.
+     * @param queryResolver Evaluates queries against the replica.
+     * @param refreshInterval Minimum time between two reloads. If zero, the view is disabled.
+     * @param clock Clock to determine when to reload.
+     * @param executor Runs the reloads.
+     * @param monitor Logs failed reloads.
+     */
+    public ReplicatedView(String name, Supplier<Result<List<T>>> loader, @Nullable QueryResolver<T> queryResolver,
+                          Duration refreshInterval, Clock clock, Executor executor, Monitor monitor) {
+        this.name = Objects.requireNonNull(name);
+        this.loader = Objects.requireNonNull(loader);
+        this.queryResolver = queryResolver;
+        this.refreshInterval = Objects.requireNonNull(refreshInterval);
+        this.clock = Objects.requireNonNull(clock);
+        this.executor = Objects.requireNonNull(executor);
+        this.monitor = Objects.requireNonNull(monitor);
+    }
+
+
+    public boolean isEnabled() {
+        return queryResolver != null && !refreshInterval.isZero() && !refreshInterval.isNegative();
+    }
+
+
+    /**
+     * Get an entity from the replica.
+     *
+     * @param id ID of the entity.
+     * @return The entity or empty if it is not in the replica or the replica is not available.
+     */
+    public Optional<T> findById(String id) {
+        return current().map(replica -> replica.get(id));
+    }
+
+
+    /**
+     * Evaluate a query against the replica.
+     *
+     * @param querySpec The query.
+     * @return Matching entities or empty if the replica is not available or the query cannot be evaluated locally.
+     */
+    public Optional<List<T>> query(QuerySpec querySpec) {
+        return current().flatMap(replica -> {
+            try {
+                return Optional.of(queryResolver.query(replica.values().stream(), querySpec).toList());
+            }
+            catch (RuntimeException queryException) {
+                monitor.debug("%s: query %s cannot be evaluated locally: %s".formatted(name, querySpec, queryException.getMessage()));
+                return Optional.empty();
+            }
+        });
+    }
+
+
+    /**
+     * Apply a successful create or update of this connector to the replica.
+     *
+     * @param entity The entity as stored at the control-plane.
+     */
+    public synchronized void put(T entity) {
+        generation++;
+        if (entities != null) {
+            entities.put(entity.getId(), entity);
+        }
+    }
+
+
+    /**
+     * Apply a successful deletion of this connector to the replica.
+     *
+     * @param id ID of the deleted entity.
+     */
+    public synchronized void remove(String id) {
+        generation++;
+        if (entities != null) {
+            entities.remove(id);
+        }
+    }
+
+
+    /**
+     * Schedule a reload of the replica from the control-plane if the refresh interval has passed. Only one reload runs
+     * at a time. Does not wait for the reload to finish.
+     */
+    public void refreshIfDue() {
+        if (!isEnabled() || clock.instant().isBefore(nextRefresh) || !reloading.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            executor.execute(this::reload);
+        }
+        catch (RejectedExecutionException rejected) {
+            reloading.set(false);
+            monitor.warning("%s: could not schedule reload of replica: %s".formatted(name, rejected.getMessage()));
+        }
+    }
+
+
+    private void reload() {
+        try {
+            if (clock.instant().isBefore(nextRefresh)) {
+                return;
+            }
+            long generationAtLoad;
+            synchronized (this) {
+                generationAtLoad = generation;
+            }
+
+            var loaded = loader.get();
+            nextRefresh = clock.instant().plus(refreshInterval);
+
+            if (loaded.failed()) {
+                monitor.warning("%s: could not load replica from control-plane: %s".formatted(name, loaded.getFailureDetail()));
+                return;
+            }
+
+            Map<String, T> replica = new ConcurrentHashMap<>();
+            loaded.getContent().forEach(entity -> replica.put(entity.getId(), entity));
+
+            synchronized (this) {
+                if (generationAtLoad != generation) {
+                    // A write of this connector happened during the load: the loaded state might not contain it
+                    nextRefresh = Instant.MIN;
+                    return;
+                }
+                entities = replica;
+            }
+        }
+        catch (RuntimeException loadException) {
+            nextRefresh = clock.instant().plus(refreshInterval);
+            monitor.warning("%s: could not load replica from control-plane".formatted(name), loadException);
+        }
+        finally {
+            reloading.set(false);
+        }
+    }
+
+
+    private Optional<Map<String, T>> current() {
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+        refreshIfDue();
+        return Optional.ofNullable(entities);
+    }
+}
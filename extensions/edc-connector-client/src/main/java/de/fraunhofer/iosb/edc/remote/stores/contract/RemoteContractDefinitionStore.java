@@ -18,36 +18,70 @@ package de.fraunhofer.iosb.edc.remote.stores.contract;
 import de.fraunhofer.iosb.codec.Codec;
 import de.fraunhofer.iosb.edc.remote.ControlPlaneConnection;
 import de.fraunhofer.iosb.edc.remote.stores.ControlPlaneConnectionHandler;
+import de.fraunhofer.iosb.edc.remote.stores.cache.ReplicatedView;
+import de.fraunhofer.iosb.edc.remote.stores.resilience.RequestGuard;
 import org.eclipse.edc.connector.controlplane.contract.spi.offer.store.ContractDefinitionStore;
 import org.eclipse.edc.connector.controlplane.contract.spi.types.offer.ContractDefinition;
 import org.eclipse.edc.http.spi.EdcHttpClient;
 import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.query.CriterionOperatorRegistry;
 import org.eclipse.edc.spi.query.QuerySpec;
 import org.eclipse.edc.spi.result.StoreResult;
+import org.eclipse.edc.store.ReflectionBasedQueryResolver;
 import org.jetbrains.annotations.NotNull;
-
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 
+/**
+ * ContractDefinitionStore implementation where the control plane is reached via http. If replication is configured,
+ * all contract definitions are mirrored locally and reads are answered from the local view, which is reloaded
+ * periodically and updated on writes made through this store.
+ */
 public class RemoteContractDefinitionStore extends ControlPlaneConnectionHandler<ContractDefinition> implements ContractDefinitionStore {
 
     private static final String MGMT_API_RESOURCE_ACCESSOR = "contractdefinitions";
 
 
+    private final ReplicatedView<ContractDefinition> view;
+
+
     public RemoteContractDefinitionStore(Monitor monitor, EdcHttpClient httpClient, Codec codec, ControlPlaneConnection connection) {
-        super(monitor, httpClient, codec, connection);
+        this(monitor, httpClient, codec, connection, null, null, Duration.ZERO, Clock.systemUTC(), ForkJoinPool.commonPool());
+    }
+
+
+    private RemoteContractDefinitionStore(Monitor monitor, EdcHttpClient httpClient, Codec codec, ControlPlaneConnection connection, @Nullable RequestGuard requestGuard,
+                                          @Nullable CriterionOperatorRegistry criterionOperatorRegistry, Duration replicationInterval, Clock clock,
+                                          Executor executor) {
+        super(monitor, httpClient, codec, connection, requestGuard);
+        var queryResolver = Optional.ofNullable(criterionOperatorRegistry)
+                .map(registry -> new ReflectionBasedQueryResolver<>(ContractDefinition.class, registry))
+                .orElse(null);
+        this.view = new ReplicatedView<>("Remote contract definition store", () -> queryAllEntities(ContractDefinition.class), queryResolver,
+                replicationInterval, clock, executor, monitor);
     }
 
 
     @Override
     public @NotNull Stream<ContractDefinition> findAll(QuerySpec querySpec) {
-        return queryEntities(querySpec, ContractDefinition.class);
+        return view.query(querySpec)
+                .map(List::stream)
+                .orElseGet(() -> queryEntities(querySpec, ContractDefinition.class));
     }
 
 
     @Override
     public ContractDefinition findById(String contractDefinitionId) {
-        return findById(contractDefinitionId, ContractDefinition.class);
+        return view.findById(contractDefinitionId)
+                .orElseGet(() -> findById(contractDefinitionId, ContractDefinition.class));
     }
 
 
@@ -63,6 +97,7 @@ public class RemoteContractDefinitionStore extends ControlPlaneConnectionHandler
 
         // This is the only case where Void is returned.
         if (result.succeeded()) {
+            view.put(contractDefinition);
             return StoreResult.success();
         }
         return StoreResult.alreadyExists(result.getFailureDetail());
@@ -78,6 +113,7 @@ public class RemoteContractDefinitionStore extends ControlPlaneConnectionHandler
 
         // This is the only case where Void is returned.
         if (result.succeeded()) {
+            view.put(contractDefinition);
             return StoreResult.success();
         }
         return StoreResult.notFound(result.getFailureDetail());
@@ -86,7 +122,11 @@ public class RemoteContractDefinitionStore extends ControlPlaneConnectionHandler
 
     @Override
     public StoreResult<ContractDefinition> deleteById(String contractDefinitionId) {
-        return deleteById(contractDefinitionId, ContractDefinition.class);
+        var result = deleteById(contractDefinitionId, ContractDefinition.class);
+        if (result.succeeded()) {
+            view.remove(contractDefinitionId);
+        }
+        return result;
     }
 
 
@@ -104,12 +144,60 @@ public class RemoteContractDefinitionStore extends ControlPlaneConnectionHandler
 
     public static class Builder extends ControlPlaneConnectionHandler.Builder<RemoteContractDefinitionStore, RemoteContractDefinitionStore.Builder> {
 
+        private CriterionOperatorRegistry criterionOperatorRegistry;
+        private Duration replicationInterval = Duration.ZERO;
+        private Clock clock = Clock.systemUTC();
+        private Executor executor = ForkJoinPool.commonPool();
+
+
         @Override
         protected RemoteContractDefinitionStore.Builder self() {
             return this;
         }
 
 
+        /**
+         * Operators used to evaluate queries against the local view. Without, no local view is kept.
+         *
+         * @param criterionOperatorRegistry Registry of query operators.
+         * @return This builder.
+         */
+        public RemoteContractDefinitionStore.Builder criterionOperatorRegistry(CriterionOperatorRegistry criterionOperatorRegistry) {
+            this.criterionOperatorRegistry = criterionOperatorRegistry;
+            return self();
+        }
+
+
+        /**
+         * Minimum time between two reloads of the local view. Default: zero (no local view).
+         *
+         * @param replicationInterval Refresh interval of the local view.
+         * @return This builder.
+         */
+        public RemoteContractDefinitionStore.Builder replicationInterval(Duration replicationInterval) {
+            this.replicationInterval = replicationInterval;
+            return self();
+        }
+
+
+        public RemoteContractDefinitionStore.Builder clock(Clock clock) {
+            this.clock = clock;
+            return self();
+        }
+
+
+        /**
+         * Executor running the reloads of the local view. Default: the common fork-join pool.
+         *
+         * @param executor Executor for reloads.
+         * @return This builder.
+         */
+        public RemoteContractDefinitionStore.Builder executor(Executor executor) {
+            this.executor = executor;
+            return self();
+        }
+
+
         public RemoteContractDefinitionStore build() {
             this.resourceName = MGMT_API_RESOURCE_ACCESSOR;
             return super.build();
@@ -117,8 +205,8 @@ public class RemoteContractDefinitionStore extends ControlPlaneConnectionHandler
 
 
         @Override
-        protected RemoteContractDefinitionStore create(Monitor monitor, EdcHttpClient httpClient, Codec codec, ControlPlaneConnection connection) {
-            return new RemoteContractDefinitionStore(monitor, httpClient, codec, connection);
+        protected RemoteContractDefinitionStore create(Monitor monitor, EdcHttpClient httpClient, Codec codec, ControlPlaneConnection connection, RequestGuard requestGuard) {
+            return new RemoteContractDefinitionStore(monitor, httpClient, codec, connection, requestGuard, criterionOperatorRegistry, replicationInterval, clock, executor);
         }
     }
 }
@@ -18,35 +18,63 @@ package de.fraunhofer.iosb.edc.remote.stores.policy;
 import de.fraunhofer.iosb.codec.Codec;
 import de.fraunhofer.iosb.edc.remote.ControlPlaneConnection;
 import de.fraunhofer.iosb.edc.remote.stores.ControlPlaneConnectionHandler;
+import de.fraunhofer.iosb.edc.remote.stores.cache.ReplicatedView;
+import de.fraunhofer.iosb.edc.remote.stores.resilience.RequestGuard;
 import org.eclipse.edc.connector.controlplane.policy.spi.PolicyDefinition;
 import org.eclipse.edc.connector.controlplane.policy.spi.store.PolicyDefinitionStore;
 import org.eclipse.edc.http.spi.EdcHttpClient;
 import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.query.CriterionOperatorRegistry;
 import org.eclipse.edc.spi.query.QuerySpec;
 import org.eclipse.edc.spi.result.StoreResult;
-
+import org.eclipse.edc.store.ReflectionBasedQueryResolver;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 
+/**
+ * PolicyDefinitionStore implementation where the control plane is reached via http. If replication is configured,
+ * all policy definitions are mirrored locally and reads are answered from the local view, which is reloaded
+ * periodically and updated on writes made through this store.
+ */
 public class RemotePolicyDefinitionStore extends ControlPlaneConnectionHandler<PolicyDefinition> implements PolicyDefinitionStore {
 
     private static final String MGMT_API_RESOURCE_ACCESSOR = "policydefinitions";
 
 
-    private RemotePolicyDefinitionStore(Monitor monitor, EdcHttpClient httpClient, Codec codec, ControlPlaneConnection connection) {
-        super(monitor, httpClient, codec, connection);
+    private final ReplicatedView<PolicyDefinition> view;
+
+
+    private RemotePolicyDefinitionStore(Monitor monitor, EdcHttpClient httpClient, Codec codec, ControlPlaneConnection connection, RequestGuard requestGuard,
+                                        CriterionOperatorRegistry criterionOperatorRegistry, Duration replicationInterval, Clock clock,
+                                        Executor executor) {
+        super(monitor, httpClient, codec, connection, requestGuard);
+        var queryResolver = Optional.ofNullable(criterionOperatorRegistry)
+                .map(registry -> new ReflectionBasedQueryResolver<>(PolicyDefinition.class, registry))
+                .orElse(null);
+        this.view = new ReplicatedView<>("Remote policy definition store", () -> queryAllEntities(PolicyDefinition.class), queryResolver,
+                replicationInterval, clock, executor, monitor);
     }
 
 
     @Override
     public PolicyDefinition findById(String policyId) {
-        return findById(policyId, PolicyDefinition.class);
+        return view.findById(policyId)
+                .orElseGet(() -> findById(policyId, PolicyDefinition.class));
     }
 
 
     @Override
     public Stream<PolicyDefinition> findAll(QuerySpec spec) {
-        return queryEntities(spec, PolicyDefinition.class);
+        return view.query(spec)
+                .map(List::stream)
+                .orElseGet(() -> queryEntities(spec, PolicyDefinition.class));
     }
 
 
@@ -54,6 +82,7 @@ public class RemotePolicyDefinitionStore extends ControlPlaneConnectionHandler<P
     public StoreResult<PolicyDefinition> create(PolicyDefinition policyDefinition) {
         StoreResult<Void> createResult = createEntity(policyDefinition);
         if (createResult.succeeded()) {
+            view.put(policyDefinition);
             return StoreResult.success(policyDefinition);
         }
 
@@ -71,13 +100,27 @@ public class RemotePolicyDefinitionStore extends ControlPlaneConnectionHandler<P
 
     @Override
     public StoreResult<PolicyDefinition> update(PolicyDefinition policyDefinition) {
-        return updateEntity(policyDefinition, PolicyDefinition.class);
+        var result = updateEntity(policyDefinition, PolicyDefinition.class);
+        if (result.succeeded()) {
+            // updateEntity returns null if the updated definition could not be read back
+            if (result.getContent() != null) {
+                view.put(result.getContent());
+            }
+            else {
+                view.remove(policyDefinition.getId());
+            }
+        }
+        return result;
     }
 
 
     @Override
     public StoreResult<PolicyDefinition> delete(String policyDefinitionId) {
-        return deleteById(policyDefinitionId, PolicyDefinition.class);
+        var result = deleteById(policyDefinitionId, PolicyDefinition.class);
+        if (result.succeeded()) {
+            view.remove(policyDefinitionId);
+        }
+        return result;
     }
 
 
@@ -95,12 +138,60 @@ public class RemotePolicyDefinitionStore extends ControlPlaneConnectionHandler<P
 
     public static class Builder extends ControlPlaneConnectionHandler.Builder<RemotePolicyDefinitionStore, Builder> {
 
+        private CriterionOperatorRegistry criterionOperatorRegistry;
+        private Duration replicationInterval = Duration.ZERO;
+        private Clock clock = Clock.systemUTC();
+        private Executor executor = ForkJoinPool.commonPool();
+
+
         @Override
         protected Builder self() {
             return this;
         }
 
 
+        /**
+         * Operators used to evaluate queries against the local view. Without, no local view is kept.
+         *
+         * @param criterionOperatorRegistry Registry of query operators.
+         * @return This builder.
+         */
+        public Builder criterionOperatorRegistry(CriterionOperatorRegistry criterionOperatorRegistry) {
+            this.criterionOperatorRegistry = criterionOperatorRegistry;
+            return self();
+        }
+
+
+        /**
+         * Minimum time between two reloads of the local view. Default: zero (no local view).
+         *
+         * @param replicationInterval Refresh interval of the local view.
+         * @return This builder.
+         */
+        public Builder replicationInterval(Duration replicationInterval) {
+            this.replicationInterval = replicationInterval;
+            return self();
+        }
+
+
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return self();
+        }
+
+
+        /**
+         * Executor running the reloads of the local view. Default: the common fork-join pool.
+         *
+         * @param executor Executor for reloads.
+         * @return This builder.
+         */
+        public Builder executor(Executor executor) {
+            this.executor = executor;
+            return self();
+        }
+
+
         public RemotePolicyDefinitionStore build() {
             this.resourceName = MGMT_API_RESOURCE_ACCESSOR;
             return super.build();
@@ -108,8 +199,8 @@ public class RemotePolicyDefinitionStore extends ControlPlaneConnectionHandler<P
 
 
         @Override
-        protected RemotePolicyDefinitionStore create(Monitor monitor, EdcHttpClient httpClient, Codec codec, ControlPlaneConnection connection) {
-            return new RemotePolicyDefinitionStore(monitor, httpClient, codec, connection);
+        protected RemotePolicyDefinitionStore create(Monitor monitor, EdcHttpClient httpClient, Codec codec, ControlPlaneConnection connection, RequestGuard requestGuard) {
+            return new RemotePolicyDefinitionStore(monitor, httpClient, codec, connection, requestGuard, criterionOperatorRegistry, replicationInterval, clock, executor);
         }
     }
 }
@@ -0,0 +1,26 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.edc.remote.stores.resilience;
+
+/**
+ * Snapshot of the bulkhead of one remote store.
+ *
+ * @param maxConcurrentRequests Maximum number of concurrent requests, 0 if unbounded.
+ * @param inFlight Number of requests currently executing.
+ * @param rejected Number of requests rejected because no permit became available in time.
+ */
+public record BulkheadMetrics(int maxConcurrentRequests, int inFlight, long rejected) {
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.edc.remote.stores.resilience;
+
+import dev.failsafe.CircuitBreaker;
+
+
+/**
+ * Snapshot of the circuit breaker guarding the remote control-plane.
+ *
+ * @param state Current state.
+ * @param failureRate Failure rate in percent within the current thresholding period.
+ * @param opened Number of transitions to open.
+ * @param halfOpened Number of transitions to half-open.
+ * @param closed Number of transitions to closed.
+ * @param rejected Number of calls rejected while the breaker was open.
+ */
+public record CircuitBreakerMetrics(CircuitBreaker.State state, int failureRate, long opened, long halfOpened, long closed, long rejected) {
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.edc.remote.stores.resilience;
+
+import dev.failsafe.CircuitBreaker;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.result.ServiceResult;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.eclipse.edc.spi.result.ServiceFailure.Reason.UNEXPECTED;
+
+
+/**
+ * Circuit breaker for requests to the remote control-plane, shared by all remote stores. Opens if the failure rate
+ * within a period exceeds a threshold and lets probe requests through after a delay (half-open). Only server-side
+ * failures (connection errors, 5xx) count as failures, client errors like 404 or 409 do not.
+ */
+public class ControlPlaneCircuitBreaker {
+
+    private final CircuitBreaker<ServiceResult<String>> circuitBreaker;
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong halfOpened = new AtomicLong();
+    private final AtomicLong closed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+
+    /**
+     * Class constructor
+     *
+     * @param failureRateThreshold Failure rate in percent above which the breaker opens.
+     * @param minimumRequests Minimum number of requests within the period before the failure rate is evaluated.
+     * @param period Period over which the failure rate is computed.
+     * @param openDuration Time the breaker stays open before probing the control-plane.
+     * @param monitor Logs state transitions.
+     */
+    public ControlPlaneCircuitBreaker(int failureRateThreshold, int minimumRequests, Duration period, Duration openDuration, Monitor monitor) {
+        this.circuitBreaker = CircuitBreaker.<ServiceResult<String>>builder()
+                .handleResultIf(result -> result.failed() && result.reason() == UNEXPECTED)
+                .withFailureRateThreshold(failureRateThreshold, minimumRequests, period)
+                .withDelay(openDuration)
+                .withSuccessThreshold(1)
+                .onOpen(event -> {
+                    opened.incrementAndGet();
+                    monitor.warning("Remote control-plane circuit breaker opened, failing fast for %s".formatted(openDuration));
+                })
+                .onHalfOpen(event -> {
+                    halfOpened.incrementAndGet();
+                    monitor.info("Remote control-plane circuit breaker half-open, probing control-plane");
+                })
+                .onClose(event -> {
+                    closed.incrementAndGet();
+                    monitor.info("Remote control-plane circuit breaker closed");
+                })
+                .build();
+    }
+
+
+    public CircuitBreakerMetrics metrics() {
+        return new CircuitBreakerMetrics(circuitBreaker.getState(), circuitBreaker.getFailureRate(), opened.get(), halfOpened.get(), closed.get(),
+                rejected.get());
+    }
+
+
+    CircuitBreaker<ServiceResult<String>> policy() {
+        return circuitBreaker;
+    }
+
+
+    /**
+     * Whether the breaker is open and not yet due to let a probe request through.
+     *
+     * @return True if requests are currently rejected.
+     */
+    boolean isRejecting() {
+        return circuitBreaker.isOpen() && circuitBreaker.getRemainingDelay().compareTo(Duration.ZERO) > 0;
+    }
+
+
+    void recordRejection() {
+        rejected.incrementAndGet();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.edc.remote.stores.resilience;
+
+import dev.failsafe.Bulkhead;
+import dev.failsafe.BulkheadFullException;
+import dev.failsafe.CircuitBreakerOpenException;
+import dev.failsafe.Failsafe;
+import dev.failsafe.FailsafeException;
+import dev.failsafe.Policy;
+import org.eclipse.edc.spi.monitor.Monitor;
+import org.eclipse.edc.spi.result.ServiceResult;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+
+/**
+ * Executes requests of one remote store through the shared circuit breaker and a bulkhead limiting the concurrent
+ * requests of this store. Rejected requests are not sent and yield a failed result. The bulkhead wraps the circuit
+ * breaker, so requests rejected by the bulkhead are never recorded by the breaker.
+ */
+public class RequestGuard {
+
+    public static final String CIRCUIT_OPEN_MESSAGE = "Remote control-plane unavailable (circuit breaker open), request to %s not sent.";
+    public static final String BULKHEAD_FULL_MESSAGE = "Too many concurrent requests to remote %s, request not sent.";
+
+    private final String name;
+    private final ControlPlaneCircuitBreaker circuitBreaker;
+    private final int maxConcurrentRequests;
+    private final List<Policy<ServiceResult<String>>> policies = new ArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private final Monitor monitor;
+
+
+    /**
+     * Class constructor
+     *
+     * @param name Name of the guarded store, used in failure messages.
+     * @param circuitBreaker Circuit breaker shared between stores. If null, requests are never rejected by a breaker.
+     * @param maxConcurrentRequests Maximum number of concurrent requests of this store. 0 disables the bulkhead.
+     * @param maxWait Time to wait for a free slot before rejecting a request.
+     * @param monitor Logs rejected requests.
+     */
+    public RequestGuard(String name, @Nullable ControlPlaneCircuitBreaker circuitBreaker, int maxConcurrentRequests, Duration maxWait,
+                        Monitor monitor) {
+        this.name = name;
+        this.circuitBreaker = circuitBreaker;
+        this.maxConcurrentRequests = Math.max(maxConcurrentRequests, 0);
+        this.monitor = monitor;
+
+        // Bulkhead rejections say nothing about the control-plane's health and must not reach the breaker
+        if (this.maxConcurrentRequests > 0) {
+            policies.add(Bulkhead.<ServiceResult<String>>builder(this.maxConcurrentRequests)
+                    .withMaxWaitTime(maxWait)
+                    .build());
+        }
+        if (circuitBreaker != null) {
+            policies.add(circuitBreaker.policy());
+        }
+    }
+
+
+    /**
+     * Guard that executes all requests directly.
+     *
+     * @param name Name of the guarded store.
+     * @param monitor Monitor.
+     * @return Unguarded request guard.
+     */
+    public static RequestGuard unguarded(String name, Monitor monitor) {
+        return new RequestGuard(name, null, 0, Duration.ZERO, monitor);
+    }
+
+
+    /**
+     * Execute a request if the circuit is closed or probing and a bulkhead slot is available.
+     *
+     * @param request The request to execute.
+     * @return The request's result or a failure if the request was rejected.
+     */
+    public ServiceResult<String> execute(Supplier<ServiceResult<String>> request) {
+        if (policies.isEmpty()) {
+            return request.get();
+        }
+
+        // Reject fast on an open circuit before waiting for a bulkhead slot
+        if (circuitBreaker != null && circuitBreaker.isRejecting()) {
+            circuitBreaker.recordRejection();
+            return ServiceResult.unexpected(CIRCUIT_OPEN_MESSAGE.formatted(name));
+        }
+
+        try {
+            return Failsafe.with(policies).get(() -> {
+                inFlight.incrementAndGet();
+                try {
+                    return request.get();
+                }
+                finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+        catch (CircuitBreakerOpenException circuitOpen) {
+            circuitBreaker.recordRejection();
+            return ServiceResult.unexpected(CIRCUIT_OPEN_MESSAGE.formatted(name));
+        }
+        catch (BulkheadFullException bulkheadFull) {
+            rejected.incrementAndGet();
+            monitor.debug(() -> BULKHEAD_FULL_MESSAGE.formatted(name));
+            return ServiceResult.unexpected(BULKHEAD_FULL_MESSAGE.formatted(name));
+        }
+        catch (FailsafeException failsafeException) {
+            return ServiceResult.unexpected(String.valueOf(failsafeException.getMessage()));
+        }
+    }
+
+
+    public BulkheadMetrics bulkheadMetrics() {
+        return new BulkheadMetrics(maxConcurrentRequests, inFlight.get(), rejected.get());
+    }
+
+
+    public @Nullable CircuitBreakerMetrics circuitBreakerMetrics() {
+        return circuitBreaker == null ? null : circuitBreaker.metrics();
+    }
+}
@@ -34,6 +34,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 
 import java.util.Map;
 
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -63,4 +64,16 @@ class EdcConnectorClientExtensionTest {
         // See if initialization works
         extension.initialize(context);
     }
+
+
+    @Test
+    public void testProvideDefinitionStores(ServiceExtensionContext context) {
+        extension.initialize(context);
+
+        // Both definition stores reload their local views on the extension's replication thread
+        assertNotNull(extension.providePolicyDefinitionStore(context));
+        assertNotNull(extension.provideContractDefinitionStore(context));
+
+        extension.shutdown();
+    }
 }
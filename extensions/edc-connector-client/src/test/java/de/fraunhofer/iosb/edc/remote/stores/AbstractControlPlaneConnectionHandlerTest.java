@@ -81,6 +81,13 @@ public abstract class AbstractControlPlaneConnectionHandlerTest {
     }
 
 
+    protected void mockResponseForDelete(String path) {
+        server.stubFor(WireMock.delete(urlPathEqualTo(path))
+                .willReturn(aResponse()
+                        .withStatus(204)));
+    }
+
+
     protected void mockResponseForPost(String path) {
         var postMock = WireMock.post(urlPathEqualTo(path))
                 .withRequestBody(matching("test-body"))
@@ -23,11 +23,15 @@ import org.eclipse.edc.spi.query.QuerySpec;
 import org.eclipse.edc.spi.result.Result;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Stream;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.deleteRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -104,6 +108,46 @@ class RemoteAssetIndexTest extends AbstractControlPlaneConnectionHandlerTest {
     }
 
 
+    @Test
+    void findById_cached_requestedOnce() {
+        var id = UUID.randomUUID().toString();
+        var testSubject = getCachingRemoteAssetIndex();
+
+        var asset = getAsset();
+        when(mockCodec.deserialize("test-return-body", Asset.class)).thenReturn(Result.success(asset));
+
+        mockResponseForGet(String.format("/assets/%s", id));
+
+        assertEquals(asset, testSubject.findById(id));
+        assertEquals(asset.getDataAddress(), testSubject.resolveForAsset(id));
+
+        server.verify(1, getRequestedFor(urlPathEqualTo(String.format("/assets/%s", id))));
+        assertEquals(1, testSubject.getCacheStatistics().hits());
+        assertEquals(1, testSubject.getCacheStatistics().misses());
+    }
+
+
+    @Test
+    void deleteById_invalidatesCache() {
+        var id = UUID.randomUUID().toString();
+        var testSubject = getCachingRemoteAssetIndex();
+
+        var asset = getAsset();
+        when(mockCodec.deserialize("test-return-body", Asset.class)).thenReturn(Result.success(asset));
+
+        mockResponseForGet(String.format("/assets/%s", id));
+        mockResponseForDelete(String.format("/assets/%s", id));
+
+        testSubject.findById(id);
+        testSubject.deleteById(id);
+        testSubject.findById(id);
+
+        server.verify(1, deleteRequestedFor(urlPathEqualTo(String.format("/assets/%s", id))));
+        // findById, deleteById (fetches the asset to return), findById
+        server.verify(3, getRequestedFor(urlPathEqualTo(String.format("/assets/%s", id))));
+    }
+
+
     @Test
     void connectionHandler_authorizes() {
         authorizedServer();
@@ -163,6 +207,20 @@ class RemoteAssetIndexTest extends AbstractControlPlaneConnectionHandlerTest {
     }
 
 
+    private RemoteAssetIndex getCachingRemoteAssetIndex() {
+        return new RemoteAssetIndex.Builder()
+                .authenticationMethod(new ApiKey("x-api-key", apiKey, vault))
+                .managementUri(server.baseUrl())
+                .codec(mockCodec)
+                .httpClient(httpClient)
+                .monitor(monitor)
+                .vault(vault)
+                .cacheSize(10)
+                .cacheTtl(Duration.ofMinutes(1))
+                .build();
+    }
+
+
     private Asset getAsset() {
         return Asset.Builder.newInstance()
                 .id(UUID.randomUUID().toString())
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.edc.remote.stores.cache;
+
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+
+class ReadThroughCacheTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final AtomicInteger loads = new AtomicInteger();
+
+
+    @Test
+    void get_secondLookup_servedFromCache() {
+        var testSubject = new ReadThroughCache<String, String>("test", 10, Duration.ofSeconds(10), clock, new ConsoleMonitor());
+
+        assertEquals("value-a", testSubject.get("a", this::load));
+        assertEquals("value-a", testSubject.get("a", this::load));
+
+        assertEquals(1, loads.get());
+        assertEquals(new CacheStatistics(1, 1, 0, 1), testSubject.statistics());
+        assertEquals(0.5, testSubject.statistics().hitRate());
+    }
+
+
+    @Test
+    void get_expiredEntry_reloaded() {
+        var testSubject = new ReadThroughCache<String, String>("test", 10, Duration.ofSeconds(10), clock, new ConsoleMonitor());
+
+        testSubject.get("a", this::load);
+        clock.advance(Duration.ofSeconds(11));
+        testSubject.get("a", this::load);
+
+        assertEquals(2, loads.get());
+        assertEquals(1, testSubject.statistics().evictions());
+    }
+
+
+    @Test
+    void get_full_evictsLeastRecentlyUsed() {
+        var testSubject = new ReadThroughCache<String, String>("test", 2, Duration.ofSeconds(10), clock, new ConsoleMonitor());
+
+        testSubject.get("a", this::load);
+        testSubject.get("b", this::load);
+        // "a" is now more recently used than "b"
+        testSubject.get("a", this::load);
+        testSubject.get("c", this::load);
+
+        testSubject.get("a", this::load);
+        assertEquals(3, loads.get());
+
+        testSubject.get("b", this::load);
+        assertEquals(4, loads.get());
+    }
+
+
+    @Test
+    void get_nullValue_notCached() {
+        var testSubject = new ReadThroughCache<String, String>("test", 10, Duration.ofSeconds(10), clock, new ConsoleMonitor());
+
+        assertNull(testSubject.get("a", key -> {
+            loads.incrementAndGet();
+            return null;
+        }));
+        testSubject.get("a", this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+
+    @Test
+    void invalidate_duringLoad_resultNotStored() {
+        var testSubject = new ReadThroughCache<String, String>("test", 10, Duration.ofSeconds(10), clock, new ConsoleMonitor());
+
+        testSubject.get("a", key -> {
+            testSubject.invalidate(key);
+            return load(key);
+        });
+        testSubject.get("a", this::load);
+
+        assertEquals(2, loads.get());
+    }
+
+
+    @Test
+    void get_disabled_alwaysLoads() {
+        var testSubject = new ReadThroughCache<String, String>("test", 10, Duration.ZERO, clock, new ConsoleMonitor());
+
+        testSubject.get("a", this::load);
+        testSubject.get("a", this::load);
+
+        assertEquals(2, loads.get());
+        assertEquals(0, testSubject.statistics().size());
+    }
+
+
+    private String load(String key) {
+        loads.incrementAndGet();
+        return "value-" + key;
+    }
+
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.now();
+
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
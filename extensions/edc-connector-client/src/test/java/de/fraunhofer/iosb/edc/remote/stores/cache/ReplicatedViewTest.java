@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.edc.remote.stores.cache;
+
+import org.eclipse.edc.connector.controlplane.policy.spi.PolicyDefinition;
+import org.eclipse.edc.policy.model.Policy;
+import org.eclipse.edc.query.CriterionOperatorRegistryImpl;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.eclipse.edc.spi.query.Criterion;
+import org.eclipse.edc.spi.query.QuerySpec;
+import org.eclipse.edc.spi.result.Result;
+import org.eclipse.edc.store.ReflectionBasedQueryResolver;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class ReplicatedViewTest {
+
+    private final MutableClock clock = new MutableClock();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final List<PolicyDefinition> remote = new ArrayList<>(List.of(policyDefinition("a"), policyDefinition("b")));
+
+
+    @Test
+    void query_loadedOnceWithinInterval() {
+        var testSubject = view(Duration.ofSeconds(10), this::load);
+
+        assertEquals(2, testSubject.query(QuerySpec.max()).orElseThrow().size());
+        assertTrue(testSubject.findById("a").isPresent());
+        assertTrue(testSubject.findById("c").isEmpty());
+
+        assertEquals(1, loads.get());
+    }
+
+
+    @Test
+    void query_filterEvaluatedLocally() {
+        var testSubject = view(Duration.ofSeconds(10), this::load);
+
+        var result = testSubject.query(QuerySpec.Builder.newInstance().filter(Criterion.criterion("id", "=", "b")).build());
+
+        assertEquals(List.of("b"), result.orElseThrow().stream().map(PolicyDefinition::getId).toList());
+    }
+
+
+    @Test
+    void query_intervalPassed_reloaded() {
+        var testSubject = view(Duration.ofSeconds(10), this::load);
+        testSubject.query(QuerySpec.max());
+
+        remote.add(policyDefinition("c"));
+        assertTrue(testSubject.findById("c").isEmpty());
+
+        clock.advance(Duration.ofSeconds(11));
+        assertTrue(testSubject.findById("c").isPresent());
+        assertEquals(2, loads.get());
+    }
+
+
+    @Test
+    void putAndRemove_appliedWithoutReload() {
+        var testSubject = view(Duration.ofSeconds(10), this::load);
+        testSubject.query(QuerySpec.max());
+
+        testSubject.put(policyDefinition("c"));
+        testSubject.remove("a");
+
+        assertEquals(List.of("b", "c"), testSubject.query(QuerySpec.max()).orElseThrow().stream().map(PolicyDefinition::getId).sorted().toList());
+        assertEquals(1, loads.get());
+    }
+
+
+    @Test
+    void query_loadFailed_emptyUntilNextInterval() {
+        var testSubject = view(Duration.ofSeconds(10), () -> {
+            loads.incrementAndGet();
+            return Result.failure("control-plane unreachable");
+        });
+
+        assertTrue(testSubject.query(QuerySpec.max()).isEmpty());
+        assertTrue(testSubject.findById("a").isEmpty());
+        // No reload before the interval passed
+        assertEquals(1, loads.get());
+    }
+
+
+    @Test
+    void query_writeDuringLoad_snapshotDiscarded() {
+        var testSubject = new AtomicReference<ReplicatedView<PolicyDefinition>>();
+        testSubject.set(view(Duration.ofSeconds(10), () -> {
+            var snapshot = load();
+            if (loads.get() == 1) {
+                // Write through this connector after the control-plane answered
+                var written = policyDefinition("c");
+                remote.add(written);
+                testSubject.get().put(written);
+            }
+            return snapshot;
+        }));
+
+        // The first snapshot does not contain the concurrent write, so it is not used
+        assertTrue(testSubject.get().query(QuerySpec.max()).isEmpty());
+        // Next access reloads immediately
+        assertEquals(3, testSubject.get().query(QuerySpec.max()).orElseThrow().size());
+        assertEquals(2, loads.get());
+    }
+
+
+    @Test
+    void query_reloadRunning_servedFromPreviousReplica() {
+        var scheduled = new ArrayList<Runnable>();
+        var testSubject = view(Duration.ofSeconds(10), this::load, scheduled::add);
+
+        // Nothing loaded yet: reads do not wait for the load
+        assertTrue(testSubject.query(QuerySpec.max()).isEmpty());
+        assertEquals(1, scheduled.size());
+        scheduled.remove(0).run();
+        assertEquals(2, testSubject.query(QuerySpec.max()).orElseThrow().size());
+
+        remote.add(policyDefinition("c"));
+        clock.advance(Duration.ofSeconds(11));
+        assertTrue(testSubject.findById("c").isEmpty());
+        assertTrue(testSubject.findById("a").isPresent());
+        // Only one reload is scheduled at a time
+        assertEquals(1, scheduled.size());
+
+        scheduled.remove(0).run();
+        assertTrue(testSubject.findById("c").isPresent());
+        assertEquals(2, loads.get());
+    }
+
+
+    @Test
+    void disabled_neverLoads() {
+        var testSubject = view(Duration.ZERO, this::load);
+
+        assertFalse(testSubject.isEnabled());
+        assertTrue(testSubject.query(QuerySpec.max()).isEmpty());
+        assertEquals(0, loads.get());
+    }
+
+
+    private ReplicatedView<PolicyDefinition> view(Duration interval, Supplier<Result<List<PolicyDefinition>>> loader) {
+        // Reloads run on the calling thread
+        return view(interval, loader, Runnable::run);
+    }
+
+
+    private ReplicatedView<PolicyDefinition> view(Duration interval, Supplier<Result<List<PolicyDefinition>>> loader, Executor executor) {
+        var queryResolver = new ReflectionBasedQueryResolver<>(PolicyDefinition.class, CriterionOperatorRegistryImpl.ofDefaults());
+        return new ReplicatedView<>("test", loader, queryResolver, interval, clock, executor, new ConsoleMonitor());
+    }
+
+
+    private Result<List<PolicyDefinition>> load() {
+        loads.incrementAndGet();
+        return Result.success(List.copyOf(remote));
+    }
+
+
+    private static PolicyDefinition policyDefinition(String id) {
+        return PolicyDefinition.Builder.newInstance()
+                .id(id)
+                .policy(Policy.Builder.newInstance().build())
+                .build();
+    }
+
+
+    private static class MutableClock extends Clock {
+
+        private Instant now = Instant.now();
+
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
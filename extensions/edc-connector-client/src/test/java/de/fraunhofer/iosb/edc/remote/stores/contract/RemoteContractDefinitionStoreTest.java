@@ -18,10 +18,13 @@ package de.fraunhofer.iosb.edc.remote.stores.contract;
 import de.fraunhofer.iosb.aas.lib.auth.impl.ApiKey;
 import de.fraunhofer.iosb.edc.remote.stores.AbstractControlPlaneConnectionHandlerTest;
 import org.eclipse.edc.connector.controlplane.contract.spi.types.offer.ContractDefinition;
+import org.eclipse.edc.query.CriterionOperatorRegistryImpl;
 import org.eclipse.edc.spi.query.QuerySpec;
 import org.eclipse.edc.spi.result.Result;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.stream.Stream;
@@ -145,6 +148,33 @@ class RemoteContractDefinitionStoreTest extends AbstractControlPlaneConnectionHa
     }
 
 
+    @Test
+    void replication_reloadsOnConfiguredExecutor() {
+        var querySpec = QuerySpec.none();
+        List<Runnable> reloads = new ArrayList<>();
+        var testSubject = new RemoteContractDefinitionStore.Builder()
+                .authenticationMethod(new ApiKey("x-api-key", apiKey, vault))
+                .managementUri(String.format("http://localhost:%s", server.getPort()))
+                .codec(mockCodec)
+                .httpClient(httpClient)
+                .monitor(monitor)
+                .vault(vault)
+                .criterionOperatorRegistry(CriterionOperatorRegistryImpl.ofDefaults())
+                .replicationInterval(Duration.ofMinutes(1))
+                .executor(reloads::add)
+                .build();
+
+        when(mockCodec.serialize(querySpec)).thenReturn("test-body");
+        mockResponseForPost("/contractdefinitions/request");
+        when(mockCodec.deserializeList("test-return-body", ContractDefinition.class)).thenReturn(Result.success(List.of()));
+
+        // The replica is not loaded yet, the query goes to the control-plane and the load is scheduled
+        testSubject.findAll(querySpec);
+
+        assertEquals(1, reloads.size());
+    }
+
+
     private RemoteContractDefinitionStore testSubject() {
         return new RemoteContractDefinitionStore.Builder()
                 .authenticationMethod(new ApiKey("x-api-key", apiKey, vault))
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.edc.remote.stores.resilience;
+
+import dev.failsafe.CircuitBreaker;
+import org.eclipse.edc.spi.monitor.ConsoleMonitor;
+import org.eclipse.edc.spi.result.ServiceResult;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.eclipse.edc.spi.result.ServiceFailure.Reason.UNEXPECTED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class RequestGuardTest {
+
+    private final ConsoleMonitor monitor = new ConsoleMonitor();
+    private final AtomicInteger sent = new AtomicInteger();
+
+
+    @Test
+    void execute_failureRateExceeded_failsFast() {
+        var circuitBreaker = new ControlPlaneCircuitBreaker(50, 2, Duration.ofMinutes(1), Duration.ofMinutes(1), monitor);
+        var testSubject = new RequestGuard("assets", circuitBreaker, 0, Duration.ZERO, monitor);
+
+        testSubject.execute(this::serverError);
+        testSubject.execute(this::serverError);
+        var result = testSubject.execute(this::serverError);
+
+        assertEquals(2, sent.get());
+        assertEquals(UNEXPECTED, result.reason());
+        assertEquals(RequestGuard.CIRCUIT_OPEN_MESSAGE.formatted("assets"), result.getFailureDetail());
+
+        var metrics = circuitBreaker.metrics();
+        assertEquals(CircuitBreaker.State.OPEN, metrics.state());
+        assertEquals(1, metrics.opened());
+        assertEquals(1, metrics.rejected());
+    }
+
+
+    @Test
+    void execute_clientErrors_circuitStaysClosed() {
+        var circuitBreaker = new ControlPlaneCircuitBreaker(50, 2, Duration.ofMinutes(1), Duration.ofMinutes(1), monitor);
+        var testSubject = new RequestGuard("assets", circuitBreaker, 0, Duration.ZERO, monitor);
+
+        for (int i = 0; i < 5; i++) {
+            testSubject.execute(() -> {
+                sent.incrementAndGet();
+                return ServiceResult.notFound("not found");
+            });
+        }
+
+        assertEquals(5, sent.get());
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.metrics().state());
+    }
+
+
+    @Test
+    void execute_bulkheadFull_rejected() {
+        var testSubject = new RequestGuard("assets", null, 1, Duration.ZERO, monitor);
+
+        var nested = new AtomicReference<ServiceResult<String>>();
+        var outer = testSubject.execute(() -> {
+            nested.set(testSubject.execute(this::success));
+            return success();
+        });
+
+        assertTrue(outer.succeeded());
+        assertTrue(nested.get().failed());
+        assertEquals(RequestGuard.BULKHEAD_FULL_MESSAGE.formatted("assets"), nested.get().getFailureDetail());
+        assertEquals(new BulkheadMetrics(1, 0, 1), testSubject.bulkheadMetrics());
+    }
+
+
+    @Test
+    void execute_bulkheadFull_notRecordedByCircuitBreaker() {
+        var circuitBreaker = new ControlPlaneCircuitBreaker(50, 2, Duration.ofMinutes(1), Duration.ofMinutes(1), monitor);
+        var testSubject = new RequestGuard("assets", circuitBreaker, 1, Duration.ZERO, monitor);
+
+        testSubject.execute(() -> {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(testSubject.execute(this::success).failed());
+            }
+            return serverError();
+        });
+        testSubject.execute(this::serverError);
+
+        // Only the two server errors count, rejections neither lower the failure rate nor close the breaker
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.metrics().state());
+        assertEquals(new BulkheadMetrics(1, 0, 3), testSubject.bulkheadMetrics());
+    }
+
+
+    @Test
+    void unguarded_executesDirectly() {
+        var testSubject = RequestGuard.unguarded("assets", monitor);
+
+        assertTrue(testSubject.execute(this::success).succeeded());
+        assertEquals(1, sent.get());
+    }
+
+
+    private ServiceResult<String> serverError() {
+        sent.incrementAndGet();
+        return ServiceResult.unexpected("Message: Internal Server Error; Status code: 500");
+    }
+
+
+    private ServiceResult<String> success() {
+        sent.incrementAndGet();
+        return ServiceResult.success("body");
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2021 Fraunhofer IOSB, eine rechtlich nicht selbstaendige
+ * Einrichtung der Fraunhofer-Gesellschaft zur Foerderung der angewandten
+ * Forschung e.V.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.fraunhofer.iosb.repository.impl.faaast;
+
+import de.fraunhofer.iosb.dataplane.aas.spi.AasRequestPlan;
+import de.fraunhofer.iosb.dataplane.aas.spi.LocalAasService;
+import de.fraunhofer.iosb.ilt.faaast.service.config.ServiceConfig;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.SerializationException;
+import de.fraunhofer.iosb.ilt.faaast.service.dataformat.json.JsonApiSerializer;
+import de.fraunhofer.iosb.ilt.faaast.service.exception.MessageBusException;
+import de.fraunhofer.iosb.ilt.faaast.service.messagebus.MessageBus;
+import de.fraunhofer.iosb.ilt.faaast.service.model.IdShortPath;
+import de.fraunhofer.iosb.ilt.faaast.service.model.SubmodelElementIdentifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Content;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Extent;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.Level;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.OutputModifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.api.modifier.QueryModifier;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.PersistenceException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.exception.ResourceNotFoundException;
+import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.EventMessage;
+import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.SubscriptionId;
+import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.SubscriptionInfo;
+import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ElementCreateEventMessage;
+import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ElementDeleteEventMessage;
+import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ElementUpdateEventMessage;
+import de.fraunhofer.iosb.ilt.faaast.service.model.messagebus.event.change.ValueChangeEventMessage;
+import de.fraunhofer.iosb.ilt.faaast.service.persistence.Persistence;
+import org.eclipse.digitaltwin.aas4j.v3.model.KeyTypes;
+import org.eclipse.digitaltwin.aas4j.v3.model.Reference;
+
+import java.io.ByteArrayInputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+
+/**
+ * Serves reads of a data plane running in the same JVM directly from the persistence of an internally started FA³ST
+ * service. Supported are GET requests of shells, submodels, submodel elements and concept descriptions with the
+ * content modifiers normal, $value and $metadata as well as the level and extent modifiers. Other requests are left to
+ * the HTTP endpoint of the service.
+ * <p>
+ * The persistence only holds the last written values of elements backed by an asset connection. Submodels containing
+ * such elements are therefore read via HTTP, where the service fetches the current values from the asset.
+ * <p>
+ * Change listeners are subscribed to the element create, update, delete and value change events of the service's
+ * message bus.
+ */
+class FaaastLocalAasService implements LocalAasService {
+
+    private static final String APPLICATION_JSON = "application/json";
+    private static final String GET = "GET";
+    private static final String SHELLS = "shells";
+    private static final String SUBMODELS = "submodels";
+    private static final String CONCEPT_DESCRIPTIONS = "concept-descriptions";
+    private static final String SUBMODEL_ELEMENTS = "submodel-elements";
+    private static final Map<String, Content> CONTENTS = Map.of("$value", Content.VALUE, "$metadata", Content.METADATA);
+    private static final List<Class<? extends EventMessage>> CHANGE_EVENTS = List.of(ElementCreateEventMessage.class,
+            ElementUpdateEventMessage.class, ElementDeleteEventMessage.class, ValueChangeEventMessage.class);
+
+    private final Persistence<?> persistence;
+    private final MessageBus<?> messageBus;
+    private final Set<String> assetConnectedSubmodels;
+    private final JsonApiSerializer serializer = new JsonApiSerializer();
+
+
+    FaaastLocalAasService(Persistence<?> persistence, MessageBus<?> messageBus, Set<String> assetConnectedSubmodels) {
+        this.persistence = persistence;
+        this.messageBus = messageBus;
+        this.assetConnectedSubmodels = Set.copyOf(assetConnectedSubmodels);
+    }
+
+
+    /**
+     * Identifiers of the submodels containing elements whose values are provided or updated by an asset connection of
+     * the service.
+     *
+     * @param config Configuration of the service.
+     * @return Identifiers of the submodels with asset connections.
+     */
+    static Set<String> getAssetConnectedSubmodels(ServiceConfig config) {
+        return config.getAssetConnections().stream()
+                .flatMap(connection -> Stream.concat(connection.getValueProviders().keySet().stream(),
+                        connection.getSubscriptionProviders().keySet().stream()))
+                .map(FaaastLocalAasService::getSubmodelId)
+                .flatMap(Optional::stream)
+                .collect(Collectors.toSet());
+    }
+
+
+    @Override
+    public Optional<Response> read(AasRequestPlan plan) {
+        if (plan.method() != null && !GET.equalsIgnoreCase(plan.method()) || plan.path() == null) {
+            return Optional.empty();
+        }
+        if (plan.binary() || plan.getRange().isPresent()) {
+            // Attachments and packages are served by the file storage of the service, via HTTP
+            return Optional.empty();
+        }
+
+        var content = plan.getContentPathSegment().map(CONTENTS::get).orElse(Content.NORMAL);
+        var level = plan.serializationQueryParameters().get("level");
+        var extent = plan.serializationQueryParameters().get("extent");
+        if (content == null || (level != null && parse(Level.values(), level).isEmpty()) ||
+                (extent != null && parse(Extent.values(), extent).isEmpty())) {
+            return Optional.empty();
+        }
+
+        var queryModifier = new QueryModifier.Builder()
+                .level(level == null ? QueryModifier.DEFAULT.getLevel() : parse(Level.values(), level).get())
+                .extent(extent == null ? QueryModifier.DEFAULT.getExtent() : parse(Extent.values(), extent).get())
+                .build();
+        var outputModifier = new OutputModifier.Builder()
+                .content(content)
+                .level(queryModifier.getLevel())
+                .extent(queryModifier.getExtent())
+                .build();
+
+        // <root>/<base64url identifier>[/submodel-elements/<idShort path>]
+        var segments = plan.path().replaceFirst("^/", "").split("/", 4);
+        if (segments.length != 2 && !(segments.length == 4 && SUBMODELS.equals(segments[0]) && SUBMODEL_ELEMENTS.equals(segments[2]))) {
+            return Optional.empty();
+        }
+
+        String identifier;
+        try {
+            identifier = new String(Base64.getUrlDecoder().decode(segments[1]), StandardCharsets.UTF_8);
+        }
+        catch (IllegalArgumentException notBase64) {
+            return Optional.empty();
+        }
+        if (SUBMODELS.equals(segments[0]) && assetConnectedSubmodels.contains(identifier)) {
+            return Optional.empty();
+        }
+
+        try {
+            Object element = switch (segments[0]) {
+                case SHELLS -> persistence.getAssetAdministrationShell(identifier, queryModifier);
+                case CONCEPT_DESCRIPTIONS -> persistence.getConceptDescription(identifier, queryModifier);
+                case SUBMODELS -> segments.length == 2 ?
+                        persistence.getSubmodel(identifier, queryModifier) :
+                        persistence.getSubmodelElement(SubmodelElementIdentifier.builder()
+                                .submodelId(identifier)
+                                .idShortPath(IdShortPath.parse(URLDecoder.decode(segments[3], StandardCharsets.UTF_8)))
+                                .build(), queryModifier);
+                default -> null;
+            };
+            if (element == null) {
+                return Optional.empty();
+            }
+            return Optional.of(response(200, serializer.write(element, outputModifier)));
+        }
+        catch (ResourceNotFoundException notFound) {
+            return Optional.of(response(404, notFound.getMessage()));
+        }
+        catch (PersistenceException | SerializationException | IllegalArgumentException exception) {
+            return Optional.of(response(500, String.valueOf(exception.getMessage())));
+        }
+    }
+
+
+    @Override
+    public Optional<AutoCloseable> subscribe(Runnable listener) {
+        List<SubscriptionId> subscriptions = new ArrayList<>();
+        AutoCloseable cancel = () -> {
+            for (var subscription: subscriptions) {
+                messageBus.unsubscribe(subscription);
+            }
+        };
+
+        try {
+            for (var eventType: CHANGE_EVENTS) {
+                subscriptions.add(messageBus.subscribe(SubscriptionInfo.create(eventType, message -> listener.run())));
+            }
+        }
+        catch (MessageBusException messageBusException) {
+            try {
+                cancel.close();
+            }
+            catch (Exception ignored) {
+                // Subscriptions which could not be removed only cause unnecessary reads
+            }
+            return Optional.empty();
+        }
+        return Optional.of(cancel);
+    }
+
+
+    private static Optional<String> getSubmodelId(Reference reference) {
+        return Optional.ofNullable(reference.getKeys())
+                .filter(keys -> !keys.isEmpty() && keys.get(0).getType() == KeyTypes.SUBMODEL)
+                .map(keys -> keys.get(0).getValue());
+    }
+
+
+    private static Response response(int code, String body) {
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        return new Response(code, new ByteArrayInputStream(bytes), APPLICATION_JSON, bytes.length);
+    }
+
+
+    /*
+     * Modifier values are given as in the HTTP API (e.g., withBlobValue), enum constants are upper snake case.
+     */
+    private static <T extends Enum<T>> Optional<T> parse(T[] values, String value) {
+        return Arrays.stream(values)
+                .filter(constant -> constant.name().replace("_", "").equalsIgnoreCase(value))
+                .findFirst();
+    }
+}
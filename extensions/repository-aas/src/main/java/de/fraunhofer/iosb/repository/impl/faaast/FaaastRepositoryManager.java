@@ -15,6 +15,7 @@
  */
 package de.fraunhofer.iosb.repository.impl.faaast;
 
+import de.fraunhofer.iosb.dataplane.aas.spi.LocalAasServiceRegistry;
 import de.fraunhofer.iosb.ilt.faaast.service.Service;
 import de.fraunhofer.iosb.ilt.faaast.service.assetconnection.AssetConnectionException;
 import de.fraunhofer.iosb.ilt.faaast.service.config.ServiceConfig;
@@ -31,6 +32,7 @@ import org.eclipse.edc.spi.EdcException;
 import org.eclipse.edc.spi.monitor.Monitor;
 import org.eclipse.edc.spi.system.Hostname;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.net.URI;
 import java.util.Map;
@@ -42,6 +44,9 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages internally created FA³ST instances.
+ * <p>
+ * Given a {@link LocalAasServiceRegistry}, started services are registered with their access URL so that a data plane
+ * running in the same JVM reads from them directly instead of via HTTP.
  */
 public class FaaastRepositoryManager implements AasRepositoryManager<FaaastRepositoryConfig> {
     public static final String FAAAST = "FA³ST";
@@ -50,11 +55,26 @@ public class FaaastRepositoryManager implements AasRepositoryManager<FaaastRepos
     private final Hostname hostname;
     private final Monitor monitor;
     private final Map<URI, Service> repository;
+    private final LocalAasServiceRegistry localServices;
 
 
     public FaaastRepositoryManager(Monitor monitor, Hostname hostname) {
+        this(monitor, hostname, null);
+    }
+
+
+    /**
+     * Class constructor
+     *
+     * @param monitor Monitor.
+     * @param hostname Hostname used in the access URL of services without configured hostname.
+     * @param localServices Registry of services co-located with the data plane, null if no data plane runs in this
+     *         JVM.
+     */
+    public FaaastRepositoryManager(Monitor monitor, Hostname hostname, @Nullable LocalAasServiceRegistry localServices) {
         this.monitor = monitor;
         this.hostname = hostname;
+        this.localServices = localServices;
 
         this.repository = new ConcurrentHashMap<>();
     }
@@ -77,6 +97,10 @@ public class FaaastRepositoryManager implements AasRepositoryManager<FaaastRepos
                         .concat("/api/v3.0")); // mandatory FA³ST path
 
         repository.put(accessUri, service);
+        if (localServices != null) {
+            localServices.register(accessUri.toString(), new FaaastLocalAasService(service.getPersistence(), service.getMessageBus(),
+                    FaaastLocalAasService.getAssetConnectedSubmodels(serviceConfig)));
+        }
         monitor.debug("Started %s service with access URL: %s.".formatted(FAAAST, accessUri));
 
         return new LocalFaaastRepositoryContext.Builder()
@@ -91,6 +115,9 @@ public class FaaastRepositoryManager implements AasRepositoryManager<FaaastRepos
 
     @Override
     public void stopAll() {
+        if (localServices != null) {
+            repository.keySet().forEach(uri -> localServices.unregister(uri.toString()));
+        }
         repository.values().forEach(Service::stop);
         monitor.info("Stopped all internally started %s services.".formatted(FAAAST));
     }
@@ -102,6 +129,9 @@ public class FaaastRepositoryManager implements AasRepositoryManager<FaaastRepos
         monitor.info("Stopping internal %s service with URI %s.".formatted(FAAAST, repositoryUri));
 
         var serviceToStop = repository.remove(repositoryUri);
+        if (localServices != null) {
+            localServices.unregister(repositoryUri.toString());
+        }
         if (Objects.isNull(serviceToStop)) {
             monitor.info("%s was not registered as an internal %s service.".formatted(repositoryUri, FAAAST));
             return;